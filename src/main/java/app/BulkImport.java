@@ -0,0 +1,340 @@
+package app;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import model.ReadingCodes;
+import repository.PersistenceBootstrap;
+import repository.ReadingCodeDictionary;
+import storage.ReadingJsonScanner;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Command-line bulk importer of reading files into {@code raw_readings}.
+ *
+ * <p>Accepts files shaped like {@code data.txt} – concatenated JSON objects,
+ * NDJSON or a JSON array of flat objects (see {@link ReadingJsonScanner}). Each
+ * file is cut into chunks of about {@code import.chunkMb} MiB (default 64), each
+ * ending right after an object's closing brace, and the chunks are memory-mapped
+ * and parsed by {@code import.threads} threads (default: all cores). Parsed
+ * readings travel in columnar batches of {@code import.batchSize} rows (default
+ * 10000) to a single writer thread, which inserts them with a prepared JDBC
+ * batch and commits every {@code import.commitRows} rows (default 200000).
+ * SQLite serialises writers anyway, so one writer with large transactions is
+ * the fastest way in; the database is switched to WAL mode for the import.</p>
+ *
+ * <p>Progress – bytes parsed, rows written, throughput – is logged every second.
+ * Objects lacking a timestamp or a value are counted and skipped, and so are
+ * – counted apart – objects whose unit is not in the dictionary, which would
+ * otherwise be read in the wrong unit; everything else is stored as is, since
+ * validation is the job of the filter chain. Types
+ * without a code get a new one, which the writer adds to {@code reading_codes}
+ * (see {@link ReadingCodeDictionary}).</p>
+ *
+ * <pre>{@code
+ * $ java -Dimport.threads=8 -cp target/classes:... app.BulkImport backfill-2024.ndjson data.txt
+ * }</pre>
+ *
+ * <p>The target database is {@link PersistenceBootstrap#jdbcUrl()}.</p>
+ */
+public class BulkImport {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkImport.class);
+
+    /** Batch marking the end of the parsed stream. */
+    private static final long[] END = new long[0];
+
+    private final String jdbcUrl;
+    private final int threads;
+    private final long chunkBytes;
+    private final int batchSize;
+    private final int commitRows;
+
+    private final LongAdder bytesParsed = new LongAdder();
+    private final LongAdder rowsWritten = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder unknownUnits = new LongAdder();
+
+    private volatile Throwable parseFailure;
+
+    /**
+     * @param jdbcUrl    SQLite JDBC URL of the target database
+     * @param threads    number of parser threads
+     * @param chunkBytes approximate size of the chunk parsed by one task
+     * @param batchSize  rows handed to the writer at once
+     * @param commitRows rows per writer transaction
+     */
+    public BulkImport(String jdbcUrl, int threads, long chunkBytes, int batchSize, int commitRows) {
+        this.jdbcUrl = jdbcUrl;
+        this.threads = threads;
+        this.chunkBytes = Math.min(chunkBytes, Integer.MAX_VALUE / 2); // a mapping is limited to 2 GiB
+        this.batchSize = batchSize;
+        this.commitRows = commitRows;
+    }
+
+    /**
+     * Imports the files given as arguments.
+     *
+     * @param args paths of the files to import
+     * @throws Exception if the import fails
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("Uso: BulkImport <archivo> [<archivo> ...]");
+            System.exit(2);
+        }
+        BulkImport importer = new BulkImport(
+                PersistenceBootstrap.jdbcUrl(),
+                Integer.getInteger("import.threads", Runtime.getRuntime().availableProcessors()),
+                Long.getLong("import.chunkMb", 64L) << 20,
+                Integer.getInteger("import.batchSize", 10_000),
+                Integer.getInteger("import.commitRows", 200_000));
+        List<Path> files = new ArrayList<>();
+        for (String arg : args) {
+            files.add(Path.of(arg));
+        }
+        importer.run(files);
+    }
+
+    /**
+     * Imports the given files.
+     *
+     * @param files files to import
+     * @return number of rows written
+     * @throws IOException          if a file cannot be read; rows parsed before the
+     *                              failure are still written
+     * @throws SQLException         if the rows cannot be written; rows of committed transactions remain
+     * @throws InterruptedException if interrupted while waiting for the parsers
+     */
+    public long run(List<Path> files) throws IOException, SQLException, InterruptedException {
+        long begin = System.nanoTime();
+        long totalBytes = 0;
+        try (Connection connection = DriverManager.getConnection(jdbcUrl)) {
+            ReadingCodeDictionary.open(connection); // los codigos nuevos de los parsers siguen a los de la base
+        }
+        List<FileChannel> channels = new ArrayList<>();
+        List<long[]> chunks = new ArrayList<>(); // {file index, start, end}
+        try {
+            for (Path file : files) {
+                FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+                channels.add(channel);
+                totalBytes += channel.size();
+                for (long start = 0; start < channel.size(); ) {
+                    long end = boundaryAfter(channel, start + chunkBytes);
+                    chunks.add(new long[] { channels.size() - 1, start, end });
+                    start = end;
+                }
+            }
+
+            // rows travel as {timestamps, value bits, type and unit codes packed, row count}
+            BlockingQueue<long[][]> batches = new ArrayBlockingQueue<>(threads * 4);
+            ExecutorService parsers = Executors.newFixedThreadPool(threads, task -> {
+                Thread thread = new Thread(task, "import-parser");
+                thread.setDaemon(true);
+                return thread;
+            });
+            ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "import-progress");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long total = totalBytes;
+            reporter.scheduleAtFixedRate(() -> report(total, begin), 1, 1, TimeUnit.SECONDS);
+
+            List<Future<?>> parsed = new ArrayList<>();
+            for (long[] chunk : chunks) {
+                FileChannel channel = channels.get((int) chunk[0]);
+                parsed.add(parsers.submit(() -> {
+                    parse(channel, chunk[1], chunk[2], batches);
+                    return null;
+                }));
+            }
+            Thread closer = new Thread(() -> {
+                try {
+                    for (Future<?> future : parsed) {
+                        future.get();
+                    }
+                } catch (ExecutionException e) {
+                    parseFailure = e.getCause();
+                    parsers.shutdownNow();
+                } catch (InterruptedException e) {
+                    parseFailure = e;
+                }
+                try {
+                    batches.put(new long[][] { END });
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "import-closer");
+            closer.setDaemon(true);
+            closer.start();
+
+            try {
+                write(batches);
+            } finally {
+                parsers.shutdownNow();
+                reporter.shutdownNow();
+            }
+            if (parseFailure != null) {
+                throw new IOException("Error al leer los archivos: " + parseFailure.getMessage(), parseFailure);
+            }
+        } finally {
+            for (FileChannel channel : channels) {
+                channel.close();
+            }
+        }
+
+        report(totalBytes, begin);
+        log.info("Importación finalizada: {} filas, {} omitidas, {} con unidad desconocida, {} ms.",
+                rowsWritten.sum(), skipped.sum(), unknownUnits.sum(), (System.nanoTime() - begin) / 1_000_000);
+        return rowsWritten.sum();
+    }
+
+    /**
+     * Returns the offset right after the first closing brace at or after {@code from},
+     * or the file size.
+     */
+    static long boundaryAfter(FileChannel channel, long from) throws IOException {
+        long size = channel.size();
+        ByteBuffer window = ByteBuffer.allocate(8192);
+        for (long position = from; position < size; position += window.limit()) {
+            window.clear();
+            int read = channel.read(window, position);
+            if (read <= 0) {
+                break;
+            }
+            window.flip();
+            for (int i = 0; i < read; i++) {
+                if (window.get(i) == '}') {
+                    return position + i + 1;
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Parses one chunk and hands full batches to the writer.
+     */
+    private void parse(FileChannel channel, long start, long end, BlockingQueue<long[][]> batches)
+            throws IOException, InterruptedException {
+        MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        ReadingJsonScanner scanner = new ReadingJsonScanner(chunk);
+        long[][] batch = newBatch();
+        int rows = 0;
+        int reported = 0;
+        while (scanner.next()) {
+            if (!scanner.valid()) {
+                (scanner.unknownUnit() ? unknownUnits : skipped).increment();
+                continue;
+            }
+            batch[0][rows] = scanner.timestamp();
+            batch[1][rows] = Double.doubleToRawLongBits(scanner.value());
+            batch[2][rows] = ((long) scanner.typeCode() << 32) | scanner.unitCode();
+            if (++rows == batchSize) {
+                batch[3][0] = rows;
+                batches.put(batch);
+                batch = newBatch();
+                rows = 0;
+                bytesParsed.add(scanner.position() - reported);
+                reported = scanner.position();
+            }
+        }
+        batch[3][0] = rows;
+        if (rows > 0) {
+            batches.put(batch);
+        }
+        bytesParsed.add(end - start - reported);
+    }
+
+    private long[][] newBatch() {
+        return new long[][] { new long[batchSize], new long[batchSize], new long[batchSize], new long[1] };
+    }
+
+    /**
+     * Writer loop: inserts the batches until the end marker arrives.
+     */
+    private void write(BlockingQueue<long[][]> batches) throws SQLException, InterruptedException {
+        try (Connection connection = DriverManager.getConnection(jdbcUrl)) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("PRAGMA journal_mode=WAL");
+                statement.execute("PRAGMA synchronous=NORMAL");
+                statement.execute("CREATE TABLE IF NOT EXISTS raw_readings (id integer, measured_value float, "
+                        + "type_code integer, unit_code integer, timestamp bigint, primary key (id))");
+            }
+            connection.setAutoCommit(false);
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO raw_readings (measured_value, type_code, unit_code, timestamp) VALUES (?, ?, ?, ?)")) {
+                long uncommitted = 0;
+                Set<Long> recorded = new HashSet<>(); // codigos {tipo, unidad} ya agregados al diccionario
+                while (true) {
+                    long[][] batch = batches.take();
+                    if (batch[0] == END) {
+                        break;
+                    }
+                    int rows = (int) batch[3][0];
+                    for (int i = 0; i < rows; i++) {
+                        if (recorded.add(batch[2][i])) {
+                            ReadingCodeDictionary.record(connection, ReadingCodes.KIND_TYPE, (int) (batch[2][i] >>> 32));
+                            ReadingCodeDictionary.record(connection, ReadingCodes.KIND_UNIT, (int) batch[2][i]);
+                        }
+                        insert.setDouble(1, Double.longBitsToDouble(batch[1][i]));
+                        insert.setInt(2, (int) (batch[2][i] >>> 32));
+                        insert.setInt(3, (int) batch[2][i]);
+                        insert.setLong(4, batch[0][i]);
+                        insert.addBatch();
+                    }
+                    insert.executeBatch();
+                    uncommitted += rows;
+                    if (uncommitted >= commitRows) {
+                        connection.commit();
+                        rowsWritten.add(uncommitted);
+                        uncommitted = 0;
+                    }
+                }
+                connection.commit();
+                rowsWritten.add(uncommitted);
+            } catch (SQLException | InterruptedException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+    }
+
+    /** @return number of objects skipped so far because their unit is not in the dictionary */
+    public long unknownUnits() {
+        return unknownUnits.sum();
+    }
+
+    private void report(long totalBytes, long begin) {
+        double seconds = Math.max(1e-3, (System.nanoTime() - begin) / 1e9);
+        long bytes = bytesParsed.sum();
+        long rows = rowsWritten.sum();
+        log.info(String.format("Importando: %.1f%% (%d/%d MiB), %d filas, %.0f filas/s, %.1f MiB/s",
+                totalBytes == 0 ? 100.0 : 100.0 * bytes / totalBytes, bytes >> 20, totalBytes >> 20,
+                rows, rows / seconds, (bytes / 1048576.0) / seconds));
+    }
+}
@@ -1,18 +1,27 @@
 package app;
 
+import filter.AdaptiveFilterChain;
 import filter.ExtremeValueFilter;
 import filter.RawDataFilter;
 import filter.UnitNormalizerFilter;
 import filter.ValidatorFilter;
 import jakarta.persistence.EntityManagerFactory;
-import jakarta.persistence.Persistence;
+import model.ReadingCodes;
 import org.slf4j.LoggerFactory;
 import org.slf4j.Logger;
 import repository.CleanDataRepository;
+import repository.PersistenceBootstrap;
 import repository.RawDataRepository;
+import repository.SketchRepository;
+import service.PipelinedProcessingService;
 import service.RawDataProcessingService;
+import sketch.DDSketch;
+import sketch.WindowedSketches;
+import trace.StartupTimings;
 
+import java.sql.SQLException;
 import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Entry point of the application that coordinates the data processing pipeline.
@@ -31,8 +40,29 @@ import java.util.List;
  * <p>Logging is handled via SLF4J. Ensure a compatible backend (e.g., Logback)
  * is included in the project dependencies.</p>
  *
- * <p><strong>Note:</strong> The persistence unit name must match the one defined
- * in {@code persistence.xml}, typically {@code "environment"}.</p>
+ * <p><strong>Note:</strong> The persistence context is obtained from
+ * {@link PersistenceBootstrap}, which builds it in the background while the
+ * filter chain is set up; run with {@code -Dpersistence.mode=prod} to validate
+ * the existing schema instead of recreating and reseeding it.</p>
+ *
+ * <p>With {@code -Dpipeline.adaptiveFilters=true} the filters are wrapped in an
+ * {@link AdaptiveFilterChain}, which reorders the commuting ones according to
+ * their observed reject rate and cost. The {@link ValidatorFilter} still runs
+ * before the {@link ExtremeValueFilter}, whose listeners must only see validated
+ * readings.</p>
+ *
+ * <p>Readings rejected as out of range are counted and logged once, as a
+ * summary, at the end of the run; each rejection is traced like any other.</p>
+ *
+ * <p>With {@code -Dpipeline.sketches=true} the readings accepted by the
+ * {@link ExtremeValueFilter} are also summarised in hourly quantile sketches per
+ * type, merged into the {@code reading_sketches} table at the end of the run
+ * (see {@link SketchRepository}); the resulting p50/p95/p99 are logged.</p>
+ *
+ * <p>With {@code -Dpipeline.mode=pipelined} the run is done by a
+ * {@link PipelinedProcessingService} instead: reading, filtering and writing run
+ * on their own threads, connected by a ring of {@code -Dpipeline.ringSize}
+ * preallocated slots (default 1024, a power of two).</p>
  *
  * @author Daniel San Martín
  */
@@ -51,27 +81,71 @@ public class Main {
 
         log.info("Iniciando procesamiento...");
 
-        EntityManagerFactory emf = Persistence.createEntityManagerFactory("environment");
-        RawDataRepository rawRepo = new RawDataRepository(emf);
-        CleanDataRepository cleanRepo = new CleanDataRepository(emf);
+        PersistenceBootstrap.start(); // se construye en segundo plano mientras se arma la cadena
+
+        // sketches de cuantiles por tipo y hora de las lecturas aceptadas, si se piden
+        WindowedSketches sketches = Boolean.getBoolean("pipeline.sketches")
+                ? new WindowedSketches(3_600_000L, DDSketch.DEFAULT_RELATIVE_ACCURACY) : null;
+
+        // alertas de lecturas fuera de rango: se resumen al final, no se registran una a una
+        LongAdder alerts = new LongAdder();
 
         // aqui se intancian los filtros y se reemplazan los null
         List<RawDataFilter> filters = List.of(
                 new ValidatorFilter(),
                 new UnitNormalizerFilter(),
-                new ExtremeValueFilter()
+                new ExtremeValueFilter(reading -> alerts.increment(),
+                        sketches == null ? null : reading -> sketches.add(ReadingCodes.typeCode(reading.getType()),
+                                ReadingCodes.toEpochMillis(reading.getTimestamp()), reading.getMeasuredValue()))
         );
+        if (Boolean.getBoolean("pipeline.adaptiveFilters")) {
+            filters = List.of(new AdaptiveFilterChain(filters));
+        }
 
-        // Create the processing service
-        RawDataProcessingService service = new RawDataProcessingService(rawRepo, cleanRepo, filters);
+        EntityManagerFactory emf = PersistenceBootstrap.start().join(); // esquema y datos iniciales listos
 
         // Execute the pipeline
         try {
-            service.processAll();
+            if ("pipelined".equals(System.getProperty("pipeline.mode"))) {
+                new PipelinedProcessingService(PersistenceBootstrap.jdbcUrl(), filters,
+                        Integer.getInteger("pipeline.ringSize", 1024), 500).processAll();
+            } else {
+                RawDataRepository rawRepo = new RawDataRepository(emf);
+                CleanDataRepository cleanRepo = new CleanDataRepository(emf);
+
+                // Create the processing service
+                new RawDataProcessingService(rawRepo, cleanRepo, filters).processAll();
+            }
+            StartupTimings.global().mark("processing done");
+            if (alerts.sum() > 0) {
+                log.warn("⚠ Alerta: {} lecturas fuera de rango descartadas.", alerts.sum());
+            }
+            if (sketches != null) {
+                saveSketches(sketches);
+            }
         } finally {
-            emf.close(); // Always close the factory
+            PersistenceBootstrap.close(); // Always close the factory
         }
+        StartupTimings.global().report();
 
         log.info("✅ Procesamiento finalizado.");
     }
+
+    /**
+     * Merges the sketches of the run into {@code reading_sketches} and logs the
+     * quantiles of every type over all the stored windows.
+     */
+    private static void saveSketches(WindowedSketches sketches) {
+        try (SketchRepository repository = new SketchRepository(PersistenceBootstrap.jdbcUrl())) {
+            repository.merge(sketches.drain(), sketches.windowMillis());
+            for (String type : List.of("temperature", "mp")) {
+                DDSketch sketch = repository.find(ReadingCodes.typeCode(type), sketches.windowMillis(),
+                        Long.MIN_VALUE, Long.MAX_VALUE);
+                log.info("Cuantiles de {} ({} lecturas): p50={} p95={} p99={}", type, sketch.count(),
+                        sketch.quantile(0.5), sketch.quantile(0.95), sketch.quantile(0.99));
+            }
+        } catch (SQLException e) {
+            log.error("No se pudieron guardar los sketches: " + e.getMessage());
+        }
+    }
 }
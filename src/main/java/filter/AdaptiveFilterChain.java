@@ -0,0 +1,267 @@
+package filter;
+
+import model.RawData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * A {@link RawDataFilter} that runs a chain of filters in an order adapted to
+ * the observed data.
+ *
+ * <p>For every filter the chain counts how many readings it saw and rejected,
+ * and measures its cost on a random sample of calls (one in
+ * {@value #COST_SAMPLE_RATE}). Every {@code reorderInterval} readings these
+ * counters are folded into moving averages and the order is recomputed so that
+ * filters rejecting the most readings per nanosecond spent run first.</p>
+ *
+ * <p>Only filters that {@linkplain RawDataFilter#commutes() commute} are moved,
+ * and only when no filter {@linkplain RawDataFilter#hasSideEffects() with side
+ * effects} is declared after them: a range check reporting alerts must not see
+ * readings the validator before it would reject. The others form a fixed
+ * sequence that keeps its declared order – a range check that depends on unit
+ * normalization always runs after it. The fixed sequence is
+ * split into groups with the best combined reject-per-cost ratio, and the groups
+ * and commuting filters are then ordered by that ratio, which minimises the
+ * expected cost per reading under the measured rates.</p>
+ *
+ * <p>The chain is thread safe: counters are {@link LongAdder}s, the current order
+ * is an immutable array published through a volatile field, and recomputation is
+ * serialised. A rejecting filter's exception is rethrown unchanged.</p>
+ *
+ * <pre>{@code
+ * RawDataFilter chain = new AdaptiveFilterChain(List.of(
+ *         new ValidatorFilter(), new UnitNormalizerFilter(), new ExtremeValueFilter()));
+ * }</pre>
+ */
+public class AdaptiveFilterChain implements RawDataFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(AdaptiveFilterChain.class);
+
+    /** One call in this many is timed. */
+    private static final int COST_SAMPLE_RATE = 16;
+
+    /** Weight of the latest window in the moving averages. */
+    private static final double ALPHA = 0.3;
+
+    /** Lower bound of a measured cost, so free filters do not divide by zero. */
+    private static final double MIN_COST_NANOS = 1.0;
+
+    private final RawDataFilter[] filters;
+    private final boolean[] commuting;
+    private final LongAdder[] calls;
+    private final LongAdder[] rejects;
+    private final LongAdder[] sampledNanos;
+    private final LongAdder[] samples;
+    private final double[] rejectRate;
+    private final double[] costNanos;
+    private final int reorderInterval;
+    private final AtomicLong applied = new AtomicLong();
+
+    private volatile int[] order;
+
+    /**
+     * Creates a chain that reconsiders its order every 1000 readings.
+     *
+     * @param filters the filters in their declared order
+     */
+    public AdaptiveFilterChain(List<RawDataFilter> filters) {
+        this(filters, 1000);
+    }
+
+    /**
+     * @param filters         the filters in their declared order
+     * @param reorderInterval number of readings between two order recomputations
+     */
+    public AdaptiveFilterChain(List<RawDataFilter> filters, int reorderInterval) {
+        if (reorderInterval <= 0) {
+            throw new IllegalArgumentException("reorderInterval must be positive");
+        }
+        int n = filters.size();
+        this.filters = filters.toArray(new RawDataFilter[0]);
+        this.commuting = new boolean[n];
+        this.calls = new LongAdder[n];
+        this.rejects = new LongAdder[n];
+        this.sampledNanos = new LongAdder[n];
+        this.samples = new LongAdder[n];
+        this.rejectRate = new double[n];
+        this.costNanos = new double[n];
+        this.order = new int[n];
+        boolean sideEffectsAfter = false;
+        for (int i = n - 1; i >= 0; i--) {
+            commuting[i] = this.filters[i].commutes() && !sideEffectsAfter;
+            sideEffectsAfter |= this.filters[i].hasSideEffects();
+        }
+        for (int i = 0; i < n; i++) {
+            calls[i] = new LongAdder();
+            rejects[i] = new LongAdder();
+            sampledNanos[i] = new LongAdder();
+            samples[i] = new LongAdder();
+            costNanos[i] = MIN_COST_NANOS;
+            order[i] = i;
+        }
+        this.reorderInterval = reorderInterval;
+    }
+
+    @Override
+    public RawData apply(RawData data) throws Exception {
+        RawData result = data;
+        boolean timed = ThreadLocalRandom.current().nextInt(COST_SAMPLE_RATE) == 0;
+        try {
+            for (int i : order) {
+                calls[i].increment();
+                long begin = timed ? System.nanoTime() : 0L;
+                try {
+                    result = filters[i].apply(result);
+                } catch (Exception e) {
+                    rejects[i].increment();
+                    throw e;
+                } finally {
+                    if (timed) {
+                        sampledNanos[i].add(System.nanoTime() - begin);
+                        samples[i].increment();
+                    }
+                }
+            }
+        } finally {
+            if (applied.incrementAndGet() % reorderInterval == 0) {
+                reorder();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The chain commutes only if every filter in it does.
+     */
+    @Override
+    public boolean commutes() {
+        for (boolean c : commuting) {
+            if (!c) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The chain has side effects if any filter in it does.
+     */
+    @Override
+    public boolean hasSideEffects() {
+        for (RawDataFilter filter : filters) {
+            if (filter.hasSideEffects()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the filters in the order currently applied
+     */
+    public List<RawDataFilter> currentOrder() {
+        List<RawDataFilter> current = new ArrayList<>(filters.length);
+        for (int i : order) {
+            current.add(filters[i]);
+        }
+        return current;
+    }
+
+    /**
+     * Folds the counters of the last window into the moving averages and
+     * publishes the order minimising the expected cost per reading.
+     */
+    synchronized void reorder() {
+        for (int i = 0; i < filters.length; i++) {
+            long seen = calls[i].sumThenReset();
+            long rejected = rejects[i].sumThenReset();
+            long nanos = sampledNanos[i].sumThenReset();
+            long timed = samples[i].sumThenReset();
+            if (seen > 0) {
+                rejectRate[i] += ALPHA * ((double) rejected / seen - rejectRate[i]);
+            }
+            if (timed > 0) {
+                costNanos[i] += ALPHA * (Math.max(MIN_COST_NANOS, (double) nanos / timed) - costNanos[i]);
+            }
+        }
+
+        // Units to sort: each commuting filter alone, and the fixed filters split into
+        // consecutive groups, each the prefix of the remaining sequence with the best rank.
+        List<int[]> units = new ArrayList<>();
+        List<Double> ranks = new ArrayList<>();
+        int[] fixed = IntStream.range(0, filters.length).filter(i -> !commuting[i]).toArray();
+        for (int start = 0; start < fixed.length; ) {
+            int bestEnd = start + 1;
+            double bestRank = Double.NEGATIVE_INFINITY;
+            for (int end = start + 1; end <= fixed.length; end++) {
+                double r = rank(Arrays.copyOfRange(fixed, start, end));
+                if (r > bestRank) {
+                    bestRank = r;
+                    bestEnd = end;
+                }
+            }
+            units.add(Arrays.copyOfRange(fixed, start, bestEnd));
+            ranks.add(bestRank);
+            start = bestEnd;
+        }
+        for (int i = 0; i < filters.length; i++) {
+            if (commuting[i]) {
+                units.add(new int[] { i });
+                ranks.add(rank(new int[] { i }));
+            }
+        }
+
+        // Stable sort by decreasing rank: fixed groups have non-increasing ranks, so they stay in order.
+        Integer[] sorted = new Integer[units.size()];
+        for (int u = 0; u < sorted.length; u++) {
+            sorted[u] = u;
+        }
+        Arrays.sort(sorted, (a, b) -> Double.compare(ranks.get(b), ranks.get(a)));
+        int[] next = new int[filters.length];
+        int k = 0;
+        for (int u : sorted) {
+            for (int i : units.get(u)) {
+                next[k++] = i;
+            }
+        }
+
+        if (!Arrays.equals(next, order)) {
+            order = next;
+            log.info("Nuevo orden de filtros: {}", describe(next));
+        }
+    }
+
+    /**
+     * Rank of running the given filters in sequence: the probability that one of
+     * them rejects a reading divided by the expected cost of running them.
+     */
+    private double rank(int[] group) {
+        double pass = 1.0;
+        double cost = 0.0;
+        for (int i : group) {
+            cost += pass * costNanos[i];
+            pass *= 1.0 - rejectRate[i];
+        }
+        return (1.0 - pass) / cost;
+    }
+
+    private String describe(int[] indices) {
+        StringBuilder text = new StringBuilder();
+        for (int i : indices) {
+            if (text.length() > 0) {
+                text.append(" -> ");
+            }
+            text.append(filters[i].getClass().getSimpleName())
+                    .append(String.format(" (rechazo %.1f%%, %.0f ns)", rejectRate[i] * 100, costNanos[i]));
+        }
+        return text.toString();
+    }
+}
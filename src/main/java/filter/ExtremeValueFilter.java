@@ -2,19 +2,67 @@ package filter;
 
 import model.RawData;
 
+import java.util.function.Consumer;
+
 public class ExtremeValueFilter implements RawDataFilter {
+
+    /** Recibe las lecturas fuera de rango antes de descartarlas; puede ser null. */
+    private final Consumer<RawData> alertListener;
+
+    /** Recibe las lecturas que pasan el filtro, p. ej. para los sketches de cuantiles; puede ser null. */
+    private final Consumer<RawData> acceptedListener;
+
+    public ExtremeValueFilter() {
+        this(null);
+    }
+
+    /**
+     * @param alertListener called with every reading rejected as out of range,
+     *                      before the rejection is thrown; {@code null} for none
+     */
+    public ExtremeValueFilter(Consumer<RawData> alertListener) {
+        this(alertListener, null);
+    }
+
+    /**
+     * @param alertListener    called with every reading rejected as out of range,
+     *                         before the rejection is thrown; {@code null} for none
+     * @param acceptedListener called with every reading that passes the filter;
+     *                         {@code null} for none
+     */
+    public ExtremeValueFilter(Consumer<RawData> alertListener, Consumer<RawData> acceptedListener) {
+        this.alertListener = alertListener;
+        this.acceptedListener = acceptedListener;
+    }
+
     @Override
     public RawData apply(RawData data) {
 
         if ("temperature".equals(data.getType())) { // valores extremos cuando es temperatura
             if (data.getMeasuredValue() < -50 || data.getMeasuredValue() > 70) {
+                alert(data);
                 throw new IllegalArgumentException("Temperature out of range");
             }
         } else if ("mp".equals(data.getType())) { // valores extremos cuando es mp
             if (data.getMeasuredValue() < 0 || data.getMeasuredValue() > 1000) {
+                alert(data);
                 throw new IllegalArgumentException("MP out of range");
             }
         }
+        if (acceptedListener != null) {
+            acceptedListener.accept(data);
+        }
         return data;
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean hasSideEffects() {
+        return alertListener != null || acceptedListener != null;
+    }
+
+    private void alert(RawData data) {
+        if (alertListener != null) {
+            alertListener.accept(data);
+        }
+    }
+}
@@ -31,4 +31,33 @@ public interface RawDataFilter {
      * @throws Exception if the data is invalid or cannot be processed
      */
     RawData apply(RawData data) throws Exception;
+
+    /**
+     * Tells whether this filter may run at any position of a chain.
+     *
+     * <p>A commuting filter does not modify the reading, and its verdict does not
+     * depend on modifications made by the other filters (e.g. unit conversions).
+     * {@link AdaptiveFilterChain} may move commuting filters; all others keep
+     * their declared relative order.</p>
+     *
+     * @return {@code true} if the filter commutes with the rest of the chain;
+     *         {@code false} by default
+     */
+    default boolean commutes() {
+        return false;
+    }
+
+    /**
+     * Tells whether this filter acts on the readings it sees beyond passing or
+     * rejecting them, e.g. by reporting them to listeners.
+     *
+     * <p>{@link AdaptiveFilterChain} never moves a commuting filter after a filter
+     * with side effects declared after it, so the latter only acts on readings
+     * the former accepted.</p>
+     *
+     * @return {@code true} if the filter has side effects; {@code false} by default
+     */
+    default boolean hasSideEffects() {
+        return false;
+    }
 }
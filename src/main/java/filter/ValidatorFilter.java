@@ -16,4 +16,8 @@ public class ValidatorFilter implements RawDataFilter {
         return data;
     }
 
+    @Override
+    public boolean commutes() {
+        return true; // su veredicto no cambia al normalizar unidades
+    }
 }
\ No newline at end of file
@@ -0,0 +1,278 @@
+package flow;
+
+import filter.RawDataFilter;
+import model.RawData;
+import trace.StageEvent;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+/**
+ * A {@link Flow.Processor} that runs a chain of {@link RawDataFilter}s, for
+ * embedding the cleaning logic in any Reactive Streams pipeline without Vert.x
+ * or JPA.
+ *
+ * <p>Readings that pass every filter are emitted, transformed, in arrival order;
+ * readings rejected by a filter are dropped and handed to the optional reject
+ * listener with the filter's exception.</p>
+ *
+ * <p>Backpressure is demand-driven and memory is bounded: the processor asks its
+ * upstream for readings in batches of {@code batchSize}, only once its
+ * subscriber has signalled demand, and never holds more than
+ * {@code batchSize} unprocessed readings. Once half of a batch has been
+ * processed, the consumed half is requested again, so upstream keeps producing
+ * while the filters run. Since filters drop readings, a request for {@code n} readings
+ * downstream may take more than {@code n} readings upstream.</p>
+ *
+ * <p>Filtering runs on the given {@link Executor}, one task at a time, or, with
+ * a {@code null} executor, synchronously on the thread that delivers a reading
+ * or a request. Signals to the subscriber are never concurrent. Each run of
+ * the drain loop is reported to Java Flight Recorder as one {@link StageEvent}.</p>
+ *
+ * <pre>{@code
+ * SubmissionPublisher<RawData> source = new SubmissionPublisher<>();
+ * FilterChainProcessor chain = new FilterChainProcessor(List.of(
+ *         new ValidatorFilter(), new UnitNormalizerFilter(), new ExtremeValueFilter()), 256, executor, null);
+ * source.subscribe(chain);
+ * chain.subscribe(mySink);
+ * }</pre>
+ *
+ * <p>The processor supports one subscriber; later subscribers are rejected with
+ * {@link IllegalStateException}.</p>
+ */
+public class FilterChainProcessor implements Flow.Processor<RawData, RawData> {
+
+    private static final String STAGE = "FilterChainProcessor";
+
+    private final List<RawDataFilter> filters;
+    private final int batchSize;
+    private final int replenishAt;
+    private final Executor executor;
+    private final BiConsumer<RawData, Exception> rejectListener;
+
+    private final Queue<RawData> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicReference<Flow.Subscriber<? super RawData>> downstream = new AtomicReference<>();
+    private final AtomicLong demand = new AtomicLong();
+    private final AtomicInteger wip = new AtomicInteger();
+
+    private volatile Flow.Subscription upstream;
+    private volatile boolean upstreamDone;
+    private volatile Throwable upstreamError;
+    private volatile Throwable requestError;
+    private volatile boolean cancelled;
+
+    /** Readings requested upstream and not yet delivered; touched by the drain loop and onNext. */
+    private final AtomicLong inFlight = new AtomicLong();
+    /** Readings processed since the last request upstream; drain loop only. */
+    private long consumed;
+    /** Whether a terminal signal was sent downstream; drain loop only. */
+    private boolean terminated;
+
+    /**
+     * Creates a synchronous processor that requests readings 256 at a time.
+     *
+     * @param filters the filters, applied in order
+     */
+    public FilterChainProcessor(List<RawDataFilter> filters) {
+        this(filters, 256, null, null);
+    }
+
+    /**
+     * @param filters        the filters, applied in order
+     * @param batchSize      readings requested upstream at a time, and most readings buffered
+     * @param executor       runs the filters; {@code null} to run them on the signalling thread
+     * @param rejectListener called with every rejected reading and the rejecting
+     *                       filter's exception; {@code null} for none
+     */
+    public FilterChainProcessor(List<RawDataFilter> filters, int batchSize, Executor executor,
+                                BiConsumer<RawData, Exception> rejectListener) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        this.filters = List.copyOf(filters);
+        this.batchSize = batchSize;
+        this.replenishAt = Math.max(1, batchSize / 2);
+        this.executor = executor;
+        this.rejectListener = rejectListener;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super RawData> subscriber) {
+        Objects.requireNonNull(subscriber);
+        if (!downstream.compareAndSet(null, subscriber)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("FilterChainProcessor supports a single subscriber"));
+            return;
+        }
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    requestError = new IllegalArgumentException("request must be positive, was " + n);
+                    cancelUpstream();
+                } else {
+                    demand.getAndAccumulate(n, (current, added) ->
+                            current + added < 0 ? Long.MAX_VALUE : current + added); // tope en Long.MAX_VALUE
+                }
+                schedule();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                cancelUpstream();
+                schedule();
+            }
+        });
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (upstream != null) {
+            subscription.cancel(); // solo se admite una fuente
+            return;
+        }
+        upstream = subscription;
+        if (cancelled) {
+            subscription.cancel();
+            return;
+        }
+        schedule();
+    }
+
+    @Override
+    public void onNext(RawData item) {
+        queue.offer(Objects.requireNonNull(item));
+        inFlight.decrementAndGet();
+        schedule();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        upstreamError = Objects.requireNonNull(throwable);
+        upstreamDone = true;
+        schedule();
+    }
+
+    @Override
+    public void onComplete() {
+        upstreamDone = true;
+        schedule();
+    }
+
+    /** Runs the drain loop unless it is already running, in which case it will loop again. */
+    private void schedule() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        if (executor != null) {
+            executor.execute(this::drain);
+        } else {
+            drain();
+        }
+    }
+
+    private void drain() {
+        int missed = 1;
+        do {
+            Flow.Subscriber<? super RawData> subscriber = downstream.get();
+            if (subscriber != null && !terminated) {
+                if (cancelled) {
+                    queue.clear();
+                } else {
+                    emit(subscriber);
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /** Filters queued readings while there is demand, then requests more upstream or completes. */
+    private void emit(Flow.Subscriber<? super RawData> subscriber) {
+        StageEvent event = new StageEvent();
+        event.begin();
+        RawData data;
+        int processed = 0;
+        while (demand.get() > 0 && !cancelled && (data = queue.poll()) != null) {
+            processed++;
+            consumed++;
+            String type = data.getType();
+            RawData filtered = apply(data);
+            event.add(type, filtered != null);
+            if (filtered != null) {
+                demand.decrementAndGet();
+                subscriber.onNext(filtered);
+            }
+        }
+        if (processed > 0) {
+            event.finish(STAGE);
+        }
+
+        Throwable error = requestError;
+        if (error != null || (upstreamDone && queue.isEmpty())) {
+            terminated = true;
+            queue.clear();
+            if (error == null) {
+                error = upstreamError;
+            }
+            if (error != null) {
+                subscriber.onError(error);
+            } else {
+                subscriber.onComplete();
+            }
+            return;
+        }
+        Flow.Subscription subscription = upstream;
+        if (subscription != null && !upstreamDone && !cancelled) {
+            // un elemento entre queue.offer y el decremento de inFlight en onNext se cuenta dos veces
+            long outstanding = inFlight.get() + queue.size();
+            if ((outstanding == 0 && demand.get() > 0) || consumed >= replenishAt) {
+                long n = batchSize - outstanding;
+                if (n > 0) { // request(0) es un error segun la regla 3.9
+                    consumed = 0;
+                    inFlight.addAndGet(n);
+                    subscription.request(n);
+                }
+            }
+        }
+    }
+
+    /** @return the filtered reading, or {@code null} if a filter rejected it */
+    private RawData apply(RawData data) {
+        RawData result = data;
+        try {
+            for (RawDataFilter filter : filters) {
+                result = filter.apply(result);
+            }
+            return result;
+        } catch (Exception e) {
+            if (rejectListener != null) {
+                rejectListener.accept(data, e);
+            }
+            return null;
+        }
+    }
+
+    private void cancelUpstream() {
+        Flow.Subscription subscription = upstream;
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
+}
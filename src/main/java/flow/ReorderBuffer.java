@@ -0,0 +1,146 @@
+package flow;
+
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Bounded buffer that turns a stream of items arriving roughly in timestamp
+ * order into one strictly in timestamp order.
+ *
+ * <p>Items wait in a min-heap keyed on their timestamp. The watermark is the
+ * largest timestamp seen minus {@code maxLatenessMillis}: every buffered item
+ * at or below the watermark is emitted, oldest first, since an item arriving
+ * later than that allowance is no longer expected before it. An item older than
+ * the last emitted one cannot be placed in order any more; it is handed to the
+ * late consumer instead and counted. Items with equal timestamps are emitted in
+ * arrival order.</p>
+ *
+ * <p>Memory is bounded by {@code capacity} items: when the heap is full the
+ * oldest item is emitted early, which only makes later arrivals more likely
+ * to be late. {@link #flush()} emits everything buffered, e.g. when the source
+ * goes idle or stops.</p>
+ *
+ * <p>Not thread-safe.</p>
+ *
+ * @param <T> type of the items
+ */
+public class ReorderBuffer<T> {
+
+    /** Buffered item with its timestamp and arrival sequence, for a stable order. */
+    private static final class Entry<T> implements Comparable<Entry<T>> {
+
+        final long timestamp;
+        final long sequence;
+        final T item;
+
+        Entry(long timestamp, long sequence, T item) {
+            this.timestamp = timestamp;
+            this.sequence = sequence;
+            this.item = item;
+        }
+
+        @Override
+        public int compareTo(Entry<T> other) {
+            int byTime = Long.compare(timestamp, other.timestamp);
+            return byTime != 0 ? byTime : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private final long maxLatenessMillis;
+    private final int capacity;
+    private final ToLongFunction<T> timestampOf;
+    private final Consumer<T> emit;
+    private final Consumer<T> late;
+    private final PriorityQueue<Entry<T>> heap = new PriorityQueue<>();
+
+    private long sequence;
+    private long maxSeen = Long.MIN_VALUE;
+    private long lastEmitted = Long.MIN_VALUE;
+    private long emitted;
+    private long lateCount;
+    private long forced;
+
+    /**
+     * @param maxLatenessMillis how far behind the newest timestamp an item may arrive and still be ordered
+     * @param capacity          most items buffered
+     * @param timestampOf       timestamp of an item, epoch milliseconds
+     * @param emit              receives the items in timestamp order
+     * @param late              receives the items that arrived too late to be ordered
+     */
+    public ReorderBuffer(long maxLatenessMillis, int capacity, ToLongFunction<T> timestampOf,
+                         Consumer<T> emit, Consumer<T> late) {
+        if (maxLatenessMillis < 0 || capacity < 1) {
+            throw new IllegalArgumentException("maxLatenessMillis must not be negative and capacity must be positive");
+        }
+        this.maxLatenessMillis = maxLatenessMillis;
+        this.capacity = capacity;
+        this.timestampOf = timestampOf;
+        this.emit = emit;
+        this.late = late;
+    }
+
+    /**
+     * Buffers an item and emits every item the watermark has passed, or hands
+     * the item to the late consumer if it is older than the last emitted one.
+     *
+     * @param item the item
+     */
+    public void offer(T item) {
+        long timestamp = timestampOf.applyAsLong(item);
+        if (timestamp < lastEmitted) {
+            lateCount++;
+            late.accept(item);
+            return;
+        }
+        heap.add(new Entry<>(timestamp, sequence++, item));
+        maxSeen = Math.max(maxSeen, timestamp);
+        long watermark = maxSeen - maxLatenessMillis;
+        while (!heap.isEmpty() && heap.peek().timestamp <= watermark) {
+            emitOldest();
+        }
+        while (heap.size() > capacity) {
+            forced++;
+            emitOldest();
+        }
+    }
+
+    /** Emits every buffered item, in timestamp order. */
+    public void flush() {
+        while (!heap.isEmpty()) {
+            emitOldest();
+        }
+    }
+
+    /** @return number of items buffered */
+    public int size() {
+        return heap.size();
+    }
+
+    /** @return number of items emitted in order */
+    public long emitted() {
+        return emitted;
+    }
+
+    /** @return number of items handed to the late consumer */
+    public long late() {
+        return lateCount;
+    }
+
+    /** @return number of items emitted before the watermark passed them because the buffer was full */
+    public long forced() {
+        return forced;
+    }
+
+    /** @return the current watermark, {@link Long#MIN_VALUE} before the first item */
+    public long watermark() {
+        return maxSeen == Long.MIN_VALUE ? Long.MIN_VALUE : maxSeen - maxLatenessMillis;
+    }
+
+    private void emitOldest() {
+        Entry<T> oldest = heap.poll();
+        lastEmitted = oldest.timestamp;
+        emitted++;
+        emit.accept(oldest.item);
+    }
+}
@@ -0,0 +1,166 @@
+package flow;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Bounded, lock-free ring of preallocated slots shared by a fixed chain of
+ * stages, each running on its own thread (the Disruptor pattern).
+ *
+ * <p>Slots are created once, up front, and reused: stages do not hand objects
+ * to each other but fill and read the fields of the slot at a sequence number.
+ * Stage 0 produces, claiming slot {@code s} once the last stage has released
+ * slot {@code s - capacity}; every later stage {@code k} consumes the slots
+ * stage {@code k - 1} has published, in order. Each stage publishes its
+ * progress as a single sequence number, written with release semantics and
+ * read with acquire semantics, so the fields of a slot written before
+ * publishing are visible to the next stage without locks.</p>
+ *
+ * <p>{@link #waitFor(int, long)} returns the highest sequence available to a
+ * stage, not just the next one, so a stage handles whatever has accumulated as
+ * one batch – a writer can commit it in one transaction – and publishes once
+ * per batch. A waiting stage spins briefly, then yields, then parks for short
+ * intervals, so idle stages do not burn a core.</p>
+ *
+ * <p>The producer ends the stream with {@link #finish(long)}; a stage that
+ * fails calls {@link #fail(Throwable)}, which makes every waiting stage throw.</p>
+ *
+ * <pre>{@code
+ * long next = 0;
+ * for (long available; (available = ring.waitFor(1, next)) >= 0; next = available + 1) {
+ *     for (long s = next; s <= available; s++) {
+ *         handle(ring.get(s));
+ *     }
+ *     ring.publish(1, available);
+ * }
+ * }</pre>
+ *
+ * @param <S> type of the slots
+ */
+public final class SequenceRing<S> {
+
+    private static final int SPINS = 100;
+    private static final int YIELDS = 100;
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    /** Sequence of one stage, padded so that stages do not share a cache line. */
+    @SuppressWarnings("unused")
+    private static final class Sequence extends AtomicLong {
+        private static final long serialVersionUID = 1L;
+
+        long p1, p2, p3, p4, p5, p6, p7;
+
+        Sequence() {
+            super(-1);
+        }
+    }
+
+    private final Object[] slots;
+    private final int mask;
+    private final Sequence[] published;
+
+    private volatile long end = Long.MAX_VALUE;
+    private volatile Throwable failure;
+
+    /**
+     * @param capacity number of slots, a power of two
+     * @param stages   number of stages, the producer included
+     * @param factory  creates the slots
+     */
+    public SequenceRing(int capacity, int stages, Supplier<S> factory) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1 || stages < 2) {
+            throw new IllegalArgumentException("capacity must be a power of two and stages at least 2");
+        }
+        this.slots = new Object[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = factory.get();
+        }
+        this.mask = capacity - 1;
+        this.published = new Sequence[stages];
+        for (int i = 0; i < stages; i++) {
+            published[i] = new Sequence();
+        }
+    }
+
+    /**
+     * @param sequence a sequence number
+     * @return the slot at that sequence
+     */
+    @SuppressWarnings("unchecked")
+    public S get(long sequence) {
+        return (S) slots[(int) (sequence & mask)];
+    }
+
+    /** @return number of slots */
+    public int capacity() {
+        return slots.length;
+    }
+
+    /**
+     * Waits until sequence {@code next} is available to a stage.
+     *
+     * @param stage the stage, 0 for the producer
+     * @param next  the next sequence the stage wants
+     * @return the highest sequence available to the stage, at least {@code next};
+     *         {@code -1} if the stream has ended before {@code next}
+     * @throws InterruptedException  if the thread is interrupted while waiting
+     * @throws IllegalStateException if a stage failed
+     */
+    public long waitFor(int stage, long next) throws InterruptedException {
+        Sequence barrier = stage == 0 ? published[published.length - 1] : published[stage - 1];
+        long lag = stage == 0 ? slots.length : 0; // el productor puede adelantarse una vuelta
+        for (int idle = 0; ; idle++) {
+            long available = barrier.getAcquire() + lag;
+            if (available >= next) {
+                return available;
+            }
+            if (stage > 0 && next > end) {
+                return -1;
+            }
+            Throwable cause = failure;
+            if (cause != null) {
+                throw new IllegalStateException("A pipeline stage failed: " + cause.getMessage(), cause);
+            }
+            if (idle < SPINS) {
+                Thread.onSpinWait();
+            } else if (idle < SPINS + YIELDS) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(PARK_NANOS);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        }
+    }
+
+    /**
+     * Hands every slot up to {@code sequence} to the next stage.
+     *
+     * @param stage    the publishing stage
+     * @param sequence the last sequence it is done with
+     */
+    public void publish(int stage, long sequence) {
+        published[stage].setRelease(sequence);
+    }
+
+    /**
+     * Ends the stream; called by the producer after publishing its last slot.
+     *
+     * @param lastSequence the last sequence produced, {@code -1} if none
+     */
+    public void finish(long lastSequence) {
+        end = lastSequence;
+    }
+
+    /**
+     * Makes every stage waiting on the ring, now or later, throw.
+     *
+     * @param cause why the pipeline stops
+     */
+    public void fail(Throwable cause) {
+        failure = cause;
+    }
+}
@@ -31,13 +31,17 @@ public class CleanData {
     private Integer id;
 
     /**
-     * The type of measurement, such as "temperature" or "mp" (particulate matter).
+     * The type of measurement, such as "temperature" or "mp" (particulate matter),
+     * stored as its {@link ReadingCodes} code in the {@code type_code} column.
      */
+    @Convert(converter = TypeCodeConverter.class)
+    @Column(name = "type_code")
     private String type;
 
     /**
-     * Timestamp indicating when the sensor reading was taken.
+     * Timestamp indicating when the sensor reading was taken, stored as UTC epoch milliseconds.
      */
+    @Convert(converter = EpochMillisConverter.class)
     private LocalDateTime timestamp;
 
     /**
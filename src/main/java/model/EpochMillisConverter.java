@@ -0,0 +1,25 @@
+package model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Stores a {@link LocalDateTime} as an {@code INTEGER} column holding UTC epoch
+ * milliseconds, which is smaller than the textual form and can be range-scanned
+ * without parsing.
+ */
+@Converter
+public class EpochMillisConverter implements AttributeConverter<LocalDateTime, Long> {
+
+    @Override
+    public Long convertToDatabaseColumn(LocalDateTime timestamp) {
+        return timestamp == null ? null : ReadingCodes.toEpochMillis(timestamp);
+    }
+
+    @Override
+    public LocalDateTime convertToEntityAttribute(Long epochMillis) {
+        return epochMillis == null ? null : ReadingCodes.fromEpochMillis(epochMillis);
+    }
+}
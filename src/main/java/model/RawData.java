@@ -35,13 +35,17 @@ public class RawData {
     private Integer id;
 
     /**
-     * Type of the sensor reading (e.g., "temperature", "mp").
+     * Type of the sensor reading (e.g., "temperature", "mp"), stored as its
+     * {@link ReadingCodes} code in the {@code type_code} column.
      */
+    @Convert(converter = TypeCodeConverter.class)
+    @Column(name = "type_code")
     private String type;
 
     /**
-     * Timestamp representing when the reading was taken.
+     * Timestamp representing when the reading was taken, stored as UTC epoch milliseconds.
      */
+    @Convert(converter = EpochMillisConverter.class)
     private LocalDateTime timestamp;
 
     /**
@@ -51,8 +55,11 @@ public class RawData {
     private double measuredValue;
 
     /**
-     * Unit of measurement (e.g., "C", "F", "ug/m3", "mg/m3").
+     * Unit of measurement (e.g., "C", "F", "ug/m3", "mg/m3"), stored as its
+     * {@link ReadingCodes} code in the {@code unit_code} column.
      */
+    @Convert(converter = UnitCodeConverter.class)
+    @Column(name = "unit_code")
     private String unit;
 
     /**
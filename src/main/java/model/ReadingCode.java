@@ -0,0 +1,91 @@
+package model;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Entry of the {@code reading_codes} dictionary table, which maps the integer
+ * codes stored in {@code raw_readings} and {@code clean_readings} back to their
+ * names so the database stays readable with plain SQL:
+ *
+ * <pre>{@code
+ * SELECT c.name, r.measured_value
+ * FROM clean_readings r JOIN reading_codes c ON c.kind = 'type' AND c.code = r.type_code;
+ * }</pre>
+ *
+ * <p>The table is the dictionary of record: {@link ReadingCodes} is loaded from
+ * it when a database is opened, and a code assigned to a name seen for the first
+ * time is added to it in the same transaction as the readings that use it. The
+ * built-in codes come from {@code data.sql} or the schema migration.</p>
+ */
+@Entity
+@Table(name = "reading_codes")
+@IdClass(ReadingCode.Key.class)
+public class ReadingCode {
+
+    /** Composite primary key: a code is unique within its kind. */
+    public static class Key implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private String kind;
+        private int code;
+
+        /** Default constructor required by JPA. */
+        public Key() {}
+
+        /**
+         * @param kind {@code "type"} or {@code "unit"}
+         * @param code the code
+         */
+        public Key(String kind, int code) {
+            this.kind = kind;
+            this.code = code;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).code == code && Objects.equals(((Key) o).kind, kind);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(kind, code);
+        }
+    }
+
+    /** Either {@code "type"} or {@code "unit"}. */
+    @Id
+    private String kind;
+
+    /** The code stored in the reading tables. */
+    @Id
+    private int code;
+
+    /** The name the code stands for, e.g. {@code "temperature"} or {@code "mg/m3"}. */
+    private String name;
+
+    /** Default constructor required by JPA. */
+    public ReadingCode() {}
+
+    /**
+     * @param kind {@code "type"} or {@code "unit"}
+     * @param code the code stored in the reading tables
+     * @param name the name the code stands for
+     */
+    public ReadingCode(String kind, int code, String name) {
+        this.kind = kind;
+        this.code = code;
+        this.name = name;
+    }
+
+    /** @return the kind of code, {@code "type"} or {@code "unit"} */
+    public String getKind() { return kind; }
+
+    /** @return the integer code */
+    public int getCode() { return code; }
+
+    /** @return the name the code stands for */
+    public String getName() { return name; }
+}
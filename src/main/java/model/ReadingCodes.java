@@ -0,0 +1,264 @@
+package model;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compact numeric codes for the variable types and units handled by the
+ * pipeline, plus the epoch-millisecond conversion used by binary storage.
+ *
+ * <p>Codes are small, stable integers so they can be written into fixed-width
+ * records. Code {@code 0} is reserved for values that are absent or unknown.</p>
+ *
+ * <p>The codes below are built in. Other names get the next free code of their
+ * kind the first time they are stored ({@link #assignTypeCode(String)},
+ * {@link #assignUnitCode(String)}); the {@code reading_codes} table of each
+ * database is the dictionary of record, loaded here with {@link #define} when
+ * the database is opened and extended by the repositories in the transaction
+ * that first stores a new code.</p>
+ *
+ * <p>Timestamps are converted using UTC, so a {@link LocalDateTime} round-trips
+ * unchanged regardless of the JVM's default time zone.</p>
+ */
+public final class ReadingCodes {
+
+    /** Code for an absent or unrecognised type or unit. */
+    public static final int UNKNOWN = 0;
+
+    /** Code of the {@code "temperature"} variable type. */
+    public static final int TYPE_TEMPERATURE = 1;
+
+    /** Code of the {@code "mp"} (particulate matter) variable type. */
+    public static final int TYPE_MP = 2;
+
+    /** Code of the {@code "C"} unit (degrees Celsius). */
+    public static final int UNIT_CELSIUS = 1;
+
+    /** Code of the {@code "F"} unit (degrees Fahrenheit). */
+    public static final int UNIT_FAHRENHEIT = 2;
+
+    /** Code of the {@code "ug/m3"} unit (micrograms per cubic metre). */
+    public static final int UNIT_UG_M3 = 3;
+
+    /** Code of the {@code "mg/m3"} unit (milligrams per cubic metre). */
+    public static final int UNIT_MG_M3 = 4;
+
+    /** Kind of the type codes in {@code reading_codes}. */
+    public static final String KIND_TYPE = "type";
+
+    /** Kind of the unit codes in {@code reading_codes}. */
+    public static final String KIND_UNIT = "unit";
+
+    private static final Dictionary TYPES = new Dictionary(KIND_TYPE, "temperature", "mp");
+    private static final Dictionary UNITS = new Dictionary(KIND_UNIT, "C", "F", "ug/m3", "mg/m3");
+
+    private ReadingCodes() {}
+
+    /**
+     * @param type the variable type name, e.g. {@code "temperature"}
+     * @return the type's code, or {@link #UNKNOWN}
+     */
+    public static int typeCode(String type) {
+        return TYPES.codeOf(type);
+    }
+
+    /**
+     * @param type the variable type name, e.g. {@code "temperature"}
+     * @return the type's code, newly assigned if the name had none; {@link #UNKNOWN}
+     *         for {@code null}
+     */
+    public static int assignTypeCode(String type) {
+        return TYPES.assign(type);
+    }
+
+    /**
+     * @param code a type code
+     * @return the type name, or {@code null} for unknown codes
+     */
+    public static String typeName(int code) {
+        return TYPES.nameOf(code);
+    }
+
+    /** @return the highest type code in use */
+    public static int maxTypeCode() {
+        return TYPES.max();
+    }
+
+    /**
+     * @param unit the unit name, e.g. {@code "mg/m3"}
+     * @return the unit's code, or {@link #UNKNOWN}
+     */
+    public static int unitCode(String unit) {
+        return UNITS.codeOf(unit);
+    }
+
+    /**
+     * @param unit the unit name, e.g. {@code "mg/m3"}
+     * @return the unit's code, newly assigned if the name had none; {@link #UNKNOWN}
+     *         for {@code null}
+     */
+    public static int assignUnitCode(String unit) {
+        return UNITS.assign(unit);
+    }
+
+    /**
+     * @param code a unit code
+     * @return the unit name, or {@code null} for unknown codes
+     */
+    public static String unitName(int code) {
+        return UNITS.nameOf(code);
+    }
+
+    /** @return the highest unit code in use */
+    public static int maxUnitCode() {
+        return UNITS.max();
+    }
+
+    /**
+     * @param kind {@link #KIND_TYPE} or {@link #KIND_UNIT}
+     * @param code a code of that kind
+     * @return {@code true} if the code is one of the constants of this class,
+     *         present in every database
+     */
+    public static boolean isBuiltIn(String kind, int code) {
+        return code > UNKNOWN && code <= dictionary(kind).builtIn;
+    }
+
+    /**
+     * Registers a code read from a {@code reading_codes} table.
+     *
+     * @param kind {@link #KIND_TYPE} or {@link #KIND_UNIT}
+     * @param code the code
+     * @param name the name it stands for
+     * @throws IllegalStateException if the code or the name is already bound
+     *                               differently, e.g. by another database
+     */
+    public static void define(String kind, int code, String name) {
+        dictionary(kind).define(code, name);
+    }
+
+    /**
+     * @param timestamp a reading timestamp, interpreted as UTC
+     * @return milliseconds since the epoch
+     */
+    public static long toEpochMillis(LocalDateTime timestamp) {
+        return timestamp.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    /**
+     * @param epochMillis milliseconds since the epoch
+     * @return the corresponding UTC timestamp
+     */
+    public static LocalDateTime fromEpochMillis(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneOffset.UTC);
+    }
+
+    /**
+     * Reads a timestamp field of a pipeline message. Messages carry epoch
+     * milliseconds; ISO-8601 local date-time strings, as found in older
+     * messages and files, are still accepted and interpreted as UTC.
+     *
+     * @param value the field value, a {@link Number} or a {@link String}
+     * @return milliseconds since the epoch
+     * @throws IllegalArgumentException if the value is missing or not a timestamp
+     */
+    public static long timestampMillis(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof String) {
+            return toEpochMillis(LocalDateTime.parse((String) value));
+        }
+        throw new IllegalArgumentException("Invalid timestamp");
+    }
+
+    private static Dictionary dictionary(String kind) {
+        if (KIND_TYPE.equals(kind)) {
+            return TYPES;
+        }
+        if (KIND_UNIT.equals(kind)) {
+            return UNITS;
+        }
+        throw new IllegalArgumentException("Unknown code kind: " + kind);
+    }
+
+    /**
+     * Codes of one kind. Lookups read a copy-on-write array and a concurrent map,
+     * so only new codes take the lock.
+     */
+    private static final class Dictionary {
+
+        private final String kind;
+        private final int builtIn;
+        private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+        private volatile String[] names; // indexed by code
+
+        Dictionary(String kind, String... builtInNames) {
+            this.kind = kind;
+            this.builtIn = builtInNames.length;
+            this.names = new String[builtInNames.length + 1];
+            for (int code = 1; code <= builtInNames.length; code++) {
+                names[code] = builtInNames[code - 1];
+                codes.put(builtInNames[code - 1], code);
+            }
+        }
+
+        int codeOf(String name) {
+            Integer code = name == null ? null : codes.get(name);
+            return code == null ? UNKNOWN : code;
+        }
+
+        String nameOf(int code) {
+            String[] current = names;
+            return code > 0 && code < current.length ? current[code] : null;
+        }
+
+        int max() {
+            return names.length - 1;
+        }
+
+        int assign(String name) {
+            if (name == null) {
+                return UNKNOWN;
+            }
+            Integer known = codes.get(name);
+            return known != null ? known : add(name);
+        }
+
+        private synchronized int add(String name) {
+            Integer known = codes.get(name);
+            if (known != null) {
+                return known;
+            }
+            int code = names.length;
+            String[] grown = Arrays.copyOf(names, code + 1);
+            grown[code] = name;
+            names = grown; // antes que el mapa: un codigo visible siempre tiene nombre
+            codes.put(name, code);
+            return code;
+        }
+
+        synchronized void define(int code, String name) {
+            if (code <= UNKNOWN || name == null) {
+                throw new IllegalArgumentException("Invalid " + kind + " code " + code + " for '" + name + "'");
+            }
+            String bound = nameOf(code);
+            Integer known = codes.get(name);
+            if (name.equals(bound) && known != null && known == code) {
+                return;
+            }
+            if (bound != null || known != null) {
+                throw new IllegalStateException("The " + kind + " code " + code + " for '" + name
+                        + "' conflicts with " + (bound != null ? "'" + bound + "'" : "code " + known));
+            }
+            String[] grown = code < names.length ? names.clone() : Arrays.copyOf(names, code + 1);
+            grown[code] = name;
+            names = grown;
+            codes.put(name, code);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Stores a variable type name as its small-integer code from {@link ReadingCodes}.
+ *
+ * <p>Names without a code are given the next free one, which the repositories
+ * add to {@code reading_codes}, so they read back unchanged; the
+ * {@link filter.ValidatorFilter} still rejects the types it does not handle.</p>
+ */
+@Converter
+public class TypeCodeConverter implements AttributeConverter<String, Integer> {
+
+    @Override
+    public Integer convertToDatabaseColumn(String type) {
+        return type == null ? null : ReadingCodes.assignTypeCode(type);
+    }
+
+    @Override
+    public String convertToEntityAttribute(Integer code) {
+        return code == null ? null : ReadingCodes.typeName(code);
+    }
+}
@@ -0,0 +1,24 @@
+package model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Stores a unit name as its small-integer code from {@link ReadingCodes}.
+ *
+ * <p>Names without a code are given the next free one, which the repositories
+ * add to {@code reading_codes}, so they read back unchanged.</p>
+ */
+@Converter
+public class UnitCodeConverter implements AttributeConverter<String, Integer> {
+
+    @Override
+    public Integer convertToDatabaseColumn(String unit) {
+        return unit == null ? null : ReadingCodes.assignUnitCode(unit);
+    }
+
+    @Override
+    public String convertToEntityAttribute(Integer code) {
+        return code == null ? null : ReadingCodes.unitName(code);
+    }
+}
@@ -3,6 +3,10 @@ package repository;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityManagerFactory;
 import model.CleanData;
+import model.ReadingCodes;
+import trace.StorageEvent;
+
+import java.util.List;
 
 /**
  * Repository class responsible for persisting instances of {@link CleanData}
@@ -10,7 +14,8 @@ import model.CleanData;
  *
  * <p>This class uses a provided {@link EntityManagerFactory} to create
  * {@link EntityManager} instances as needed. It performs transactional
- * operations to persist validated sensor data.</p>
+ * operations to persist validated sensor data. Each save is a
+ * {@link StorageEvent} for Java Flight Recorder.</p>
  *
  * <p>Typical usage:</p>
  * <pre>{@code
@@ -47,18 +52,55 @@ public class CleanDataRepository {
      *                          including rollback on failure
      */
     public void save(CleanData cleanData) {
+        StorageEvent event = new StorageEvent();
+        event.begin();
         EntityManager em = emf.createEntityManager();
         try {
             em.getTransaction().begin();
+            ReadingCodeDictionary.record(em, ReadingCodes.KIND_TYPE, cleanData.getType());
             em.persist(cleanData);
             em.getTransaction().commit();
+            event.finish("CleanDataRepository.save", cleanData.getType(), 1, "stored");
         } catch (Exception e) {
             if (em.getTransaction().isActive()) {
                 em.getTransaction().rollback();
             }
+            event.finish("CleanDataRepository.save", cleanData.getType(), 1, "failed");
             throw new RuntimeException("Error saving CleanData: " + e.getMessage(), e);
         } finally {
             em.close();
         }
     }
+
+    /**
+     * Persists a batch of {@link CleanData} instances within a single transaction,
+     * so the cost of opening and committing a transaction is paid once per batch
+     * rather than once per reading. Either all instances are stored or none is.
+     *
+     * @param batch the validated readings to persist
+     * @throws RuntimeException if an error occurs during the persistence operation,
+     *                          including rollback on failure
+     */
+    public void saveAll(List<CleanData> batch) {
+        StorageEvent event = new StorageEvent();
+        event.begin();
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            for (CleanData cleanData : batch) {
+                ReadingCodeDictionary.record(em, ReadingCodes.KIND_TYPE, cleanData.getType());
+                em.persist(cleanData);
+            }
+            em.getTransaction().commit();
+            event.finish("CleanDataRepository.saveAll", batch, CleanData::getType, "stored");
+        } catch (Exception e) {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            event.finish("CleanDataRepository.saveAll", batch, CleanData::getType, "failed");
+            throw new RuntimeException("Error saving CleanData batch: " + e.getMessage(), e);
+        } finally {
+            em.close();
+        }
+    }
 }
@@ -0,0 +1,105 @@
+package repository;
+
+import model.ReadingCodes;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Forward-only JDBC cursor over {@code clean_readings}, for readers that must
+ * stream arbitrarily large ranges without loading them.
+ *
+ * <p>Rows are returned in timestamp order and fetched from SQLite as the cursor
+ * advances, so memory use does not depend on the size of the range. The cursor
+ * owns its connection and must be closed when done. It is read by one thread at
+ * a time, but may be closed from another one: {@link #close()} then waits for a
+ * {@link #next()} in progress, and later reads fail with an {@link SQLException}.</p>
+ *
+ * <pre>{@code
+ * try (CleanReadingCursor cursor = CleanReadingCursor.open(url, ReadingCodes.TYPE_MP, from, to, 500)) {
+ *     while (cursor.next()) {
+ *         write(cursor.timestamp(), cursor.value());
+ *     }
+ * }
+ * }</pre>
+ */
+public final class CleanReadingCursor implements AutoCloseable {
+
+    private final Connection connection;
+    private final PreparedStatement statement;
+    private final ResultSet rows;
+
+    private CleanReadingCursor(Connection connection, PreparedStatement statement, ResultSet rows) {
+        this.connection = connection;
+        this.statement = statement;
+        this.rows = rows;
+    }
+
+    /**
+     * Opens a cursor over the readings with a timestamp in {@code [from, to)}.
+     *
+     * @param jdbcUrl   SQLite JDBC URL
+     * @param typeCode  type to return, or {@code null} for every type
+     * @param from      inclusive lower bound, epoch milliseconds
+     * @param to        exclusive upper bound, epoch milliseconds
+     * @param fetchSize rows fetched from the driver at a time
+     * @return the open cursor, positioned before the first row
+     * @throws SQLException if the query cannot be started
+     */
+    public static CleanReadingCursor open(String jdbcUrl, Integer typeCode, long from, long to, int fetchSize)
+            throws SQLException {
+        Connection connection = DriverManager.getConnection(jdbcUrl);
+        try {
+            PreparedStatement statement = connection.prepareStatement(
+                    "SELECT timestamp, type_code, measured_value FROM clean_readings "
+                            + "WHERE timestamp >= ? AND timestamp < ?"
+                            + (typeCode != null ? " AND type_code = ?" : "") + " ORDER BY timestamp, id");
+            statement.setFetchSize(fetchSize);
+            statement.setLong(1, from);
+            statement.setLong(2, to);
+            if (typeCode != null) {
+                statement.setInt(3, typeCode);
+            }
+            return new CleanReadingCursor(connection, statement, statement.executeQuery());
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return {@code true} if the cursor moved to another row
+     * @throws SQLException if the row cannot be read
+     */
+    public synchronized boolean next() throws SQLException {
+        return rows.next();
+    }
+
+    /** @return timestamp of the current row, epoch milliseconds */
+    public synchronized long timestamp() throws SQLException {
+        return rows.getLong(1);
+    }
+
+    /** @return type name of the current row, or {@code null} for unknown codes */
+    public synchronized String type() throws SQLException {
+        return ReadingCodes.typeName(rows.getInt(2));
+    }
+
+    /** @return value of the current row */
+    public synchronized double value() throws SQLException {
+        return rows.getDouble(3);
+    }
+
+    @Override
+    public synchronized void close() throws SQLException {
+        try {
+            rows.close();
+            statement.close();
+        } finally {
+            connection.close();
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package repository;
+
+import model.ReadingCodes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Migrates an existing database from the original text-based reading schema to
+ * the compact one used by {@link model.RawData} and {@link model.CleanData}.
+ *
+ * <p>For each of {@code raw_readings} and {@code clean_readings} still holding a
+ * textual {@code type} column, the table is rebuilt with:</p>
+ * <ul>
+ *   <li>{@code type_code} / {@code unit_code} – small-integer codes from {@link ReadingCodes};
+ *       names without a built-in code are given a new one in {@code reading_codes},
+ *       so no name is lost,</li>
+ *   <li>{@code timestamp} – UTC epoch milliseconds stored as {@code INTEGER}.</li>
+ * </ul>
+ *
+ * <p>Row ids are preserved. Text timestamps are converted in SQL; timestamps that
+ * the JDBC driver had already stored as numbers were written in the JVM's default
+ * time zone and are shifted to UTC. The {@code reading_codes} dictionary table is
+ * created first (see {@link ReadingCodeDictionary}), and the file is vacuumed
+ * afterwards so the space freed by the old columns is returned to the file system.</p>
+ *
+ * <p>The same full {@code VACUUM} switches a database not yet in incremental
+ * auto-vacuum mode over to it, once, so that {@link PartitionRetentionJob} can
+ * later return the pages of dropped partitions with a cheap
+ * {@code PRAGMA incremental_vacuum} instead of rewriting the file on the
+ * writer's thread.</p>
+ *
+ * <p>The migration is idempotent: already compact tables are left untouched.
+ * {@link PersistenceBootstrap} runs it before validating the schema in
+ * {@code prod} mode; it can also be run on its own:</p>
+ *
+ * <pre>{@code
+ * $ java -cp target/classes:... repository.CompactSchemaMigration jdbc:sqlite:environment.db
+ * }</pre>
+ */
+public final class CompactSchemaMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(CompactSchemaMigration.class);
+
+    private static final String TIMESTAMP_FROM_TEXT =
+            "CASE WHEN typeof(timestamp) IN ('integer', 'real') THEN CAST(timestamp AS INTEGER) "
+                    + "ELSE CAST(strftime('%s', timestamp) AS INTEGER) * 1000 "
+                    + "+ CAST(substr(strftime('%f', timestamp), 4) AS INTEGER) END";
+
+    private CompactSchemaMigration() {}
+
+    /**
+     * Command-line entry point.
+     *
+     * @param args optional JDBC URL; defaults to {@link PersistenceBootstrap#jdbcUrl()}
+     * @throws SQLException if the migration fails; the database is left unchanged
+     */
+    public static void main(String[] args) throws SQLException {
+        migrate(args.length > 0 ? args[0] : PersistenceBootstrap.jdbcUrl());
+    }
+
+    /**
+     * Migrates the database at the given URL if it still uses the original schema.
+     *
+     * @param jdbcUrl the SQLite JDBC URL
+     * @return {@code true} if at least one table was migrated
+     * @throws SQLException if the migration fails; the database is left unchanged
+     */
+    public static boolean migrate(String jdbcUrl) throws SQLException {
+        boolean migrated;
+        try (Connection connection = DriverManager.getConnection(jdbcUrl)) {
+            connection.setAutoCommit(false);
+            try {
+                ReadingCodeDictionary.open(connection);
+                boolean raw = migrateTable(connection, "raw_readings", true);
+                boolean clean = migrateTable(connection, "clean_readings", false);
+                connection.commit();
+                migrated = raw || clean;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+            boolean incremental = autoVacuum(connection) == 2; // 2 = INCREMENTAL
+            if (migrated || !incremental) {
+                connection.setAutoCommit(true);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("PRAGMA auto_vacuum = INCREMENTAL"); // solo toma efecto con el VACUUM
+                    statement.execute("VACUUM");
+                }
+            }
+            if (migrated) {
+                log.info("Esquema compacto aplicado en {}.", jdbcUrl);
+            } else if (!incremental) {
+                log.info("Base de datos {} convertida a auto_vacuum incremental.", jdbcUrl);
+            }
+        }
+        return migrated;
+    }
+
+    private static boolean migrateTable(Connection connection, String table, boolean withUnit) throws SQLException {
+        if (!hasColumn(connection, table, "type") || hasColumn(connection, table, "type_code")) {
+            return false;
+        }
+        addCodes(connection, table, "type", ReadingCodes.KIND_TYPE);
+        if (withUnit) {
+            addCodes(connection, table, "unit", ReadingCodes.KIND_UNIT);
+        }
+        String compact = table + "_compact";
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE " + compact + " (id integer, measured_value float, type_code integer, "
+                    + (withUnit ? "unit_code integer, " : "") + "timestamp bigint, primary key (id))");
+            statement.execute("INSERT INTO " + compact + " (id, measured_value, type_code, "
+                    + (withUnit ? "unit_code, " : "") + "timestamp) SELECT id, measured_value, "
+                    + codeOf("type", ReadingCodes.KIND_TYPE) + ", "
+                    + (withUnit ? codeOf("unit", ReadingCodes.KIND_UNIT) + ", " : "")
+                    + TIMESTAMP_FROM_TEXT + " FROM " + table + " t");
+        }
+        shiftNumericTimestampsToUtc(connection, table, compact);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE " + table);
+            statement.execute("ALTER TABLE " + compact + " RENAME TO " + table);
+        }
+        log.info("Tabla {} migrada al esquema compacto.", table);
+        return true;
+    }
+
+    /**
+     * Gives every name found in {@code column} a code, adding the codes that are
+     * not built in to {@code reading_codes}.
+     */
+    private static void addCodes(Connection connection, String table, String column, String kind)
+            throws SQLException {
+        List<String> names = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery(
+                     "SELECT DISTINCT " + column + " FROM " + table + " WHERE " + column + " IS NOT NULL")) {
+            while (rows.next()) {
+                names.add(rows.getString(1));
+            }
+        }
+        ReadingCodeDictionary.record(connection, kind, names, name -> name);
+    }
+
+    /**
+     * Builds a SQL expression looking up the code of {@code column} in
+     * {@code reading_codes}; {@code NULL} names stay {@code NULL}.
+     */
+    private static String codeOf(String column, String kind) {
+        return "(SELECT c.code FROM reading_codes c WHERE c.kind = '" + kind + "' AND c.name = t." + column + ")";
+    }
+
+    /**
+     * Numeric timestamps were written by the JDBC driver from {@code java.sql.Timestamp},
+     * i.e. interpreted in the JVM's default zone; re-express them as UTC epoch millis.
+     */
+    private static void shiftNumericTimestampsToUtc(Connection connection, String table, String compact)
+            throws SQLException {
+        ZoneId zone = ZoneId.systemDefault();
+        if (zone.getRules().isFixedOffset() && zone.getRules().getOffset(Instant.EPOCH).equals(ZoneOffset.UTC)) {
+            return;
+        }
+        try (Statement select = connection.createStatement();
+             ResultSet rows = select.executeQuery("SELECT id, timestamp FROM " + table
+                     + " WHERE typeof(timestamp) IN ('integer', 'real')");
+             PreparedStatement update = connection.prepareStatement(
+                     "UPDATE " + compact + " SET timestamp = ? WHERE id = ?")) {
+            int pending = 0;
+            while (rows.next()) {
+                LocalDateTime local = LocalDateTime.ofInstant(Instant.ofEpochMilli(rows.getLong(2)), zone);
+                update.setLong(1, ReadingCodes.toEpochMillis(local));
+                update.setInt(2, rows.getInt(1));
+                update.addBatch();
+                if (++pending % 1000 == 0) {
+                    update.executeBatch();
+                }
+            }
+            update.executeBatch();
+        }
+    }
+
+    private static int autoVacuum(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("PRAGMA auto_vacuum")) {
+            return result.next() ? result.getInt(1) : 0;
+        }
+    }
+
+    private static boolean hasColumn(Connection connection, String table, String column) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet columns = statement.executeQuery("PRAGMA table_info(" + table + ")")) {
+            while (columns.next()) {
+                if (column.equalsIgnoreCase(columns.getString("name"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,149 @@
+package repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retention job for a {@link PartitionedReadingStore}: rolls expired partitions
+ * into hourly aggregates and drops them whole.
+ *
+ * <p>A partition is expired once its whole period ends before
+ * {@code now - retention}. For each expired partition, one transaction</p>
+ * <ol>
+ *   <li>merges per type and per UTC hour the count, minimum, maximum and sum of
+ *       its values into {@code reading_aggregates} (keyed by source table, type
+ *       code and hour start in epoch milliseconds), and</li>
+ *   <li>drops the partition table.</li>
+ * </ol>
+ *
+ * <p>Dropping a table costs the same whatever its size and does not hold the
+ * writer lock for row-by-row deletes. Freed pages are then returned to the file
+ * system with {@code PRAGMA incremental_vacuum}, which only moves the free pages
+ * to the end of the file. This needs incremental auto-vacuum mode, which new
+ * {@link PartitionedReadingStore} files get when they are created and existing
+ * databases get from {@link CompactSchemaMigration} at startup. The job never
+ * runs a full {@code VACUUM} itself, since that rewrites the whole file on the
+ * writer's thread. In any other mode the freed pages stay in the file and are
+ * reused by later writes.</p>
+ *
+ * <p>The job shares the store's connection, so it runs serialised with the
+ * store's writes rather than competing with them for the SQLite write lock.</p>
+ */
+public class PartitionRetentionJob implements Runnable {
+
+    private static final Logger log = LoggerFactory.getLogger(PartitionRetentionJob.class);
+
+    private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+
+    private final PartitionedReadingStore store;
+    private final long retentionMs;
+
+    /** Whether the missing incremental auto-vacuum mode was already reported. */
+    private boolean warned;
+
+    /**
+     * @param store       store whose partitions are expired
+     * @param retentionMs how long raw readings are kept, in milliseconds
+     */
+    public PartitionRetentionJob(PartitionedReadingStore store, long retentionMs) {
+        this.store = store;
+        this.retentionMs = retentionMs;
+    }
+
+    /**
+     * Runs the job against the current time, logging rather than throwing failures.
+     */
+    @Override
+    public void run() {
+        try {
+            expire(System.currentTimeMillis());
+        } catch (SQLException e) {
+            log.error("Error en la retención de {}: {}", store.kind().baseTable(), e.getMessage());
+        }
+    }
+
+    /**
+     * Rolls up and drops every partition whose period ended before {@code now - retention}.
+     *
+     * @param now reference time, epoch milliseconds
+     * @return number of partitions dropped
+     * @throws SQLException if a partition cannot be rolled up; it is then left in place
+     */
+    public int expire(long now) throws SQLException {
+        synchronized (store) {
+            Connection connection = store.connection();
+            createAggregates(connection);
+            long cutoff = now - retentionMs;
+            int dropped = 0;
+            List<String> partitions = store.partitions();
+            for (String partition : partitions) {
+                if (store.partitionEnd(partition) > cutoff) {
+                    break; // partitions are listed oldest first
+                }
+                rollUp(connection, partition);
+                store.forget(partition);
+                dropped++;
+                log.info("Partición {} agregada y eliminada.", partition);
+            }
+            if (dropped > 0) {
+                reclaimSpace(connection);
+            }
+            return dropped;
+        }
+    }
+
+    private void rollUp(Connection connection, String partition) throws SQLException {
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("INSERT INTO reading_aggregates "
+                    + "(source, type_code, bucket_start, readings, min_value, max_value, sum_value) "
+                    + "SELECT '" + store.kind().baseTable() + "', type_code, (timestamp / " + HOUR_MS + ") * " + HOUR_MS
+                    + ", COUNT(*), MIN(measured_value), MAX(measured_value), SUM(measured_value) FROM " + partition
+                    + " WHERE true GROUP BY 2, 3 " // WHERE keeps ON CONFLICT from parsing as a join
+                    + "ON CONFLICT (source, type_code, bucket_start) DO UPDATE SET "
+                    + "readings = readings + excluded.readings, "
+                    + "min_value = MIN(min_value, excluded.min_value), "
+                    + "max_value = MAX(max_value, excluded.max_value), "
+                    + "sum_value = sum_value + excluded.sum_value");
+            statement.execute("DROP TABLE " + partition);
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private static void createAggregates(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS reading_aggregates (source varchar(255) not null, "
+                    + "type_code integer not null, bucket_start bigint not null, readings integer, "
+                    + "min_value float, max_value float, sum_value float, "
+                    + "primary key (source, type_code, bucket_start))");
+        }
+    }
+
+    private void reclaimSpace(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            int mode;
+            try (ResultSet result = statement.executeQuery("PRAGMA auto_vacuum")) {
+                mode = result.next() ? result.getInt(1) : 0;
+            }
+            if (mode == 2) { // 2 = INCREMENTAL
+                statement.executeUpdate("PRAGMA incremental_vacuum"); // execute() solo libera la primera pagina
+            } else if (!warned) {
+                warned = true;
+                log.warn("La base no usa auto_vacuum incremental: las páginas liberadas se reutilizan pero el "
+                        + "archivo no se reduce (CompactSchemaMigration la convierte al iniciar).");
+            }
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package repository;
+
+import model.CleanData;
+import model.RawData;
+import model.ReadingCodes;
+import trace.StorageEvent;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Stores readings in time-partitioned tables, one table per UTC day or month,
+ * using the compact column layout of {@code raw_readings} / {@code clean_readings}.
+ *
+ * <p>A partition is named after its base table and period, e.g.
+ * {@code clean_readings_p20250621} (daily) or {@code raw_readings_p202506}
+ * (monthly), and is created on first write. Because old data lives in its own
+ * tables, it can be removed by dropping whole partitions – see
+ * {@link PartitionRetentionJob} – instead of deleting rows one by one while the
+ * single SQLite writer is locked, and range queries only touch the partitions
+ * overlapping the requested range.</p>
+ *
+ * <p>The store keeps one JDBC connection in WAL mode, so readers are not blocked
+ * by the writer. Its methods are synchronized; it is meant to be driven by one
+ * writer thread, like the {@code DbSinkVerticle}'s. A database created by the
+ * store uses incremental auto-vacuum, so dropped partitions can be returned to
+ * the file system without a full {@code VACUUM}.</p>
+ *
+ * <p>Only the clean path is partitioned in the application: the
+ * {@code DbSinkVerticle} writes {@code clean_readings} through this store when
+ * configured so. Raw ingestion – {@code BulkImport}, {@code RawDataRepository}
+ * – still writes the single {@code raw_readings} table, because its readers
+ * ({@code ProducerBDVerticle}, the batch services) follow that table by id.
+ * {@link #saveRaw} is there for writers that own their raw data.</p>
+ */
+public class PartitionedReadingStore implements AutoCloseable {
+
+    /** Which reading table is partitioned. */
+    public enum Kind {
+        RAW("raw_readings"), CLEAN("clean_readings");
+
+        final String baseTable;
+
+        Kind(String baseTable) {
+            this.baseTable = baseTable;
+        }
+
+        /** @return the name of the unpartitioned table this kind mirrors */
+        public String baseTable() {
+            return baseTable;
+        }
+    }
+
+    /** Time span covered by one partition. */
+    public enum Granularity {
+        DAY("yyyyMMdd"), MONTH("yyyyMM");
+
+        final DateTimeFormatter suffix;
+
+        Granularity(String pattern) {
+            this.suffix = DateTimeFormatter.ofPattern(pattern);
+        }
+
+        LocalDate startOf(LocalDate date) {
+            return this == DAY ? date : date.withDayOfMonth(1);
+        }
+
+        LocalDate next(LocalDate start) {
+            return this == DAY ? start.plusDays(1) : start.plusMonths(1);
+        }
+
+        LocalDate parse(String suffixText) {
+            return this == DAY
+                    ? LocalDate.parse(suffixText, suffix)
+                    : LocalDate.parse(suffixText + "01", DAY.suffix);
+        }
+    }
+
+    private final Connection connection;
+    private final Kind kind;
+    private final Granularity granularity;
+    private final Set<String> knownPartitions = new HashSet<>();
+
+    /**
+     * Opens a store over the given database.
+     *
+     * @param jdbcUrl     SQLite JDBC URL
+     * @param kind        which reading table is partitioned
+     * @param granularity time span of one partition
+     * @throws SQLException if the database cannot be opened
+     */
+    public PartitionedReadingStore(String jdbcUrl, Kind kind, Granularity granularity) throws SQLException {
+        this.connection = DriverManager.getConnection(jdbcUrl);
+        this.kind = kind;
+        this.granularity = granularity;
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("PRAGMA auto_vacuum = INCREMENTAL"); // solo aplica a una base aun vacia
+            statement.execute("PRAGMA journal_mode=WAL");
+            statement.execute("PRAGMA synchronous=NORMAL");
+        }
+        ReadingCodeDictionary.open(connection);
+        knownPartitions.addAll(partitions());
+    }
+
+    /**
+     * Stores raw readings, each in the partition of its timestamp, in one transaction.
+     *
+     * @param batch readings to store; requires {@link Kind#RAW}
+     * @throws SQLException if the batch cannot be stored; nothing is stored then
+     */
+    public synchronized void saveRaw(List<RawData> batch) throws SQLException {
+        requireKind(Kind.RAW);
+        Map<String, List<RawData>> byPartition = new LinkedHashMap<>();
+        for (RawData data : batch) {
+            byPartition.computeIfAbsent(partitionOf(ReadingCodes.toEpochMillis(data.getTimestamp())),
+                    p -> new ArrayList<>()).add(data);
+        }
+        inTransaction(() -> {
+            ReadingCodeDictionary.record(connection, ReadingCodes.KIND_TYPE, batch, RawData::getType);
+            ReadingCodeDictionary.record(connection, ReadingCodes.KIND_UNIT, batch, RawData::getUnit);
+            for (Map.Entry<String, List<RawData>> entry : byPartition.entrySet()) {
+                try (PreparedStatement insert = connection.prepareStatement("INSERT INTO " + entry.getKey()
+                        + " (measured_value, type_code, unit_code, timestamp) VALUES (?, ?, ?, ?)")) {
+                    for (RawData data : entry.getValue()) {
+                        insert.setDouble(1, data.getValue());
+                        insert.setInt(2, ReadingCodes.typeCode(data.getType()));
+                        insert.setInt(3, ReadingCodes.unitCode(data.getUnit()));
+                        insert.setLong(4, ReadingCodes.toEpochMillis(data.getTimestamp()));
+                        insert.addBatch();
+                    }
+                    insert.executeBatch();
+                }
+            }
+        }, byPartition.keySet(), "PartitionedReadingStore.saveRaw", batch, RawData::getType);
+    }
+
+    /**
+     * Stores clean readings, each in the partition of its timestamp, in one transaction.
+     *
+     * @param batch readings to store; requires {@link Kind#CLEAN}
+     * @throws SQLException if the batch cannot be stored; nothing is stored then
+     */
+    public synchronized void saveClean(List<CleanData> batch) throws SQLException {
+        requireKind(Kind.CLEAN);
+        Map<String, List<CleanData>> byPartition = new LinkedHashMap<>();
+        for (CleanData data : batch) {
+            byPartition.computeIfAbsent(partitionOf(ReadingCodes.toEpochMillis(data.getTimestamp())),
+                    p -> new ArrayList<>()).add(data);
+        }
+        inTransaction(() -> {
+            ReadingCodeDictionary.record(connection, ReadingCodes.KIND_TYPE, batch, CleanData::getType);
+            for (Map.Entry<String, List<CleanData>> entry : byPartition.entrySet()) {
+                try (PreparedStatement insert = connection.prepareStatement("INSERT INTO " + entry.getKey()
+                        + " (measured_value, type_code, timestamp) VALUES (?, ?, ?)")) {
+                    for (CleanData data : entry.getValue()) {
+                        insert.setDouble(1, data.getValue());
+                        insert.setInt(2, ReadingCodes.typeCode(data.getType()));
+                        insert.setLong(3, ReadingCodes.toEpochMillis(data.getTimestamp()));
+                        insert.addBatch();
+                    }
+                    insert.executeBatch();
+                }
+            }
+        }, byPartition.keySet(), "PartitionedReadingStore.saveClean", batch, CleanData::getType);
+    }
+
+    /**
+     * Returns the clean readings of the given type whose timestamp lies in
+     * {@code [from, to)}, in timestamp order, reading only overlapping partitions.
+     *
+     * @param typeCode type code from {@link ReadingCodes}
+     * @param from     inclusive lower bound, epoch milliseconds
+     * @param to       exclusive upper bound, epoch milliseconds
+     * @return the matching readings
+     * @throws SQLException if the query fails
+     */
+    public synchronized List<CleanData> findClean(int typeCode, long from, long to) throws SQLException {
+        requireKind(Kind.CLEAN);
+        List<CleanData> result = new ArrayList<>();
+        for (String partition : partitionsOverlapping(from, to)) {
+            try (PreparedStatement query = connection.prepareStatement("SELECT id, measured_value, timestamp FROM "
+                    + partition + " WHERE type_code = ? AND timestamp >= ? AND timestamp < ? ORDER BY timestamp")) {
+                query.setInt(1, typeCode);
+                query.setLong(2, from);
+                query.setLong(3, to);
+                try (ResultSet rows = query.executeQuery()) {
+                    while (rows.next()) {
+                        CleanData data = new CleanData(ReadingCodes.typeName(typeCode),
+                                ReadingCodes.fromEpochMillis(rows.getLong(3)), rows.getDouble(2));
+                        data.setId(rows.getInt(1));
+                        result.add(data);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Lists the existing partitions of this store, oldest first.
+     *
+     * @return partition table names
+     * @throws SQLException if the catalog cannot be read
+     */
+    public synchronized List<String> partitions() throws SQLException {
+        List<String> names = new ArrayList<>();
+        try (PreparedStatement query = connection.prepareStatement(
+                "SELECT name FROM sqlite_master WHERE type = 'table' AND name LIKE ? ESCAPE '\\' ORDER BY name")) {
+            query.setString(1, kind.baseTable + "\\_p%");
+            try (ResultSet rows = query.executeQuery()) {
+                while (rows.next()) {
+                    String name = rows.getString(1);
+                    if (name.length() == kind.baseTable.length() + 2 + (granularity == Granularity.DAY ? 8 : 6)) {
+                        names.add(name);
+                    }
+                }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * @param partition a partition table name of this store
+     * @return the first instant after the period covered by the partition, epoch milliseconds
+     */
+    public long partitionEnd(String partition) {
+        return epochMillis(granularity.next(periodOf(partition)));
+    }
+
+    /** @return the partitioned kind of readings */
+    public Kind kind() {
+        return kind;
+    }
+
+    /** @return the underlying connection, for maintenance jobs sharing the writer */
+    Connection connection() {
+        return connection;
+    }
+
+    /**
+     * Forgets a partition dropped by a maintenance job, so it is recreated on the next write.
+     */
+    synchronized void forget(String partition) {
+        knownPartitions.remove(partition);
+    }
+
+    @Override
+    public synchronized void close() throws SQLException {
+        connection.close();
+    }
+
+    private String partitionOf(long epochMillis) {
+        LocalDate date = Instant.ofEpochMilli(epochMillis).atZone(ZoneOffset.UTC).toLocalDate();
+        return kind.baseTable + "_p" + granularity.startOf(date).format(granularity.suffix);
+    }
+
+    private List<String> partitionsOverlapping(long from, long to) throws SQLException {
+        List<String> overlapping = new ArrayList<>();
+        for (String partition : partitions()) {
+            if (epochMillis(periodOf(partition)) < to && partitionEnd(partition) > from) {
+                overlapping.add(partition);
+            }
+        }
+        return overlapping;
+    }
+
+    private LocalDate periodOf(String partition) {
+        return granularity.parse(partition.substring(kind.baseTable.length() + 2));
+    }
+
+    private static long epochMillis(LocalDate date) {
+        return date.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+    }
+
+    private void createIfMissing(String partition) throws SQLException {
+        if (knownPartitions.contains(partition)) {
+            return;
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS " + partition + " (id integer, measured_value float, "
+                    + "type_code integer, " + (kind == Kind.RAW ? "unit_code integer, " : "")
+                    + "timestamp bigint, primary key (id))");
+            statement.execute("CREATE INDEX IF NOT EXISTS " + partition + "_ts ON " + partition + " (timestamp)");
+        }
+        knownPartitions.add(partition);
+    }
+
+    private void requireKind(Kind expected) {
+        if (kind != expected) {
+            throw new IllegalStateException("Store holds " + kind.baseTable + ", not " + expected.baseTable);
+        }
+    }
+
+    /** Unit of work executed inside {@link #inTransaction}. */
+    private interface SqlWork {
+        void run() throws SQLException;
+    }
+
+    /**
+     * Runs {@code work} in a transaction after creating the missing partitions,
+     * reporting it as a {@link StorageEvent} of the given stage and batch.
+     */
+    private <T> void inTransaction(SqlWork work, Set<String> partitions,
+                                   String stage, List<T> batch, Function<T, String> typeOf) throws SQLException {
+        StorageEvent event = new StorageEvent();
+        event.begin();
+        connection.setAutoCommit(false);
+        try {
+            for (String partition : partitions) {
+                createIfMissing(partition);
+            }
+            work.run();
+            connection.commit();
+            event.finish(stage, batch, typeOf, "stored");
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            knownPartitions.removeAll(partitions); // creation may have been rolled back too
+            event.finish(stage, batch, typeOf, "failed");
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+}
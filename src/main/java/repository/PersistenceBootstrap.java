@@ -0,0 +1,149 @@
+package repository;
+
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Persistence;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import trace.StartupTimings;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Creates the single, process-wide {@link EntityManagerFactory} of the
+ * {@code "environment"} persistence unit.
+ *
+ * <p>Building the factory is the slowest part of startup (Hibernate bootstrap
+ * plus schema handling), so it runs on its own thread: callers get a
+ * {@link CompletableFuture} immediately and can keep deploying or initialising
+ * other components meanwhile. Every caller in the process shares the same
+ * factory, so the batch entry point and the Vert.x reader never build it twice.</p>
+ *
+ * <p>Two modes are supported, selected with the {@code persistence.mode} system
+ * property:</p>
+ * <ul>
+ *   <li>{@code dev} (default) – uses {@code persistence.xml} as is: the schema is
+ *       dropped and recreated and {@code data.sql} is loaded;</li>
+ *   <li>{@code prod} – databases still using the original text schema are first
+ *       upgraded by {@link CompactSchemaMigration}; the schema is then only
+ *       validated against the entities, no seed data is loaded and SQL logging
+ *       is disabled.</li>
+ * </ul>
+ *
+ * <p>Once the factory is built, the {@code reading_codes} dictionary is loaded
+ * into {@link model.ReadingCodes} (see {@link ReadingCodeDictionary}).</p>
+ *
+ * <p>The database location defaults to {@code jdbc:sqlite:environment.db} and can
+ * be changed with the {@code persistence.url} system property.</p>
+ *
+ * <pre>{@code
+ * EntityManagerFactory emf = PersistenceBootstrap.start().join();
+ * ...
+ * PersistenceBootstrap.close();
+ * }</pre>
+ */
+public final class PersistenceBootstrap {
+
+    /** Schema handling applied when the factory is built. */
+    public enum Mode { DEV, PROD }
+
+    /** Name of the persistence unit declared in {@code persistence.xml}. */
+    public static final String PERSISTENCE_UNIT = "environment";
+
+    /** JDBC URL used when the {@code persistence.url} system property is not set. */
+    public static final String DEFAULT_JDBC_URL = "jdbc:sqlite:environment.db";
+
+    private static final Logger log = LoggerFactory.getLogger(PersistenceBootstrap.class);
+
+    private static CompletableFuture<EntityManagerFactory> factory;
+
+    private PersistenceBootstrap() {}
+
+    /**
+     * Starts building the shared factory in the mode given by the
+     * {@code persistence.mode} system property, or returns the build already
+     * in progress.
+     *
+     * @return a future completed with the shared factory
+     */
+    public static CompletableFuture<EntityManagerFactory> start() {
+        return start("prod".equalsIgnoreCase(System.getProperty("persistence.mode")) ? Mode.PROD : Mode.DEV);
+    }
+
+    /**
+     * Starts building the shared factory in the given mode, or returns the build
+     * already in progress (whose mode then wins).
+     *
+     * @param mode schema handling to apply
+     * @return a future completed with the shared factory
+     */
+    public static synchronized CompletableFuture<EntityManagerFactory> start(Mode mode) {
+        if (factory == null) {
+            CompletableFuture<EntityManagerFactory> future = new CompletableFuture<>();
+            Thread builder = new Thread(() -> build(mode, future), "persistence-bootstrap");
+            builder.setDaemon(true);
+            builder.start();
+            factory = future;
+        }
+        return factory;
+    }
+
+    /**
+     * @return the JDBC URL of the database, for components that bypass JPA
+     */
+    public static String jdbcUrl() {
+        return System.getProperty("persistence.url", DEFAULT_JDBC_URL);
+    }
+
+    /**
+     * Closes the shared factory if it was built, allowing a later {@link #start()}
+     * to build a new one.
+     */
+    public static synchronized void close() {
+        if (factory != null) {
+            factory.thenAccept(emf -> {
+                if (emf.isOpen()) {
+                    emf.close();
+                }
+            });
+            factory = null;
+        }
+    }
+
+    private static void build(Mode mode, CompletableFuture<EntityManagerFactory> future) {
+        long begin = System.nanoTime();
+        try {
+            if (mode == Mode.PROD) {
+                CompactSchemaMigration.migrate(jdbcUrl());
+                StartupTimings.global().mark("schema migrated");
+            }
+            EntityManagerFactory emf = Persistence.createEntityManagerFactory(PERSISTENCE_UNIT, overrides(mode));
+            ReadingCodeDictionary.load(emf);
+            StartupTimings.global().mark("persistence ready");
+            log.info("Persistencia lista en {} ms (modo {}).", (System.nanoTime() - begin) / 1_000_000, mode);
+            future.complete(emf);
+        } catch (RuntimeException | SQLException e) {
+            log.error("Error al iniciar la persistencia: " + e.getMessage());
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Properties overriding {@code persistence.xml} for the given mode.
+     */
+    private static Map<String, Object> overrides(Mode mode) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("jakarta.persistence.jdbc.url", jdbcUrl());
+        if (mode == Mode.PROD) {
+            // la accion JPA de persistence.xml (drop-and-create) tiene prioridad sobre hbm2ddl: se anula
+            properties.put("jakarta.persistence.schema-generation.database.action", null);
+            properties.put("hibernate.hbm2ddl.auto", "validate");
+            properties.put("hibernate.show_sql", "false");
+            properties.put("jakarta.persistence.show_sql", "false");
+            properties.put("hibernate.format_sql", "false");
+        }
+        return properties;
+    }
+}
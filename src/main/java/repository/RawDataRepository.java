@@ -3,6 +3,8 @@ package repository;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityManagerFactory;
 import model.RawData;
+import model.ReadingCodes;
+import trace.StorageEvent;
 
 import java.util.List;
 
@@ -16,7 +18,8 @@ import java.util.List;
  *
  * <p>It is expected that the {@link EntityManagerFactory} is initialized
  * externally (e.g., in the main application class) and injected into this
- * repository upon construction.</p>
+ * repository upon construction. Reads and saves are {@link StorageEvent}s
+ * for Java Flight Recorder.</p>
  *
  * <p>Methods such as {@link #findAll()} are intended to be implemented
  * by the student as part of the practical exercise.</p>
@@ -49,19 +52,28 @@ public class RawDataRepository {
      * @return a list of raw data records (to be implemented)
      */
     public List<RawData> findAll() {
+        StorageEvent event = new StorageEvent();
+        event.begin();
         EntityManager em = emf.createEntityManager();
         try {
-            return em.createQuery("SELECT r FROM RawData r", RawData.class).getResultList();
+            List<RawData> all = em.createQuery("SELECT r FROM RawData r", RawData.class).getResultList();
+            event.finish("RawDataRepository.findAll", all, RawData::getType, "loaded");
+            return all;
         } finally {
             em.close();
         }
     }
     public void save(RawData data) {
+        StorageEvent event = new StorageEvent();
+        event.begin();
         EntityManager em = emf.createEntityManager();
         try {
             em.getTransaction().begin();
+            ReadingCodeDictionary.record(em, ReadingCodes.KIND_TYPE, data.getType());
+            ReadingCodeDictionary.record(em, ReadingCodes.KIND_UNIT, data.getUnit());
             em.persist(data);
             em.getTransaction().commit();
+            event.finish("RawDataRepository.save", data.getType(), 1, "stored");
         } finally {
             if (em.getTransaction().isActive()) em.getTransaction().rollback();
             em.close();
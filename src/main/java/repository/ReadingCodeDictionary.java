@@ -0,0 +1,176 @@
+package repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import model.ReadingCode;
+import model.ReadingCodes;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Keeps the {@code reading_codes} table of a database and the process-wide
+ * {@link ReadingCodes} dictionary in step.
+ *
+ * <p>When a database is opened its codes are loaded into {@link ReadingCodes};
+ * a store that writes a code which is not built in adds the code's row in the
+ * same transaction as the readings, so a name is never stored without the entry
+ * that maps it back. A code already bound to another name in the database – e.g.
+ * assigned meanwhile by another process – fails the write instead of storing a
+ * reading under the wrong name.</p>
+ */
+public final class ReadingCodeDictionary {
+
+    private ReadingCodeDictionary() {}
+
+    /**
+     * Creates the {@code reading_codes} table if missing, adds the built-in codes
+     * and loads every code of the database into {@link ReadingCodes}.
+     *
+     * @param connection connection to the database
+     * @throws SQLException          if the table cannot be read or written
+     * @throws IllegalStateException if a code of the database conflicts with one
+     *                               already known to the process
+     */
+    public static void open(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS reading_codes (code integer not null, "
+                    + "kind varchar(255) not null, name varchar(255), primary key (code, kind))");
+        }
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT OR IGNORE INTO reading_codes (kind, code, name) VALUES (?, ?, ?)")) {
+            for (String kind : new String[] { ReadingCodes.KIND_TYPE, ReadingCodes.KIND_UNIT }) {
+                for (int code = 1; ReadingCodes.isBuiltIn(kind, code); code++) {
+                    insert.setString(1, kind);
+                    insert.setInt(2, code);
+                    insert.setString(3, nameOf(kind, code));
+                    insert.addBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT kind, code, name FROM reading_codes")) {
+            while (rows.next()) {
+                ReadingCodes.define(rows.getString(1), rows.getInt(2), rows.getString(3));
+            }
+        }
+    }
+
+    /**
+     * Loads every code of the factory's database into {@link ReadingCodes}.
+     *
+     * @param emf factory of the database
+     * @throws IllegalStateException if a code conflicts with one already known to the process
+     */
+    public static void load(EntityManagerFactory emf) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            for (ReadingCode code : em.createQuery("SELECT c FROM ReadingCode c", ReadingCode.class).getResultList()) {
+                ReadingCodes.define(code.getKind(), code.getCode(), code.getName());
+            }
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Assigns codes to the names of the given rows that have none and adds the
+     * codes that are not built in to {@code reading_codes}, in the connection's
+     * current transaction.
+     *
+     * @param connection connection to the database the rows are written to
+     * @param kind       {@link ReadingCodes#KIND_TYPE} or {@link ReadingCodes#KIND_UNIT}
+     * @param rows       rows about to be written
+     * @param nameOf     name of a row's type or unit
+     * @param <T>        type of the rows
+     * @throws SQLException if a code cannot be added or is bound to another name
+     */
+    public static <T> void record(Connection connection, String kind, Collection<T> rows,
+                                  Function<T, String> nameOf) throws SQLException {
+        Set<Integer> recorded = new HashSet<>();
+        for (T row : rows) {
+            int code = assign(kind, nameOf.apply(row));
+            if (!ReadingCodes.isBuiltIn(kind, code) && code != ReadingCodes.UNKNOWN && recorded.add(code)) {
+                record(connection, kind, code);
+            }
+        }
+    }
+
+    /**
+     * Adds one code to {@code reading_codes} unless it is built in, in the
+     * connection's current transaction.
+     *
+     * @param connection connection to the database the code is written to
+     * @param kind       {@link ReadingCodes#KIND_TYPE} or {@link ReadingCodes#KIND_UNIT}
+     * @param code       a code known to {@link ReadingCodes}
+     * @throws SQLException if the code cannot be added or is bound to another name
+     */
+    public static void record(Connection connection, String kind, int code) throws SQLException {
+        if (code == ReadingCodes.UNKNOWN || ReadingCodes.isBuiltIn(kind, code)) {
+            return;
+        }
+        String name = nameOf(kind, code);
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT OR IGNORE INTO reading_codes (kind, code, name) VALUES (?, ?, ?)")) {
+            insert.setString(1, kind);
+            insert.setInt(2, code);
+            insert.setString(3, name);
+            if (insert.executeUpdate() == 1) {
+                return;
+            }
+        }
+        try (PreparedStatement query = connection.prepareStatement(
+                "SELECT name FROM reading_codes WHERE kind = ? AND code = ?")) {
+            query.setString(1, kind);
+            query.setInt(2, code);
+            try (ResultSet rows = query.executeQuery()) {
+                String stored = rows.next() ? rows.getString(1) : null;
+                if (!name.equals(stored)) {
+                    throw new SQLException("The " + kind + " code " + code + " is '" + stored
+                            + "' in this database, not '" + name + "'");
+                }
+            }
+        }
+    }
+
+    /**
+     * Assigns a code to the name if it has none and adds it to
+     * {@code reading_codes} unless it is built in, in the entity manager's
+     * current transaction.
+     *
+     * @param em   entity manager with an active transaction
+     * @param kind {@link ReadingCodes#KIND_TYPE} or {@link ReadingCodes#KIND_UNIT}
+     * @param name the type or unit name about to be stored, may be {@code null}
+     * @throws IllegalStateException if the code is bound to another name in the database
+     */
+    public static void record(EntityManager em, String kind, String name) {
+        int code = assign(kind, name);
+        if (code == ReadingCodes.UNKNOWN || ReadingCodes.isBuiltIn(kind, code)) {
+            return;
+        }
+        ReadingCode stored = em.find(ReadingCode.class, new ReadingCode.Key(kind, code));
+        if (stored == null) {
+            em.persist(new ReadingCode(kind, code, name));
+        } else if (!name.equals(stored.getName())) {
+            throw new IllegalStateException("The " + kind + " code " + code + " is '" + stored.getName()
+                    + "' in this database, not '" + name + "'");
+        }
+    }
+
+    /** @return the code of the name, newly assigned if it had none */
+    static int assign(String kind, String name) {
+        return ReadingCodes.KIND_TYPE.equals(kind) ? ReadingCodes.assignTypeCode(name) : ReadingCodes.assignUnitCode(name);
+    }
+
+    private static String nameOf(String kind, int code) {
+        return ReadingCodes.KIND_TYPE.equals(kind) ? ReadingCodes.typeName(code) : ReadingCodes.unitName(code);
+    }
+}
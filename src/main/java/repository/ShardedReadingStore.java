@@ -0,0 +1,440 @@
+package repository;
+
+import model.CleanData;
+import model.RawData;
+import model.ReadingCodes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import trace.StorageEvent;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Spreads {@code raw_readings} and {@code clean_readings} over several SQLite
+ * files, each written by its own thread.
+ *
+ * <p>SQLite serialises writers per database file, so a single file caps write
+ * throughput however many threads feed it. Here every shard is a separate file
+ * (e.g. {@code environment-shard0.db}, {@code environment-shard1.db}, ...) with
+ * the compact reading schema and its own {@code reading_codes} dictionary, one
+ * connection and one single-threaded writer.
+ * A batch is split by shard and the parts are committed in parallel, one
+ * transaction per shard.</p>
+ *
+ * <p>Readings are routed either by variable type – all readings of a type live
+ * in one shard, so type-filtered queries touch a single file – or by a hash of
+ * the timestamp, which spreads any mix of types evenly.</p>
+ *
+ * <p>Queries fan out to the relevant shards, each read on a separate connection
+ * (shards use WAL, so reads do not wait for writers), and the per-shard results,
+ * already sorted, are merged in timestamp order.</p>
+ *
+ * <p>A batch is atomic per shard, not across shards: if one shard fails, the
+ * parts committed to the others remain. A write therefore reports which rows
+ * were not stored (see {@link WriteResult}), so that a retry resubmits only
+ * those instead of storing the committed parts twice.</p>
+ */
+public class ShardedReadingStore implements AutoCloseable {
+
+    /** How readings are assigned to shards. */
+    public enum Routing { TYPE, HASH }
+
+    private static final Logger log = LoggerFactory.getLogger(ShardedReadingStore.class);
+
+    /**
+     * Outcome of a write spread over the shards.
+     *
+     * @param <T> type of the rows written
+     */
+    public static final class WriteResult<T> {
+
+        private final List<T> unwritten;
+        private final Throwable failure;
+
+        WriteResult(List<T> unwritten, Throwable failure) {
+            this.unwritten = unwritten;
+            this.failure = failure;
+        }
+
+        /** @return the rows of the shards whose part was rolled back; empty if every part was stored */
+        public List<T> unwritten() {
+            return unwritten;
+        }
+
+        /** @return the failure of the first failed shard, or {@code null} if every part was stored */
+        public Throwable failure() {
+            return failure;
+        }
+
+        /** @return {@code true} if every part was stored */
+        public boolean stored() {
+            return failure == null;
+        }
+    }
+
+    private final String[] urls;
+    private final Connection[] connections;
+    private final ExecutorService[] writers;
+    private final ExecutorService readers;
+    private final Routing routing;
+
+    /**
+     * Opens {@code shards} shard files next to the database of {@code jdbcUrl}.
+     *
+     * @param jdbcUrl base SQLite JDBC URL, e.g. {@code jdbc:sqlite:environment.db}
+     * @param shards  number of shard files
+     * @param routing how readings are assigned to shards
+     * @return the opened store
+     * @throws SQLException if a shard cannot be opened
+     */
+    public static ShardedReadingStore open(String jdbcUrl, int shards, Routing routing) throws SQLException {
+        String base = jdbcUrl.endsWith(".db") ? jdbcUrl.substring(0, jdbcUrl.length() - 3) : jdbcUrl;
+        List<String> urls = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            urls.add(base + "-shard" + i + ".db");
+        }
+        return new ShardedReadingStore(urls, routing);
+    }
+
+    /**
+     * @param shardUrls JDBC URL of each shard, in shard order
+     * @param routing   how readings are assigned to shards
+     * @throws SQLException if a shard cannot be opened; shards already opened are closed
+     */
+    public ShardedReadingStore(List<String> shardUrls, Routing routing) throws SQLException {
+        if (shardUrls.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        int n = shardUrls.size();
+        this.urls = shardUrls.toArray(new String[0]);
+        this.routing = routing;
+        this.connections = new Connection[n];
+        this.writers = new ExecutorService[n];
+        try {
+            for (int i = 0; i < n; i++) {
+                connections[i] = DriverManager.getConnection(urls[i]);
+                createSchema(connections[i]);
+            }
+        } catch (SQLException e) {
+            closeConnections();
+            throw e;
+        }
+        for (int i = 0; i < n; i++) {
+            String name = "shard-writer-" + i;
+            writers[i] = Executors.newSingleThreadExecutor(task -> new Thread(task, name));
+        }
+        this.readers = Executors.newFixedThreadPool(n, task -> {
+            Thread thread = new Thread(task, "shard-reader");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /** @return the number of shards */
+    public int shardCount() {
+        return urls.length;
+    }
+
+    /**
+     * @param typeCode    type code of the reading
+     * @param epochMillis timestamp of the reading
+     * @return index of the shard holding the reading
+     */
+    public int shardOf(int typeCode, long epochMillis) {
+        if (routing == Routing.TYPE) {
+            return Math.floorMod(typeCode, urls.length);
+        }
+        long h = epochMillis * 0x9E3779B97F4A7C15L;
+        return (int) Math.floorMod(h ^ (h >>> 32), (long) urls.length);
+    }
+
+    /**
+     * Stores raw readings, each shard's part in one transaction on its writer.
+     *
+     * @param batch readings to store
+     * @return a future completed, once every shard has committed or rolled back
+     *         its part, with the rows left unwritten
+     */
+    public CompletableFuture<WriteResult<RawData>> saveRaw(List<RawData> batch) {
+        List<List<RawData>> parts = split(batch, data -> shardOf(ReadingCodes.assignTypeCode(data.getType()),
+                ReadingCodes.toEpochMillis(data.getTimestamp())));
+        return writeParts(parts, "ShardedReadingStore.saveRaw", RawData::getType, (connection, part) -> {
+            ReadingCodeDictionary.record(connection, ReadingCodes.KIND_TYPE, part, RawData::getType);
+            ReadingCodeDictionary.record(connection, ReadingCodes.KIND_UNIT, part, RawData::getUnit);
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO raw_readings (measured_value, type_code, unit_code, timestamp) VALUES (?, ?, ?, ?)")) {
+                for (RawData data : part) {
+                    insert.setDouble(1, data.getValue());
+                    insert.setInt(2, ReadingCodes.typeCode(data.getType()));
+                    insert.setInt(3, ReadingCodes.unitCode(data.getUnit()));
+                    insert.setLong(4, ReadingCodes.toEpochMillis(data.getTimestamp()));
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+        });
+    }
+
+    /**
+     * Stores clean readings, each shard's part in one transaction on its writer.
+     *
+     * @param batch readings to store
+     * @return a future completed, once every shard has committed or rolled back
+     *         its part, with the rows left unwritten
+     */
+    public CompletableFuture<WriteResult<CleanData>> saveClean(List<CleanData> batch) {
+        List<List<CleanData>> parts = split(batch, data -> shardOf(ReadingCodes.assignTypeCode(data.getType()),
+                ReadingCodes.toEpochMillis(data.getTimestamp())));
+        return writeParts(parts, "ShardedReadingStore.saveClean", CleanData::getType, (connection, part) -> {
+            ReadingCodeDictionary.record(connection, ReadingCodes.KIND_TYPE, part, CleanData::getType);
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO clean_readings (measured_value, type_code, timestamp) VALUES (?, ?, ?)")) {
+                for (CleanData data : part) {
+                    insert.setDouble(1, data.getValue());
+                    insert.setInt(2, ReadingCodes.typeCode(data.getType()));
+                    insert.setLong(3, ReadingCodes.toEpochMillis(data.getTimestamp()));
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+        });
+    }
+
+    /**
+     * Returns the clean readings with a timestamp in {@code [from, to)}, merged
+     * across shards in timestamp order.
+     *
+     * @param typeCode type to return, or {@code null} for every type
+     * @param from     inclusive lower bound, epoch milliseconds
+     * @param to       exclusive upper bound, epoch milliseconds
+     * @return the matching readings
+     * @throws SQLException if a shard cannot be queried
+     */
+    public List<CleanData> findClean(Integer typeCode, long from, long to) throws SQLException {
+        return fanOut(typeCode, "SELECT measured_value, type_code, timestamp FROM clean_readings", from, to,
+                rows -> new CleanData(ReadingCodes.typeName(rows.getInt(2)),
+                        ReadingCodes.fromEpochMillis(rows.getLong(3)), rows.getDouble(1)),
+                data -> ReadingCodes.toEpochMillis(data.getTimestamp()));
+    }
+
+    /**
+     * Returns the raw readings with a timestamp in {@code [from, to)}, merged
+     * across shards in timestamp order.
+     *
+     * @param typeCode type to return, or {@code null} for every type
+     * @param from     inclusive lower bound, epoch milliseconds
+     * @param to       exclusive upper bound, epoch milliseconds
+     * @return the matching readings
+     * @throws SQLException if a shard cannot be queried
+     */
+    public List<RawData> findRaw(Integer typeCode, long from, long to) throws SQLException {
+        return fanOut(typeCode, "SELECT measured_value, type_code, timestamp, unit_code FROM raw_readings", from, to,
+                rows -> new RawData(ReadingCodes.typeName(rows.getInt(2)),
+                        ReadingCodes.fromEpochMillis(rows.getLong(3)), rows.getDouble(1),
+                        ReadingCodes.unitName(rows.getInt(4))),
+                data -> ReadingCodes.toEpochMillis(data.getTimestamp()));
+    }
+
+    /**
+     * Waits for pending writes, then closes every shard.
+     */
+    @Override
+    public void close() {
+        for (ExecutorService writer : writers) {
+            writer.shutdown();
+        }
+        readers.shutdown();
+        try {
+            for (ExecutorService writer : writers) {
+                writer.awaitTermination(1, TimeUnit.MINUTES);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closeConnections();
+    }
+
+    /** Writes one shard's part of a batch on the given connection. */
+    private interface PartWriter<T> {
+        void write(Connection connection, List<T> part) throws SQLException;
+    }
+
+    /** Maps the current row of a result set. */
+    private interface RowMapper<T> {
+        T map(ResultSet rows) throws SQLException;
+    }
+
+    private <T> List<List<T>> split(List<T> batch, ToIntFunction<T> shard) {
+        List<List<T>> parts = new ArrayList<>(urls.length);
+        for (int i = 0; i < urls.length; i++) {
+            parts.add(new ArrayList<>());
+        }
+        for (T data : batch) {
+            parts.get(shard.applyAsInt(data)).add(data);
+        }
+        return parts;
+    }
+
+    private <T> CompletableFuture<WriteResult<T>> writeParts(List<List<T>> parts, String stage,
+                                                             Function<T, String> typeOf, PartWriter<T> writer) {
+        List<List<T>> written = new ArrayList<>();
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        for (int i = 0; i < parts.size(); i++) {
+            List<T> part = parts.get(i);
+            if (part.isEmpty()) {
+                continue;
+            }
+            written.add(part);
+            Connection connection = connections[i];
+            pending.add(CompletableFuture.runAsync(() -> {
+                StorageEvent event = new StorageEvent();
+                event.begin();
+                try {
+                    connection.setAutoCommit(false);
+                    try {
+                        writer.write(connection, part);
+                        connection.commit();
+                        event.finish(stage, part, typeOf, "stored");
+                    } catch (SQLException e) {
+                        connection.rollback();
+                        event.finish(stage, part, typeOf, "failed");
+                        throw e;
+                    } finally {
+                        connection.setAutoCommit(true);
+                    }
+                } catch (SQLException e) {
+                    throw new CompletionException(e);
+                }
+            }, writers[i]));
+        }
+        return CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).handle((ignored, error) -> {
+            List<T> unwritten = new ArrayList<>();
+            Throwable failure = null;
+            for (int i = 0; i < pending.size(); i++) {
+                try {
+                    pending.get(i).join();
+                } catch (CompletionException e) {
+                    unwritten.addAll(written.get(i));
+                    if (failure == null) {
+                        failure = e.getCause();
+                    }
+                }
+            }
+            return new WriteResult<>(unwritten, failure);
+        });
+    }
+
+    private <T> List<T> fanOut(Integer typeCode, String select, long from, long to,
+                               RowMapper<T> mapper, ToLongFunction<T> timestamp) throws SQLException {
+        String sql = select + " WHERE timestamp >= ? AND timestamp < ?"
+                + (typeCode != null ? " AND type_code = ?" : "") + " ORDER BY timestamp";
+        List<CompletableFuture<List<T>>> pending = new ArrayList<>();
+        for (int i = 0; i < urls.length; i++) {
+            if (routing == Routing.TYPE && typeCode != null && shardOf(typeCode, 0) != i) {
+                continue; // the type lives in another shard
+            }
+            String url = urls[i];
+            pending.add(CompletableFuture.supplyAsync(() -> {
+                List<T> rows = new ArrayList<>();
+                try (Connection connection = DriverManager.getConnection(url);
+                     PreparedStatement query = connection.prepareStatement(sql)) {
+                    query.setLong(1, from);
+                    query.setLong(2, to);
+                    if (typeCode != null) {
+                        query.setInt(3, typeCode);
+                    }
+                    try (ResultSet result = query.executeQuery()) {
+                        while (result.next()) {
+                            rows.add(mapper.map(result));
+                        }
+                    }
+                } catch (SQLException e) {
+                    throw new CompletionException(e);
+                }
+                return rows;
+            }, readers));
+        }
+
+        List<List<T>> shards = new ArrayList<>(pending.size());
+        try {
+            for (CompletableFuture<List<T>> shard : pending) {
+                shards.add(shard.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw e;
+        }
+        return merge(shards, timestamp);
+    }
+
+    /**
+     * K-way merge of lists already sorted by timestamp. Heap entries are
+     * {@code {shard, position}} pairs.
+     */
+    private static <T> List<T> merge(List<List<T>> shards, ToLongFunction<T> timestamp) {
+        int total = 0;
+        PriorityQueue<int[]> heads = new PriorityQueue<>(Math.max(1, shards.size()),
+                Comparator.comparingLong(head -> timestamp.applyAsLong(shards.get(head[0]).get(head[1]))));
+        for (int s = 0; s < shards.size(); s++) {
+            total += shards.get(s).size();
+            if (!shards.get(s).isEmpty()) {
+                heads.add(new int[] { s, 0 });
+            }
+        }
+        List<T> merged = new ArrayList<>(total);
+        while (!heads.isEmpty()) {
+            int[] head = heads.poll();
+            List<T> shard = shards.get(head[0]);
+            merged.add(shard.get(head[1]));
+            if (++head[1] < shard.size()) {
+                heads.add(head);
+            }
+        }
+        return merged;
+    }
+
+    private static void createSchema(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("PRAGMA journal_mode=WAL");
+            statement.execute("PRAGMA synchronous=NORMAL");
+            statement.execute("CREATE TABLE IF NOT EXISTS raw_readings (id integer, measured_value float, "
+                    + "type_code integer, unit_code integer, timestamp bigint, primary key (id))");
+            statement.execute("CREATE TABLE IF NOT EXISTS clean_readings (id integer, measured_value float, "
+                    + "type_code integer, timestamp bigint, primary key (id))");
+            statement.execute("CREATE INDEX IF NOT EXISTS raw_readings_ts ON raw_readings (timestamp)");
+            statement.execute("CREATE INDEX IF NOT EXISTS clean_readings_ts ON clean_readings (timestamp)");
+        }
+        ReadingCodeDictionary.open(connection);
+    }
+
+    private void closeConnections() {
+        for (Connection connection : connections) {
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    log.error("Error al cerrar un shard: " + e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package repository;
+
+import model.ReadingCodes;
+import sketch.DDSketch;
+import sketch.WindowedSketches;
+import trace.StorageEvent;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Stores quantile sketches of the clean readings, one row per variable type,
+ * window length and window start, in the {@code reading_sketches} table.
+ *
+ * <p>Each row holds a {@link DDSketch} in its compact binary form, a few
+ * hundred bytes whatever the number of readings it summarises.
+ * {@link #merge(List, long)} adds new sketches to the stored ones instead of
+ * replacing them, so several pipeline instances, or the same instance flushing
+ * periodically, can contribute to the same window. Percentile queries over any
+ * range of windows ({@link #quantiles}) merge the stored sketches and never
+ * read {@code clean_readings}.</p>
+ *
+ * <p>The repository keeps one JDBC connection in WAL mode; its methods are
+ * synchronized.</p>
+ */
+public class SketchRepository implements AutoCloseable {
+
+    private final Connection connection;
+
+    /**
+     * Opens the repository, creating its table if missing.
+     *
+     * @param jdbcUrl SQLite JDBC URL
+     * @throws SQLException if the database cannot be opened
+     */
+    public SketchRepository(String jdbcUrl) throws SQLException {
+        this.connection = DriverManager.getConnection(jdbcUrl);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("PRAGMA journal_mode=WAL");
+            statement.execute("PRAGMA synchronous=NORMAL");
+            statement.execute("CREATE TABLE IF NOT EXISTS reading_sketches (type_code integer, window_ms bigint, "
+                    + "window_start bigint, readings bigint, sketch blob, "
+                    + "primary key (type_code, window_ms, window_start))");
+        }
+    }
+
+    /**
+     * Merges sketches into the stored ones of the same type and window, in one transaction.
+     *
+     * @param windows      sketches to add
+     * @param windowMillis length of their windows
+     * @throws SQLException if they cannot be stored; nothing is stored then
+     * @throws IllegalArgumentException if a stored sketch has a different accuracy
+     */
+    public synchronized void merge(List<WindowedSketches.Window> windows, long windowMillis) throws SQLException {
+        StorageEvent event = new StorageEvent();
+        event.begin();
+        connection.setAutoCommit(false);
+        try (PreparedStatement select = connection.prepareStatement("SELECT sketch FROM reading_sketches "
+                + "WHERE type_code = ? AND window_ms = ? AND window_start = ?");
+             PreparedStatement upsert = connection.prepareStatement("INSERT OR REPLACE INTO reading_sketches "
+                     + "(type_code, window_ms, window_start, readings, sketch) VALUES (?, ?, ?, ?, ?)")) {
+            for (WindowedSketches.Window window : windows) {
+                DDSketch merged = window.sketch();
+                select.setInt(1, window.typeCode());
+                select.setLong(2, windowMillis);
+                select.setLong(3, window.windowStart());
+                try (ResultSet rows = select.executeQuery()) {
+                    if (rows.next()) {
+                        merged = DDSketch.fromBytes(rows.getBytes(1));
+                        merged.merge(window.sketch());
+                    }
+                }
+                upsert.setInt(1, window.typeCode());
+                upsert.setLong(2, windowMillis);
+                upsert.setLong(3, window.windowStart());
+                upsert.setLong(4, merged.count());
+                upsert.setBytes(5, merged.toBytes());
+                upsert.executeUpdate(); // no en lote: la misma ventana puede repetirse en la lista
+            }
+            connection.commit();
+            event.finish("SketchRepository.merge", windows,
+                    w -> ReadingCodes.typeName(w.typeCode()), "stored");
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            event.finish("SketchRepository.merge", windows,
+                    w -> ReadingCodes.typeName(w.typeCode()), "failed");
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Returns the merge of the stored sketches of one type whose window starts in {@code [from, to)}.
+     *
+     * @param typeCode     type code from {@link ReadingCodes}
+     * @param windowMillis length of the windows to read
+     * @param from         inclusive lower bound of the window starts, epoch milliseconds
+     * @param to           exclusive upper bound of the window starts, epoch milliseconds
+     * @return the merged sketch, empty when no window matches
+     * @throws SQLException if the query fails
+     */
+    public synchronized DDSketch find(int typeCode, long windowMillis, long from, long to) throws SQLException {
+        DDSketch merged = null;
+        try (PreparedStatement query = connection.prepareStatement("SELECT sketch FROM reading_sketches "
+                + "WHERE type_code = ? AND window_ms = ? AND window_start >= ? AND window_start < ?")) {
+            query.setInt(1, typeCode);
+            query.setLong(2, windowMillis);
+            query.setLong(3, from);
+            query.setLong(4, to);
+            try (ResultSet rows = query.executeQuery()) {
+                while (rows.next()) {
+                    DDSketch sketch = DDSketch.fromBytes(rows.getBytes(1));
+                    if (merged == null) {
+                        merged = sketch;
+                    } else {
+                        merged.merge(sketch);
+                    }
+                }
+            }
+        }
+        return merged != null ? merged : new DDSketch();
+    }
+
+    /**
+     * Estimates quantiles of one type over a range of windows from the stored sketches.
+     *
+     * @param typeCode     type code from {@link ReadingCodes}
+     * @param windowMillis length of the windows to read
+     * @param from         inclusive lower bound of the window starts, epoch milliseconds
+     * @param to           exclusive upper bound of the window starts, epoch milliseconds
+     * @param quantiles    quantiles to estimate, e.g. {@code 0.5, 0.95, 0.99}
+     * @return the estimates, in the order requested; {@code NaN} when no window matches
+     * @throws SQLException if the query fails
+     */
+    public double[] quantiles(int typeCode, long windowMillis, long from, long to,
+                              double... quantiles) throws SQLException {
+        DDSketch sketch = find(typeCode, windowMillis, from, to);
+        double[] estimates = new double[quantiles.length];
+        for (int i = 0; i < quantiles.length; i++) {
+            estimates[i] = sketch.quantile(quantiles[i]);
+        }
+        return estimates;
+    }
+
+    @Override
+    public synchronized void close() throws SQLException {
+        connection.close();
+    }
+}
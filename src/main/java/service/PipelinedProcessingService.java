@@ -0,0 +1,333 @@
+package service;
+
+import filter.RawDataFilter;
+import flow.SequenceRing;
+import model.RawData;
+import model.ReadingCodes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import trace.PipelineTracer;
+import trace.StageEvent;
+import trace.StorageEvent;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Variant of {@link RawDataProcessingService} that runs reading, filtering and
+ * writing as three stages on their own threads, so the database reads, the
+ * filter chain and the inserts overlap instead of taking turns.
+ *
+ * <p>The stages share a {@link SequenceRing} of preallocated slots holding the
+ * fields of one reading in primitive form: the reader streams
+ * {@code raw_readings} over JDBC into the slots, the filter stage applies the
+ * chain and marks each slot accepted or not, and the writer inserts the
+ * accepted slots into {@code clean_readings}, committing once per batch. Nothing
+ * is allocated per reading between the stages; the filter stage loads each slot
+ * into a single reused {@link RawData}, because that is what
+ * {@link RawDataFilter} takes – only its {@code LocalDateTime} timestamp is
+ * created per reading.</p>
+ *
+ * <p>Each stage hands over whatever has accumulated at once, so under load the
+ * writer commits up to {@code batchSize} readings per transaction and a full
+ * ring holds the reader back. Readings are traced as in
+ * {@link RawDataProcessingService}, the raw id being the trace id; each filter
+ * batch is one {@link StageEvent} and each insert batch one
+ * {@link StorageEvent}. A failed insert batch is rolled back and its readings
+ * are discarded; a failure reading or connecting stops the whole pipeline.</p>
+ *
+ * <pre>{@code
+ * new PipelinedProcessingService(PersistenceBootstrap.jdbcUrl(), filters, 1024, 500).processAll();
+ * }</pre>
+ */
+public class PipelinedProcessingService {
+
+    private static final Logger log = LoggerFactory.getLogger(PipelinedProcessingService.class);
+
+    private static final int READER = 0;
+    private static final int FILTER = 1;
+    private static final int WRITER = 2;
+
+    /** One reading in flight; written by one stage at a time. */
+    private static final class ReadingSlot {
+        long id;
+        int typeCode;
+        int unitCode;
+        long timestamp;
+        boolean hasTimestamp;
+        double value;
+        boolean accepted;
+    }
+
+    private final String jdbcUrl;
+    private final List<RawDataFilter> filters;
+    private final int ringSize;
+    private final int batchSize;
+    private final PipelineTracer tracer;
+
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private long read;
+    private long saved;
+
+    /**
+     * @param jdbcUrl   SQLite JDBC URL of the database holding both tables
+     * @param filters   the filters to apply in sequence to each raw record
+     * @param ringSize  slots in the ring between stages, a power of two
+     * @param batchSize maximum readings inserted per transaction
+     */
+    public PipelinedProcessingService(String jdbcUrl, List<RawDataFilter> filters, int ringSize, int batchSize) {
+        this(jdbcUrl, filters, ringSize, batchSize, PipelineTracer.global());
+    }
+
+    /**
+     * @param jdbcUrl   SQLite JDBC URL of the database holding both tables
+     * @param filters   the filters to apply in sequence to each raw record
+     * @param ringSize  slots in the ring between stages, a power of two
+     * @param batchSize maximum readings inserted per transaction
+     * @param tracer    the tracer receiving per-reading stage transitions
+     */
+    public PipelinedProcessingService(String jdbcUrl, List<RawDataFilter> filters, int ringSize, int batchSize,
+                                      PipelineTracer tracer) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        this.jdbcUrl = jdbcUrl;
+        this.filters = List.copyOf(filters);
+        this.ringSize = ringSize;
+        this.batchSize = batchSize;
+        this.tracer = tracer;
+    }
+
+    /**
+     * Processes all raw records, returning once every stage has finished.
+     *
+     * @throws IllegalStateException if a stage failed; readings committed
+     *                               before the failure stay stored
+     */
+    public void processAll() {
+        SequenceRing<ReadingSlot> ring = new SequenceRing<>(ringSize, 3, ReadingSlot::new);
+        failure.set(null);
+        read = 0;
+        saved = 0;
+        Connection writerConnection;
+        try {
+            // WAL antes de arrancar: el lector no bloquea al escritor y viceversa
+            writerConnection = DriverManager.getConnection(jdbcUrl);
+            try (Statement statement = writerConnection.createStatement()) {
+                statement.execute("PRAGMA journal_mode=WAL");
+                statement.execute("PRAGMA busy_timeout=5000");
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Cannot open " + jdbcUrl + ": " + e.getMessage(), e);
+        }
+
+        Thread[] threads = {
+                stage("pipeline-reader", ring, () -> read(ring)),
+                stage("pipeline-filter", ring, () -> filter(ring)),
+                stage("pipeline-writer", ring, () -> write(ring, writerConnection))
+        };
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            ring.fail(e);
+            failure.compareAndSet(null, e);
+        } finally {
+            try {
+                writerConnection.close();
+            } catch (SQLException e) {
+                log.warn("No se pudo cerrar la conexion del escritor: {}", e.getMessage());
+            }
+        }
+
+        Throwable cause = failure.get();
+        if (cause != null) {
+            throw new IllegalStateException("Pipelined processing failed: " + cause.getMessage(), cause);
+        }
+        log.info("Procesados {} datos: {} guardados, {} descartados.", read, saved, read - saved);
+    }
+
+    private interface StageBody {
+        void run() throws Exception;
+    }
+
+    /** Starts a stage thread; the first failure stops the others. */
+    private Thread stage(String name, SequenceRing<ReadingSlot> ring, StageBody body) {
+        Thread thread = new Thread(() -> {
+            try {
+                body.run();
+            } catch (Throwable e) {
+                if (failure.compareAndSet(null, e)) {
+                    log.error("Fallo la etapa {}: {}", name, e.getMessage());
+                }
+                ring.fail(e);
+            }
+        }, name);
+        thread.start();
+        return thread;
+    }
+
+    private void read(SequenceRing<ReadingSlot> ring) throws SQLException, InterruptedException {
+        int publishEvery = Math.max(1, ring.capacity() / 8); // no retener lecturas una vuelta entera
+        long next = 0;
+        try (Connection connection = DriverManager.getConnection(jdbcUrl);
+             PreparedStatement statement = connection.prepareStatement(
+                     "SELECT id, measured_value, type_code, unit_code, timestamp FROM raw_readings ORDER BY id")) {
+            statement.setFetchSize(batchSize);
+            try (ResultSet rows = statement.executeQuery()) {
+                long claimed = -1;
+                while (rows.next()) {
+                    if (next > claimed) {
+                        claimed = ring.waitFor(READER, next);
+                    }
+                    ReadingSlot slot = ring.get(next);
+                    slot.id = rows.getLong(1);
+                    slot.value = rows.getDouble(2);
+                    slot.typeCode = rows.getInt(3);
+                    slot.unitCode = rows.getInt(4);
+                    slot.timestamp = rows.getLong(5);
+                    slot.hasTimestamp = !rows.wasNull();
+                    if (next == claimed || (next + 1) % publishEvery == 0) {
+                        ring.publish(READER, next);
+                    }
+                    next++;
+                }
+            }
+        }
+        ring.publish(READER, next - 1);
+        read = next;
+        ring.finish(next - 1);
+    }
+
+    private void filter(SequenceRing<ReadingSlot> ring) throws InterruptedException {
+        RawData data = new RawData(); // se reutiliza para todas las lecturas
+        long next = 0;
+        for (long available; (available = ring.waitFor(FILTER, next)) >= 0; next = available + 1) {
+            StageEvent event = new StageEvent();
+            event.begin();
+            for (long s = next; s <= available; s++) {
+                ReadingSlot slot = ring.get(s);
+                data.setType(ReadingCodes.typeName(slot.typeCode));
+                data.setUnit(ReadingCodes.unitName(slot.unitCode));
+                data.setValue(slot.value);
+                data.setTimestamp(slot.hasTimestamp ? ReadingCodes.fromEpochMillis(slot.timestamp) : null);
+                String type = data.getType();
+                slot.accepted = applyFilters(data, slot.id);
+                event.add(type, slot.accepted);
+                if (slot.accepted) {
+                    slot.typeCode = ReadingCodes.typeCode(data.getType());
+                    slot.value = data.getValue();
+                    slot.hasTimestamp = data.getTimestamp() != null;
+                    if (slot.hasTimestamp) {
+                        slot.timestamp = ReadingCodes.toEpochMillis(data.getTimestamp());
+                    }
+                }
+            }
+            event.finish("PipelinedFilterStage");
+            ring.publish(FILTER, available);
+        }
+    }
+
+    /**
+     * Applies the filter chain to the reused reading.
+     *
+     * @return {@code true} if every filter passed it
+     */
+    private boolean applyFilters(RawData data, long traceId) {
+        RawData result = data;
+        for (RawDataFilter filter : filters) {
+            String stage = filter.getClass().getSimpleName();
+            try {
+                result = filter.apply(result);
+            } catch (Exception e) {
+                tracer.rejected(traceId, stage, e.getMessage());
+                return false;
+            }
+            tracer.passed(traceId, stage);
+        }
+        if (result != data) { // un filtro puede devolver otra instancia
+            data.setType(result.getType());
+            data.setTimestamp(result.getTimestamp());
+            data.setValue(result.getValue());
+            data.setUnit(result.getUnit());
+        }
+        return true;
+    }
+
+    private void write(SequenceRing<ReadingSlot> ring, Connection connection)
+            throws SQLException, InterruptedException {
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO clean_readings (measured_value, type_code, timestamp) VALUES (?, ?, ?)")) {
+            long next = 0;
+            for (long available; (available = ring.waitFor(WRITER, next)) >= 0; next = available + 1) {
+                long from = next;
+                int pending = 0;
+                for (long s = next; s <= available; s++) {
+                    ReadingSlot slot = ring.get(s);
+                    if (slot.accepted) {
+                        insert.setDouble(1, slot.value);
+                        insert.setInt(2, slot.typeCode);
+                        if (slot.hasTimestamp) {
+                            insert.setLong(3, slot.timestamp);
+                        } else {
+                            insert.setNull(3, Types.BIGINT);
+                        }
+                        insert.addBatch();
+                        pending++;
+                    }
+                    if (pending == batchSize || s == available) {
+                        commit(ring, connection, insert, from, s, pending);
+                        from = s + 1;
+                        pending = 0;
+                    }
+                }
+                ring.publish(WRITER, available);
+            }
+        }
+    }
+
+    /** Inserts the accepted readings of slots {@code [from, to]} in one transaction. */
+    private void commit(SequenceRing<ReadingSlot> ring, Connection connection, PreparedStatement insert,
+                        long from, long to, int count) throws SQLException {
+        if (count == 0) {
+            return;
+        }
+        StorageEvent event = new StorageEvent();
+        event.begin();
+        String outcome = "stored";
+        String reason = null;
+        try {
+            insert.executeBatch();
+            connection.commit();
+            saved += count;
+        } catch (SQLException e) {
+            insert.clearBatch();
+            connection.rollback();
+            outcome = "failed";
+            reason = e.getMessage();
+            log.error("No se pudo guardar un lote de {} datos: {}", count, reason);
+        }
+        event.finish("PipelinedWriterStage", null, count, outcome);
+        for (long s = from; s <= to; s++) {
+            ReadingSlot slot = ring.get(s);
+            if (!slot.accepted) {
+                continue;
+            }
+            if (reason == null) {
+                tracer.passed(slot.id, "store");
+            } else {
+                tracer.rejected(slot.id, "store", reason);
+            }
+        }
+    }
+}
@@ -7,6 +7,8 @@ import model.RawData;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import repository.RawDataRepository;
+import trace.PipelineTracer;
+import trace.StageEvent;
 
 import java.util.List;
 
@@ -20,8 +22,10 @@ import java.util.List;
  * of transformations/validations via the filter chain, and if successful,
  * stores the result in the {@link CleanDataRepository}.</p>
  *
- * <p>Data that fails any filter in the chain is discarded, and an explanatory
- * message is printed to standard output.</p>
+ * <p>Data that fails any filter in the chain is discarded. Per-reading activity
+ * is recorded through the sampled {@link PipelineTracer} (rejects are always
+ * traced), and only a summary is logged at the end of the run. Each filter
+ * application is also a {@link StageEvent} for Java Flight Recorder.</p>
  *
  * <p>This design allows for flexible addition or removal of filters, enabling
  * the processing logic to be easily extended or reused.</p>
@@ -38,6 +42,7 @@ public class RawDataProcessingService {
     private final RawDataRepository rawRepo;
     private final CleanDataRepository cleanRepo;
     private final List<RawDataFilter> filters;
+    private final PipelineTracer tracer;
 
     private static final Logger log = LoggerFactory.getLogger(RawDataProcessingService.class);
 
@@ -53,10 +58,29 @@ public class RawDataProcessingService {
             RawDataRepository rawRepo,
             CleanDataRepository cleanRepo,
             List<RawDataFilter> filters
+    ) {
+        this(rawRepo, cleanRepo, filters, PipelineTracer.global());
+    }
+
+    /**
+     * Constructs a new {@code RawDataProcessingService} that records stage
+     * transitions on the given tracer.
+     *
+     * @param rawRepo   the repository from which raw data will be retrieved
+     * @param cleanRepo the repository into which valid processed data will be persisted
+     * @param filters   the list of filters to apply in sequence to each raw record
+     * @param tracer    the tracer receiving per-reading stage transitions
+     */
+    public RawDataProcessingService(
+            RawDataRepository rawRepo,
+            CleanDataRepository cleanRepo,
+            List<RawDataFilter> filters,
+            PipelineTracer tracer
     ) {
         this.rawRepo = rawRepo;
         this.cleanRepo = cleanRepo;
         this.filters = filters;
+        this.tracer = tracer;
     }
 
     /**
@@ -64,43 +88,64 @@ public class RawDataProcessingService {
      * <ul>
      *     <li>Applies each configured filter in order</li>
      *     <li>Persists valid results as {@link CleanData}</li>
-     *     <li>Prints success or discard messages for each record</li>
+     *     <li>Traces each record's stage transitions (sampled) and logs a final summary</li>
      * </ul>
      *
-     * <p>If any filter throws an exception, the current raw record is discarded.</p>
+     * <p>If any filter throws an exception, the current raw record is discarded.
+     * The raw record's database id is used as its trace id.</p>
      */
     public void processAll() {
         List<RawData> allRaw = rawRepo.findAll();
+        int saved = 0;
 
         for (RawData raw : allRaw) {
+            long traceId = raw.getId() != null ? raw.getId() : tracer.newTraceId();
+            RawData filtered;
             try {
-                log.info("Dato before: " + raw.toString());
-                RawData filtered = applyFilters(raw);
+                filtered = applyFilters(raw, traceId);
+            } catch (Exception e) {
+                continue; // the rejecting filter already traced the reason
+            }
 
-                CleanData clean = new CleanData(
-                        filtered.getType(),
-                        filtered.getTimestamp(),
-                        filtered.getValue()
-                );
+            CleanData clean = new CleanData(
+                    filtered.getType(),
+                    filtered.getTimestamp(),
+                    filtered.getValue()
+            );
+            try {
                 cleanRepo.save(clean);
-                log.info("Dato guardado: " + clean);
-            } catch (Exception e) {
-                log.info("Dato descartado (ID=" + raw.getId() + "): " + e.getMessage());
+                tracer.passed(traceId, "store");
+                saved++;
+            } catch (RuntimeException e) {
+                tracer.rejected(traceId, "store", e.getMessage());
             }
         }
+        log.info("Procesados {} datos: {} guardados, {} descartados.", allRaw.size(), saved, allRaw.size() - saved);
     }
 
     /**
      * Applies the entire filter chain to the given {@link RawData} input.
      *
-     * @param input the raw data record to process
+     * @param input   the raw data record to process
+     * @param traceId the trace id under which stage transitions are recorded
      * @return the filtered and potentially transformed raw data
      * @throws Exception if any filter in the chain rejects the data
      */
-    private RawData applyFilters(RawData input) throws Exception {
+    private RawData applyFilters(RawData input, long traceId) throws Exception {
         RawData result = input;
         for (RawDataFilter filter : filters) {
-            result = filter.apply(result);
+            String stage = filter.getClass().getSimpleName();
+            StageEvent event = new StageEvent();
+            event.begin();
+            try {
+                result = filter.apply(result);
+            } catch (Exception e) {
+                event.finish(stage, input.getType(), 1, "rejected");
+                tracer.rejected(traceId, stage, e.getMessage());
+                throw e;
+            }
+            event.finish(stage, input.getType(), 1, "passed");
+            tracer.passed(traceId, stage);
         }
         return result;
     }
@@ -0,0 +1,364 @@
+package sketch;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Mergeable quantile sketch with a relative-error guarantee (DDSketch).
+ *
+ * <p>Values are counted in logarithmic buckets: bucket {@code i} holds the
+ * magnitudes in {@code (γ^(i-1), γ^i]} with {@code γ = (1+α)/(1-α)}, so any
+ * quantile is answered within a relative error {@code α} of the true value
+ * (1% by default). Negative values and zero have their own buckets, which
+ * matters for temperatures. Two sketches with the same accuracy merge by adding
+ * their bucket counts, and the merge is exact: merging the sketches of two
+ * hours gives the sketch of both hours, whichever process built each.</p>
+ *
+ * <p>Memory is fixed: each sign keeps at most {@code maxBins} buckets (default
+ * 2048, covering a ratio of about 10<sup>17</sup> between the smallest and the
+ * largest magnitude at 1%); past that the smallest magnitudes are collapsed
+ * into one bucket. {@link #toBytes()} encodes only the non-empty buckets, as
+ * variable-length integers, so a typical hourly sketch of one variable takes a
+ * few hundred bytes whatever the number of readings.</p>
+ *
+ * <p>Not thread-safe.</p>
+ */
+public class DDSketch {
+
+    /** Default relative accuracy. */
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+
+    /** Default maximum number of buckets per sign. */
+    public static final int DEFAULT_MAX_BINS = 2048;
+
+    private static final byte VERSION = 1;
+
+    /** Magnitudes below this are counted as zero. */
+    private static final double MIN_INDEXABLE = 1e-9;
+
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double logGamma;
+    private final int maxBins;
+    private final Bins positive;
+    private final Bins negative;
+
+    private long zeroCount;
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private double sum;
+
+    /** Creates an empty sketch with the default accuracy and size. */
+    public DDSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY, DEFAULT_MAX_BINS);
+    }
+
+    /**
+     * @param relativeAccuracy relative error of the quantiles, in {@code (0, 1)}
+     * @param maxBins          maximum number of buckets per sign
+     */
+    public DDSketch(double relativeAccuracy, int maxBins) {
+        if (!(relativeAccuracy > 0 && relativeAccuracy < 1) || maxBins < 16) {
+            throw new IllegalArgumentException("relativeAccuracy must be in (0, 1) and maxBins at least 16");
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+        this.maxBins = maxBins;
+        this.positive = new Bins(maxBins);
+        this.negative = new Bins(maxBins);
+    }
+
+    /**
+     * Counts one value; NaN is ignored.
+     *
+     * @param value the value
+     */
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (value > MIN_INDEXABLE) {
+            positive.add(index(value), 1);
+        } else if (value < -MIN_INDEXABLE) {
+            negative.add(index(-value), 1);
+        } else {
+            zeroCount++;
+        }
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Adds the counts of another sketch to this one.
+     *
+     * @param other a sketch with the same relative accuracy
+     * @throws IllegalArgumentException if the accuracies differ
+     */
+    public void merge(DDSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Cannot merge sketches of accuracy "
+                    + relativeAccuracy + " and " + other.relativeAccuracy);
+        }
+        if (other.count == 0) {
+            return;
+        }
+        positive.addAll(other.positive);
+        negative.addAll(other.negative);
+        zeroCount += other.zeroCount;
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * @param quantile a value in {@code [0, 1]}, e.g. {@code 0.99}
+     * @return the estimated quantile, within the relative accuracy of the true
+     *         value; {@code NaN} if the sketch is empty
+     */
+    public double quantile(double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("quantile must be in [0, 1]");
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) (quantile * (count - 1));
+        double estimate;
+        if (rank < negative.total) {
+            estimate = -value(negative.indexAtRank(negative.total - 1 - rank));
+        } else if (rank < negative.total + zeroCount) {
+            estimate = 0;
+        } else {
+            estimate = value(positive.indexAtRank(rank - negative.total - zeroCount));
+        }
+        return Math.max(min, Math.min(max, estimate));
+    }
+
+    /** @return number of values counted */
+    public long count() {
+        return count;
+    }
+
+    /** @return smallest value counted, {@code NaN} if empty */
+    public double min() {
+        return count == 0 ? Double.NaN : min;
+    }
+
+    /** @return largest value counted, {@code NaN} if empty */
+    public double max() {
+        return count == 0 ? Double.NaN : max;
+    }
+
+    /** @return sum of the values counted */
+    public double sum() {
+        return sum;
+    }
+
+    /** @return the relative accuracy of the quantiles */
+    public double relativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    /**
+     * Encodes the sketch compactly; see {@link #fromBytes(byte[])}.
+     *
+     * @return the encoded sketch
+     */
+    public byte[] toBytes() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 + 4 * (positive.used() + negative.used()));
+        ByteBuffer fixed = ByteBuffer.allocate(1 + 4 * Double.BYTES);
+        fixed.put(VERSION).putDouble(relativeAccuracy).putDouble(min).putDouble(max).putDouble(sum);
+        out.write(fixed.array(), 0, fixed.position());
+        writeVarLong(out, maxBins);
+        writeVarLong(out, zeroCount);
+        positive.writeTo(out);
+        negative.writeTo(out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes a sketch encoded by {@link #toBytes()}.
+     *
+     * @param bytes the encoded sketch
+     * @return the sketch
+     * @throws IllegalArgumentException if the bytes are not an encoded sketch
+     */
+    public static DDSketch fromBytes(byte[] bytes) {
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        if (in.get() != VERSION) {
+            throw new IllegalArgumentException("Unknown sketch encoding");
+        }
+        double relativeAccuracy = in.getDouble();
+        double min = in.getDouble();
+        double max = in.getDouble();
+        double sum = in.getDouble();
+        DDSketch sketch = new DDSketch(relativeAccuracy, (int) readVarLong(in));
+        sketch.zeroCount = readVarLong(in);
+        sketch.positive.readFrom(in);
+        sketch.negative.readFrom(in);
+        sketch.count = sketch.zeroCount + sketch.positive.total + sketch.negative.total;
+        sketch.min = min;
+        sketch.max = max;
+        sketch.sum = sum;
+        return sketch;
+    }
+
+    private int index(double magnitude) {
+        return (int) Math.ceil(Math.log(magnitude) / logGamma);
+    }
+
+    /** @return the representative magnitude of a bucket, at relative distance α from both ends */
+    private double value(int index) {
+        return 2 * Math.pow(gamma, index) / (gamma + 1);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Dense bucket counts for one sign, covering at most {@code maxBins}
+     * consecutive indexes; lower indexes are collapsed into the lowest kept one.
+     */
+    private static final class Bins {
+
+        private final int maxBins;
+        private long[] counts = new long[0];
+        private int offset;
+        private long total;
+
+        Bins(int maxBins) {
+            this.maxBins = maxBins;
+        }
+
+        void add(int index, long n) {
+            if (counts.length == 0) {
+                counts = new long[16];
+                offset = index - 8;
+            }
+            if (index < offset) {
+                extendDown(index);
+            } else if (index >= offset + counts.length) {
+                extendUp(index);
+            }
+            counts[Math.max(index, offset) - offset] += n;
+            total += n;
+        }
+
+        void addAll(Bins other) {
+            for (int i = 0; i < other.counts.length; i++) {
+                if (other.counts[i] != 0) {
+                    add(other.offset + i, other.counts[i]);
+                }
+            }
+        }
+
+        /** @return the index of the bucket holding the value of the given rank, counting from the lowest */
+        int indexAtRank(long rank) {
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen > rank) {
+                    return offset + i;
+                }
+            }
+            return offset + counts.length - 1;
+        }
+
+        int used() {
+            int used = 0;
+            for (long c : counts) {
+                if (c != 0) {
+                    used++;
+                }
+            }
+            return used;
+        }
+
+        void writeTo(ByteArrayOutputStream out) {
+            writeVarLong(out, used());
+            long previous = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] != 0) {
+                    long index = offset + i;
+                    long delta = index - previous;
+                    writeVarLong(out, (delta << 1) ^ (delta >> 63)); // zigzag: the first delta may be negative
+                    writeVarLong(out, counts[i]);
+                    previous = index;
+                }
+            }
+        }
+
+        void readFrom(ByteBuffer in) {
+            long bins = readVarLong(in);
+            long index = 0;
+            for (long i = 0; i < bins; i++) {
+                long zigzag = readVarLong(in);
+                index += (zigzag >>> 1) ^ -(zigzag & 1);
+                add((int) index, readVarLong(in));
+            }
+        }
+
+        private void extendUp(int index) {
+            int needed = index - offset + 1;
+            if (needed > maxBins) {
+                collapseBelow(index - maxBins + 1);
+                needed = index - offset + 1;
+            }
+            if (needed > counts.length) {
+                counts = Arrays.copyOf(counts, Math.min(maxBins, Math.max(needed, counts.length * 2)));
+            }
+        }
+
+        private void extendDown(int index) {
+            int highest = offset + counts.length - 1;
+            while (highest > offset && counts[highest - offset] == 0) {
+                highest--;
+            }
+            int newOffset = Math.max(index, highest - maxBins + 1);
+            int length = Math.min(maxBins, Math.max(highest - newOffset + 1, counts.length * 2));
+            long[] grown = new long[length];
+            System.arraycopy(counts, 0, grown, offset - newOffset, Math.min(counts.length, length - (offset - newOffset)));
+            counts = grown;
+            offset = newOffset;
+        }
+
+        /** Moves the counts of every index below {@code newOffset} into that index. */
+        private void collapseBelow(int newOffset) {
+            long collapsed = 0;
+            int shift = newOffset - offset;
+            long[] kept = new long[counts.length];
+            for (int i = 0; i < counts.length; i++) {
+                if (i < shift) {
+                    collapsed += counts[i];
+                } else if (i - shift < kept.length) {
+                    kept[i - shift] = counts[i];
+                }
+            }
+            kept[0] += collapsed;
+            counts = kept;
+            offset = newOffset;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package sketch;
+
+import model.ReadingCodes;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps one {@link DDSketch} per variable type and time window for the readings
+ * seen since the last {@link #drain()}.
+ *
+ * <p>Windows are aligned on the epoch in UTC, so an hourly window starts on the
+ * hour whatever the process that built it; sketches of the same type and window
+ * built by different instances or nodes can therefore be merged as they are,
+ * which is what {@code repository.SketchRepository} does when they are
+ * persisted. Memory is one fixed-size sketch per type and open window.</p>
+ *
+ * <p>Not thread-safe.</p>
+ */
+public class WindowedSketches {
+
+    /** Sketch of the readings of one type within one window. */
+    public static final class Window {
+
+        private final int typeCode;
+        private final long windowStart;
+        private final DDSketch sketch;
+
+        public Window(int typeCode, long windowStart, DDSketch sketch) {
+            this.typeCode = typeCode;
+            this.windowStart = windowStart;
+            this.sketch = sketch;
+        }
+
+        /** @return type code from {@link ReadingCodes} */
+        public int typeCode() {
+            return typeCode;
+        }
+
+        /** @return start of the window, epoch milliseconds */
+        public long windowStart() {
+            return windowStart;
+        }
+
+        /** @return the window's sketch */
+        public DDSketch sketch() {
+            return sketch;
+        }
+    }
+
+    private final long windowMillis;
+    private final double relativeAccuracy;
+    private final Map<Long, DDSketch> sketches = new HashMap<>();
+
+    /**
+     * @param windowMillis     length of a window, e.g. {@code 3_600_000} for hourly sketches
+     * @param relativeAccuracy relative accuracy of the sketches
+     */
+    public WindowedSketches(long windowMillis, double relativeAccuracy) {
+        if (windowMillis <= 0) {
+            throw new IllegalArgumentException("windowMillis must be positive");
+        }
+        this.windowMillis = windowMillis;
+        this.relativeAccuracy = relativeAccuracy;
+    }
+
+    /**
+     * Counts a reading in the sketch of its type and window; readings of an
+     * unknown type are ignored.
+     *
+     * @param typeCode        type code from {@link ReadingCodes}
+     * @param timestampMillis reading timestamp, epoch milliseconds
+     * @param value           measured value
+     */
+    public void add(int typeCode, long timestampMillis, double value) {
+        if (typeCode == ReadingCodes.UNKNOWN) {
+            return;
+        }
+        long key = key(typeCode, windowStart(timestampMillis));
+        sketches.computeIfAbsent(key, k -> new DDSketch(relativeAccuracy, DDSketch.DEFAULT_MAX_BINS)).add(value);
+    }
+
+    /**
+     * @param timestampMillis an instant, epoch milliseconds
+     * @return start of the window holding it
+     */
+    public long windowStart(long timestampMillis) {
+        return Math.floorDiv(timestampMillis, windowMillis) * windowMillis;
+    }
+
+    /** @return length of a window, milliseconds */
+    public long windowMillis() {
+        return windowMillis;
+    }
+
+    /** @return {@code true} when no reading was counted since the last drain */
+    public boolean isEmpty() {
+        return sketches.isEmpty();
+    }
+
+    /**
+     * Returns the sketches built since the last call and starts over.
+     *
+     * @return one sketch per type and window
+     */
+    public List<Window> drain() {
+        List<Window> windows = new ArrayList<>(sketches.size());
+        for (Map.Entry<Long, DDSketch> entry : sketches.entrySet()) {
+            long key = entry.getKey();
+            windows.add(new Window((int) (key & 0xFF), (key >> 8) * windowMillis, entry.getValue()));
+        }
+        sketches.clear();
+        return windows;
+    }
+
+    /** Packs the type code into the low byte and the window number above it. */
+    private long key(int typeCode, long windowStart) {
+        return (windowStart / windowMillis) << 8 | (typeCode & 0xFF);
+    }
+}
@@ -0,0 +1,178 @@
+package storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static storage.ReadingJournal.*;
+
+/**
+ * Consumer side of a {@link ReadingJournal}: reads records in append order and
+ * remembers, in a {@code <consumer>.offset} file next to the segments, how far
+ * the consumer has acknowledged them.
+ *
+ * <p>{@link #poll(int)} advances an in-memory position; {@link #commit()} makes
+ * that position durable once the records have been stored by the sink, and
+ * {@link #rewind()} goes back to the last commit after a failed store. A reader
+ * opened for an existing consumer resumes at its committed offset, so records
+ * read but not committed before a crash are delivered again. A new consumer
+ * starts at the oldest segment still present.</p>
+ *
+ * <p>A corrupt record – a CRC mismatch, e.g. after a disk error – is passed
+ * over and counted in {@link #skipped()}, so that it never stops a consumer. If
+ * its length cannot be trusted either, the rest of its segment is passed over
+ * once the writer has moved on to the next one.</p>
+ *
+ * <p>The offset file is memory-mapped too, so a commit is a memory write that
+ * survives a process crash. Readers may run on any thread, concurrently with
+ * the journal's writer, but a reader itself is not thread-safe.</p>
+ */
+public class JournalReader implements Closeable {
+
+    private final Path directory;
+    private final MappedByteBuffer offsetFile;
+    private final CRC32 crc = new CRC32();
+
+    private long sequence;
+    private int position;
+    private long committed;
+    private long skipped;
+    private MappedByteBuffer segment;
+
+    /**
+     * Opens the reader of the given consumer, registering the consumer if it is new.
+     *
+     * @param directory journal directory
+     * @param consumer  consumer name, used as the name of its offset file
+     * @throws IOException if the offset file cannot be opened
+     */
+    public JournalReader(Path directory, String consumer) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        Path path = directory.resolve(consumer + OFFSET_EXTENSION);
+        boolean registered = Files.exists(path) && Files.size(path) >= Long.BYTES;
+        offsetFile = ReadingJournal.map(path, Long.BYTES);
+        if (registered) {
+            committed = offsetFile.getLong(0);
+        } else {
+            List<Long> sequences = sequences(directory);
+            committed = offset(sequences.isEmpty() ? 1 : sequences.get(0), HEADER_SIZE);
+            offsetFile.putLong(0, committed);
+        }
+        seek(committed);
+    }
+
+    /**
+     * Reads up to {@code max} records after the current position, passing over
+     * corrupt ones.
+     *
+     * @param max maximum number of records to return
+     * @return the records, empty when the consumer has caught up with the writer
+     * @throws IOException if a segment cannot be read
+     */
+    public List<byte[]> poll(int max) throws IOException {
+        List<byte[]> records = new ArrayList<>(Math.min(max, 1024));
+        while (records.size() < max) {
+            if (segment == null && !mapSegment()) {
+                break;
+            }
+            if (position + RECORD_HEADER > segment.capacity()) {
+                break;
+            }
+            int length = (int) INT.getAcquire(segment, position);
+            if (length == 0) {
+                break;
+            }
+            if (length == ROLL) {
+                sequence++;
+                position = HEADER_SIZE;
+                segment = null;
+                continue;
+            }
+            if (length < 0 || position + RECORD_HEADER + (long) length > segment.capacity()) {
+                // largo ilegible: no se sabe donde empieza el siguiente registro
+                if (!Files.exists(segmentPath(directory, sequence + 1))) {
+                    break; // se salta cuando el escritor pase al segmento siguiente
+                }
+                skipped++;
+                sequence++;
+                position = HEADER_SIZE;
+                segment = null;
+                continue;
+            }
+            byte[] payload = new byte[length];
+            segment.get(position + RECORD_HEADER, payload);
+            crc.reset();
+            crc.update(payload);
+            if (segment.getInt(position + 4) == (int) crc.getValue()) {
+                records.add(payload);
+            } else {
+                skipped++;
+            }
+            position += align(RECORD_HEADER + length);
+        }
+        return records;
+    }
+
+    /** Acknowledges every record returned so far by {@link #poll(int)}. */
+    public void commit() {
+        committed = offset(sequence, position);
+        offsetFile.putLong(0, committed);
+    }
+
+    /** Goes back to the last committed offset, so the uncommitted records are read again. */
+    public void rewind() {
+        seek(committed);
+    }
+
+    /** @return the offset after the last record read */
+    public long position() {
+        return offset(sequence, position);
+    }
+
+    /** @return number of corrupt records passed over since the reader was opened */
+    public long skipped() {
+        return skipped;
+    }
+
+    /** @return the last committed offset */
+    public long committed() {
+        return committed;
+    }
+
+    /** Flushes the committed offset to the storage device. */
+    @Override
+    public void close() {
+        offsetFile.force();
+    }
+
+    private void seek(long offset) {
+        sequence = sequenceOf(offset);
+        position = positionOf(offset);
+        segment = null;
+    }
+
+    /**
+     * Maps the current segment read-only.
+     *
+     * @return {@code false} if the writer has not created it yet
+     */
+    private boolean mapSegment() throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(directory, sequence), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE + RECORD_HEADER) {
+                return false; // recien creado, aun sin dimensionar
+            }
+            segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+}
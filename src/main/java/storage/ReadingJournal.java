@@ -0,0 +1,325 @@
+package storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead journal of readings, kept in memory-mapped segment
+ * files so that an append is a memory copy rather than a system call.
+ *
+ * <p>The journal sits between the last filter stage and the sinks: readings are
+ * appended as soon as they are validated, and each sink consumes them at its
+ * own pace through a {@link JournalReader} that persists the offset it has
+ * acknowledged. A sink that stalls only falls behind in the journal, and a
+ * restarted sink replays whatever it had not acknowledged.</p>
+ *
+ * <p>Segments are files {@code journal-NNNNNN.jnl} of a fixed size, starting
+ * with a {@value #HEADER_SIZE}-byte header (magic {@code "JNL1"}, version).
+ * Records are 8-byte aligned and made of:</p>
+ * <pre>
+ *  0  int   payload length  (0: not written yet, -1: continue in the next segment)
+ *  4  int   CRC-32 of the payload
+ *  8  byte[] payload
+ * </pre>
+ *
+ * <p>The length is written last, with release semantics, so a reader that sees
+ * a non-zero length also sees the payload. When a record does not fit, the next
+ * segment is created before the roll marker is written. On opening, the last
+ * segment is scanned; a torn record at its tail – a CRC mismatch after a power
+ * loss – is replaced by a roll marker and appending resumes in a new segment.
+ * The segment before the last one is scanned too and closed with a roll marker
+ * if it lacks one, as after a crash between creating a segment and marking the
+ * roll, so that readers never stop at its end.</p>
+ *
+ * <p>An offset is a {@code long} holding the segment sequence in its upper and
+ * the position inside the segment in its lower 32 bits; offsets are ordered.
+ * Consumers' committed offsets live next to the segments, in
+ * {@code <consumer>.offset} files, and {@link #deleteConsumed()} removes the
+ * segments every consumer has moved past.</p>
+ *
+ * <p>Appends are not thread-safe; the journal is meant to be driven by a single
+ * writer. {@link #force()} and {@link #deleteConsumed()} may run on another
+ * thread.</p>
+ */
+public class ReadingJournal implements Closeable {
+
+    /** File magic, ASCII {@code "JNL1"}. */
+    public static final int MAGIC = 0x4A4E4C31;
+
+    /** Current format version. */
+    public static final short VERSION = 1;
+
+    /** File name extension of segment files. */
+    public static final String EXTENSION = ".jnl";
+
+    /** File name extension of consumer offset files. */
+    public static final String OFFSET_EXTENSION = ".offset";
+
+    static final String PREFIX = "journal";
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_HEADER = 8;
+    static final int ROLL = -1;
+
+    /** Int view used to publish and observe record lengths with release/acquire ordering. */
+    static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final CRC32 crc = new CRC32();
+    private final List<MappedByteBuffer> unsynced = new ArrayList<>();
+
+    private long sequence;
+    private volatile MappedByteBuffer segment;
+    private int position;
+
+    /**
+     * Opens the journal in the given directory, creating it if needed, and
+     * positions the writer after the last complete record.
+     *
+     * @param directory    directory holding the segments and offset files
+     * @param segmentBytes size of each segment file
+     * @throws IOException if the directory or a segment cannot be opened
+     */
+    public ReadingJournal(Path directory, int segmentBytes) throws IOException {
+        if (segmentBytes < 4096) {
+            throw new IllegalArgumentException("segmentBytes must be at least 4096");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.segmentBytes = segmentBytes;
+        long last = sequences(directory).stream().mapToLong(Long::longValue).max().orElse(0L);
+        if (last == 0) {
+            openSegment(1);
+        } else {
+            recover(last);
+        }
+    }
+
+    /**
+     * Appends one record.
+     *
+     * @param payload the record, typically an encoded reading
+     * @return the offset just after the record
+     * @throws IOException              if a new segment is needed and cannot be created
+     * @throws IllegalArgumentException if the payload is empty, since a zero length
+     *                                  marks the end of the written records, or does
+     *                                  not fit in a segment
+     */
+    public long append(byte[] payload) throws IOException {
+        if (payload.length == 0) {
+            throw new IllegalArgumentException("Empty records cannot be journaled");
+        }
+        int size = align(RECORD_HEADER + payload.length);
+        if (HEADER_SIZE + size + RECORD_HEADER > segmentBytes) {
+            throw new IllegalArgumentException("Record of " + payload.length + " bytes does not fit in a segment");
+        }
+        if (position + size + RECORD_HEADER > segment.capacity()) {
+            roll();
+        }
+        MappedByteBuffer current = segment;
+        crc.reset();
+        crc.update(payload);
+        current.putInt(position + 4, (int) crc.getValue());
+        current.put(position + RECORD_HEADER, payload);
+        INT.setRelease(current, position, payload.length);
+        position += size;
+        return offset(sequence, position);
+    }
+
+    /** @return the offset just after the last appended record */
+    public long endOffset() {
+        return offset(sequence, position);
+    }
+
+    /**
+     * Writes the appended records to the storage device, so that they also
+     * survive an operating system crash or power loss. A process crash loses
+     * nothing even without it, since the segments are mapped files.
+     */
+    public void force() {
+        List<MappedByteBuffer> rolled;
+        synchronized (unsynced) {
+            rolled = new ArrayList<>(unsynced);
+            unsynced.clear();
+        }
+        for (MappedByteBuffer buffer : rolled) {
+            buffer.force();
+        }
+        segment.force();
+    }
+
+    /**
+     * Deletes the segments that every consumer with an offset file has moved
+     * past. Nothing is deleted while no consumer is registered.
+     *
+     * @return number of segments deleted
+     * @throws IOException if the directory cannot be listed
+     */
+    public int deleteConsumed() throws IOException {
+        long keepFrom = Long.MAX_VALUE;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + OFFSET_EXTENSION)) {
+            for (Path file : files) {
+                byte[] bytes = Files.readAllBytes(file);
+                if (bytes.length >= Long.BYTES) {
+                    keepFrom = Math.min(keepFrom, sequenceOf(ByteBuffer.wrap(bytes).getLong()));
+                }
+            }
+        }
+        if (keepFrom == Long.MAX_VALUE) {
+            return 0;
+        }
+        int deleted = 0;
+        for (long s : sequences(directory)) {
+            if (s < keepFrom && Files.deleteIfExists(segmentPath(directory, s))) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    public void close() {
+        force();
+    }
+
+    /** Starts the next segment, then sends readers of the current one there. */
+    private void roll() throws IOException {
+        MappedByteBuffer previous = segment;
+        int rollAt = position;
+        openSegment(sequence + 1);
+        INT.setRelease(previous, rollAt, ROLL);
+        synchronized (unsynced) {
+            unsynced.add(previous);
+        }
+    }
+
+    private void openSegment(long newSequence) throws IOException {
+        MappedByteBuffer buffer = map(segmentPath(directory, newSequence), segmentBytes);
+        buffer.putInt(0, MAGIC);
+        buffer.putShort(4, VERSION);
+        sequence = newSequence;
+        position = HEADER_SIZE;
+        segment = buffer;
+    }
+
+    /**
+     * Finds the end of the last segment. A segment whose header was never
+     * written is initialised; a torn tail is closed with a roll marker, and so
+     * is the previous segment when its roll marker is missing.
+     */
+    private void recover(long last) throws IOException {
+        Path previousPath = segmentPath(directory, last - 1);
+        if (last > 1 && Files.exists(previousPath)) {
+            // se pudo caer entre crear el ultimo segmento y marcar el salto en el anterior
+            MappedByteBuffer previous = mapSegment(previousPath);
+            int end = scan(previous);
+            if (end + RECORD_HEADER <= previous.capacity() && previous.getInt(end) != ROLL) {
+                INT.setRelease(previous, end, ROLL);
+                previous.force();
+            }
+        }
+
+        MappedByteBuffer buffer = mapSegment(segmentPath(directory, last));
+        sequence = last;
+        segment = buffer;
+        position = scan(buffer);
+        int length = position + RECORD_HEADER <= buffer.capacity() ? buffer.getInt(position) : 0;
+        if (length == ROLL) {
+            openSegment(last + 1); // se cayo entre crear el segmento siguiente y marcar el salto
+        } else if (length != 0) {
+            roll();
+        }
+    }
+
+    /** Maps an existing segment, writing its header if it was never written. */
+    private MappedByteBuffer mapSegment(Path path) throws IOException {
+        MappedByteBuffer buffer = map(path, (int) Math.max(Files.size(path), segmentBytes));
+        if (buffer.getInt(0) != MAGIC) {
+            buffer.putInt(0, MAGIC);
+            buffer.putShort(4, VERSION);
+        }
+        return buffer;
+    }
+
+    /**
+     * @return the position after the last complete record of the segment, where
+     *         either nothing, a roll marker or a torn record follows
+     */
+    private int scan(MappedByteBuffer buffer) {
+        int pos = HEADER_SIZE;
+        while (pos + RECORD_HEADER <= buffer.capacity()) {
+            int length = buffer.getInt(pos);
+            if (length <= 0 || pos + RECORD_HEADER + (long) length > buffer.capacity()
+                    || !crcMatches(buffer, pos, length)) {
+                break;
+            }
+            pos += align(RECORD_HEADER + length);
+        }
+        return pos;
+    }
+
+    private boolean crcMatches(MappedByteBuffer buffer, int pos, int length) {
+        byte[] payload = new byte[length];
+        buffer.get(pos + RECORD_HEADER, payload);
+        crc.reset();
+        crc.update(payload);
+        return buffer.getInt(pos + 4) == (int) crc.getValue();
+    }
+
+    static MappedByteBuffer map(Path path, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    static int align(int size) {
+        return (size + 7) & ~7;
+    }
+
+    static long offset(long sequence, int position) {
+        return sequence << 32 | position;
+    }
+
+    static long sequenceOf(long offset) {
+        return offset >>> 32;
+    }
+
+    static int positionOf(long offset) {
+        return (int) offset;
+    }
+
+    static Path segmentPath(Path directory, long sequence) {
+        return directory.resolve(String.format("%s-%06d%s", PREFIX, sequence, EXTENSION));
+    }
+
+    /** @return the sequence numbers of the segments in the directory, in ascending order */
+    static List<Long> sequences(Path directory) throws IOException {
+        List<Long> sequences = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "-*" + EXTENSION)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    sequences.add(Long.parseLong(name.substring(PREFIX.length() + 1,
+                            name.length() - EXTENSION.length())));
+                } catch (NumberFormatException ignored) {
+                    // not one of ours
+                }
+            }
+        }
+        sequences.sort(null);
+        return sequences;
+    }
+}
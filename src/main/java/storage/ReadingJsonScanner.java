@@ -0,0 +1,444 @@
+package storage;
+
+import model.ReadingCodes;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+
+/**
+ * Minimal pull parser for reading files made of flat JSON objects, such as
+ * {@code data.txt}: objects may be concatenated, one per line (NDJSON) or
+ * wrapped in an array – anything between objects is skipped.
+ *
+ * <p>Recognised fields are {@code variableType} (or {@code type}),
+ * {@code timestamp} (epoch milliseconds or an ISO-8601 local date-time, read as
+ * UTC), {@code value} (or {@code measuredValue}) and the optional {@code unit};
+ * other fields are ignored. A missing (or {@code null}) unit stands for the
+ * canonical unit of the type, while a unit that is not in the dictionary makes
+ * the object invalid rather than being read as that default. Objects must be flat: nested objects or arrays, and
+ * braces inside strings, are not supported.</p>
+ *
+ * <p>The scanner works directly on the bytes of a (typically memory-mapped)
+ * buffer and allocates nothing for the common shapes: names are matched against
+ * the {@link ReadingCodes} dictionary, and plain decimals and
+ * {@code yyyy-MM-ddTHH:mm[:ss[.SSS]]} timestamps are decoded by hand. It is a
+ * flyweight: after {@link #next()} the accessors describe the current object.</p>
+ *
+ * <pre>{@code
+ * ReadingJsonScanner scanner = new ReadingJsonScanner(buffer);
+ * while (scanner.next()) {
+ *     if (scanner.valid()) {
+ *         store(scanner.timestamp(), scanner.value(), scanner.typeCode(), scanner.unitCode());
+ *     }
+ * }
+ * }</pre>
+ */
+public final class ReadingJsonScanner {
+
+    private static final byte[] VARIABLE_TYPE = ascii("variableType");
+    private static final byte[] TYPE = ascii("type");
+    private static final byte[] TIMESTAMP = ascii("timestamp");
+    private static final byte[] VALUE = ascii("value");
+    private static final byte[] MEASURED_VALUE = ascii("measuredValue");
+    private static final byte[] UNIT = ascii("unit");
+
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+    private final ByteBuffer buffer;
+    private final int limit;
+    private int pos;
+
+    private boolean valid;
+    private boolean hasTimestamp;
+    private boolean hasValue;
+    private boolean hasUnit;
+    private long timestamp;
+    private double value;
+    private int typeCode;
+    private int unitCode;
+
+    /** Start and end (exclusive) of the last string token read. */
+    private int stringStart;
+    private int stringEnd;
+
+    /**
+     * @param buffer bytes to scan, from its position to its limit; the buffer's
+     *               position is not modified
+     */
+    public ReadingJsonScanner(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.pos = buffer.position();
+        this.limit = buffer.limit();
+    }
+
+    /**
+     * Advances to the next object.
+     *
+     * @return {@code false} when no object is left; a truncated object at the
+     *         end of the buffer is reported as a last, invalid object
+     */
+    public boolean next() {
+        while (pos < limit && buffer.get(pos) != '{') {
+            pos++;
+        }
+        if (pos >= limit) {
+            return false;
+        }
+        pos++;
+        valid = false;
+        hasTimestamp = false;
+        hasValue = false;
+        hasUnit = false;
+        typeCode = ReadingCodes.UNKNOWN;
+        unitCode = ReadingCodes.UNKNOWN;
+        try {
+            parseMembers();
+            valid = hasTimestamp && hasValue && !unknownUnit();
+            if (valid && !hasUnit) {
+                unitCode = defaultUnit(typeCode);
+            }
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeException e) {
+            skipObject();
+        }
+        return true;
+    }
+
+    /**
+     * @return {@code true} if the current object has a usable timestamp and value,
+     *         and no unit or a unit in the {@link ReadingCodes} dictionary
+     */
+    public boolean valid() {
+        return valid;
+    }
+
+    /**
+     * @return {@code true} if the current object has a unit that is not in the
+     *         {@link ReadingCodes} dictionary; such an object is not valid, since
+     *         its value cannot be read in the canonical unit of its type
+     */
+    public boolean unknownUnit() {
+        return hasUnit && unitCode == ReadingCodes.UNKNOWN;
+    }
+
+    /** @return timestamp of the current object, epoch milliseconds */
+    public long timestamp() {
+        return timestamp;
+    }
+
+    /** @return value of the current object */
+    public double value() {
+        return value;
+    }
+
+    /**
+     * @return type code of the current object, {@link ReadingCodes#UNKNOWN} if absent;
+     *         types seen for the first time get a new code from {@link ReadingCodes}
+     */
+    public int typeCode() {
+        return typeCode;
+    }
+
+    /**
+     * @return unit code of the current object; when the object has no
+     *         {@code unit} member, the canonical unit of its type (Celsius, µg/m³)
+     */
+    public int unitCode() {
+        return unitCode;
+    }
+
+    /** @return offset just past the last object read */
+    public int position() {
+        return pos;
+    }
+
+    private void parseMembers() {
+        skipWhitespace();
+        if (peek() == '}') {
+            pos++;
+            return;
+        }
+        while (true) {
+            skipWhitespace();
+            readString();
+            int keyStart = stringStart;
+            int keyEnd = stringEnd;
+            skipWhitespace();
+            expect(':');
+            skipWhitespace();
+            readValue(keyStart, keyEnd);
+            skipWhitespace();
+            byte b = buffer.get(pos++);
+            if (b == '}') {
+                return;
+            }
+            if (b != ',') {
+                throw new IllegalArgumentException("Expected ',' or '}'");
+            }
+        }
+    }
+
+    private void readValue(int keyStart, int keyEnd) {
+        byte b = peek();
+        if (matches(keyStart, keyEnd, VARIABLE_TYPE) || matches(keyStart, keyEnd, TYPE)) {
+            if (b == '"') {
+                readString();
+                typeCode = lookup(true);
+            } else {
+                skipScalar();
+            }
+        } else if (matches(keyStart, keyEnd, UNIT)) {
+            if (b == '"') {
+                readString();
+                unitCode = lookup(false);
+                hasUnit = true;
+            } else {
+                int start = pos;
+                skipScalar();
+                hasUnit = !matchesAscii(start, pos, "null"); // un numero no es una unidad conocida
+            }
+        } else if (matches(keyStart, keyEnd, TIMESTAMP)) {
+            if (b == '"') {
+                readString();
+                timestamp = parseTimestamp(stringStart, stringEnd);
+            } else {
+                int start = pos;
+                skipScalar();
+                timestamp = (long) parseNumber(start, pos);
+            }
+            hasTimestamp = true;
+        } else if (matches(keyStart, keyEnd, VALUE) || matches(keyStart, keyEnd, MEASURED_VALUE)) {
+            int start = pos;
+            skipScalar();
+            value = parseNumber(start, pos);
+            hasValue = true;
+        } else if (b == '"') {
+            readString();
+        } else {
+            skipScalar();
+        }
+    }
+
+    private void readString() {
+        expect('"');
+        stringStart = pos;
+        while (true) {
+            byte b = buffer.get(pos);
+            if (b == '\\') {
+                pos += 2;
+            } else if (b == '"') {
+                stringEnd = pos++;
+                return;
+            } else if (b == '{' || b == '}') {
+                throw new IllegalArgumentException("Unterminated string");
+            } else {
+                pos++;
+            }
+        }
+    }
+
+    /** Skips a number or literal, stopping before the next delimiter. */
+    private void skipScalar() {
+        int start = pos;
+        while (pos < limit) {
+            byte b = buffer.get(pos);
+            if (b == ',' || b == '}' || b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+                break;
+            }
+            if (b == '{' || b == '[' || b == '"') {
+                throw new IllegalArgumentException("Unsupported value");
+            }
+            pos++;
+        }
+        if (pos == start) {
+            throw new IllegalArgumentException("Missing value");
+        }
+    }
+
+    /** Skips the rest of a malformed object, stopping early if another one starts. */
+    private void skipObject() {
+        while (pos < limit) {
+            byte b = buffer.get(pos);
+            if (b == '{') {
+                break;
+            }
+            pos++;
+            if (b == '}') {
+                break;
+            }
+        }
+        valid = false;
+    }
+
+    private void skipWhitespace() {
+        while (pos < limit) {
+            byte b = buffer.get(pos);
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private byte peek() {
+        return buffer.get(pos);
+    }
+
+    private void expect(char c) {
+        if (buffer.get(pos++) != c) {
+            throw new IllegalArgumentException("Expected '" + c + "'");
+        }
+    }
+
+    private boolean matches(int start, int end, byte[] name) {
+        if (end - start != name.length) {
+            return false;
+        }
+        for (int i = 0; i < name.length; i++) {
+            if (buffer.get(start + i) != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Resolves the last string token to a type or unit code. A type without a
+     * code is given one; an unknown unit resolves to {@link ReadingCodes#UNKNOWN}.
+     */
+    private int lookup(boolean type) {
+        int max = type ? ReadingCodes.maxTypeCode() : ReadingCodes.maxUnitCode();
+        for (int code = 1; code <= max; code++) {
+            String name = type ? ReadingCodes.typeName(code) : ReadingCodes.unitName(code);
+            if (name != null && matchesAscii(stringStart, stringEnd, name)) {
+                return code;
+            }
+        }
+        return type ? ReadingCodes.assignTypeCode(text(stringStart, stringEnd)) : ReadingCodes.UNKNOWN;
+    }
+
+    private boolean matchesAscii(int start, int end, String name) {
+        if (end - start != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (buffer.get(start + i) != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes a JSON number. Plain decimals with at most 15 significant digits
+     * are computed exactly as {@code mantissa / 10^scale}; anything else goes
+     * through {@link Double#parseDouble(String)}.
+     */
+    private double parseNumber(int start, int end) {
+        int i = start;
+        boolean negative = buffer.get(i) == '-';
+        if (negative) {
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+        for (; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                if (mantissa != 0) {
+                    digits++;
+                }
+                if (scale >= 0) {
+                    scale++;
+                }
+            } else if (b == '.' && scale < 0) {
+                scale = 0;
+            } else {
+                return Double.parseDouble(text(start, end)); // exponent or malformed
+            }
+        }
+        if (digits > 15 || scale >= POW10.length || i == start || (negative && i == start + 1)) {
+            return Double.parseDouble(text(start, end));
+        }
+        double result = scale > 0 ? mantissa / POW10[scale] : mantissa;
+        return negative ? -result : result;
+    }
+
+    /**
+     * Decodes a {@code yyyy-MM-ddTHH:mm[:ss[.SSS...]]} timestamp as UTC; other
+     * shapes go through {@link ReadingCodes#timestampMillis(Object)}.
+     */
+    private long parseTimestamp(int start, int end) {
+        int length = end - start;
+        if (length >= 16 && buffer.get(start + 4) == '-' && buffer.get(start + 7) == '-'
+                && buffer.get(start + 10) == 'T' && buffer.get(start + 13) == ':') {
+            int year = digits(start, 4);
+            int month = digits(start + 5, 2);
+            int day = digits(start + 8, 2);
+            int hour = digits(start + 11, 2);
+            int minute = digits(start + 14, 2);
+            int second = 0;
+            int millis = 0;
+            boolean ok = year >= 0 && month >= 1 && month <= 12 && day >= 1 && day <= 31
+                    && hour >= 0 && hour < 24 && minute >= 0 && minute < 60;
+            if (ok && length > 16) {
+                ok = length >= 19 && buffer.get(start + 16) == ':';
+                second = ok ? digits(start + 17, 2) : -1;
+                ok = ok && second >= 0 && second < 60;
+                if (ok && length > 19) {
+                    ok = buffer.get(start + 19) == '.' && length > 20;
+                    for (int i = 20, scale = 100; ok && i < length; i++, scale /= 10) {
+                        int d = buffer.get(start + i) - '0';
+                        ok = d >= 0 && d <= 9;
+                        millis += d * scale;
+                    }
+                }
+            }
+            if (ok && day <= LocalDate.of(year, month, 1).lengthOfMonth()) {
+                long epochDay = LocalDate.of(year, month, day).toEpochDay();
+                return ((epochDay * 24 + hour) * 60 + minute) * 60_000L + second * 1000L + millis;
+            }
+        }
+        return ReadingCodes.timestampMillis(text(start, end));
+    }
+
+    /** @return the decimal value of {@code count} digits at {@code at}, or -1 if one is not a digit */
+    private int digits(int at, int count) {
+        int result = 0;
+        for (int i = 0; i < count; i++) {
+            int d = buffer.get(at + i) - '0';
+            if (d < 0 || d > 9) {
+                return -1;
+            }
+            result = result * 10 + d;
+        }
+        return result;
+    }
+
+    private String text(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int defaultUnit(int typeCode) {
+        if (typeCode == ReadingCodes.TYPE_TEMPERATURE) {
+            return ReadingCodes.UNIT_CELSIUS;
+        }
+        if (typeCode == ReadingCodes.TYPE_MP) {
+            return ReadingCodes.UNIT_UG_M3;
+        }
+        return ReadingCodes.UNKNOWN;
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
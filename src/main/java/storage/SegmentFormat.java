@@ -0,0 +1,84 @@
+package storage;
+
+/**
+ * Layout of the binary segment files written by {@link SegmentWriter} and read
+ * by {@link SegmentReader}.
+ *
+ * <p>A segment is a single file made of three regions:</p>
+ * <ol>
+ *   <li>a fixed {@value #HEADER_SIZE}-byte header,</li>
+ *   <li>{@code count} fixed-width records of {@value #RECORD_SIZE} bytes each,</li>
+ *   <li>once sealed, a sparse index holding the timestamp of every
+ *       {@code indexInterval}-th record.</li>
+ * </ol>
+ *
+ * <p>Header fields (big-endian, byte offsets):</p>
+ * <pre>
+ *  0  int   magic          "SEG1"
+ *  4  short version
+ *  6  short record size
+ *  8  int   flags          {@link #FLAG_SEALED}, {@link #FLAG_ORDERED}
+ * 12  int   record count
+ * 16  long  min timestamp  (epoch millis)
+ * 24  long  max timestamp  (epoch millis)
+ * 32  long  index offset   (0 while unsealed)
+ * 40  int   index entries
+ * 44  int   index interval
+ * </pre>
+ *
+ * <p>Record fields: {@code long} timestamp (epoch millis), {@code double} value,
+ * {@code short} type code, {@code short} unit code, four bytes of padding. Type
+ * and unit codes are the ones defined in {@link model.ReadingCodes}.</p>
+ */
+public final class SegmentFormat {
+
+    /** File magic, ASCII {@code "SEG1"}. */
+    public static final int MAGIC = 0x53454731;
+
+    /** Current format version. */
+    public static final short VERSION = 1;
+
+    /** Size of the header in bytes. */
+    public static final int HEADER_SIZE = 64;
+
+    /** Size of one record in bytes. */
+    public static final int RECORD_SIZE = 24;
+
+    /** Header flag: the segment is complete and its index has been written. */
+    public static final int FLAG_SEALED = 1;
+
+    /** Header flag: record timestamps are non-decreasing, so the segment can be binary searched. */
+    public static final int FLAG_ORDERED = 2;
+
+    /** File name extension of segment files. */
+    public static final String EXTENSION = ".seg";
+
+    static final int OFF_MAGIC = 0;
+    static final int OFF_VERSION = 4;
+    static final int OFF_RECORD_SIZE = 6;
+    static final int OFF_FLAGS = 8;
+    static final int OFF_COUNT = 12;
+    static final int OFF_MIN_TS = 16;
+    static final int OFF_MAX_TS = 24;
+    static final int OFF_INDEX_OFFSET = 32;
+    static final int OFF_INDEX_ENTRIES = 40;
+    static final int OFF_INDEX_INTERVAL = 44;
+
+    static final int REC_TIMESTAMP = 0;
+    static final int REC_VALUE = 8;
+    static final int REC_TYPE = 16;
+    static final int REC_UNIT = 18;
+
+    private SegmentFormat() {}
+
+    /**
+     * Builds the file name of the segment with the given sequence number.
+     *
+     * @param prefix   common prefix of the segment files
+     * @param sequence segment sequence number
+     * @return the file name, e.g. {@code readings-000003.seg}
+     */
+    static String fileName(String prefix, long sequence) {
+        return String.format("%s-%06d%s", prefix, sequence, EXTENSION);
+    }
+}
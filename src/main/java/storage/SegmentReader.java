@@ -0,0 +1,237 @@
+package storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static storage.SegmentFormat.*;
+
+/**
+ * Read-only view over a directory of segment files written by {@link SegmentWriter}.
+ *
+ * <p>Each segment is memory-mapped once when the reader is opened. Time-range
+ * scans skip segments whose min/max timestamps do not overlap the range, and
+ * binary search ordered segments – first over the sparse index, then over the
+ * records of the selected block – to find the first matching record.</p>
+ *
+ * <p>Scans return a {@link Cursor}, a flyweight positioned over the mapped
+ * records: its accessors read straight from the mapping, so iterating over a
+ * range copies nothing and allocates nothing per record.</p>
+ *
+ * <pre>{@code
+ * try (SegmentReader reader = SegmentReader.open(dir, "readings")) {
+ *     SegmentReader.Cursor cursor = reader.scan(from, to);
+ *     while (cursor.next()) {
+ *         sum += cursor.value();
+ *     }
+ * }
+ * }</pre>
+ *
+ * <p>Segments still being written are read up to the record count found in
+ * their header at open time, i.e. up to the writer's last flush.</p>
+ */
+public class SegmentReader implements Closeable {
+
+    /** A mapped segment together with its header fields. */
+    private static final class Segment {
+        final MappedByteBuffer data;
+        final int count;
+        final long minTs;
+        final long maxTs;
+        final boolean ordered;
+        final long indexOffset;
+        final int indexEntries;
+        final int indexInterval;
+
+        Segment(MappedByteBuffer data) {
+            this.data = data;
+            this.count = data.getInt(OFF_COUNT);
+            this.minTs = data.getLong(OFF_MIN_TS);
+            this.maxTs = data.getLong(OFF_MAX_TS);
+            int flags = data.getInt(OFF_FLAGS);
+            this.ordered = (flags & FLAG_ORDERED) != 0;
+            boolean sealed = (flags & FLAG_SEALED) != 0;
+            this.indexOffset = sealed ? data.getLong(OFF_INDEX_OFFSET) : 0L;
+            this.indexEntries = sealed ? data.getInt(OFF_INDEX_ENTRIES) : 0;
+            this.indexInterval = data.getInt(OFF_INDEX_INTERVAL);
+        }
+
+        long timestampAt(int record) {
+            return data.getLong(HEADER_SIZE + record * RECORD_SIZE + REC_TIMESTAMP);
+        }
+
+        /** @return index of the first record with a timestamp {@code >= from} */
+        int lowerBound(long from) {
+            int lo = 0;
+            int hi = count;
+            if (indexEntries > 0) {
+                // narrow to one block using the sparse index
+                int a = 0;
+                int b = indexEntries;
+                while (a < b) {
+                    int mid = (a + b) >>> 1;
+                    if (data.getLong((int) indexOffset + mid * Long.BYTES) < from) a = mid + 1; else b = mid;
+                }
+                lo = Math.max(0, (a - 1) * indexInterval);
+                hi = a < indexEntries ? a * indexInterval : count;
+            }
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (timestampAt(mid) < from) lo = mid + 1; else hi = mid;
+            }
+            return lo;
+        }
+    }
+
+    /**
+     * Forward-only iterator over the records of a scan. The accessors describe
+     * the record the cursor is positioned on after a successful {@link #next()}.
+     */
+    public final class Cursor {
+        private final long from;
+        private final long to;
+        private int segment = -1;
+        private Segment current;
+        private int record;
+        private int offset;
+
+        private Cursor(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Advances to the next record within the scanned range.
+         *
+         * @return {@code false} once the range is exhausted
+         */
+        public boolean next() {
+            while (true) {
+                if (current != null) {
+                    while (++record < current.count) {
+                        offset = HEADER_SIZE + record * RECORD_SIZE;
+                        long ts = current.data.getLong(offset + REC_TIMESTAMP);
+                        if (ts > to && current.ordered) {
+                            break;
+                        }
+                        if (ts >= from && ts <= to) {
+                            return true;
+                        }
+                    }
+                }
+                if (!advanceSegment()) {
+                    return false;
+                }
+            }
+        }
+
+        /** @return timestamp of the current record, in epoch milliseconds */
+        public long timestamp() {
+            return current.data.getLong(offset + REC_TIMESTAMP);
+        }
+
+        /** @return value of the current record */
+        public double value() {
+            return current.data.getDouble(offset + REC_VALUE);
+        }
+
+        /** @return type code of the current record */
+        public int typeCode() {
+            return current.data.getShort(offset + REC_TYPE);
+        }
+
+        /** @return unit code of the current record */
+        public int unitCode() {
+            return current.data.getShort(offset + REC_UNIT);
+        }
+
+        private boolean advanceSegment() {
+            while (++segment < segments.size()) {
+                Segment candidate = segments.get(segment);
+                if (candidate.count == 0 || candidate.maxTs < from || candidate.minTs > to) {
+                    continue;
+                }
+                current = candidate;
+                record = (candidate.ordered ? candidate.lowerBound(from) : 0) - 1;
+                return true;
+            }
+            current = null;
+            return false;
+        }
+    }
+
+    private final List<Segment> segments;
+
+    private SegmentReader(List<Segment> segments) {
+        this.segments = segments;
+    }
+
+    /**
+     * Maps every segment with the given prefix found in the directory, in
+     * sequence order.
+     *
+     * @param directory directory holding the segment files
+     * @param prefix    common prefix of the segment file names
+     * @return a reader over the mapped segments
+     * @throws IOException if a segment cannot be mapped or is not a valid segment
+     */
+    public static SegmentReader open(Path directory, String prefix) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "-*" + EXTENSION)) {
+            stream.forEach(files::add);
+        }
+        files.sort(null); // zero-padded sequence numbers sort lexicographically
+
+        List<Segment> segments = new ArrayList<>(files.size());
+        for (Path file : files) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                if (channel.size() < HEADER_SIZE) {
+                    continue; // segment created but header not written yet
+                }
+                MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (data.getInt(OFF_MAGIC) != MAGIC || data.getShort(OFF_RECORD_SIZE) != RECORD_SIZE) {
+                    throw new IOException("Not a segment file: " + file);
+                }
+                segments.add(new Segment(data));
+            }
+        }
+        return new SegmentReader(segments);
+    }
+
+    /**
+     * Starts a scan over all records whose timestamp lies in {@code [from, to]}.
+     * Records of ordered segments are returned in timestamp order.
+     *
+     * @param from inclusive lower bound, epoch milliseconds
+     * @param to   inclusive upper bound, epoch milliseconds
+     * @return a cursor positioned before the first matching record
+     */
+    public Cursor scan(long from, long to) {
+        return new Cursor(from, to);
+    }
+
+    /** @return total number of records visible to this reader */
+    public long recordCount() {
+        long total = 0;
+        for (Segment segment : segments) {
+            total += segment.count;
+        }
+        return total;
+    }
+
+    /**
+     * Releases the reader. Mappings are released by the garbage collector once
+     * no cursor references them.
+     */
+    @Override
+    public void close() {
+        segments.clear();
+    }
+}
@@ -0,0 +1,213 @@
+package storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static storage.SegmentFormat.*;
+
+/**
+ * Appends readings to a directory of binary segment files (see {@link SegmentFormat}).
+ *
+ * <p>Records are staged in a small buffer and written to the current segment on
+ * {@link #flush()} or when the buffer fills. When a segment reaches its record
+ * limit it is sealed – its sparse index and final header are written – and a new
+ * segment is started. Sequence numbers continue after the highest segment
+ * already present in the directory, so a restarted writer never overwrites data.</p>
+ *
+ * <p>The writer keeps track of whether timestamps arrive in non-decreasing order
+ * and records it in the {@link SegmentFormat#FLAG_ORDERED} header flag; readers
+ * only binary search ordered segments.</p>
+ *
+ * <p>This class is not thread-safe; it is meant to be driven by a single writer.</p>
+ */
+public class SegmentWriter implements Closeable {
+
+    private final Path directory;
+    private final String prefix;
+    private final int maxRecords;
+    private final int indexInterval;
+    private final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    private final ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * 2048);
+
+    private long sequence;
+    private FileChannel channel;
+    private int count;
+    private int written;
+    private long minTs;
+    private long maxTs;
+    private boolean ordered;
+    private long[] index;
+    private int indexEntries;
+
+    /**
+     * Opens a writer over the given directory, creating it if needed.
+     *
+     * @param directory     directory holding the segment files
+     * @param prefix        common prefix of the segment file names
+     * @param maxRecords    number of records after which a segment is sealed
+     * @param indexInterval number of records between two sparse index entries
+     * @throws IOException if the directory or first segment cannot be created
+     */
+    public SegmentWriter(Path directory, String prefix, int maxRecords, int indexInterval) throws IOException {
+        if (maxRecords <= 0 || indexInterval <= 0) {
+            throw new IllegalArgumentException("maxRecords and indexInterval must be positive");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.prefix = prefix;
+        this.maxRecords = maxRecords;
+        this.indexInterval = indexInterval;
+        this.sequence = lastSequence(directory, prefix);
+        openNextSegment();
+    }
+
+    /**
+     * Appends one reading to the current segment.
+     *
+     * @param timestampMillis reading timestamp in epoch milliseconds
+     * @param value           measured value
+     * @param typeCode        type code from {@link model.ReadingCodes}
+     * @param unitCode        unit code from {@link model.ReadingCodes}
+     * @throws IOException if the record cannot be written
+     */
+    public void append(long timestampMillis, double value, int typeCode, int unitCode) throws IOException {
+        if (count > 0 && timestampMillis < maxTs) {
+            ordered = false;
+        }
+        if (count % indexInterval == 0) {
+            if (indexEntries == index.length) {
+                index = Arrays.copyOf(index, index.length * 2);
+            }
+            index[indexEntries++] = timestampMillis;
+        }
+        minTs = Math.min(minTs, timestampMillis);
+        maxTs = Math.max(maxTs, timestampMillis);
+        count++;
+
+        if (buffer.remaining() < RECORD_SIZE) {
+            writeBuffer();
+        }
+        buffer.putLong(timestampMillis)
+                .putDouble(value)
+                .putShort((short) typeCode)
+                .putShort((short) unitCode)
+                .putInt(0);
+
+        if (count == maxRecords) {
+            seal();
+            openNextSegment();
+        }
+    }
+
+    /**
+     * Writes staged records and refreshes the header of the current segment so
+     * that readers opened afterwards see them.
+     *
+     * @throws IOException if the segment cannot be written
+     */
+    public void flush() throws IOException {
+        writeBuffer();
+        writeHeader(ordered ? FLAG_ORDERED : 0, 0L, 0);
+    }
+
+    /**
+     * Seals the current segment and closes the writer. An empty trailing
+     * segment is removed rather than sealed.
+     *
+     * @throws IOException if the segment cannot be sealed
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        if (count == 0) {
+            channel.close();
+            Files.deleteIfExists(directory.resolve(SegmentFormat.fileName(prefix, sequence)));
+        } else {
+            seal();
+        }
+        channel = null;
+    }
+
+    private void seal() throws IOException {
+        writeBuffer();
+        long indexOffset = HEADER_SIZE + (long) count * RECORD_SIZE;
+        ByteBuffer indexBuffer = ByteBuffer.allocate(indexEntries * Long.BYTES);
+        for (int i = 0; i < indexEntries; i++) {
+            indexBuffer.putLong(index[i]);
+        }
+        indexBuffer.flip();
+        while (indexBuffer.hasRemaining()) {
+            channel.write(indexBuffer, indexOffset + indexBuffer.position());
+        }
+        writeHeader(FLAG_SEALED | (ordered ? FLAG_ORDERED : 0), indexOffset, indexEntries);
+        channel.force(true);
+        channel.close();
+    }
+
+    private void openNextSegment() throws IOException {
+        sequence++;
+        channel = FileChannel.open(directory.resolve(SegmentFormat.fileName(prefix, sequence)),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        count = 0;
+        written = 0;
+        minTs = Long.MAX_VALUE;
+        maxTs = Long.MIN_VALUE;
+        ordered = true;
+        index = new long[Math.max(16, maxRecords / indexInterval + 1)];
+        indexEntries = 0;
+        writeHeader(FLAG_ORDERED, 0L, 0);
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        int records = buffer.remaining() / RECORD_SIZE;
+        long position = HEADER_SIZE + (long) written * RECORD_SIZE;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        written += records;
+        buffer.clear();
+    }
+
+    private void writeHeader(int flags, long indexOffset, int entries) throws IOException {
+        header.clear();
+        header.putInt(OFF_MAGIC, MAGIC)
+                .putShort(OFF_VERSION, VERSION)
+                .putShort(OFF_RECORD_SIZE, (short) RECORD_SIZE)
+                .putInt(OFF_FLAGS, flags)
+                .putInt(OFF_COUNT, count)
+                .putLong(OFF_MIN_TS, minTs)
+                .putLong(OFF_MAX_TS, maxTs)
+                .putLong(OFF_INDEX_OFFSET, indexOffset)
+                .putInt(OFF_INDEX_ENTRIES, entries)
+                .putInt(OFF_INDEX_INTERVAL, indexInterval);
+        header.position(0).limit(HEADER_SIZE);
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+    }
+
+    private static long lastSequence(Path directory, String prefix) throws IOException {
+        long last = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "-*" + EXTENSION)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String digits = name.substring(prefix.length() + 1, name.length() - EXTENSION.length());
+                try {
+                    last = Math.max(last, Long.parseLong(digits));
+                } catch (NumberFormatException ignored) {
+                    // not one of ours
+                }
+            }
+        }
+        return last;
+    }
+}
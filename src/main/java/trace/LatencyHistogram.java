@@ -0,0 +1,85 @@
+package trace;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Fixed-size, lock-free latency histogram with log-linear buckets.
+ *
+ * <p>Values are grouped by power of two, each power split into
+ * {@value #SUB_BUCKETS} linear sub-buckets, so any recorded value is reported
+ * with a relative error below 1/{@value #SUB_BUCKETS} (about 3%). Values up to
+ * 2<sup>62</sup> nanoseconds fit; recording is a couple of atomic increments
+ * and never allocates, so it can be called from an event loop.</p>
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BUCKET_BITS) * SUB_BUCKETS);
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+    /**
+     * Records one value; negative values are recorded as zero.
+     *
+     * @param nanos the latency to record
+     */
+    public void record(long nanos) {
+        long value = Math.max(0L, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        max.accumulate(value);
+    }
+
+    /** @return number of recorded values */
+    public long count() {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /** @return the largest recorded value, or 0 if none */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * @param quantile a value in {@code [0, 1]}, e.g. {@code 0.99}
+     * @return an upper bound of the given quantile of the recorded values, or 0 if none
+     */
+    public long percentile(double quantile) {
+        long total = count();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), max());
+            }
+        }
+        return max();
+    }
+
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS + 1;
+        int sub = (int) (value >>> (magnitude - 1)) & (SUB_BUCKETS - 1);
+        return Math.min(magnitude * SUB_BUCKETS + sub, (64 - SUB_BUCKET_BITS) * SUB_BUCKETS - 1);
+    }
+
+    private static long upperBoundOf(int bucket) {
+        int magnitude = bucket / SUB_BUCKETS;
+        long sub = bucket % SUB_BUCKETS;
+        if (magnitude == 0) {
+            return sub;
+        }
+        return ((SUB_BUCKETS + sub + 1) << (magnitude - 1)) - 1;
+    }
+}
@@ -0,0 +1,122 @@
+package trace;
+
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Base of the Java Flight Recorder events emitted by the pipeline, so that CPU
+ * samples, allocations and locks of a recording can be matched with the stage
+ * that was running and the readings it handled.
+ *
+ * <p>An event is created and {@link #begin() begun} before the work and
+ * finished with one of the {@code finish} methods. Like every JFR event it costs
+ * next to nothing while recording is off; while it is on, only events lasting
+ * longer than the threshold of their type are written, and the fields are
+ * filled in only for those. See {@link StageEvent} and {@link StorageEvent}.</p>
+ */
+public abstract class PipelineEvent extends Event {
+
+    @Label("Stage")
+    @Description("Filter, repository or sink that did the work")
+    String stage;
+
+    @Label("Reading Type")
+    @Description("Variable type of the readings, or \"mixed\"")
+    String readingType;
+
+    @Label("Batch Size")
+    @Description("Number of readings handled")
+    int batchSize;
+
+    @Label("Rejected")
+    @Description("Number of readings rejected, for filter stages")
+    int rejected;
+
+    @Label("Outcome")
+    @Description("passed, rejected or partial for filters; stored, loaded or failed for storage")
+    String outcome;
+
+    /**
+     * Counts one reading handled by a filter stage; used when one event covers
+     * a whole message, which may be a micro-batch.
+     *
+     * @param type   the reading's variable type
+     * @param passed whether the reading passed the stage
+     */
+    public void add(String type, boolean passed) {
+        if (batchSize++ == 0) {
+            readingType = type;
+        } else if (!Objects.equals(readingType, type)) {
+            readingType = "mixed";
+        }
+        if (!passed) {
+            rejected++;
+        }
+    }
+
+    /**
+     * Ends an event whose readings were counted with {@link #add(String, boolean)}.
+     *
+     * @param stage the stage name
+     */
+    public void finish(String stage) {
+        end();
+        if (shouldCommit()) {
+            this.stage = stage;
+            outcome = rejected == 0 ? "passed" : rejected == batchSize ? "rejected" : "partial";
+            commit();
+        }
+    }
+
+    /**
+     * Ends an event covering a single reading or an unsplit batch.
+     *
+     * @param stage       the stage name
+     * @param readingType the readings' variable type, {@code null} when unknown
+     * @param batchSize   number of readings
+     * @param outcome     result of the work
+     */
+    public void finish(String stage, String readingType, int batchSize, String outcome) {
+        end();
+        if (shouldCommit()) {
+            this.stage = stage;
+            this.readingType = readingType;
+            this.batchSize = batchSize;
+            this.outcome = outcome;
+            commit();
+        }
+    }
+
+    /**
+     * Ends an event covering a batch; the reading type is worked out from the
+     * batch only if the event is actually recorded.
+     *
+     * @param stage   the stage name
+     * @param batch   the readings
+     * @param typeOf  extracts the variable type of a reading
+     * @param outcome result of the work
+     */
+    public <T> void finish(String stage, List<T> batch, Function<T, String> typeOf, String outcome) {
+        end();
+        if (shouldCommit()) {
+            this.stage = stage;
+            this.batchSize = batch.size();
+            this.outcome = outcome;
+            for (T data : batch) {
+                String type = typeOf.apply(data);
+                if (readingType == null) {
+                    readingType = type;
+                } else if (!readingType.equals(type)) {
+                    readingType = "mixed";
+                    break;
+                }
+            }
+            commit();
+        }
+    }
+}
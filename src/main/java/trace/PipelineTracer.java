@@ -0,0 +1,259 @@
+package trace;
+
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sampled tracing facility for the processing pipeline.
+ *
+ * <p>Every reading carries a numeric trace id. Stage transitions of a reading
+ * are recorded only when its trace id falls inside the configured sample rate,
+ * except for rejects, which are always recorded. The sampling decision is a
+ * pure function of the trace id, so a sampled reading is traced consistently
+ * across every stage.</p>
+ *
+ * <p>Records are handed to a bounded queue and written to a local trace file
+ * by a dedicated daemon thread. On the caller's thread the non-sampled path is
+ * a hash and a comparison: no string building, JSON encoding or I/O. When the
+ * queue is full records are dropped and counted rather than blocking the
+ * caller.</p>
+ *
+ * <p>The process-wide instance returned by {@link #global()} is configured
+ * through system properties:</p>
+ * <ul>
+ *   <li>{@code pipeline.trace.sampleRate} – fraction of readings to trace (default {@code 0.001}),</li>
+ *   <li>{@code pipeline.trace.file} – trace file path (default {@code trace.log}).</li>
+ * </ul>
+ *
+ * <pre>{@code
+ * PipelineTracer tracer = PipelineTracer.global();
+ * long traceId = tracer.traceIdOf(message);
+ * tracer.passed(traceId, "validator");
+ * }</pre>
+ */
+public final class PipelineTracer implements AutoCloseable {
+
+    /** Result of a stage transition. */
+    public enum Outcome { PASSED, REJECTED }
+
+    /**
+     * JSON field used to carry the trace id on EventBus messages. It only has a
+     * meaning inside the running pipeline, so sinks remove it before storing a
+     * reading (see {@link #withoutTraceId(JsonObject)}).
+     */
+    public static final String TRACE_ID_FIELD = "traceId";
+
+    private static final Logger log = LoggerFactory.getLogger(PipelineTracer.class);
+
+    /** Capacity of the hand-off queue between callers and the writer thread. */
+    private static final int QUEUE_CAPACITY = 8192;
+
+    private static volatile PipelineTracer global;
+
+    /** Readings whose mixed trace id is below this bound are sampled (out of 2^53). */
+    private final long sampleBound;
+    private final Path file;
+    private final BlockingQueue<TraceRecord> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong nextId = new AtomicLong(System.currentTimeMillis() << 20);
+    private final LongAdder dropped = new LongAdder();
+    private final Thread writer;
+    private volatile boolean closed;
+
+    /**
+     * Creates a tracer and starts its writer thread.
+     *
+     * @param sampleRate fraction in {@code [0, 1]} of readings whose transitions are recorded
+     * @param file       file the trace records are appended to
+     */
+    public PipelineTracer(double sampleRate, Path file) {
+        double rate = Math.max(0.0, Math.min(1.0, sampleRate));
+        this.sampleBound = rate >= 1.0 ? Long.MAX_VALUE : (long) (rate * (1L << 53));
+        this.file = file;
+        this.writer = new Thread(this::drainLoop, "pipeline-tracer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Returns the process-wide tracer, creating it from system properties on first use.
+     *
+     * @return the shared tracer
+     */
+    public static PipelineTracer global() {
+        PipelineTracer tracer = global;
+        if (tracer == null) {
+            synchronized (PipelineTracer.class) {
+                tracer = global;
+                if (tracer == null) {
+                    double rate = Double.parseDouble(System.getProperty("pipeline.trace.sampleRate", "0.001"));
+                    Path path = Paths.get(System.getProperty("pipeline.trace.file", "trace.log"));
+                    tracer = new PipelineTracer(rate, path);
+                    Runtime.getRuntime().addShutdownHook(new Thread(tracer::close, "pipeline-tracer-shutdown"));
+                    global = tracer;
+                }
+            }
+        }
+        return tracer;
+    }
+
+    /**
+     * Allocates a new trace id, unique within this process.
+     *
+     * @return a fresh trace id
+     */
+    public long newTraceId() {
+        return nextId.incrementAndGet();
+    }
+
+    /**
+     * Returns the trace id carried by the given message, assigning a new one
+     * if the message does not have one yet.
+     *
+     * @param data the reading travelling through the EventBus
+     * @return the reading's trace id
+     */
+    public long traceIdOf(JsonObject data) {
+        Long id = data.getLong(TRACE_ID_FIELD);
+        if (id == null) {
+            id = newTraceId();
+            data.put(TRACE_ID_FIELD, id);
+        }
+        return id;
+    }
+
+    /**
+     * Removes the trace id from a reading about to be stored, so that it does
+     * not end up in files or journals. The reading is changed in place; sinks
+     * call this on their own copy of the message.
+     *
+     * @param data the reading
+     * @return the same reading, without {@value #TRACE_ID_FIELD}
+     */
+    public static JsonObject withoutTraceId(JsonObject data) {
+        data.remove(TRACE_ID_FIELD);
+        return data;
+    }
+
+    /**
+     * Tells whether transitions of the given reading are recorded.
+     *
+     * @param traceId the reading's trace id
+     * @return {@code true} if the reading is sampled
+     */
+    public boolean isSampled(long traceId) {
+        return (mix(traceId) >>> 11) < sampleBound;
+    }
+
+    /**
+     * Records that a reading passed a stage, if the reading is sampled.
+     *
+     * @param traceId the reading's trace id
+     * @param stage   the stage name; should be a constant
+     */
+    public void passed(long traceId, String stage) {
+        if (isSampled(traceId)) {
+            enqueue(new TraceRecord(System.currentTimeMillis(), traceId, stage, Outcome.PASSED, null));
+        }
+    }
+
+    /**
+     * Records that a reading was rejected by a stage. Rejects are always recorded.
+     *
+     * @param traceId the reading's trace id
+     * @param stage   the stage name; should be a constant
+     * @param reason  short rejection reason, typically an exception message
+     */
+    public void rejected(long traceId, String stage, String reason) {
+        enqueue(new TraceRecord(System.currentTimeMillis(), traceId, stage, Outcome.REJECTED, reason));
+    }
+
+    /** @return number of records dropped because the writer could not keep up */
+    public long droppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Stops accepting records, writes out everything still queued and stops the writer thread.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void enqueue(TraceRecord record) {
+        if (closed || !queue.offer(record)) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Body of the writer thread: drains the queue in batches and appends the
+     * formatted records to the trace file, flushing whenever the queue runs dry.
+     */
+    private void drainLoop() {
+        List<TraceRecord> batch = new ArrayList<>(256);
+        StringBuilder line = new StringBuilder(128);
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            while (!closed || !queue.isEmpty()) {
+                TraceRecord first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, 255);
+                for (TraceRecord record : batch) {
+                    line.setLength(0);
+                    line.append(record.timeMillis).append(' ')
+                            .append(record.traceId).append(' ')
+                            .append(record.stage).append(' ')
+                            .append(record.outcome);
+                    if (record.detail != null) {
+                        line.append(' ').append(record.detail);
+                    }
+                    out.write(line.toString());
+                    out.newLine();
+                }
+                batch.clear();
+                if (queue.isEmpty()) {
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            log.error("Trace writer stopped: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** 64-bit finaliser from MurmurHash3, spreads sequential ids uniformly. */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb93e2ec8c34fL;
+        return z ^ (z >>> 33);
+    }
+}
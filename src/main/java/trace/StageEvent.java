@@ -0,0 +1,25 @@
+package trace;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Filter work on one message or one reading: the Vert.x filter verticles and
+ * each filter applied by {@link service.RawDataProcessingService}.
+ *
+ * <p>Recorded by default when it lasts 1&nbsp;ms or more, which a healthy filter
+ * never does; lower the threshold of {@code pipeline.Stage} in the recording
+ * settings to see every call.</p>
+ */
+@Name("pipeline.Stage")
+@Label("Pipeline Stage")
+@Category("Pipeline")
+@Description("Readings handled by a filter stage")
+@StackTrace(false)
+@Threshold("1 ms")
+public class StageEvent extends PipelineEvent {
+}
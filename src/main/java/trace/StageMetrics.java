@@ -0,0 +1,67 @@
+package trace;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Message counters of one event-bus address: how many messages were sent to
+ * it, how many its consumers finished handling, and the time they spent.
+ *
+ * <p>The difference between sent and handled messages is the number pending,
+ * queued in the consumers or being handled, which Vert.x does not expose.
+ * Producers count on {@link #sent()} and consumers on {@link #handled(long)};
+ * every instance of a stage shares the counters of its input address. The
+ * counts are only meaningful for addresses served point to point
+ * ({@code send}), where each message is handled once.</p>
+ *
+ * <p>Counters are {@link LongAdder}s, so recording never blocks an event loop.</p>
+ */
+public final class StageMetrics {
+
+    private static final Map<String, StageMetrics> BY_ADDRESS = new ConcurrentHashMap<>();
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder handled = new LongAdder();
+    private final LongAdder busyNanos = new LongAdder();
+
+    private StageMetrics() {}
+
+    /**
+     * @param address an event-bus address
+     * @return the process-wide counters of that address
+     */
+    public static StageMetrics of(String address) {
+        return BY_ADDRESS.computeIfAbsent(address, a -> new StageMetrics());
+    }
+
+    /** Counts one message sent to the address. */
+    public void sent() {
+        sent.increment();
+    }
+
+    /**
+     * Counts one message handled by a consumer of the address.
+     *
+     * @param nanos time spent handling it
+     */
+    public void handled(long nanos) {
+        handled.increment();
+        busyNanos.add(nanos);
+    }
+
+    /** @return messages sent and not yet handled */
+    public long pending() {
+        return Math.max(0, sent.sum() - handled.sum());
+    }
+
+    /** @return messages handled so far */
+    public long handledCount() {
+        return handled.sum();
+    }
+
+    /** @return total time spent handling messages, in nanoseconds */
+    public long busyNanos() {
+        return busyNanos.sum();
+    }
+}
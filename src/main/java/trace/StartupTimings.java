@@ -0,0 +1,58 @@
+package trace;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Records the time at which each startup phase completes, measured from JVM start.
+ *
+ * <p>Phases are marked from whichever thread completes them (the persistence
+ * bootstrap thread, a verticle's event loop, ...) and reported together as one
+ * log line, so restarts can be compared phase by phase.</p>
+ *
+ * <pre>{@code
+ * StartupTimings.global().mark("verticles deployed");
+ * StartupTimings.global().report();
+ * }</pre>
+ */
+public final class StartupTimings {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupTimings.class);
+
+    private static final StartupTimings GLOBAL = new StartupTimings();
+
+    /** Epoch millis at which the JVM started. */
+    private final long jvmStart = ManagementFactory.getRuntimeMXBean().getStartTime();
+
+    /** Completed phases, in completion order, with their offset from JVM start in ms. */
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+
+    private StartupTimings() {}
+
+    /** @return the process-wide startup timings */
+    public static StartupTimings global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Records that a phase completed now. Only the first mark of a phase is kept.
+     *
+     * @param phase name of the phase
+     */
+    public synchronized void mark(String phase) {
+        phases.putIfAbsent(phase, System.currentTimeMillis() - jvmStart);
+    }
+
+    /**
+     * Logs every phase marked so far with its offset from JVM start.
+     */
+    public synchronized void report() {
+        StringBuilder line = new StringBuilder("Tiempos de arranque (ms desde inicio JVM):");
+        phases.forEach((phase, offset) -> line.append(' ').append(phase).append('=').append(offset));
+        log.info(line.toString());
+    }
+}
@@ -0,0 +1,24 @@
+package trace;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Storage work on a batch of readings: repository reads and writes and the
+ * writes of {@link vertx.FileStorageVerticle}.
+ *
+ * <p>Recorded by default when it lasts 10&nbsp;ms or more; lower the threshold
+ * of {@code pipeline.Storage} in the recording settings to see every batch.</p>
+ */
+@Name("pipeline.Storage")
+@Label("Pipeline Storage")
+@Category("Pipeline")
+@Description("Readings read or written by a repository or sink")
+@StackTrace(false)
+@Threshold("10 ms")
+public class StorageEvent extends PipelineEvent {
+}
@@ -0,0 +1,34 @@
+package trace;
+
+/**
+ * Immutable stage transition captured by the {@link PipelineTracer}.
+ *
+ * <p>Instances are only created for sampled readings or rejects, and are
+ * formatted into text by the tracer's writer thread, never on the caller's
+ * thread.</p>
+ */
+final class TraceRecord {
+
+    /** Wall-clock time of the transition, in epoch milliseconds. */
+    final long timeMillis;
+
+    /** Identifier of the reading being traced. */
+    final long traceId;
+
+    /** Pipeline stage that produced the transition (e.g. {@code "validator"}). */
+    final String stage;
+
+    /** Whether the reading passed or was rejected by the stage. */
+    final PipelineTracer.Outcome outcome;
+
+    /** Optional detail, typically the rejection reason; may be {@code null}. */
+    final String detail;
+
+    TraceRecord(long timeMillis, long traceId, String stage, PipelineTracer.Outcome outcome, String detail) {
+        this.timeMillis = timeMillis;
+        this.traceId = traceId;
+        this.stage = stage;
+        this.outcome = outcome;
+        this.detail = detail;
+    }
+}
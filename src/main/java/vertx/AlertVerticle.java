@@ -0,0 +1,90 @@
+package vertx;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.ThreadingModel;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import trace.LatencyHistogram;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Consumer of the alert lane: readings published on {@code "alerts.extreme"} by
+ * {@link ExtremeValueFilterVerticle}, either because they failed the range check
+ * or because they crossed a configured alert threshold.
+ *
+ * <p>The lane is kept apart from bulk storage: alerts are published before the
+ * reading is forwarded to {@code "validated.data"}, and this verticle should be
+ * deployed with {@link #deploymentOptions()}, which gives it a dedicated
+ * single-thread worker pool instead of the event loops and shared workers used
+ * by the storage verticles. Handling an alert does no blocking work: it is
+ * logged, counted and re-published on {@code "alerts.notify"} for whoever reacts
+ * to it.</p>
+ *
+ * <p>End-to-end latency – from the {@value #INGEST_NANOS_HEADER} header stamped
+ * when the reading entered the pipeline to the moment the alert is handled – is
+ * recorded in a {@link LatencyHistogram}. Count and percentiles are answered on
+ * {@code "alerts.stats"} and logged every {@code statsIntervalMs} (default
+ * 10000) when new alerts arrived.</p>
+ */
+public class AlertVerticle extends AbstractVerticle {
+
+    /** Event bus header carrying the {@link System#nanoTime()} at which a reading entered the pipeline. */
+    public static final String INGEST_NANOS_HEADER = "ingestNanos";
+
+    /** Address of the alert lane. */
+    public static final String ALERT_ADDRESS = "alerts.extreme";
+
+    private static final Logger log = LoggerFactory.getLogger(AlertVerticle.class);
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private long alerts;
+    private long lastReported;
+
+    /**
+     * @return options deploying the verticle on its own single-thread worker pool
+     */
+    public static DeploymentOptions deploymentOptions() {
+        return new DeploymentOptions()
+                .setThreadingModel(ThreadingModel.WORKER)
+                .setWorkerPoolName("alert-lane")
+                .setWorkerPoolSize(1);
+    }
+
+    @Override
+    public void start() {
+        vertx.eventBus().<JsonObject>consumer(ALERT_ADDRESS, this::handle);
+        vertx.eventBus().consumer("alerts.stats", message -> message.reply(stats()));
+        vertx.setPeriodic(config().getLong("statsIntervalMs", 10_000L), id -> {
+            if (alerts != lastReported) {
+                lastReported = alerts;
+                log.info("Alertas: {}", stats().encode());
+            }
+        });
+    }
+
+    private void handle(Message<JsonObject> message) {
+        JsonObject alert = message.body();
+        String ingest = message.headers().get(INGEST_NANOS_HEADER);
+        if (ingest != null) {
+            latency.record(System.nanoTime() - Long.parseLong(ingest));
+        }
+        alerts++;
+        log.warn("⚠ Alerta {}: {} = {} ({})", alert.getString("reason"), alert.getString("variableType"),
+                alert.getValue("value"), alert.getValue("timestamp"));
+        vertx.eventBus().publish("alerts.notify", alert, new DeliveryOptions().setHeaders(message.headers()));
+    }
+
+    private JsonObject stats() {
+        return new JsonObject()
+                .put("alerts", alerts)
+                .put("latencyCount", latency.count())
+                .put("p50Micros", TimeUnit.NANOSECONDS.toMicros(latency.percentile(0.50)))
+                .put("p99Micros", TimeUnit.NANOSECONDS.toMicros(latency.percentile(0.99)))
+                .put("maxMicros", TimeUnit.NANOSECONDS.toMicros(latency.max()));
+    }
+}
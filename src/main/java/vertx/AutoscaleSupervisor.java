@@ -0,0 +1,237 @@
+package vertx;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Verticle;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import trace.StageMetrics;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Verticle that adds and removes instances of pipeline stages according to
+ * their backlog.
+ *
+ * <p>Every {@code intervalMs} (default 1000) it samples the
+ * {@link StageMetrics} of each scaled stage's input address: the messages
+ * pending, and the time spent handling messages since the previous sample.
+ * From these it derives the stage's utilisation – busy time over wall time
+ * across its instances – and the expected wait of a new message, pending
+ * messages times the mean handling time divided by the instances.</p>
+ *
+ * <ul>
+ *   <li>When the expected wait exceeds {@code targetWaitMs} (default 50) or
+ *       the utilisation exceeds {@code scaleUpUtilisation} (default 0.8), one
+ *       instance is deployed, up to the stage's {@code max}.</li>
+ *   <li>When nothing is pending and one instance fewer would stay below
+ *       {@code scaleDownUtilisation} (default 0.5) for {@code scaleDownSamples}
+ *       consecutive samples (default 5), the newest instance is undeployed,
+ *       down to the stage's {@code min}.</li>
+ * </ul>
+ *
+ * <p>After a change a stage is left alone for {@code cooldownMs} (default
+ * 5000), so the new instances show in the metrics. Every decision is logged
+ * with the figures behind it; the current instances are answered as JSON on
+ * {@code "autoscale.stats"}.</p>
+ *
+ * <p>Only stages listed in the {@code stages} object of the config are scaled,
+ * e.g. {@code {"validator": {"min": 1, "max": 4}}}. The instance deployed by
+ * {@link MainVerticle} counts as the first one. Instances share their input
+ * address, so the stage feeding a scaled stage must send point to point
+ * ({@code "delivery": "send"}, see {@link MicroBatcher}); readings handled by
+ * different instances may then overtake each other, which a
+ * {@link ReorderVerticle} can undo. A new instance only receives messages sent
+ * after it registered; those already queued in the others stay there.</p>
+ */
+public class AutoscaleSupervisor extends AbstractVerticle {
+
+    private static final Logger log = LoggerFactory.getLogger(AutoscaleSupervisor.class);
+
+    /** A stage that can be scaled: how to deploy one more instance and where its input arrives. */
+    public static final class Stage {
+
+        private final String name;
+        private final String inputAddress;
+        private final Supplier<Verticle> factory;
+        private final DeploymentOptions options;
+
+        /**
+         * @param name         name of the stage in the supervisor's {@code stages} config
+         * @param inputAddress address the stage's instances consume
+         * @param factory      creates one instance
+         * @param options      deployment options of an instance
+         */
+        public Stage(String name, String inputAddress, Supplier<Verticle> factory, DeploymentOptions options) {
+            this.name = name;
+            this.inputAddress = inputAddress;
+            this.factory = factory;
+            this.options = options;
+        }
+    }
+
+    /** Scaling state of one stage; only accessed on the supervisor's event loop. */
+    private static final class Scaled {
+
+        final Stage stage;
+        final StageMetrics metrics;
+        final int min;
+        final int max;
+        final Deque<String> extraIds = new ArrayDeque<>();
+        long lastHandled;
+        long lastBusyNanos;
+        long lastSampleNanos;
+        long quietUntil;
+        int idleSamples;
+        boolean changing;
+
+        Scaled(Stage stage, int min, int max) {
+            this.stage = stage;
+            this.metrics = StageMetrics.of(stage.inputAddress);
+            this.min = min;
+            this.max = max;
+            this.lastHandled = metrics.handledCount();
+            this.lastBusyNanos = metrics.busyNanos();
+            this.lastSampleNanos = System.nanoTime();
+            this.quietUntil = lastSampleNanos;
+        }
+
+        int instances() {
+            return 1 + extraIds.size();
+        }
+    }
+
+    private final List<Stage> stages;
+    private final Map<String, Scaled> scaled = new LinkedHashMap<>();
+
+    private double targetWaitNanos;
+    private double scaleUpUtilisation;
+    private double scaleDownUtilisation;
+    private int scaleDownSamples;
+    private long cooldownNanos;
+
+    /**
+     * @param stages the stages that may be scaled, when the config lists them
+     */
+    public AutoscaleSupervisor(List<Stage> stages) {
+        this.stages = List.copyOf(stages);
+    }
+
+    @Override
+    public void start() {
+        targetWaitNanos = config().getLong("targetWaitMs", 50L) * 1e6;
+        scaleUpUtilisation = config().getDouble("scaleUpUtilisation", 0.8);
+        scaleDownUtilisation = config().getDouble("scaleDownUtilisation", 0.5);
+        scaleDownSamples = config().getInteger("scaleDownSamples", 5);
+        cooldownNanos = config().getLong("cooldownMs", 5000L) * 1_000_000L;
+
+        JsonObject bounds = config().getJsonObject("stages", new JsonObject());
+        for (Stage stage : stages) {
+            JsonObject stageBounds = bounds.getJsonObject(stage.name);
+            if (stageBounds == null) {
+                continue;
+            }
+            int min = Math.max(1, stageBounds.getInteger("min", 1));
+            int max = Math.max(min, stageBounds.getInteger("max", min));
+            Scaled state = new Scaled(stage, min, max);
+            scaled.put(stage.name, state);
+            log.info("Autoescalado de {}: entre {} y {} instancias.", stage.name, min, max);
+            for (int i = 1; i < min; i++) {
+                scaleUp(state, "minimo configurado");
+            }
+        }
+
+        vertx.setPeriodic(config().getLong("intervalMs", 1000L), id -> scaled.values().forEach(this::sample));
+        vertx.eventBus().consumer("autoscale.stats", message -> {
+            JsonArray report = new JsonArray();
+            scaled.values().forEach(state -> report.add(new JsonObject()
+                    .put("stage", state.stage.name)
+                    .put("instances", state.instances())
+                    .put("min", state.min)
+                    .put("max", state.max)
+                    .put("pending", state.metrics.pending())));
+            message.reply(report);
+        });
+    }
+
+    private void sample(Scaled state) {
+        long now = System.nanoTime();
+        long handled = state.metrics.handledCount();
+        long busy = state.metrics.busyNanos();
+        long pending = state.metrics.pending();
+        long deltaHandled = handled - state.lastHandled;
+        long deltaBusy = busy - state.lastBusyNanos;
+        long elapsed = Math.max(1, now - state.lastSampleNanos);
+        state.lastHandled = handled;
+        state.lastBusyNanos = busy;
+        state.lastSampleNanos = now;
+
+        if (state.changing || now - state.quietUntil < 0) {
+            return;
+        }
+        int instances = state.instances();
+        double utilisation = (double) deltaBusy / elapsed / instances;
+        double meanNanos = deltaHandled > 0 ? (double) deltaBusy / deltaHandled : 0;
+        double waitNanos = pending * meanNanos / instances;
+        String figures = String.format("pendientes=%d utilizacion=%.2f espera=%.1f ms instancias=%d",
+                pending, utilisation, waitNanos / 1e6, instances);
+
+        boolean overloaded = waitNanos > targetWaitNanos || utilisation > scaleUpUtilisation
+                || (pending > 0 && deltaHandled == 0); // atascada: ni siquiera hay tiempo medio
+        if (overloaded) {
+            state.idleSamples = 0;
+            if (instances < state.max) {
+                scaleUp(state, figures);
+            } else {
+                log.debug("Autoescalado de {}: al maximo ({}).", state.stage.name, figures);
+            }
+            return;
+        }
+        boolean idle = pending == 0 && instances > state.min
+                && utilisation * instances / (instances - 1) < scaleDownUtilisation;
+        state.idleSamples = idle ? state.idleSamples + 1 : 0;
+        if (state.idleSamples >= scaleDownSamples) {
+            state.idleSamples = 0;
+            scaleDown(state, figures);
+        }
+    }
+
+    private void scaleUp(Scaled state, String reason) {
+        state.changing = true;
+        vertx.deployVerticle(state.stage.factory.get(), state.stage.options).onComplete(res -> {
+            state.changing = false;
+            state.quietUntil = System.nanoTime() + cooldownNanos;
+            if (res.failed()) {
+                log.error("Autoescalado de {}: no se pudo agregar una instancia: {}",
+                        state.stage.name, res.cause().getMessage());
+                return;
+            }
+            state.extraIds.push(res.result());
+            log.info("Autoescalado de {}: +1 instancia, ahora {} ({}).",
+                    state.stage.name, state.instances(), reason);
+        });
+    }
+
+    private void scaleDown(Scaled state, String reason) {
+        String id = state.extraIds.pop();
+        state.changing = true;
+        vertx.undeploy(id).onComplete(res -> {
+            state.changing = false;
+            state.quietUntil = System.nanoTime() + cooldownNanos;
+            if (res.failed()) {
+                log.error("Autoescalado de {}: no se pudo retirar una instancia: {}",
+                        state.stage.name, res.cause().getMessage());
+                return;
+            }
+            log.info("Autoescalado de {}: -1 instancia, ahora {} ({}).",
+                    state.stage.name, state.instances(), reason);
+        });
+    }
+}
@@ -0,0 +1,462 @@
+package vertx;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonObject;
+import model.CleanData;
+import model.ReadingCodes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sqlite.SQLiteException;
+import repository.CleanDataRepository;
+import repository.PartitionRetentionJob;
+import repository.PartitionedReadingStore;
+import repository.PersistenceBootstrap;
+import repository.ShardedReadingStore;
+import trace.PipelineTracer;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Verticle that persists validated readings into {@code clean_readings}.
+ *
+ * <p>It listens on {@code "validated.data"} (or the {@code address} configured,
+ * e.g. {@code "validated.ordered"} behind a {@link ReorderVerticle}, and on
+ * {@code lateAddress} too when configured, e.g. {@code "validated.late"} for the
+ * readings that stage could not order) and hands
+ * each reading – messages may be micro-batches, see {@link MicroBatcher} – to a
+ * bounded in-memory queue. A dedicated writer thread – not the event loop and
+ * not the shared worker pool – drains the queue and stores the readings through
+ * {@link CleanDataRepository#saveAll(List)}, one transaction per batch. A batch
+ * is flushed as soon as it holds {@code batchSize} readings (default 500) or
+ * {@code flushIntervalMs} (default 200) after its first reading arrived.</p>
+ *
+ * <p>SQLite allows a single writer per database: when a commit fails with
+ * {@code SQLITE_BUSY} the batch is retried up to {@code maxRetries} times
+ * (default 5) with a growing back-off starting at {@code retryBackoffMs}
+ * (default 50). Batches failing for any other reason, or exhausting their
+ * retries, are logged and dropped; readings that cannot be converted are
+ * traced as rejects.</p>
+ *
+ * <p>If the queue ({@code queueCapacity}, default 100000) is full the reading
+ * is dropped rather than blocking the event loop. Queue depth and counters are
+ * answered as JSON on the {@code "db.sink.stats"} address.</p>
+ *
+ * <p>With {@code partitioned: true} the readings go to time-partitioned
+ * {@code clean_readings_p*} tables through a {@link PartitionedReadingStore}
+ * ({@code partitionGranularity} {@code "day"} or {@code "month"}, default day)
+ * instead of the JPA repository. The writer thread then also runs a
+ * {@link PartitionRetentionJob} every {@code retentionIntervalMs} (default one
+ * hour), rolling up and dropping partitions older than {@code retentionDays}
+ * (default 30).</p>
+ *
+ * <p>With {@code shards} greater than one the readings are spread over that
+ * many SQLite files by a {@link ShardedReadingStore}, routed by
+ * {@code shardBy} {@code "type"} (default) or {@code "hash"}; each shard
+ * commits its part of a batch on its own writer thread, and a retry resubmits
+ * only the parts of the shards that failed. Sharding cannot be combined with
+ * {@code partitioned}: such a configuration fails the deployment.</p>
+ *
+ * <p>With {@code "source": "journal"} the readings are not taken from the event
+ * bus but read by the writer thread from the journal in {@code journalDir}
+ * (default {@code journal}, see {@link JournalVerticle}) as consumer
+ * {@code consumer} (default {@code db}), {@code batchSize} at a time. The
+ * journal offset is committed after each stored batch. The readings of a batch
+ * not yet stored are retried after a back-off: indefinitely while the failure
+ * is {@code SQLITE_BUSY}, otherwise {@code maxRetries} times, after which they
+ * are traced as rejected, counted as dropped and the offset is committed so
+ * that later readings are not held up. Readings not yet read when the process
+ * stops are stored after the restart, and so is a batch still being retried
+ * of which nothing was stored; the remainder of a batch partly stored is
+ * rejected the same way instead, since reading the batch again would store its
+ * stored part twice. A journal record that is corrupt or not a reading is
+ * logged and passed over; one that cannot be read is retried after a
+ * back-off.</p>
+ */
+public class DbSinkVerticle extends AbstractVerticle {
+
+    private static final Logger log = LoggerFactory.getLogger(DbSinkVerticle.class);
+
+    private static final String STAGE = "db-sink";
+
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+
+    private PipelineTracer tracer;
+    private BlockingQueue<JsonObject> queue;
+    private Thread writer;
+    private volatile boolean running;
+
+    private int batchSize;
+    private long flushIntervalMs;
+    private int maxRetries;
+    private long retryBackoffMs;
+    private long retentionIntervalMs;
+
+    private PartitionRetentionJob retentionJob;
+    private long nextRetention;
+    private JournalSource journalReader;
+    private AutoCloseable store;
+
+    /** Stores one batch of converted readings, in one transaction per database. */
+    protected interface BatchWriter {
+
+        /**
+         * @param rows the readings; a failed attempt is retried with new instances
+         * @throws PartialWriteException if only part of the batch could not be stored
+         * @throws Exception             if the batch could not be stored
+         */
+        void write(List<CleanData> rows) throws Exception;
+    }
+
+    /**
+     * Failure of a batch part of which was committed, e.g. by some shards of a
+     * {@link ShardedReadingStore}: only {@link #unwritten()} is retried.
+     */
+    protected static class PartialWriteException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<CleanData> unwritten;
+
+        /**
+         * @param unwritten the rows that were not stored
+         * @param cause     the failure, inspected for {@code SQLITE_BUSY}
+         */
+        public PartialWriteException(List<CleanData> unwritten, Throwable cause) {
+            super(cause.getMessage(), cause);
+            this.unwritten = unwritten;
+        }
+
+        /** @return the rows that were not stored */
+        public List<CleanData> unwritten() {
+            return unwritten;
+        }
+    }
+
+    @Override
+    public void start() throws IOException {
+        if (config().getInteger("shards", 1) > 1 && config().getBoolean("partitioned", false)) {
+            throw new IllegalArgumentException("A sharded sink cannot also be partitioned: use either shards or partitioned");
+        }
+        batchSize = config().getInteger("batchSize", 500);
+        flushIntervalMs = config().getLong("flushIntervalMs", 200L);
+        maxRetries = config().getInteger("maxRetries", 5);
+        retryBackoffMs = config().getLong("retryBackoffMs", 50L);
+        retentionIntervalMs = config().getLong("retentionIntervalMs", TimeUnit.HOURS.toMillis(1));
+        queue = new ArrayBlockingQueue<>(config().getInteger("queueCapacity", 100_000));
+        tracer = PipelineTracer.global();
+        if ("journal".equals(config().getString("source", "bus"))) {
+            journalReader = new JournalSource(Paths.get(config().getString("journalDir", "journal")),
+                    config().getString("consumer", "db"));
+        }
+
+        running = true;
+        writer = new Thread(this::writeLoop, "db-sink-writer");
+        writer.start();
+
+        if (journalReader == null) {
+            Handler<Message<Object>> enqueue = message -> MicroBatcher.forEach(message.body(), data -> {
+                if (!queue.offer(data)) {
+                    dropped.increment();
+                    tracer.rejected(tracer.traceIdOf(data), STAGE, "Write queue full");
+                }
+            });
+            vertx.eventBus().consumer(config().getString("address", "validated.data"), enqueue);
+            String lateAddress = config().getString("lateAddress");
+            if (lateAddress != null) {
+                vertx.eventBus().consumer(lateAddress, enqueue);
+            }
+        }
+
+        vertx.eventBus().consumer("db.sink.stats", message -> message.reply(new JsonObject()
+                .put("queueDepth", queue.size())
+                .put("written", written.sum())
+                .put("dropped", dropped.sum())
+                .put("retries", retries.sum())));
+    }
+
+    /**
+     * Stops accepting readings, lets the writer flush what is still queued and
+     * waits for it to finish.
+     */
+    @Override
+    public void stop(Promise<Void> stopPromise) {
+        running = false;
+        vertx.executeBlocking(() -> {
+            writer.join();
+            return null;
+        }).onComplete(res -> {
+            log.info("DbSink detenido: {} guardados, {} descartados, {} reintentos.",
+                    written.sum(), dropped.sum(), retries.sum());
+            stopPromise.complete();
+        });
+    }
+
+    /** @return number of readings waiting to be written */
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Body of the writer thread: collects batches bounded by size and time and
+     * writes each one in a single transaction.
+     */
+    private void writeLoop() {
+        BatchWriter target;
+        try {
+            target = openTarget();
+        } catch (RuntimeException | SQLException e) {
+            log.error("DbSink sin persistencia: " + e.getMessage());
+            return;
+        }
+
+        List<JsonObject> batch = new ArrayList<>(batchSize);
+        nextRetention = System.nanoTime();
+        try {
+            if (journalReader != null) {
+                journalLoop(target);
+                return;
+            }
+            while (running || !queue.isEmpty()) {
+                runRetentionIfDue();
+                JsonObject first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    JsonObject next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                write(target, batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (journalReader != null) {
+                journalReader.close();
+            }
+            closeStore();
+        }
+    }
+
+    /**
+     * Journal mode: stores the journal from this sink's offset on, committing
+     * after each batch and going back to the last commit when a batch fails.
+     */
+    private void journalLoop(BatchWriter target) throws InterruptedException {
+        while (running) {
+            runRetentionIfDue();
+            List<JsonObject> batch;
+            try {
+                batch = journalReader.poll(batchSize);
+            } catch (IOException e) {
+                // el hilo no debe morir: se reintenta desde el ultimo commit
+                log.error("DbSink no puede leer el journal, se reintentará: " + e.getMessage());
+                journalReader.rewind();
+                Thread.sleep(retryBackoffMs << maxRetries);
+                continue;
+            }
+            if (batch.isEmpty()) {
+                Thread.sleep(Math.min(flushIntervalMs, 20L));
+                continue;
+            }
+            List<CleanData> rows = convert(batch);
+            // se reintenta en memoria solo lo no guardado: releer el lote duplicaria lo ya confirmado
+            for (int failures = 0; ; ) {
+                try {
+                    store(target, rows);
+                    break;
+                } catch (PartialWriteException e) {
+                    rows = e.unwritten();
+                    if (!isBusy(e) && ++failures > maxRetries) {
+                        reject(rows, e.getMessage()); // un error que no es BUSY no se resuelve esperando
+                        break;
+                    }
+                    if (!running && rows.size() == batch.size()) {
+                        return; // sin commit: nada del lote se guardo y se vuelve a leer al reiniciar
+                    }
+                    if (!running) {
+                        reject(rows, "sink detenido"); // parte del lote ya esta guardada: no se vuelve a leer
+                        break;
+                    }
+                    log.error("DbSink reintentará {} datos del journal.", rows.size());
+                    Thread.sleep(retryBackoffMs << maxRetries);
+                    rows = copies(rows);
+                }
+            }
+            journalReader.commit();
+        }
+    }
+
+    private void runRetentionIfDue() {
+        if (retentionJob != null && System.nanoTime() - nextRetention >= 0) {
+            retentionJob.run();
+            nextRetention = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retentionIntervalMs);
+        }
+    }
+
+    /**
+     * Opens the storage selected by the configuration: sharded files, partitioned
+     * tables or, by default, {@code clean_readings} through JPA. Called once, on
+     * the writer thread.
+     *
+     * @return the writer the batches are handed to
+     * @throws SQLException if the storage cannot be opened
+     */
+    protected BatchWriter openTarget() throws SQLException {
+        int shards = config().getInteger("shards", 1);
+        if (shards > 1) {
+            ShardedReadingStore sharded = ShardedReadingStore.open(PersistenceBootstrap.jdbcUrl(), shards,
+                    ShardedReadingStore.Routing.valueOf(config().getString("shardBy", "type").toUpperCase(Locale.ROOT)));
+            store = sharded;
+            return rows -> {
+                ShardedReadingStore.WriteResult<CleanData> result = sharded.saveClean(rows).join();
+                if (!result.stored()) {
+                    throw new PartialWriteException(result.unwritten(), result.failure());
+                }
+            };
+        }
+        if (config().getBoolean("partitioned", false)) {
+            PartitionedReadingStore partitioned = new PartitionedReadingStore(PersistenceBootstrap.jdbcUrl(),
+                    PartitionedReadingStore.Kind.CLEAN, PartitionedReadingStore.Granularity.valueOf(
+                            config().getString("partitionGranularity", "day").toUpperCase(Locale.ROOT)));
+            store = partitioned;
+            retentionJob = new PartitionRetentionJob(partitioned,
+                    TimeUnit.DAYS.toMillis(config().getInteger("retentionDays", 30)));
+            return partitioned::saveClean;
+        }
+        CleanDataRepository repository = new CleanDataRepository(PersistenceBootstrap.start().join());
+        return repository::saveAll;
+    }
+
+    private void closeStore() {
+        if (store != null) {
+            try {
+                store.close();
+            } catch (Exception e) {
+                log.error("Error al cerrar el almacenamiento: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Stores a batch from the event bus, dropping what cannot be stored.
+     */
+    private void write(BatchWriter target, List<JsonObject> batch) throws InterruptedException {
+        try {
+            store(target, convert(batch));
+        } catch (PartialWriteException e) {
+            log.error("DbSink descarta {} datos de un lote de {}.", e.unwritten().size(), batch.size());
+            dropped.add(e.unwritten().size());
+        }
+    }
+
+    /** Gives up on rows that cannot be stored: they are traced as rejected and counted as dropped. */
+    private void reject(List<CleanData> rows, String reason) {
+        log.error("DbSink descarta {} datos del journal: {}", rows.size(), reason);
+        for (int i = 0; i < rows.size(); i++) {
+            tracer.rejected(tracer.newTraceId(), STAGE, reason);
+        }
+        dropped.add(rows.size());
+    }
+
+    /**
+     * Converts the readings of a batch; readings that cannot be converted are
+     * rejected.
+     */
+    private List<CleanData> convert(List<JsonObject> batch) {
+        List<CleanData> rows = new ArrayList<>(batch.size());
+        for (JsonObject data : batch) {
+            try {
+                rows.add(new CleanData(
+                        data.getString("variableType"),
+                        ReadingCodes.fromEpochMillis(ReadingCodes.timestampMillis(data.getValue("timestamp"))),
+                        data.getDouble("value")));
+            } catch (RuntimeException e) {
+                dropped.increment();
+                tracer.rejected(tracer.traceIdOf(data), STAGE, e.getMessage());
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Writes the rows, retrying on {@code SQLITE_BUSY} only the rows not stored
+     * by a previous attempt.
+     *
+     * @throws PartialWriteException with the rows that could not be stored and the
+     *                               last failure as its cause
+     */
+    private void store(BatchWriter target, List<CleanData> rows) throws InterruptedException, PartialWriteException {
+        List<CleanData> pending = rows;
+        for (int attempt = 0; !pending.isEmpty(); attempt++) {
+            try {
+                // JPA deja ids asignados en las instancias de un intento fallido: se reintenta con otras
+                target.write(attempt == 0 ? pending : copies(pending));
+                written.add(pending.size());
+                return;
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                if (e instanceof PartialWriteException) {
+                    List<CleanData> unwritten = ((PartialWriteException) e).unwritten();
+                    written.add(pending.size() - unwritten.size());
+                    pending = unwritten;
+                }
+                if (attempt < maxRetries && isBusy(e)) {
+                    retries.increment();
+                    Thread.sleep(retryBackoffMs << attempt);
+                    continue;
+                }
+                log.error("DbSink no pudo guardar {} datos: {}", pending.size(), e.getMessage());
+                throw new PartialWriteException(pending, e instanceof PartialWriteException ? e.getCause() : e);
+            }
+        }
+    }
+
+    private static List<CleanData> copies(List<CleanData> rows) {
+        List<CleanData> copies = new ArrayList<>(rows.size());
+        for (CleanData row : rows) {
+            copies.add(new CleanData(row.getType(), row.getTimestamp(), row.getValue()));
+        }
+        return copies;
+    }
+
+    /**
+     * @return {@code true} if the failure was caused by SQLite reporting that
+     *         the database is locked by another writer
+     */
+    private static boolean isBusy(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLiteException
+                    && (((SQLiteException) cause).getResultCode().code & 0xff) == 5) { // SQLITE_BUSY and its extended codes
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,217 @@
+package vertx;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Promise;
+import io.vertx.core.WorkerExecutor;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonObject;
+import model.ReadingCodes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import repository.CleanReadingCursor;
+import repository.PersistenceBootstrap;
+
+import java.sql.SQLException;
+
+/**
+ * Verticle exposing {@code clean_readings} over HTTP as a streamed export.
+ *
+ * <p>{@code GET /export?type=mp&from=...&to=...&format=ndjson} answers the
+ * readings of the given type (all types when absent) with a timestamp in
+ * {@code [from, to)}, in timestamp order. Bounds are epoch milliseconds or
+ * ISO-8601 local date-times read as UTC and default to the whole table;
+ * {@code format} is {@code ndjson} (default, one JSON object per line, like the
+ * pipeline messages) or {@code csv}.</p>
+ *
+ * <p>The response is chunked and produced straight from a
+ * {@link CleanReadingCursor}: rows are read {@code chunkRows} at a time (default
+ * 1000) on a dedicated worker pool and each chunk is written only once the
+ * previous one has been accepted. When the client is slower than the database,
+ * {@code writeQueueFull()} pauses the cursor until the connection drains, so
+ * memory stays bounded by one chunk plus the write queue whatever the range.
+ * If the client disconnects, the cursor and its connection are closed.</p>
+ *
+ * <p>Only the single {@code clean_readings} table is read. When the
+ * {@code dbSink} object of the config (the {@link DbSinkVerticle}'s config, see
+ * {@link MainVerticle}) selects partitioned or sharded storage, the table does
+ * not hold the new readings, and every export is answered {@code 501} instead
+ * of a silently incomplete body.</p>
+ *
+ * <p>Configuration: {@code port} (default 8080), {@code host} (default
+ * {@code 0.0.0.0}), {@code chunkRows} and {@code workerPoolSize} (default 4,
+ * i.e. concurrent exports being read). Other {@link HttpServerOptions} keys of
+ * the config, e.g. {@code sendBufferSize} or {@code compressionSupported}, are
+ * applied to the server.</p>
+ */
+public class ExportHttpVerticle extends AbstractVerticle {
+
+    private static final Logger log = LoggerFactory.getLogger(ExportHttpVerticle.class);
+
+    private WorkerExecutor workers;
+    private HttpServer server;
+    private int chunkRows;
+
+    /** Why exports are refused, or {@code null} when the DB sink writes {@code clean_readings}. */
+    private String unsupported;
+
+    @Override
+    public void start(Promise<Void> startPromise) {
+        chunkRows = config().getInteger("chunkRows", 1000);
+        JsonObject sink = config().getJsonObject("dbSink", new JsonObject());
+        if (sink.getInteger("shards", 1) > 1) {
+            unsupported = "Export reads clean_readings, but the DB sink is sharded";
+        } else if (sink.getBoolean("partitioned", false)) {
+            unsupported = "Export reads clean_readings, but the DB sink is partitioned";
+        }
+        if (unsupported != null) {
+            log.warn("La exportación HTTP rechazará las peticiones: el sink de BD no escribe en clean_readings.");
+        }
+        workers = vertx.createSharedWorkerExecutor("export-worker", config().getInteger("workerPoolSize", 4));
+        server = vertx.createHttpServer(new HttpServerOptions(config())).requestHandler(this::handle);
+        server.listen(config().getInteger("port", 8080), config().getString("host", "0.0.0.0"))
+                .onSuccess(s -> {
+                    log.info("Exportación HTTP escuchando en el puerto {}.", s.actualPort());
+                    startPromise.complete();
+                })
+                .onFailure(startPromise::fail);
+    }
+
+    @Override
+    public void stop() {
+        workers.close();
+    }
+
+    /** @return the port the server listens on, once started */
+    public int actualPort() {
+        return server.actualPort();
+    }
+
+    private void handle(HttpServerRequest request) {
+        if (!"/export".equals(request.path())) {
+            request.response().setStatusCode(404).end();
+            return;
+        }
+        if (request.method() != HttpMethod.GET) {
+            request.response().setStatusCode(405).end();
+            return;
+        }
+        if (unsupported != null) {
+            log.warn("Exportación rechazada: " + unsupported);
+            request.response().setStatusCode(501).end(unsupported + "\n");
+            return;
+        }
+
+        Integer typeCode;
+        long from;
+        long to;
+        boolean csv;
+        try {
+            String type = request.getParam("type");
+            typeCode = type == null ? null : ReadingCodes.typeCode(type);
+            if (typeCode != null && typeCode == ReadingCodes.UNKNOWN) {
+                throw new IllegalArgumentException("Unknown type " + type);
+            }
+            from = bound(request.getParam("from"), Long.MIN_VALUE);
+            to = bound(request.getParam("to"), Long.MAX_VALUE);
+            String format = request.getParam("format", "ndjson");
+            if (!format.equals("ndjson") && !format.equals("csv")) {
+                throw new IllegalArgumentException("Unknown format " + format);
+            }
+            csv = format.equals("csv");
+        } catch (RuntimeException e) {
+            request.response().setStatusCode(400).end(e.getMessage() + "\n");
+            return;
+        }
+
+        HttpServerResponse response = request.response();
+        workers.executeBlocking(() -> CleanReadingCursor.open(PersistenceBootstrap.jdbcUrl(), typeCode, from, to,
+                chunkRows), false).onComplete(opened -> {
+            if (opened.failed()) {
+                log.error("Error al abrir la exportación: " + opened.cause().getMessage());
+                response.setStatusCode(500).end();
+                return;
+            }
+            CleanReadingCursor cursor = opened.result();
+            response.setChunked(true)
+                    .putHeader("Content-Type", csv ? "text/csv; charset=utf-8" : "application/x-ndjson");
+            response.closeHandler(v -> close(cursor));
+            if (csv) {
+                response.write("timestamp,variableType,value\n");
+            }
+            pump(response, cursor, csv);
+        });
+    }
+
+    /**
+     * Reads the next chunk on a worker and writes it; continues at once, or after
+     * the response drains when the client is not keeping up.
+     */
+    private void pump(HttpServerResponse response, CleanReadingCursor cursor, boolean csv) {
+        workers.executeBlocking(() -> readChunk(cursor, csv), false).onComplete(read -> {
+            if (response.closed()) {
+                return; // closeHandler releases the cursor
+            }
+            if (read.failed()) {
+                log.error("Error durante la exportación: " + read.cause().getMessage());
+                close(cursor);
+                response.reset();
+                return;
+            }
+            Buffer chunk = read.result();
+            if (chunk == null) {
+                close(cursor);
+                response.end();
+                return;
+            }
+            response.write(chunk);
+            if (response.writeQueueFull()) {
+                response.drainHandler(v -> pump(response, cursor, csv));
+            } else {
+                pump(response, cursor, csv);
+            }
+        });
+    }
+
+    /**
+     * @return up to {@code chunkRows} formatted rows, or {@code null} once the cursor is exhausted
+     */
+    private Buffer readChunk(CleanReadingCursor cursor, boolean csv) throws SQLException {
+        Buffer chunk = Buffer.buffer(chunkRows * 64);
+        int rows = 0;
+        while (rows < chunkRows && cursor.next()) {
+            if (csv) {
+                chunk.appendString(Long.toString(cursor.timestamp())).appendString(",")
+                        .appendString(String.valueOf(cursor.type())).appendString(",")
+                        .appendString(Double.toString(cursor.value())).appendString("\n");
+            } else {
+                chunk.appendString(new JsonObject()
+                        .put("variableType", cursor.type())
+                        .put("timestamp", cursor.timestamp())
+                        .put("value", cursor.value())
+                        .encode()).appendString("\n");
+            }
+            rows++;
+        }
+        return rows == 0 ? null : chunk;
+    }
+
+    /** Closes the cursor on a worker, since closing may wait on the database. */
+    private void close(CleanReadingCursor cursor) {
+        workers.executeBlocking(() -> {
+            cursor.close();
+            return null;
+        }, false).onFailure(e -> log.error("Error al cerrar la exportación: " + e.getMessage()));
+    }
+
+    private static long bound(String value, long absent) {
+        if (value == null || value.isEmpty()) {
+            return absent;
+        }
+        return value.chars().allMatch(Character::isDigit) ? Long.parseLong(value) : ReadingCodes.timestampMillis(value);
+    }
+}
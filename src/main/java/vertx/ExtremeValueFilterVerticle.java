@@ -1,34 +1,95 @@
 package vertx;
 
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.eventbus.DeliveryOptions;
 import io.vertx.core.json.JsonObject;
+import trace.PipelineTracer;
+import trace.StageMetrics;
+import trace.StageEvent;
 
+/**
+ * Last filter of the Vert.x pipeline: drops readings outside the physical range
+ * of their type and forwards the rest to {@code "validated.data"}.
+ *
+ * <p>Rejected readings are not only traced: they are published, with
+ * {@code "reason": "out-of-range"}, on the alert lane
+ * ({@link AlertVerticle#ALERT_ADDRESS}). Valid readings crossing a threshold of
+ * the optional {@code alertThresholds} config, e.g.
+ * {@code {"temperature": {"high": 40, "low": -10}, "mp": {"high": 150}}}, are
+ * published there too ({@code "threshold-high"} / {@code "threshold-low"})
+ * before being forwarded. Alerts carry the ingest-time header of the reading,
+ * so the lane's end-to-end latency can be measured.</p>
+ *
+ * <p>Like the other filters, forwarded readings can be micro-batched with the
+ * {@code batchSize} and {@code batchMaxDelayMs} config keys (see
+ * {@link MicroBatcher}); alerts are always published one by one.</p>
+ *
+ * <p>Each message handled is reported to Java Flight Recorder as a
+ * {@link StageEvent}.</p>
+ */
 public class ExtremeValueFilterVerticle extends AbstractVerticle {
+
+    private static final String STAGE = "extreme";
+
+    private MicroBatcher out;
+
     @Override
     public void start() {
+        PipelineTracer tracer = PipelineTracer.global();
+        JsonObject thresholds = config().getJsonObject("alertThresholds", new JsonObject());
+        out = MicroBatcher.fromConfig(vertx, "validated.data", config());
+        StageMetrics metrics = StageMetrics.of("filter.normalized");
         vertx.eventBus().consumer("filter.normalized", message -> {
-            JsonObject data = (JsonObject) message.body();
-            System.out.println("ExtremeValueFilter - Before: " + data.encode());
-
-            try {
-                String type = data.getString("variableType");
-                double value = data.getDouble("value");
-                boolean valid = true;
-                if ("temperature".equals(type)) {
-                    valid = value >= -50 && value <= 70;
-                } else if ("mp".equals(type)) {
-                    valid = value >= 0 && value <= 1000;
-                }
+            long started = System.nanoTime();
+            long ingest = MicroBatcher.ingestNanos(message);
+            StageEvent event = new StageEvent();
+            event.begin();
+            MicroBatcher.forEach(message.body(), data -> {
+                long traceId = tracer.traceIdOf(data);
+
+                try {
+                    String type = data.getString("variableType");
+                    double value = data.getDouble("value");
+                    boolean valid = true;
+                    if ("temperature".equals(type)) {
+                        valid = value >= -50 && value <= 70;
+                    } else if ("mp".equals(type)) {
+                        valid = value >= 0 && value <= 1000;
+                    }
 
-                if (valid) {
-                    System.out.println("ExtremeValueFilter - Valid data: " + data.encode());
-                    vertx.eventBus().publish("validated.data", data);
-                } else {
-                    System.out.println("ExtremeValueFilter - Discarded extreme value: " + data.encode());
+                    if (valid) {
+                        JsonObject limits = type != null ? thresholds.getJsonObject(type) : null;
+                        if (limits != null && limits.getDouble("high") != null && value > limits.getDouble("high")) {
+                            alert(data, "threshold-high", ingest);
+                        } else if (limits != null && limits.getDouble("low") != null && value < limits.getDouble("low")) {
+                            alert(data, "threshold-low", ingest);
+                        }
+                        tracer.passed(traceId, STAGE);
+                        event.add(type, true);
+                        out.publish(data, ingest);
+                    } else {
+                        alert(data, "out-of-range", ingest); // antes de trazar: la alerta es lo urgente
+                        tracer.rejected(traceId, STAGE, "Extreme value");
+                        event.add(type, false);
+                    }
+                } catch (Exception e) {
+                    tracer.rejected(traceId, STAGE, e.getMessage());
+                    event.add(null, false);
                 }
-            } catch (Exception e) {
-                System.err.println("ExtremeValueFilter - Error: " + e.getMessage());
-            }
+            });
+            event.finish(STAGE);
+            metrics.handled(System.nanoTime() - started);
         });
     }
-}
\ No newline at end of file
+
+    @Override
+    public void stop() {
+        out.flush();
+    }
+
+    /** Alerts are never batched: they go out one by one, ahead of the reading's batch. */
+    private void alert(JsonObject data, String reason, long ingest) {
+        vertx.eventBus().publish(AlertVerticle.ALERT_ADDRESS, data.copy().put("reason", reason),
+                new DeliveryOptions().addHeader(AlertVerticle.INGEST_NANOS_HEADER, Long.toString(ingest)));
+    }
+}
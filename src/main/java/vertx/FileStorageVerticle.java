@@ -1,7 +1,17 @@
 package vertx;
 
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.eventbus.Message;
 import io.vertx.core.json.JsonObject;
+import model.ReadingCodes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import storage.SegmentWriter;
+import trace.PipelineTracer;
+import trace.StorageEvent;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -15,7 +25,9 @@ import java.util.List;
  * and persisting it to a local text file.
  *
  * <p>It listens on the {@code "validated.data"} channel and stores incoming
- * {@link JsonObject} messages both in memory and by appending them to a text file.
+ * {@link JsonObject} messages, or micro-batches of them (see {@link MicroBatcher}),
+ * by appending them to a text file. Nothing is retained in memory once a message
+ * has been written, so the verticle can run indefinitely under sustained load.
  * Each message is expected to be a properly formatted and validated data record.</p>
  *
  * <p>This verticle demonstrates non-blocking file writing using {@code executeBlocking()}
@@ -24,6 +36,32 @@ import java.util.List;
  * <p>The file is named {@code data.txt} and will be created or appended to
  * in the working directory of the application.</p>
  *
+ * <p>When deployed with {@code "format": "segment"} in its configuration, readings
+ * are instead written as fixed-width binary records into segment files (see
+ * {@link storage.SegmentFormat}) under {@code segmentDir} (default
+ * {@code data-segments}). Messages are staged on the event loop and appended in
+ * groups from a single {@code executeBlocking} call, either every
+ * {@code flushIntervalMs} (default 100) or once {@code flushSize} (default 1024)
+ * readings are pending. Segments can be queried with {@link storage.SegmentReader}.</p>
+ *
+ * <p>The address listened on can be changed with {@code address}, e.g. to
+ * {@code "validated.ordered"} behind a {@link ReorderVerticle}. With
+ * {@code lateAddress} the verticle listens on a second address as well, e.g.
+ * {@code "validated.late"} for the readings that stage could not order.</p>
+ *
+ * <p>With {@code "source": "journal"} the verticle does not listen on the event
+ * bus: it reads the readings appended by {@link JournalVerticle} to the journal
+ * in {@code journalDir} (default {@code journal}) as consumer {@code consumer}
+ * (default {@code file}), every {@code flushIntervalMs} and {@code flushSize}
+ * readings at a time, in either format. The journal offset is committed only
+ * after a group has been written, so readings not yet stored when the process
+ * stops are written after the restart, and a slow disk never holds readings in
+ * memory. A journal record that is corrupt or not a reading is logged and
+ * passed over.</p>
+ *
+ * <p>Every write is reported to Java Flight Recorder as a
+ * {@link StorageEvent}.</p>
+ *
  * <p><strong>Note:</strong> This class assumes that messages on {@code "validated.data"}
  * are safe and do not require further schema validation at this stage.</p>
  *
@@ -31,22 +69,103 @@ import java.util.List;
  */
 public class FileStorageVerticle extends AbstractVerticle {
 
-    /** Internal buffer to keep valid data in memory (optional, not persisted across restarts). */
-    private final List<JsonObject> validDataList = new ArrayList<>();
+    private static final Logger log = LoggerFactory.getLogger(FileStorageVerticle.class);
 
     /** Name of the file where validated entries will be stored. */
     private static final String FILE_NAME = "data.txt";
 
+    /** Prefix of the segment files in segment mode. */
+    private static final String SEGMENT_PREFIX = "readings";
+
+    /** Segment writer, only used in segment mode and only from blocking code. */
+    private SegmentWriter segmentWriter;
+
+    /** Readings received on the event loop and not yet handed to the segment writer. */
+    private List<JsonObject> pending = new ArrayList<>();
+
+    private int flushSize;
+
+    /** Journal reader, only used in journal mode. */
+    private JournalSource journalReader;
+
+    /** Timer draining the journal, only set in journal mode. */
+    private long drainTimer;
+
+    /** Last journal drain, complete unless one is running; only accessed on the event loop. */
+    private Future<Void> drain = Future.succeededFuture();
+
     /**
      * Registers an EventBus consumer on the {@code "validated.data"} channel.
-     * When a message is received, it is stored in memory and appended to a file.
+     * When a message is received, it is appended to a file,
+     * or staged for the segment writer in segment mode.
      */
     @Override
-    public void start() {
-        vertx.eventBus().consumer("validated.data", message -> {
-            JsonObject data = (JsonObject) message.body();
-            validDataList.add(data);
-            appendToFile(data.encodePrettily());
+    public void start() throws Exception {
+        flushSize = config().getInteger("flushSize", 1024);
+        boolean segmentFormat = "segment".equals(config().getString("format", "json"));
+        if (segmentFormat) {
+            segmentWriter = new SegmentWriter(Paths.get(config().getString("segmentDir", "data-segments")),
+                    SEGMENT_PREFIX, config().getInteger("segmentRecords", 1 << 20), 1024);
+        }
+        String address = config().getString("address", "validated.data");
+        if ("journal".equals(config().getString("source", "bus"))) {
+            journalReader = new JournalSource(Paths.get(config().getString("journalDir", "journal")),
+                    config().getString("consumer", "file"));
+            drainTimer = vertx.setPeriodic(config().getLong("flushIntervalMs", 100L), id -> drainJournal());
+            return;
+        }
+
+        Handler<Message<Object>> store;
+        if (segmentFormat) {
+            vertx.setPeriodic(config().getLong("flushIntervalMs", 100L), id -> flushSegment());
+            store = message -> {
+                MicroBatcher.forEach(message.body(), pending::add);
+                if (pending.size() >= flushSize) {
+                    flushSegment();
+                }
+            };
+        } else {
+            store = message -> MicroBatcher.forEach(message.body(), data ->
+                    appendToFile(PipelineTracer.withoutTraceId(data).encodePrettily(),
+                            data.getString("variableType")));
+        }
+        vertx.eventBus().consumer(address, store);
+        String lateAddress = config().getString("lateAddress");
+        if (lateAddress != null) {
+            vertx.eventBus().consumer(lateAddress, store);
+        }
+    }
+
+    /**
+     * Writes any staged readings and seals the current segment when running in
+     * segment mode. The final write is queued behind pending flushes. In journal
+     * mode the journal reader is closed once the drain in progress, if any, has
+     * finished.
+     */
+    @Override
+    public void stop(Promise<Void> stopPromise) {
+        Future<Void> drained = Future.succeededFuture();
+        if (journalReader != null) {
+            vertx.cancelTimer(drainTimer);
+            // el drain en curso sigue usando el lector desde un worker: se cierra cuando termina
+            drained = drain.otherwiseEmpty().andThen(res -> journalReader.close());
+        }
+        if (segmentWriter == null) {
+            drained.onComplete(res -> stopPromise.complete());
+            return;
+        }
+        List<JsonObject> batch = pending;
+        pending = new ArrayList<>();
+        drained.compose(v -> vertx.executeBlocking(() -> {
+            writeSegment(batch);
+            segmentWriter.close();
+            return null;
+        }, true)).onComplete(res -> {
+            if (res.succeeded()) {
+                stopPromise.complete();
+            } else {
+                stopPromise.fail(res.cause());
+            }
         });
     }
 
@@ -54,16 +173,21 @@ public class FileStorageVerticle extends AbstractVerticle {
      * Appends a JSON string to the output file asynchronously.
      * Uses {@code executeBlocking()} to ensure the file write does not block the event loop.
      *
-     * @param content the string to write to file (with newline appended)
+     * @param content     the string to write to file (with newline appended)
+     * @param readingType the reading's variable type, reported to Java Flight Recorder
      */
-    private void appendToFile(String content) {
+    private void appendToFile(String content, String readingType) {
         vertx.executeBlocking(promise -> {
+            StorageEvent event = new StorageEvent();
+            event.begin();
             try {
                 Files.write(Paths.get(FILE_NAME),
                         (content + System.lineSeparator()).getBytes(),
                         StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                event.finish("FileStorage.json", readingType, 1, "stored");
                 promise.complete();
             } catch (IOException e) {
+                event.finish("FileStorage.json", readingType, 1, "failed");
                 promise.fail(e);
             }
         }, res -> {
@@ -72,4 +196,90 @@ public class FileStorageVerticle extends AbstractVerticle {
             }
         });
     }
+
+    /**
+     * Hands the staged readings to the segment writer in one ordered blocking call,
+     * so segment appends never run concurrently.
+     */
+    private void flushSegment() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<JsonObject> batch = pending;
+        pending = new ArrayList<>(flushSize);
+        vertx.executeBlocking(() -> {
+            writeSegment(batch);
+            return null;
+        }, true).onComplete(res -> {
+            if (res.failed()) {
+                log.error("Error al escribir el segmento: " + res.cause().getMessage());
+            }
+        });
+    }
+
+    /**
+     * Writes everything the journal holds past this verticle's offset, one
+     * group of {@code flushSize} readings at a time, committing after each
+     * group. On failure the reader goes back to the last commit and the next
+     * tick tries again.
+     */
+    private void drainJournal() {
+        if (!drain.isComplete()) {
+            return;
+        }
+        drain = vertx.executeBlocking(() -> {
+            List<JsonObject> batch;
+            while (!(batch = journalReader.poll(flushSize)).isEmpty()) {
+                if (segmentWriter != null) {
+                    writeSegment(batch);
+                } else {
+                    writeLines(batch);
+                }
+                journalReader.commit();
+            }
+            return null;
+        }, true);
+        drain.onComplete(res -> {
+            if (res.failed()) {
+                journalReader.rewind();
+                log.error("Error al escribir desde el journal: " + res.cause().getMessage());
+            }
+        });
+    }
+
+    private void writeSegment(List<JsonObject> batch) throws IOException {
+        StorageEvent event = new StorageEvent();
+        event.begin();
+        try {
+            for (JsonObject data : batch) {
+                long timestamp = ReadingCodes.timestampMillis(data.getValue("timestamp"));
+                segmentWriter.append(timestamp, data.getDouble("value"),
+                        ReadingCodes.typeCode(data.getString("variableType")),
+                        ReadingCodes.unitCode(data.getString("unit")));
+            }
+            segmentWriter.flush();
+        } catch (IOException e) {
+            event.finish("FileStorage.segment", batch, data -> data.getString("variableType"), "failed");
+            throw e;
+        }
+        event.finish("FileStorage.segment", batch, data -> data.getString("variableType"), "stored");
+    }
+
+    /** Appends a group of readings to the JSON file in a single write. */
+    private void writeLines(List<JsonObject> batch) throws IOException {
+        StorageEvent event = new StorageEvent();
+        event.begin();
+        StringBuilder lines = new StringBuilder();
+        for (JsonObject data : batch) {
+            lines.append(PipelineTracer.withoutTraceId(data).encodePrettily()).append(System.lineSeparator());
+        }
+        try {
+            Files.write(Paths.get(FILE_NAME), lines.toString().getBytes(),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            event.finish("FileStorage.json", batch, data -> data.getString("variableType"), "failed");
+            throw e;
+        }
+        event.finish("FileStorage.json", batch, data -> data.getString("variableType"), "stored");
+    }
 }
@@ -0,0 +1,89 @@
+package vertx;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import storage.JournalReader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Journal reader of a sink deployed with {@code "source": "journal"}, returning
+ * the records as readings.
+ *
+ * <p>A record the sink cannot use – corrupt, or not a JSON object – is logged,
+ * counted in {@link #skipped()} and passed over, so that it never stops the
+ * sink; it is acknowledged with the next {@link #commit()}. Like the
+ * underlying {@link JournalReader}, a source is not thread-safe.</p>
+ */
+final class JournalSource implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(JournalSource.class);
+
+    private final JournalReader reader;
+    private final String consumer;
+    private long undecodable;
+
+    /**
+     * @param directory journal directory
+     * @param consumer  consumer name of the sink
+     * @throws IOException if the consumer's offset file cannot be opened
+     */
+    JournalSource(Path directory, String consumer) throws IOException {
+        this.reader = new JournalReader(directory, consumer);
+        this.consumer = consumer;
+    }
+
+    /**
+     * Reads up to {@code max} readings after the current position.
+     *
+     * @param max maximum number of readings to return
+     * @return the readings, empty only when the sink has caught up with the journal
+     * @throws IOException if a segment cannot be read
+     */
+    List<JsonObject> poll(int max) throws IOException {
+        List<JsonObject> readings = new ArrayList<>();
+        List<byte[]> records;
+        do {
+            long corrupt = reader.skipped();
+            records = reader.poll(max);
+            if (reader.skipped() > corrupt) {
+                log.error("Journal ({}): {} registros corruptos omitidos.", consumer, reader.skipped() - corrupt);
+            }
+            for (byte[] record : records) {
+                try {
+                    readings.add(new JsonObject(Buffer.buffer(record)));
+                } catch (RuntimeException e) {
+                    undecodable++;
+                    log.error("Journal ({}): registro que no es una lectura omitido: {}", consumer, e.getMessage());
+                }
+            }
+        } while (readings.isEmpty() && !records.isEmpty());
+        return readings;
+    }
+
+    /** Acknowledges every reading returned, and every record passed over, so far. */
+    void commit() {
+        reader.commit();
+    }
+
+    /** Goes back to the last commit, so the readings not acknowledged are read again. */
+    void rewind() {
+        reader.rewind();
+    }
+
+    /** @return number of records passed over, corrupt or undecodable */
+    long skipped() {
+        return reader.skipped() + undecodable;
+    }
+
+    @Override
+    public void close() {
+        reader.close();
+    }
+}
@@ -0,0 +1,89 @@
+package vertx;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Handler;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import storage.ReadingJournal;
+import trace.PipelineTracer;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Verticle that appends every validated reading to a {@link ReadingJournal},
+ * decoupling the filters from the sinks.
+ *
+ * <p>It listens on {@code "validated.data"} (single readings or micro-batches),
+ * or on the configured {@code address}, and on {@code lateAddress} too when
+ * configured, and appends each reading, JSON-encoded, to the memory-mapped
+ * journal in {@code dir} (default {@code journal}). The append is a memory copy
+ * done on the event loop, so ingestion never waits for a disk or a database. Sinks deployed with {@code "source": "journal"} read the
+ * journal from their own committed offsets instead of listening on the event
+ * bus.</p>
+ *
+ * <p>Every {@code syncIntervalMs} (default 1000, 0 to leave it to the operating
+ * system) the journal is forced to disk, so that at most that much is lost on a
+ * power failure; a crash of the process loses nothing. Every
+ * {@code retentionIntervalMs} (default 10000) segments consumed by every sink
+ * are deleted. Segments are {@code segmentMb} megabytes (default 64).</p>
+ */
+public class JournalVerticle extends AbstractVerticle {
+
+    private static final Logger log = LoggerFactory.getLogger(JournalVerticle.class);
+
+    private ReadingJournal journal;
+    private long appended;
+    private long failed;
+
+    @Override
+    public void start() throws Exception {
+        journal = new ReadingJournal(Paths.get(config().getString("dir", "journal")),
+                config().getInteger("segmentMb", 64) << 20);
+
+        long syncIntervalMs = config().getLong("syncIntervalMs", 1000L);
+        if (syncIntervalMs > 0) {
+            vertx.setPeriodic(syncIntervalMs, id -> vertx.executeBlocking(() -> {
+                journal.force();
+                return null;
+            }, false));
+        }
+        vertx.setPeriodic(config().getLong("retentionIntervalMs", 10_000L), id -> vertx.executeBlocking(
+                journal::deleteConsumed, false).onComplete(res -> {
+                    if (res.failed()) {
+                        log.error("Error al depurar el journal: " + res.cause().getMessage());
+                    } else if (res.result() > 0) {
+                        log.info("Journal: {} segmentos consumidos eliminados.", res.result());
+                    }
+                }));
+
+        Handler<Message<Object>> append = message -> MicroBatcher.forEach(message.body(), this::append);
+        vertx.eventBus().consumer(config().getString("address", "validated.data"), append);
+        String lateAddress = config().getString("lateAddress");
+        if (lateAddress != null) {
+            vertx.eventBus().consumer(lateAddress, append);
+        }
+        vertx.eventBus().consumer("journal.stats", message -> message.reply(new JsonObject()
+                .put("appended", appended)
+                .put("failed", failed)
+                .put("endOffset", journal.endOffset())));
+    }
+
+    @Override
+    public void stop() {
+        journal.close();
+        log.info("Journal cerrado: {} lecturas escritas.", appended);
+    }
+
+    private void append(JsonObject data) {
+        try {
+            journal.append(PipelineTracer.withoutTraceId(data).toBuffer().getBytes());
+            appended++;
+        } catch (IOException | RuntimeException e) {
+            failed++;
+            log.error("No se pudo escribir en el journal: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package vertx;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Promise;
+import io.vertx.core.file.OpenOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.parsetools.JsonEventType;
+import io.vertx.core.parsetools.JsonParser;
+import model.ReadingCodes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.SplittableRandom;
+
+/**
+ * Verticle that feeds synthetic or replayed readings into the pipeline at a
+ * controlled rate, for load and soak testing.
+ *
+ * <p>In {@code "synthetic"} mode (the default) readings are generated on a
+ * 10&nbsp;ms tick so that the long-run rate matches {@code rate}. Configuration:</p>
+ * <ul>
+ *   <li>{@code rate} – target readings per second (default 1000),</li>
+ *   <li>{@code total} – readings to emit before stopping, {@code 0} for unbounded (default 0),</li>
+ *   <li>{@code temperatureRatio} – share of temperature readings, the rest are {@code "mp"} (default 0.5),</li>
+ *   <li>{@code fahrenheitRatio} – share of temperature readings sent in {@code "F"} (default 0.3),</li>
+ *   <li>{@code mgRatio} – share of particulate readings sent in {@code "mg/m3"} (default 0.2),</li>
+ *   <li>{@code invalidRatio} – share of malformed readings, rejected by the validator (default 0.01),</li>
+ *   <li>{@code outOfRangeRatio} – share of readings outside the accepted range (default 0.02),</li>
+ *   <li>{@code seed} – random seed, for reproducible runs.</li>
+ * </ul>
+ *
+ * <p>In {@code "replay"} mode the concatenated JSON objects of {@code replayFile}
+ * (default {@code data.txt}) are re-published preserving the spacing of their
+ * timestamps, sped up by {@code speed} (default 1.0). The file is streamed, so
+ * its size does not matter.</p>
+ *
+ * <p>Readings are published to {@code address} (default {@code "raw.data.incoming"}).
+ * With a {@code batchSize} greater than 1 they are grouped in micro-batches of
+ * up to that size (see {@link MicroBatcher}).
+ * When the run ends, a summary with the number of readings sent, and how many of
+ * them were generated invalid or out of range, is published to
+ * {@code "loadgen.completed"}.</p>
+ */
+public class LoadGeneratorVerticle extends AbstractVerticle {
+
+    private static final Logger log = LoggerFactory.getLogger(LoadGeneratorVerticle.class);
+
+    /** Interval between two synthetic emission ticks, in milliseconds. */
+    private static final long TICK_MS = 10;
+
+    private MicroBatcher out;
+    private SplittableRandom random;
+    private long sent;
+    private long invalid;
+    private long outOfRange;
+    /** Timestamp of the last synthetic reading, in epoch milliseconds. */
+    private long clock;
+
+    @Override
+    public void start(Promise<Void> startPromise) {
+        JsonObject config = config();
+        out = MicroBatcher.fromConfig(vertx, config.getString("address", "raw.data.incoming"), config);
+        random = config.containsKey("seed") ? new SplittableRandom(config.getLong("seed")) : new SplittableRandom();
+
+        if ("replay".equals(config.getString("mode", "synthetic"))) {
+            startReplay(config, startPromise);
+        } else {
+            startSynthetic(config);
+            startPromise.complete();
+        }
+    }
+
+    private void startSynthetic(JsonObject config) {
+        double rate = config.getDouble("rate", 1000.0);
+        long total = config.getLong("total", 0L);
+        double temperatureRatio = config.getDouble("temperatureRatio", 0.5);
+        double fahrenheitRatio = config.getDouble("fahrenheitRatio", 0.3);
+        double mgRatio = config.getDouble("mgRatio", 0.2);
+        double invalidRatio = config.getDouble("invalidRatio", 0.01);
+        double outOfRangeRatio = config.getDouble("outOfRangeRatio", 0.02);
+        long startNanos = System.nanoTime();
+        clock = System.currentTimeMillis() / 1000 * 1000;
+
+        vertx.setPeriodic(TICK_MS, timerId -> {
+            double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+            long due = (long) (elapsedSeconds * rate) - sent;
+            if (total > 0) {
+                due = Math.min(due, total - sent);
+            }
+            for (long i = 0; i < due; i++) {
+                out.publish(nextReading(temperatureRatio, fahrenheitRatio, mgRatio,
+                        invalidRatio, outOfRangeRatio), System.nanoTime());
+                sent++;
+            }
+            if (total > 0 && sent >= total) {
+                vertx.cancelTimer(timerId);
+                complete();
+            }
+        });
+    }
+
+    /**
+     * Builds one synthetic reading. Valid values are drawn inside the accepted
+     * range expressed in the reading's own unit; out-of-range values stay out of
+     * range after unit normalisation.
+     */
+    private JsonObject nextReading(double temperatureRatio, double fahrenheitRatio, double mgRatio,
+                                   double invalidRatio, double outOfRangeRatio) {
+        clock += 1000;
+        boolean temperature = random.nextDouble() < temperatureRatio;
+        double roll = random.nextDouble();
+
+        JsonObject reading = new JsonObject()
+                .put("variableType", temperature ? "temperature" : "mp")
+                .put("timestamp", clock);
+
+        if (roll < invalidRatio) {
+            invalid++;
+            return reading.put("variableType", "unknown").put("value", random.nextDouble(0, 100)).put("unit", "C");
+        }
+        boolean extreme = roll < invalidRatio + outOfRangeRatio;
+        if (extreme) {
+            outOfRange++;
+        }
+
+        if (temperature) {
+            double celsius = extreme ? random.nextDouble(71, 200) : random.nextDouble(-50, 70);
+            if (random.nextDouble() < fahrenheitRatio) {
+                reading.put("value", celsius * 1.8 + 32).put("unit", "F");
+            } else {
+                reading.put("value", celsius).put("unit", "C");
+            }
+        } else {
+            double micrograms = extreme ? random.nextDouble(1001, 5000) : random.nextDouble(0, 1000);
+            if (random.nextDouble() < mgRatio) {
+                reading.put("value", micrograms / 1000).put("unit", "mg/m3");
+            } else {
+                reading.put("value", micrograms).put("unit", "ug/m3");
+            }
+        }
+        return reading;
+    }
+
+    private void startReplay(JsonObject config, Promise<Void> startPromise) {
+        String file = config.getString("replayFile", "data.txt");
+        double speed = config.getDouble("speed", 1.0);
+
+        vertx.fileSystem().open(file, new OpenOptions().setRead(true).setWrite(false))
+                .onFailure(startPromise::fail)
+                .onSuccess(asyncFile -> {
+                    JsonParser parser = JsonParser.newParser(asyncFile).objectValueMode();
+                    long startNanos = System.nanoTime();
+                    long[] firstTimestamp = { Long.MIN_VALUE };
+
+                    parser.exceptionHandler(err -> log.error("Error replaying " + file + ": " + err.getMessage()));
+                    parser.endHandler(v -> complete());
+                    parser.handler(event -> {
+                        if (event.type() != JsonEventType.VALUE) {
+                            return;
+                        }
+                        JsonObject reading = event.objectValue();
+                        long millis = ReadingCodes.timestampMillis(reading.getValue("timestamp"));
+                        if (firstTimestamp[0] == Long.MIN_VALUE) {
+                            firstTimestamp[0] = millis;
+                        }
+                        long dueNanos = (long) ((millis - firstTimestamp[0]) * 1_000_000L / speed);
+                        long delayMs = (dueNanos - (System.nanoTime() - startNanos)) / 1_000_000L;
+                        if (delayMs >= 1) {
+                            parser.pause();
+                            vertx.setTimer(delayMs, t -> {
+                                publishReplayed(reading);
+                                parser.resume();
+                            });
+                        } else {
+                            publishReplayed(reading);
+                        }
+                    });
+                    startPromise.complete();
+                });
+    }
+
+    private void publishReplayed(JsonObject reading) {
+        out.publish(reading, System.nanoTime());
+        sent++;
+    }
+
+    private void complete() {
+        out.flush();
+        log.info("Generador de carga finalizado: {} lecturas enviadas.", sent);
+        vertx.eventBus().publish("loadgen.completed", new JsonObject()
+                .put("sent", sent)
+                .put("invalid", invalid)
+                .put("outOfRange", outOfRange));
+    }
+}
@@ -3,12 +3,16 @@ package vertx;
 import io.vertx.core.*;
 import io.vertx.core.Vertx;
 import io.vertx.core.json.Json;
+import io.vertx.core.eventbus.MessageConsumer;
 import io.vertx.core.json.JsonObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import repository.PersistenceBootstrap;
+import trace.StartupTimings;
+
+import java.util.List;
+import java.util.function.Supplier;
 
-import java.time.LocalDate;
-import java.time.LocalDateTime;
 
 /**
  * Main verticle that coordinates the deployment of all components in the
@@ -19,9 +23,38 @@ import java.time.LocalDateTime;
  * <ul>
  *   <li>{@code ReaderBDVerticle}: reads raw data (e.g., from database or memory)</li>
  *   <li>{@code ProducerBDVerticle}: publishes readings to the EventBus</li>
+ *   <li>{@code ValidatorFilterVerticle}, {@code UnitNormalizerFilterVerticle},
+ *       {@code ExtremeValueFilterVerticle}: the filter stages</li>
+ *   <li>{@code AlertVerticle}: alert lane for extreme readings, on its own worker thread</li>
+ *   <li>{@code ReorderVerticle}: optional stage forwarding the validated readings in
+ *       timestamp order, when a {@code "reorder"} object is configured; the journal or
+ *       the sinks then listen on {@code "validated.ordered"}, and also on
+ *       {@code "validated.late"}, where it publishes the readings it cannot order</li>
+ *   <li>{@code JournalVerticle}: optional write-ahead journal between the filters and
+ *       the sinks, when a {@code "journal"} object is configured; both sinks then
+ *       read the journal instead of the event bus</li>
  *   <li>{@code FileStorageVerticle}: stores clean results</li>
+ *   <li>{@code DbSinkVerticle}: stores clean results in {@code clean_readings} in batches,
+ *       configured by the optional {@code "dbSink"} object of this verticle's config</li>
+ *   <li>{@code LoadGeneratorVerticle}: optional synthetic load, when configured</li>
+ *   <li>{@code ExportHttpVerticle}: optional HTTP export of clean readings, when an
+ *       {@code "export"} object is configured; it is given the {@code "dbSink"} object
+ *       too, to tell whether the readings are in the single {@code clean_readings}
+ *       table</li>
+ *   <li>{@code AutoscaleSupervisor}: optional, when an {@code "autoscale"} object is
+ *       configured; adds and removes filter instances according to their backlog, the
+ *       hops between producer and filters then being point to point</li>
+ *   <li>{@code SketchVerticle}: optional per-type, per-window quantile sketches of the
+ *       clean readings, when a {@code "sketches"} object is configured</li>
  * </ul>
  *
+ * <p>The producer, the filters and the sinks are configured by the optional
+ * {@code "producer"}, {@code "validator"}, {@code "normalizer"},
+ * {@code "extreme"}, {@code "fileStorage"} and {@code "dbSink"} objects of this
+ * verticle's config; for instance
+ * {@code "validator": {"batchSize": 64, "batchMaxDelayMs": 2}} makes the
+ * validator forward micro-batches (see {@link MicroBatcher}).</p>
+ *
  * <p><strong>Note:</strong> This class demonstrates the use of deployment chaining
  * via {@code Future.compose()} and includes logging of the success/failure status.</p>
  *
@@ -51,14 +84,27 @@ public class MainVerticle extends AbstractVerticle {
 
         DeploymentOptions workerOptions = new DeploymentOptions().setWorker(true);
 
+        // la persistencia se construye en segundo plano mientras se despliegan los verticles
+        PersistenceBootstrap.start();
+        watchFirstReading();
+
         // Chain deployments of verticles in order
         vertx.deployVerticle(new ReaderBDVerticle(), workerOptions)
-                .compose(id -> vertx.deployVerticle(new ProducerBDVerticle()))
-                .compose(id -> vertx.deployVerticle(new ValidatorFilterVerticle()))
-                .compose(id -> vertx.deployVerticle(new UnitNormalizerFilterVerticle()))
-                .compose(id -> vertx.deployVerticle(new ExtremeValueFilterVerticle()))
-                .compose(id -> vertx.deployVerticle(new FileStorageVerticle()))
+                .compose(id -> vertx.deployVerticle(new ProducerBDVerticle(), stageOptions("producer")))
+                .compose(id -> vertx.deployVerticle(new AlertVerticle(), AlertVerticle.deploymentOptions()))
+                .compose(id -> deployOptional("reorder", ReorderVerticle::new))
+                .compose(id -> deployOptional("journal", JournalVerticle::new))
+                .compose(id -> vertx.deployVerticle(new ValidatorFilterVerticle(), stageOptions("validator")))
+                .compose(id -> vertx.deployVerticle(new UnitNormalizerFilterVerticle(), stageOptions("normalizer")))
+                .compose(id -> vertx.deployVerticle(new ExtremeValueFilterVerticle(), stageOptions("extreme")))
+                .compose(id -> vertx.deployVerticle(new FileStorageVerticle(), sinkOptions("fileStorage")))
+                .compose(id -> vertx.deployVerticle(new DbSinkVerticle(), sinkOptions("dbSink")))
+                .compose(id -> deployOptional("loadGenerator", LoadGeneratorVerticle::new))
+                .compose(id -> deployOptional("export", ExportHttpVerticle::new))
+                .compose(id -> deployOptional("sketches", SketchVerticle::new))
+                .compose(id -> deployOptional("autoscale", this::autoscaleSupervisor))
                 .onSuccess(id -> {
+                    StartupTimings.global().mark("verticles deployed");
                     log.info("✅ Sistema de monitoreo iniciado.");
                     startPromise.complete();
                     // se testea enviando datos de ejemplo a traves del eventBus.
@@ -69,6 +115,114 @@ public class MainVerticle extends AbstractVerticle {
                     startPromise.fail(err);
                 });
     }
+    /**
+     * Closes the shared persistence context when the system is undeployed.
+     */
+    @Override
+    public void stop() {
+        PersistenceBootstrap.close();
+    }
+
+    /**
+     * Marks the arrival of the first validated reading and reports the startup
+     * timings at that point, since time-to-first-reading is what a restart costs.
+     */
+    private void watchFirstReading() {
+        MessageConsumer<Object> consumer = vertx.eventBus().consumer("validated.data");
+        consumer.handler(message -> {
+            consumer.unregister();
+            StartupTimings.global().mark("first reading");
+            StartupTimings.global().report();
+        });
+    }
+
+    /**
+     * @param key name of a stage in this verticle's configuration
+     * @return deployment options carrying the stage's config object, empty when absent
+     */
+    private DeploymentOptions stageOptions(String key) {
+        return new DeploymentOptions().setConfig(hopConfig(key, config().getJsonObject(key, new JsonObject())));
+    }
+
+    /**
+     * @param key    name of a stage in this verticle's configuration
+     * @param config the stage's config object
+     * @return the config, switched to point-to-point delivery when the stage feeds a
+     *         filter and autoscaling is configured, so that filter instances share messages,
+     *         for the journal to the ordered and the late readings when reordering is
+     *         configured, for reordering to accept the load generator's timestamps,
+     *         which run ahead of the clock, unless {@code maxAheadMs} is set, and for
+     *         the export to know how the DB sink stores the readings
+     */
+    private JsonObject hopConfig(String key, JsonObject config) {
+        boolean feedsFilter = List.of("producer", "loadGenerator", "validator", "normalizer").contains(key);
+        if (feedsFilter && config().getJsonObject("autoscale") != null) {
+            return config.copy().put("delivery", "send");
+        }
+        if (key.equals("journal") && config().getJsonObject("reorder") != null) {
+            return config.copy().put("address", ReorderVerticle.ORDERED_ADDRESS)
+                    .put("lateAddress", ReorderVerticle.LATE_ADDRESS);
+        }
+        if (key.equals("reorder") && config().getJsonObject("loadGenerator") != null
+                && !config.containsKey("maxAheadMs")) {
+            return config.copy().put("maxAheadMs", -1L);
+        }
+        if (key.equals("export")) {
+            return config.copy().put("dbSink", config().getJsonObject("dbSink", new JsonObject()));
+        }
+        return config;
+    }
+
+    /**
+     * Deploys an optional component when this verticle's configuration contains
+     * an object under {@code key}; that object, adjusted by {@link #hopConfig},
+     * becomes the component's config.
+     *
+     * @param key      name of the component in this verticle's configuration
+     * @param verticle creates the component, only called when it is configured
+     * @return a future completed with the deployment id, or with {@code null} when
+     *         the component is not configured
+     */
+    private Future<String> deployOptional(String key, Supplier<Verticle> verticle) {
+        JsonObject componentConfig = config().getJsonObject(key);
+        if (componentConfig == null) {
+            return Future.succeededFuture();
+        }
+        return vertx.deployVerticle(verticle.get(),
+                new DeploymentOptions().setConfig(hopConfig(key, componentConfig)));
+    }
+
+    /** @return a supervisor adding and removing instances of the three filter stages */
+    private AutoscaleSupervisor autoscaleSupervisor() {
+        return new AutoscaleSupervisor(List.of(
+                new AutoscaleSupervisor.Stage("validator", "raw.data.incoming",
+                        ValidatorFilterVerticle::new, stageOptions("validator")),
+                new AutoscaleSupervisor.Stage("normalizer", "filter.validated",
+                        UnitNormalizerFilterVerticle::new, stageOptions("normalizer")),
+                new AutoscaleSupervisor.Stage("extreme", "filter.normalized",
+                        ExtremeValueFilterVerticle::new, stageOptions("extreme"))));
+    }
+
+    /**
+     * @param key name of a sink in this verticle's configuration
+     * @return the sink's deployment options, switched to reading the journal when one is configured,
+     *         or to the ordered and the late readings when reordering is
+     */
+    private DeploymentOptions sinkOptions(String key) {
+        DeploymentOptions options = stageOptions(key);
+        JsonObject journalConfig = config().getJsonObject("journal");
+        if (journalConfig != null) {
+            options.setConfig(options.getConfig().copy()
+                    .put("source", "journal")
+                    .put("journalDir", journalConfig.getString("dir", "journal")));
+        } else if (config().getJsonObject("reorder") != null) {
+            options.setConfig(options.getConfig().copy()
+                    .put("address", ReorderVerticle.ORDERED_ADDRESS)
+                    .put("lateAddress", ReorderVerticle.LATE_ADDRESS));
+        }
+        return options;
+    }
+
     /**
      * Launches the Vert.x application from the command line.
      *
@@ -90,7 +244,7 @@ public class MainVerticle extends AbstractVerticle {
                 .put("variableType", "temperature")
                 .put("value", 86.0)
                 .put("unit", "F")
-                .put("timestamp", LocalDateTime.now().toString());
+                .put("timestamp", System.currentTimeMillis());
         vertx.eventBus().publish("raw.data.incoming", tempF);
 
         // ejemplo con with mg/m3
@@ -98,7 +252,7 @@ public class MainVerticle extends AbstractVerticle {
                 .put("variableType", "mp")
                 .put("value", 0.5)
                 .put("unit", "mg/m3")
-                .put("timestamp", LocalDateTime.now().toString());
+                .put("timestamp", System.currentTimeMillis());
         vertx.eventBus().publish("raw.data.incoming", mp);
 
         // ejemplo con un valor invalido
@@ -106,7 +260,7 @@ public class MainVerticle extends AbstractVerticle {
                 .put("variableType", "unknown")
                 .put("value", 100.0)
                 .put("unit", "C")
-                .put("timestamp", LocalDateTime.now().toString());
+                .put("timestamp", System.currentTimeMillis());
         vertx.eventBus().publish("raw.data.incoming", invalid);
     }
 
@@ -3,6 +3,15 @@ package vertx;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 
 /**
  * Verticle responsible for initiating a request to retrieve raw data (e.g., from a database or memory)
@@ -15,6 +24,31 @@ import io.vertx.core.json.JsonObject;
  *
  * <p>This is typically the second verticle in the chain, following a reader or mock data provider.</p>
  *
+ * <p>With a {@code batchSize} greater than 1 in its configuration the readings are
+ * published in micro-batches instead (see {@link MicroBatcher}); each message is
+ * stamped with the time its readings entered the pipeline.</p>
+ *
+ * <p>With {@code "mode": "tail"} the verticle does not stop after the first
+ * read: it keeps polling {@code "db.read"} for the rows of {@code raw_readings}
+ * with an id greater than the last one seen, {@code pageSize} rows at a time
+ * (default 500), so rows inserted while the pipeline runs are processed too.
+ * The next poll follows after {@code minPollMs} (default 50) while rows keep
+ * arriving, immediately when a page was full, and with a delay doubling up to
+ * {@code maxPollMs} (default 5000) while none do. The last id seen is written
+ * to {@code cursorFile} (default {@code producer.cursor}), atomically, after
+ * each page is published, and read back at startup: a restart resumes after the
+ * last published page instead of reading the table again. The next page is not
+ * read until the cursor is written; a failed write is retried with the same
+ * growing delay. Counters are answered as JSON on {@code "producer.stats"}.</p>
+ *
+ * <p>The cursor records what was published on the event bus, not what the sinks
+ * stored, since nothing acknowledges a reading back to the producer. Across a
+ * crash delivery is therefore at-most-once for the readings published but not
+ * yet stored – they are lost, and not read again – and a page published just
+ * before the crash, whose cursor was not written yet, is published once more.
+ * Deploy a journal (see {@link JournalVerticle}) to bound what a crash can lose
+ * to what was published but not yet journaled.</p>
+ *
  * <p><strong>Note:</strong> Error handling is minimal and assumes the consumer of {@code "db.read"}
  * responds with a valid JSON array.</p>
  *
@@ -22,28 +56,146 @@ import io.vertx.core.json.JsonObject;
  */
 public class ProducerBDVerticle extends AbstractVerticle {
 
+    private static final Logger log = LoggerFactory.getLogger(ProducerBDVerticle.class);
+
+    private MicroBatcher out;
+    private Path cursorFile;
+    private long cursor;
+    private long published;
+    private long polls;
+    private long idleDelay;
+    private long timerId = -1;
+    private boolean stopped;
+
     /**
      * Called when this verticle is deployed. Sends a request to the address {@code "db.read"}
      * and publishes each entry in the resulting {@link JsonArray} to {@code "raw.data.incoming"}.
      */
     @Override
-    public void start() {
+    public void start() throws IOException {
+        if ("tail".equals(config().getString("mode", "once"))) {
+            startTail();
+            return;
+        }
 
         JsonObject request = new JsonObject();  // can be used to add filters or params if needed
 
         vertx.eventBus().request("db.read", request, ar -> {
             if (ar.succeeded()) {
                 JsonArray readings = (JsonArray) ar.result().body();
+                MicroBatcher out = MicroBatcher.fromConfig(vertx, "raw.data.incoming", config());
                 for (int i = 0; i < readings.size(); i++) {
                     JsonObject reading = readings.getJsonObject(i);
-                    vertx.eventBus().publish("raw.data.incoming", reading);
+                    out.publish(reading, System.nanoTime());
+                }
+                out.flush(); // no llegan mas lecturas: no tiene sentido esperar el plazo
+            } else {
+                System.err.println("Failed to read from database: " + ar.cause().getMessage());
+            }
+        });
+    }
 
+    @Override
+    public void stop() {
+        stopped = true;
+        if (timerId >= 0) {
+            vertx.cancelTimer(timerId);
+        }
+    }
 
+    private void startTail() throws IOException {
+        out = MicroBatcher.fromConfig(vertx, "raw.data.incoming", config());
+        cursorFile = Paths.get(config().getString("cursorFile", "producer.cursor"));
+        if (Files.exists(cursorFile)) {
+            cursor = Long.parseLong(Files.readString(cursorFile, StandardCharsets.UTF_8).trim());
+        }
+        idleDelay = config().getLong("minPollMs", 50L);
+        log.info("Siguiendo raw_readings desde el id {}.", cursor);
+        vertx.eventBus().consumer("producer.stats", message -> message.reply(new JsonObject()
+                .put("cursor", cursor)
+                .put("published", published)
+                .put("polls", polls)));
+        poll();
+    }
+
+    /** Reads the next page after the cursor, publishes it and schedules the next poll. */
+    private void poll() {
+        timerId = -1;
+        if (stopped) {
+            return;
+        }
+        int pageSize = config().getInteger("pageSize", 500);
+        polls++;
+        vertx.eventBus().<JsonObject>request("db.read", new JsonObject().put("afterId", cursor).put("limit", pageSize))
+                .onComplete(ar -> {
+                    if (ar.failed()) {
+                        log.error("No se pudo leer raw_readings: " + ar.cause().getMessage());
+                        schedule(backOff());
+                        return;
+                    }
+                    JsonArray readings = ar.result().body().getJsonArray("readings");
+                    long lastId = ar.result().body().getLong("lastId");
+                    if (readings.isEmpty()) {
+                        schedule(backOff());
+                        return;
+                    }
+                    for (int i = 0; i < readings.size(); i++) {
+                        out.publish(readings.getJsonObject(i), System.nanoTime());
+                    }
+                    out.flush();
+                    published += readings.size();
+                    idleDelay = config().getLong("minPollMs", 50L);
+                    long next = readings.size() >= pageSize ? 0 : idleDelay; // pagina llena: hay mas esperando
+                    cursor = lastId; // ya publicado: no se vuelve a publicar
+                    persistCursor(next);
+                });
+    }
 
+    /**
+     * Writes the cursor, then schedules the next poll after {@code next}
+     * milliseconds; a failed write is retried first, so the file never falls
+     * more than one page behind.
+     */
+    private void persistCursor(long next) {
+        long lastId = cursor;
+        vertx.executeBlocking(() -> {
+            saveCursor(lastId);
+            return null;
+        }).onComplete(saved -> {
+            if (saved.failed()) {
+                log.error("No se pudo guardar el cursor, se reintentará: " + saved.cause().getMessage());
+                if (!stopped) {
+                    timerId = vertx.setTimer(backOff(), id -> persistCursor(next));
                 }
-            } else {
-                System.err.println("Failed to read from database: " + ar.cause().getMessage());
+                return;
             }
+            idleDelay = config().getLong("minPollMs", 50L);
+            schedule(next);
         });
     }
+
+    /** @return the current idle delay, doubling the next one up to {@code maxPollMs} */
+    private long backOff() {
+        long delay = idleDelay;
+        idleDelay = Math.min(idleDelay * 2, config().getLong("maxPollMs", 5000L));
+        return delay;
+    }
+
+    private void schedule(long delayMs) {
+        if (stopped) {
+            return;
+        }
+        if (delayMs <= 0) {
+            vertx.runOnContext(v -> poll());
+        } else {
+            timerId = vertx.setTimer(delayMs, id -> poll());
+        }
+    }
+
+    /** Writes the cursor to a temporary file and moves it over the previous one. */
+    private void saveCursor(long lastId) throws IOException {
+        Path tmp = cursorFile.resolveSibling(cursorFile.getFileName() + ".tmp");
+        Files.writeString(tmp, Long.toString(lastId), StandardCharsets.UTF_8);
+        Files.move(tmp, cursorFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
 }
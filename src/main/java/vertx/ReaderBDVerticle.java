@@ -1,12 +1,15 @@
 package vertx;
 
 import model.RawData;
+import model.ReadingCodes;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.Future;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityManagerFactory;
-import jakarta.persistence.Persistence;
+import repository.PersistenceBootstrap;
+import trace.PipelineTracer;
 
 import java.util.List;
 
@@ -16,85 +19,92 @@ import java.util.List;
  *
  * <p>It listens on the address {@code "db.read"} and performs the query inside
  * {@code executeBlocking} to avoid blocking the Vert.x event loop. Results are
- * returned as a {@link JsonArray} containing one JSON object per row.</p>
+ * returned as a {@link JsonArray} containing one JSON object per row, with the
+ * timestamp as UTC epoch milliseconds so no stage has to parse dates.</p>
  *
  * <p>Lifecycle:</p>
  * <ol>
- *   <li>{@code start()} – initialises a JPA {@link EntityManagerFactory} and
- *       registers the EventBus consumer.</li>
- *   <li>On each request, retrieves all rows from {@code RawData} and converts
- *       them to JSON.</li>
- *   <li>{@code stop()} – closes the factory when the verticle is undeployed.</li>
+ *   <li>{@code start()} – registers the EventBus consumer right away; the shared
+ *       JPA {@link EntityManagerFactory} is obtained from {@link PersistenceBootstrap},
+ *       which builds it in the background while the rest of the pipeline deploys.</li>
+ *   <li>On each request, waits for the factory if it is not ready yet, retrieves
+ *       all rows from {@code RawData} and converts them to JSON.</li>
+ *   <li>The factory is shared and owned by {@link PersistenceBootstrap}; it is not
+ *       closed when this verticle is undeployed.</li>
  * </ol>
  *
- * <p><strong>Note for students:</strong> Adjust the persistence-unit name
- * ({@code "myPersistenceUnit"}) to match your <code>persistence.xml</code>.
- * You may also extend the JPQL query to add ordering, filtering or pagination
+ * <p>A request carrying {@code afterId} is answered one page at a time for
+ * tailing (see {@link ProducerBDVerticle}): the rows with an id greater than
+ * {@code afterId}, in id order, at most {@code limit} of them (default 500).
+ * The reply is then a {@link JsonObject} with the rows under
+ * {@code "readings"}, each carrying its id as {@code traceId}, and the id of
+ * the last one under {@code "lastId"} ({@code afterId} when there is none).</p>
+ *
+ * <p>You may extend the JPQL query to add ordering, filtering or pagination
  * if required.</p>
  *
  * @author Daniel San Martín
  */
 public class ReaderBDVerticle extends AbstractVerticle {
 
-    /** Factory used to create {@link EntityManager} instances per request. */
-    private EntityManagerFactory entityManagerFactory;
-
     /**
-     * Sets up the JPA factory and registers the {@code "db.read"} consumer.
-     * All database access is wrapped in {@code executeBlocking} to keep the
-     * event-loop thread unblocked.
+     * Registers the {@code "db.read"} consumer. All database access is wrapped
+     * in {@code executeBlocking} to keep the event-loop thread unblocked.
      */
     @Override
     public void start() {
-        entityManagerFactory = Persistence.createEntityManagerFactory("environment");
-
-        vertx.eventBus().consumer("db.read", message -> {
-            vertx.executeBlocking(promise -> {
-                EntityManager entityManager = null;
-                try {
-                    entityManager = entityManagerFactory.createEntityManager();
-
-                    List<RawData> readings = entityManager
-                            .createQuery("SELECT r FROM RawData r", RawData.class)
-                            .getResultList();
+        vertx.eventBus().<JsonObject>consumer("db.read", message -> {
+            JsonObject request = message.body() != null ? message.body() : new JsonObject();
+            Long afterId = request.getLong("afterId");
+            int limit = request.getInteger("limit", 500);
+            Future.fromCompletionStage(PersistenceBootstrap.start(), context).onComplete(ready -> {
+                if (ready.failed()) {
+                    message.fail(500, ready.cause().getMessage());
+                    return;
+                }
+                EntityManagerFactory entityManagerFactory = ready.result();
+                vertx.<Object>executeBlocking(() -> {
+                    EntityManager entityManager = entityManagerFactory.createEntityManager();
+                    try {
+                        List<RawData> readings = afterId == null
+                                ? entityManager.createQuery("SELECT r FROM RawData r", RawData.class).getResultList()
+                                : entityManager.createQuery("SELECT r FROM RawData r WHERE r.id > :afterId ORDER BY r.id",
+                                                RawData.class)
+                                        .setParameter("afterId", afterId.intValue())
+                                        .setMaxResults(limit)
+                                        .getResultList();
 
-                    JsonArray resultArray = new JsonArray();
-                    for (RawData reading : readings) {
-                        resultArray.add(new JsonObject()
-                                .put("variableType", reading.getType())
-                                .put("timestamp", reading.getTimestamp().toString())
-                                .put("value", reading.getValue())
-                                .put("unit", reading.getUnit())); // se necesita para poder hacer el filtro de unidad
+                        JsonArray resultArray = new JsonArray();
+                        for (RawData reading : readings) {
+                            JsonObject row = new JsonObject()
+                                    .put("variableType", reading.getType())
+                                    .put("timestamp", ReadingCodes.toEpochMillis(reading.getTimestamp()))
+                                    .put("value", reading.getValue())
+                                    .put("unit", reading.getUnit()); // se necesita para poder hacer el filtro de unidad
+                            if (afterId != null) {
+                                row.put(PipelineTracer.TRACE_ID_FIELD, reading.getId().longValue()); // el id es la traza
+                            }
+                            resultArray.add(row);
+                        }
 
+                        if (afterId == null) {
+                            return resultArray;
+                        }
+                        long lastId = readings.isEmpty() ? afterId : readings.get(readings.size() - 1).getId();
+                        return new JsonObject().put("readings", resultArray).put("lastId", lastId);
+                    } finally {
+                        if (entityManager.isOpen()) {
+                            entityManager.close();
+                        }
                     }
-
-                    promise.complete(resultArray);
-
-                } catch (Exception e) {
-                    promise.fail(e);
-                } finally {
-                    if (entityManager != null && entityManager.isOpen()) {
-                        entityManager.close();
+                }).onComplete(asyncResult -> {
+                    if (asyncResult.succeeded()) {
+                        message.reply(asyncResult.result());
+                    } else {
+                        message.fail(500, asyncResult.cause().getMessage());
                     }
-                }
-            }, asyncResult -> {
-                if (asyncResult.succeeded()) {
-                    message.reply(asyncResult.result());
-                } else {
-                    message.fail(500, asyncResult.cause().getMessage());
-                }
+                });
             });
         });
     }
-
-    /**
-     * Closes the {@link EntityManagerFactory} when the verticle is undeployed,
-     * releasing all underlying resources.
-     */
-    @Override
-    public void stop() {
-        if (entityManagerFactory != null && entityManagerFactory.isOpen()) {
-            entityManagerFactory.close();
-        }
-    }
 }
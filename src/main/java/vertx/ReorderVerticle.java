@@ -0,0 +1,141 @@
+package vertx;
+
+import flow.ReorderBuffer;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.json.JsonObject;
+import model.ReadingCodes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import trace.PipelineTracer;
+
+/**
+ * Optional stage between the filters and the sinks that forwards the validated
+ * readings in timestamp order.
+ *
+ * <p>It listens on {@code "validated.data"} (single readings or micro-batches)
+ * and passes the readings through a {@link ReorderBuffer}: a reading is held
+ * until no reading more than {@code maxLatenessMs} (default 5000) older than the
+ * newest one is expected, then published on {@code "validated.ordered"}, which
+ * the sinks listen on when the stage is deployed. At most {@code capacity}
+ * readings (default 100000) are held; when full, the oldest is forwarded early.
+ * When no reading arrives for {@code idleFlushMs} (default 1000) the held
+ * readings are forwarded, so the tail of a stream is not held indefinitely.</p>
+ *
+ * <p>Readings older than the last one forwarded cannot be placed in order; they
+ * are published, one by one, on {@code "validated.late"}, traced as rejected
+ * and counted. So are readings more than {@code maxAheadMs} (default 60000)
+ * ahead of the wall clock, e.g. from a sensor with a wrong clock: letting them
+ * move the watermark would make every later reading late. A negative
+ * {@code maxAheadMs} disables the check, as needed for sources whose synthetic
+ * timestamps run ahead of the clock, like {@link LoadGeneratorVerticle}
+ * (MainVerticle does so when both are configured). {@link MainVerticle} has
+ * the journal or the sinks listen on {@code "validated.late"} as well, so those
+ * readings are still stored, out of order.
+ * Counters are answered as JSON on {@code "reorder.stats"}.
+ * Forwarded readings can be micro-batched with {@code batchSize} and
+ * {@code batchMaxDelayMs} (see {@link MicroBatcher}) and keep their ingest-time
+ * header.</p>
+ */
+public class ReorderVerticle extends AbstractVerticle {
+
+    private static final Logger log = LoggerFactory.getLogger(ReorderVerticle.class);
+
+    /** Address of the readings forwarded in timestamp order. */
+    public static final String ORDERED_ADDRESS = "validated.ordered";
+
+    /** Address of the readings that arrived too late to be ordered. */
+    public static final String LATE_ADDRESS = "validated.late";
+
+    private static final String STAGE = "reorder";
+
+    /** Reading held by the buffer, with the ingest time of its message. */
+    private static final class Held {
+
+        final JsonObject data;
+        final long timestamp;
+        final long ingestNanos;
+
+        Held(JsonObject data, long timestamp, long ingestNanos) {
+            this.data = data;
+            this.timestamp = timestamp;
+            this.ingestNanos = ingestNanos;
+        }
+    }
+
+    private MicroBatcher out;
+    private ReorderBuffer<Held> buffer;
+    private PipelineTracer tracer;
+    private long invalid;
+    private long ahead;
+    private long maxAheadMs;
+    private boolean idle;
+
+    @Override
+    public void start() {
+        tracer = PipelineTracer.global();
+        maxAheadMs = config().getLong("maxAheadMs", 60_000L);
+        out = MicroBatcher.fromConfig(vertx, ORDERED_ADDRESS, config());
+        buffer = new ReorderBuffer<>(config().getLong("maxLatenessMs", 5000L),
+                config().getInteger("capacity", 100_000), held -> held.timestamp,
+                held -> out.publish(held.data, held.ingestNanos), this::late);
+
+        vertx.eventBus().consumer("validated.data", message -> {
+            long ingest = MicroBatcher.ingestNanos(message);
+            MicroBatcher.forEach(message.body(), data -> {
+                long timestamp;
+                try {
+                    timestamp = ReadingCodes.timestampMillis(data.getValue("timestamp"));
+                } catch (RuntimeException e) {
+                    invalid++;
+                    tracer.rejected(tracer.traceIdOf(data), STAGE, e.getMessage());
+                    return;
+                }
+                Held held = new Held(data, timestamp, ingest);
+                long now = System.currentTimeMillis();
+                if (maxAheadMs >= 0 && timestamp > now && timestamp - now > maxAheadMs) {
+                    ahead++; // no debe adelantar la marca de agua
+                    sideline(held, "Reading ahead of the clock");
+                    return;
+                }
+                buffer.offer(held);
+            });
+            idle = false;
+        });
+        vertx.setPeriodic(config().getLong("idleFlushMs", 1000L), id -> {
+            if (idle && buffer.size() > 0) {
+                buffer.flush(); // sin lecturas nuevas: se libera la cola
+                out.flush();
+            }
+            idle = true;
+        });
+        vertx.eventBus().consumer("reorder.stats", message -> message.reply(new JsonObject()
+                .put("held", buffer.size())
+                .put("forwarded", buffer.emitted())
+                .put("late", buffer.late())
+                .put("ahead", ahead)
+                .put("forced", buffer.forced())
+                .put("invalid", invalid)));
+    }
+
+    @Override
+    public void stop() {
+        buffer.flush();
+        out.flush();
+        if (buffer.late() > 0 || ahead > 0) {
+            log.info("Reordenamiento: {} lecturas tardias y {} adelantadas al reloj de {}.", buffer.late(), ahead,
+                    buffer.emitted() + buffer.late() + ahead);
+        }
+    }
+
+    private void late(Held held) {
+        sideline(held, "Late reading");
+    }
+
+    /** Traces a reading that cannot be forwarded in order and publishes it on the late address. */
+    private void sideline(Held held, String reason) {
+        tracer.rejected(tracer.traceIdOf(held.data), STAGE, reason);
+        vertx.eventBus().publish(LATE_ADDRESS, held.data,
+                new DeliveryOptions().addHeader(AlertVerticle.INGEST_NANOS_HEADER, Long.toString(held.ingestNanos)));
+    }
+}
@@ -0,0 +1,115 @@
+package vertx;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.json.JsonObject;
+import model.ReadingCodes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import repository.PersistenceBootstrap;
+import repository.SketchRepository;
+import sketch.DDSketch;
+import sketch.WindowedSketches;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Verticle that keeps quantile sketches ({@link DDSketch}) of the readings
+ * leaving {@link ExtremeValueFilterVerticle}, per variable type and time window.
+ *
+ * <p>It listens on {@code "validated.data"} (single readings or micro-batches)
+ * and counts each reading in the sketch of its type and window, on the event
+ * loop and in fixed memory. Every {@code flushIntervalMs} (default 10000) the
+ * sketches are merged into {@code reading_sketches} through a
+ * {@link SketchRepository}, on a worker thread; sketches that could not be
+ * stored are kept and retried on the next flush. Windows last
+ * {@code windowMs} (default one hour) and sketches have a relative accuracy
+ * of {@code relativeAccuracy} (default 0.01).</p>
+ *
+ * <p>It answers requests on {@code "sketch.quantiles"} with a body
+ * {@code {"type": "temperature", "from": ..., "to": ...}} (epoch milliseconds,
+ * window starts in {@code [from, to)}) with the count, minimum, maximum, p50,
+ * p95 and p99 of the matching windows; pending sketches are flushed first, so
+ * the answer includes every reading seen so far. Raw readings are never read.</p>
+ */
+public class SketchVerticle extends AbstractVerticle {
+
+    private static final Logger log = LoggerFactory.getLogger(SketchVerticle.class);
+
+    private WindowedSketches sketches;
+    private SketchRepository repository;
+    private final List<WindowedSketches.Window> pending = new ArrayList<>();
+
+    @Override
+    public void start() throws Exception {
+        sketches = new WindowedSketches(config().getLong("windowMs", 3_600_000L),
+                config().getDouble("relativeAccuracy", DDSketch.DEFAULT_RELATIVE_ACCURACY));
+        repository = new SketchRepository(config().getString("jdbcUrl", PersistenceBootstrap.jdbcUrl()));
+
+        vertx.eventBus().consumer("validated.data", message -> MicroBatcher.forEach(message.body(), this::add));
+        vertx.setPeriodic(config().getLong("flushIntervalMs", 10_000L), id -> flush());
+        vertx.eventBus().<JsonObject>consumer("sketch.quantiles", message -> {
+            JsonObject query = message.body();
+            int typeCode = ReadingCodes.typeCode(query.getString("type"));
+            long from = query.getLong("from", Long.MIN_VALUE);
+            long to = query.getLong("to", Long.MAX_VALUE);
+            flush().compose(v -> vertx.executeBlocking(
+                    () -> repository.find(typeCode, sketches.windowMillis(), from, to))).onComplete(res -> {
+                if (res.failed()) {
+                    message.fail(500, res.cause().getMessage());
+                    return;
+                }
+                DDSketch sketch = res.result();
+                message.reply(new JsonObject()
+                        .put("type", query.getString("type"))
+                        .put("count", sketch.count())
+                        .put("min", sketch.min())
+                        .put("max", sketch.max())
+                        .put("p50", sketch.quantile(0.5))
+                        .put("p95", sketch.quantile(0.95))
+                        .put("p99", sketch.quantile(0.99)));
+            });
+        });
+    }
+
+    @Override
+    public void stop(Promise<Void> stopPromise) {
+        flush().onComplete(res -> {
+            try {
+                repository.close();
+            } catch (Exception e) {
+                log.error("Error al cerrar el repositorio de sketches: " + e.getMessage());
+            }
+            stopPromise.complete();
+        });
+    }
+
+    private void add(JsonObject data) {
+        try {
+            sketches.add(ReadingCodes.typeCode(data.getString("variableType")),
+                    ReadingCodes.timestampMillis(data.getValue("timestamp")), data.getDouble("value"));
+        } catch (RuntimeException e) {
+            log.warn("Lectura ignorada por los sketches: " + e.getMessage());
+        }
+    }
+
+    /** Merges the sketches built since the last flush into the repository, in order with the queries. */
+    private Future<Void> flush() {
+        pending.addAll(sketches.drain());
+        if (pending.isEmpty()) {
+            return Future.succeededFuture();
+        }
+        List<WindowedSketches.Window> batch = new ArrayList<>(pending);
+        pending.clear();
+        return vertx.executeBlocking(() -> {
+            repository.merge(batch, sketches.windowMillis());
+            return (Void) null;
+        }).recover(e -> {
+            log.error("No se pudieron guardar {} sketches, se reintentara: {}", batch.size(), e.getMessage());
+            pending.addAll(0, batch); // el merge es aditivo: se reintentan tal cual
+            return Future.succeededFuture();
+        });
+    }
+}
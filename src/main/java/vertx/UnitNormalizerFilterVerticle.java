@@ -2,33 +2,57 @@ package vertx;
 
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.json.JsonObject;
+import trace.PipelineTracer;
+import trace.StageMetrics;
+import trace.StageEvent;
 
 public class UnitNormalizerFilterVerticle extends AbstractVerticle {
+
+    private static final String STAGE = "normalizer";
+
+    private MicroBatcher out;
+
     @Override
     public void start() {
+        PipelineTracer tracer = PipelineTracer.global();
+        out = MicroBatcher.fromConfig(vertx, "filter.normalized", config());
+        StageMetrics metrics = StageMetrics.of("filter.validated");
         vertx.eventBus().consumer("filter.validated", message -> {
-            JsonObject data = (JsonObject) message.body();
-
-            System.out.println("UnitNormalizer - Before: " + data.encode());
-
-            try {
-                String type = data.getString("variableType");
-                double value = data.getDouble("value");
-                String unit = data.getString("unit");
-                if ("temperature".equals(type) && "F".equals(unit)) {
-                    double celsius = (value - 32) / 1.8;
-                    data.put("measuredValue", celsius);
-                    data.put("unit", "C");
-                } else if ("mp".equals(type) && "mg/m3".equals(unit)) {
-                    data.put("measuredValue", value * 1000);
-                    data.put("unit", "ug/m3");
-                }
+            long started = System.nanoTime();
+            long ingest = MicroBatcher.ingestNanos(message); // conserva la marca de ingreso
+            StageEvent event = new StageEvent();
+            event.begin();
+            MicroBatcher.forEach(message.body(), data -> {
+                long traceId = tracer.traceIdOf(data);
+
+                try {
+                    String type = data.getString("variableType");
+                    double value = data.getDouble("value");
+                    String unit = data.getString("unit");
+                    if ("temperature".equals(type) && "F".equals(unit)) {
+                        double celsius = (value - 32) / 1.8;
+                        data.put("value", celsius);
+                        data.put("unit", "C");
+                    } else if ("mp".equals(type) && "mg/m3".equals(unit)) {
+                        data.put("value", value * 1000);
+                        data.put("unit", "ug/m3");
+                    }
 
-                System.out.println("UnitNormalizer - After: " + data.encode());
-                vertx.eventBus().publish("filter.normalized", data);
-            } catch (Exception e) {
-                System.err.println("UnitNormalizer - Error: " + e.getMessage());
-            }
+                    tracer.passed(traceId, STAGE);
+                    event.add(type, true);
+                    out.publish(data, ingest);
+                } catch (Exception e) {
+                    tracer.rejected(traceId, STAGE, e.getMessage());
+                    event.add(null, false);
+                }
+            });
+            event.finish(STAGE);
+            metrics.handled(System.nanoTime() - started);
         });
     }
-}
\ No newline at end of file
+
+    @Override
+    public void stop() {
+        out.flush();
+    }
+}
@@ -2,27 +2,51 @@ package vertx;
 
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.json.JsonObject;
+import trace.PipelineTracer;
+import trace.StageMetrics;
+import trace.StageEvent;
 
 public class ValidatorFilterVerticle extends AbstractVerticle {
+
+    private static final String STAGE = "validator";
+
+    private MicroBatcher out;
+
     @Override
     public void start() {
+        PipelineTracer tracer = PipelineTracer.global();
+        out = MicroBatcher.fromConfig(vertx, "filter.validated", config());
+        StageMetrics metrics = StageMetrics.of("raw.data.incoming");
         vertx.eventBus().consumer("raw.data.incoming", message -> {
-            JsonObject data = (JsonObject) message.body();
-            System.out.println("ValidatorFilter - Before: " + data.encode());
-
-            try {
-                String type = data.getString("variableType");
-                String timestamp = data.getString("timestamp");
-                Double value = data.getDouble("value");
-                if (type == null || timestamp == null || value == null) throw new IllegalArgumentException("Incomplete data");
-                if (!type.equals("temperature") && !type.equals("mp")) throw new IllegalArgumentException("Invalid type");
-
-                System.out.println("ValidatorFilter - Valid data: " + data.encode());
-                vertx.eventBus().publish("filter.validated", data);
-            } catch (Exception e) {
-                System.err.println("ValidatorFilter - Error: " + e.getMessage());
-                // Optionally log or discard
-            }
+            long started = System.nanoTime();
+            long ingest = MicroBatcher.ingestNanos(message); // tambien marca el ingreso
+            StageEvent event = new StageEvent();
+            event.begin();
+            MicroBatcher.forEach(message.body(), data -> {
+                long traceId = tracer.traceIdOf(data); // primer filtro: asigna el id de traza
+
+                try {
+                    String type = data.getString("variableType");
+                    Object timestamp = data.getValue("timestamp"); // epoch millis
+                    Double value = data.getDouble("value");
+                    if (type == null || timestamp == null || value == null) throw new IllegalArgumentException("Incomplete data");
+                    if (!type.equals("temperature") && !type.equals("mp")) throw new IllegalArgumentException("Invalid type");
+
+                    tracer.passed(traceId, STAGE);
+                    event.add(type, true);
+                    out.publish(data, ingest);
+                } catch (Exception e) {
+                    tracer.rejected(traceId, STAGE, e.getMessage());
+                    event.add(null, false);
+                }
+            });
+            event.finish(STAGE);
+            metrics.handled(System.nanoTime() - started);
         });
     }
-}
\ No newline at end of file
+
+    @Override
+    public void stop() {
+        out.flush();
+    }
+}
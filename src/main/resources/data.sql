@@ -1,31 +1,37 @@
-INSERT INTO raw_readings (type, timestamp, measured_value, unit) VALUES ('temperature', '2025-06-21 00:00:00', 24.0, 'C');
-INSERT INTO raw_readings (type, timestamp, measured_value, unit) VALUES ('temperature', '2025-06-21 01:00:00', 75.2, 'F');
-INSERT INTO raw_readings (type, timestamp, measured_value, unit) VALUES ('temperature', '2025-06-21 02:00:00', 22.0, 'C');
-INSERT INTO raw_readings (type, timestamp, measured_value, unit) VALUES ('temperature', '2025-06-21 03:00:00', 69.8, 'F');
-INSERT INTO raw_readings (type, timestamp, measured_value, unit) VALUES ('temperature', '2025-06-21 04:00:00', 26.5, 'C');
-INSERT INTO raw_readings (type, timestamp, measured_value, unit) VALUES ('temperature', '2025-06-21 05:00:00', 32.0, 'C');
-INSERT INTO raw_readings (type, timestamp, measured_value, unit) VALUES ('temperature', '2025-06-21 06:00:00', 86.0, 'F');
-INSERT INTO raw_readings (type, timestamp, measured_value, unit) VALUES ('temperature', '2025-06-21 07:00:00', 90.0, 'F');
-INSERT INTO raw_readings (type, timestamp, measured_value, unit) VALUES ('temperature', '2025-06-21 08:00:00', 18.0, 'C');
-INSERT INTO raw_readings (type, timestamp, measured_value, unit) VALUES ('temperature', '2025-06-21 09:00:00', 95.0, 'F');
-INSERT INTO raw_readings (type, timestamp, measured_value, unit) VALUES ('temperature', '2025-06-21 10:00:00', -100.0, 'C');
-INSERT INTO raw_readings (type, timestamp, measured_value, unit) VALUES ('temperature', '2025-06-21 11:00:00', 200.0, 'F');
-INSERT INTO raw_readings (type, timestamp, measured_value, unit) VALUES ('mp', '2025-06-21 12:00:00', 20.0, 'ug/m3');
-INSERT INTO raw_readings (type, timestamp, measured_value, unit) VALUES ('mp', '2025-06-21 13:00:00', 55.0, 'ug/m3');
-INSERT INTO raw_readings (type, timestamp, measured_value, unit) VALUES ('mp', '2025-06-21 14:00:00', 123.4, 'ug/m3');
-INSERT INTO raw_readings (type, timestamp, measured_value, unit) VALUES ('mp', '2025-06-21 15:00:00', 75.0, 'ug/m3');
-INSERT INTO raw_readings (type, timestamp, measured_value, unit) VALUES ('mp', '2025-06-21 16:00:00', 0.0, 'ug/m3');
-INSERT INTO raw_readings (type, timestamp, measured_value, unit) VALUES ('mp', '2025-06-21 17:00:00', 680.5, 'ug/m3');
-INSERT INTO raw_readings (type, timestamp, measured_value, unit) VALUES ('mp', '2025-06-21 18:00:00', 880.0, 'ug/m3');
-INSERT INTO raw_readings (type, timestamp, measured_value, unit) VALUES ('mp', '2025-06-21 19:00:00', 999.9, 'ug/m3');
-INSERT INTO raw_readings (type, timestamp, measured_value, unit) VALUES ('mp', '2025-06-21 20:00:00', 0.015, 'mg/m3');
-INSERT INTO raw_readings (type, timestamp, measured_value, unit) VALUES ('mp', '2025-06-21 21:00:00', 0.082, 'mg/m3');
-INSERT INTO raw_readings (type, timestamp, measured_value, unit) VALUES ('mp', '2025-06-21 22:00:00', 0.100, 'mg/m3');
-INSERT INTO raw_readings (type, timestamp, measured_value, unit) VALUES ('mp', '2025-06-21 23:00:00', 2000.0, 'ug/m3');
-INSERT INTO raw_readings (type, timestamp, measured_value, unit) VALUES ('mp', '2025-06-22 00:00:00', -10.0, 'ug/m3');
-INSERT INTO raw_readings (type, timestamp, measured_value, unit) VALUES ('mp', '2025-06-22 01:00:00', 1.5, 'mg/m3');
-INSERT INTO raw_readings (type, timestamp, measured_value, unit) VALUES ('temperature', '2025-06-22 02:00:00', 70.0, 'C');
-INSERT INTO raw_readings (type, timestamp, measured_value, unit) VALUES ('temperature', '2025-06-22 03:00:00', -50.0, 'C');
-INSERT INTO raw_readings (type, timestamp, measured_value, unit) VALUES ('mp', '2025-06-22 04:00:00', 1000.0, 'ug/m3');
-INSERT INTO raw_readings (type, timestamp, measured_value, unit) VALUES ('mp', '2025-06-22 05:00:00', 1.000, 'mg/m3');
-INSERT INTO raw_readings (type, timestamp, measured_value, unit) VALUES ('temperature', '2025-06-22 06:00:00', 0.0, 'C');
+INSERT INTO reading_codes (kind, code, name) VALUES ('type', 1, 'temperature');
+INSERT INTO reading_codes (kind, code, name) VALUES ('type', 2, 'mp');
+INSERT INTO reading_codes (kind, code, name) VALUES ('unit', 1, 'C');
+INSERT INTO reading_codes (kind, code, name) VALUES ('unit', 2, 'F');
+INSERT INTO reading_codes (kind, code, name) VALUES ('unit', 3, 'ug/m3');
+INSERT INTO reading_codes (kind, code, name) VALUES ('unit', 4, 'mg/m3');
+INSERT INTO raw_readings (type_code, timestamp, measured_value, unit_code) VALUES (1, 1750464000000, 24.0, 1); -- temperature 2025-06-21 00:00:00 C
+INSERT INTO raw_readings (type_code, timestamp, measured_value, unit_code) VALUES (1, 1750467600000, 75.2, 2); -- temperature 2025-06-21 01:00:00 F
+INSERT INTO raw_readings (type_code, timestamp, measured_value, unit_code) VALUES (1, 1750471200000, 22.0, 1); -- temperature 2025-06-21 02:00:00 C
+INSERT INTO raw_readings (type_code, timestamp, measured_value, unit_code) VALUES (1, 1750474800000, 69.8, 2); -- temperature 2025-06-21 03:00:00 F
+INSERT INTO raw_readings (type_code, timestamp, measured_value, unit_code) VALUES (1, 1750478400000, 26.5, 1); -- temperature 2025-06-21 04:00:00 C
+INSERT INTO raw_readings (type_code, timestamp, measured_value, unit_code) VALUES (1, 1750482000000, 32.0, 1); -- temperature 2025-06-21 05:00:00 C
+INSERT INTO raw_readings (type_code, timestamp, measured_value, unit_code) VALUES (1, 1750485600000, 86.0, 2); -- temperature 2025-06-21 06:00:00 F
+INSERT INTO raw_readings (type_code, timestamp, measured_value, unit_code) VALUES (1, 1750489200000, 90.0, 2); -- temperature 2025-06-21 07:00:00 F
+INSERT INTO raw_readings (type_code, timestamp, measured_value, unit_code) VALUES (1, 1750492800000, 18.0, 1); -- temperature 2025-06-21 08:00:00 C
+INSERT INTO raw_readings (type_code, timestamp, measured_value, unit_code) VALUES (1, 1750496400000, 95.0, 2); -- temperature 2025-06-21 09:00:00 F
+INSERT INTO raw_readings (type_code, timestamp, measured_value, unit_code) VALUES (1, 1750500000000, -100.0, 1); -- temperature 2025-06-21 10:00:00 C
+INSERT INTO raw_readings (type_code, timestamp, measured_value, unit_code) VALUES (1, 1750503600000, 200.0, 2); -- temperature 2025-06-21 11:00:00 F
+INSERT INTO raw_readings (type_code, timestamp, measured_value, unit_code) VALUES (2, 1750507200000, 20.0, 3); -- mp 2025-06-21 12:00:00 ug/m3
+INSERT INTO raw_readings (type_code, timestamp, measured_value, unit_code) VALUES (2, 1750510800000, 55.0, 3); -- mp 2025-06-21 13:00:00 ug/m3
+INSERT INTO raw_readings (type_code, timestamp, measured_value, unit_code) VALUES (2, 1750514400000, 123.4, 3); -- mp 2025-06-21 14:00:00 ug/m3
+INSERT INTO raw_readings (type_code, timestamp, measured_value, unit_code) VALUES (2, 1750518000000, 75.0, 3); -- mp 2025-06-21 15:00:00 ug/m3
+INSERT INTO raw_readings (type_code, timestamp, measured_value, unit_code) VALUES (2, 1750521600000, 0.0, 3); -- mp 2025-06-21 16:00:00 ug/m3
+INSERT INTO raw_readings (type_code, timestamp, measured_value, unit_code) VALUES (2, 1750525200000, 680.5, 3); -- mp 2025-06-21 17:00:00 ug/m3
+INSERT INTO raw_readings (type_code, timestamp, measured_value, unit_code) VALUES (2, 1750528800000, 880.0, 3); -- mp 2025-06-21 18:00:00 ug/m3
+INSERT INTO raw_readings (type_code, timestamp, measured_value, unit_code) VALUES (2, 1750532400000, 999.9, 3); -- mp 2025-06-21 19:00:00 ug/m3
+INSERT INTO raw_readings (type_code, timestamp, measured_value, unit_code) VALUES (2, 1750536000000, 0.015, 4); -- mp 2025-06-21 20:00:00 mg/m3
+INSERT INTO raw_readings (type_code, timestamp, measured_value, unit_code) VALUES (2, 1750539600000, 0.082, 4); -- mp 2025-06-21 21:00:00 mg/m3
+INSERT INTO raw_readings (type_code, timestamp, measured_value, unit_code) VALUES (2, 1750543200000, 0.100, 4); -- mp 2025-06-21 22:00:00 mg/m3
+INSERT INTO raw_readings (type_code, timestamp, measured_value, unit_code) VALUES (2, 1750546800000, 2000.0, 3); -- mp 2025-06-21 23:00:00 ug/m3
+INSERT INTO raw_readings (type_code, timestamp, measured_value, unit_code) VALUES (2, 1750550400000, -10.0, 3); -- mp 2025-06-22 00:00:00 ug/m3
+INSERT INTO raw_readings (type_code, timestamp, measured_value, unit_code) VALUES (2, 1750554000000, 1.5, 4); -- mp 2025-06-22 01:00:00 mg/m3
+INSERT INTO raw_readings (type_code, timestamp, measured_value, unit_code) VALUES (1, 1750557600000, 70.0, 1); -- temperature 2025-06-22 02:00:00 C
+INSERT INTO raw_readings (type_code, timestamp, measured_value, unit_code) VALUES (1, 1750561200000, -50.0, 1); -- temperature 2025-06-22 03:00:00 C
+INSERT INTO raw_readings (type_code, timestamp, measured_value, unit_code) VALUES (2, 1750564800000, 1000.0, 3); -- mp 2025-06-22 04:00:00 ug/m3
+INSERT INTO raw_readings (type_code, timestamp, measured_value, unit_code) VALUES (2, 1750568400000, 1.000, 4); -- mp 2025-06-22 05:00:00 mg/m3
+INSERT INTO raw_readings (type_code, timestamp, measured_value, unit_code) VALUES (1, 1750572000000, 0.0, 1); -- temperature 2025-06-22 06:00:00 C
@@ -0,0 +1,94 @@
+import filter.AdaptiveFilterChain;
+import filter.ExtremeValueFilter;
+import filter.RawDataFilter;
+import filter.UnitNormalizerFilter;
+import filter.ValidatorFilter;
+import model.RawData;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.Assert.*;
+
+public class AdaptiveFilterChainTest {
+
+    /** Commuting check that burns time and never rejects. */
+    private static final RawDataFilter SLOW_CHECK = new RawDataFilter() {
+        @Override
+        public RawData apply(RawData data) {
+            long end = System.nanoTime() + 20_000;
+            while (System.nanoTime() < end) {
+                Thread.onSpinWait();
+            }
+            return data;
+        }
+
+        @Override
+        public boolean commutes() {
+            return true;
+        }
+    };
+
+    @Test
+    public void testSelectiveCheapFilterMovesFirst() {
+        ValidatorFilter validator = new ValidatorFilter();
+        AdaptiveFilterChain chain = new AdaptiveFilterChain(List.of(SLOW_CHECK, validator), 200);
+
+        for (int i = 0; i < 2000; i++) {
+            applyQuietly(chain, reading(i % 2 == 0 ? "humidity" : "temperature", "C", 20));
+        }
+
+        assertEquals(List.of(validator, SLOW_CHECK), chain.currentOrder());
+    }
+
+    @Test
+    public void testRangeCheckStaysAfterNormalization() throws Exception {
+        UnitNormalizerFilter normalizer = new UnitNormalizerFilter();
+        ExtremeValueFilter extreme = new ExtremeValueFilter();
+        AdaptiveFilterChain chain = new AdaptiveFilterChain(List.of(new ValidatorFilter(), normalizer, extreme), 100);
+
+        for (int i = 0; i < 1000; i++) {
+            applyQuietly(chain, reading("temperature", "F", 500)); // every reading fails the range check
+        }
+
+        List<RawDataFilter> order = chain.currentOrder();
+        assertTrue(order.indexOf(normalizer) < order.indexOf(extreme));
+        RawData converted = chain.apply(reading("temperature", "F", 86));
+        assertEquals(30.0, converted.getMeasuredValue(), 1e-9);
+    }
+
+    @Test
+    public void testValidatorStaysAheadOfRangeCheckWithListeners() {
+        ValidatorFilter validator = new ValidatorFilter();
+        LongAdder alerts = new LongAdder();
+        AdaptiveFilterChain chain = new AdaptiveFilterChain(List.of(validator, new UnitNormalizerFilter(),
+                new ExtremeValueFilter(reading -> alerts.increment())), 100);
+
+        for (int i = 0; i < 1000; i++) {
+            applyQuietly(chain, reading("temperature", "F", 500)); // el rango rechaza mas que el validador
+        }
+        applyQuietly(chain, reading("temperature", "C", Double.POSITIVE_INFINITY));
+
+        assertEquals(validator, chain.currentOrder().get(0));
+        assertEquals(1000, alerts.sum()); // la lectura incompleta no es una alerta
+    }
+
+    private static void applyQuietly(RawDataFilter chain, RawData data) {
+        try {
+            chain.apply(data);
+        } catch (Exception ignored) {
+            // rejected readings are expected
+        }
+    }
+
+    private static RawData reading(String type, String unit, double value) {
+        RawData data = new RawData();
+        data.setType(type);
+        data.setUnit(unit);
+        data.setMeasuredValue(value);
+        data.setTimestamp(LocalDateTime.of(2025, 6, 1, 10, 0));
+        return data;
+    }
+}
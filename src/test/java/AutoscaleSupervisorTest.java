@@ -0,0 +1,102 @@
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.ThreadingModel;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import trace.StageMetrics;
+import vertx.AutoscaleSupervisor;
+import vertx.MicroBatcher;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class AutoscaleSupervisorTest {
+
+    private static final String INPUT = "test.autoscale.in";
+
+    private static final Set<Integer> handled = ConcurrentHashMap.newKeySet();
+
+    private Vertx vertx;
+
+    /** Stage taking 2 ms per reading, on a worker thread so that instances run side by side. */
+    public static class SlowStage extends AbstractVerticle {
+
+        @Override
+        public void start() {
+            StageMetrics metrics = StageMetrics.of(INPUT);
+            vertx.eventBus().consumer(INPUT, message -> {
+                long started = System.nanoTime();
+                try {
+                    Thread.sleep(2);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                MicroBatcher.forEach(message.body(), data -> assertTrue(handled.add(data.getInteger("n"))));
+                metrics.handled(System.nanoTime() - started);
+            });
+        }
+    }
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+        handled.clear();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        vertx.close().toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testScalesUpUnderBacklogAndBackDownWhenDrained() throws Exception {
+        DeploymentOptions worker = new DeploymentOptions().setThreadingModel(ThreadingModel.WORKER);
+        await(vertx.deployVerticle(new SlowStage(), worker).toCompletionStage().toCompletableFuture());
+        await(vertx.deployVerticle(new AutoscaleSupervisor(List.of(
+                        new AutoscaleSupervisor.Stage("slow", INPUT, SlowStage::new, worker))),
+                new DeploymentOptions().setConfig(new JsonObject()
+                        .put("intervalMs", 100)
+                        .put("cooldownMs", 100)
+                        .put("targetWaitMs", 20)
+                        .put("scaleDownSamples", 2)
+                        .put("stages", new JsonObject().put("slow", new JsonObject().put("min", 1).put("max", 3)))))
+                .toCompletionStage().toCompletableFuture());
+
+        vertx.runOnContext(v -> {
+            MicroBatcher out = new MicroBatcher(vertx, INPUT, 1, 5, true);
+            for (int i = 0; i < 3000; i++) {
+                out.publish(new JsonObject().put("n", i), System.nanoTime());
+            }
+        });
+
+        assertTrue("no escalo a 3 instancias", waitForInstances(3, 10_000));
+        assertTrue("no volvio a 1 instancia", waitForInstances(1, 20_000));
+        assertEquals(3000, handled.size()); // cada lectura una sola vez, ninguna perdida
+        assertEquals(0, StageMetrics.of(INPUT).pending());
+    }
+
+    private boolean waitForInstances(int expected, long timeoutMs) throws Exception {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (System.currentTimeMillis() < deadline) {
+            JsonArray stats = (JsonArray) await(vertx.eventBus().request("autoscale.stats", null)
+                    .toCompletionStage().toCompletableFuture()).body();
+            if (stats.getJsonObject(0).getInteger("instances") == expected) {
+                return true;
+            }
+            Thread.sleep(50);
+        }
+        return false;
+    }
+
+    private static <T> T await(java.util.concurrent.CompletableFuture<T> future) throws Exception {
+        return future.get(10, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,109 @@
+import app.BulkImport;
+import model.ReadingCodes;
+import org.junit.Test;
+import storage.ReadingJsonScanner;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BulkImportTest {
+
+    @Test
+    public void testScannerReadsConcatenatedAndMalformedObjects() {
+        String text = "[{\n  \"variableType\" : \"temperature\",\n  \"timestamp\" : \"2025-06-21T03:00\",\n"
+                + "  \"value\" : 69.8\n},\n"
+                + "{\"variableType\":\"mp\",\"unit\":\"mg/m3\",\"timestamp\":1750474800000,\"value\":-1.25e1}\n"
+                + "{\"variableType\":\"mp\",\"value\":3}\n"                       // no timestamp
+                + "{\"variableType\":\"mp\",\"timestamp\":\"2025-06-21T0"          // truncated
+                + "{\"type\":\"humidity\",\"timestamp\":\"2025-06-21T03:00:15.5\",\"measuredValue\":0.001}]";
+        ReadingJsonScanner scanner = new ReadingJsonScanner(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+
+        assertTrue(scanner.next());
+        assertTrue(scanner.valid());
+        assertEquals(ReadingCodes.TYPE_TEMPERATURE, scanner.typeCode());
+        assertEquals(ReadingCodes.UNIT_CELSIUS, scanner.unitCode());
+        assertEquals(ReadingCodes.toEpochMillis(LocalDateTime.of(2025, 6, 21, 3, 0)), scanner.timestamp());
+        assertEquals(69.8, scanner.value(), 0.0);
+
+        assertTrue(scanner.next());
+        assertTrue(scanner.valid());
+        assertEquals(ReadingCodes.UNIT_MG_M3, scanner.unitCode());
+        assertEquals(1750474800000L, scanner.timestamp());
+        assertEquals(-12.5, scanner.value(), 0.0);
+
+        assertTrue(scanner.next());
+        assertFalse(scanner.valid());
+        assertTrue(scanner.next());
+        assertFalse(scanner.valid());
+
+        assertTrue(scanner.next());
+        assertTrue(scanner.valid());
+        assertEquals("humidity", ReadingCodes.typeName(scanner.typeCode())); // codigo nuevo, no UNKNOWN
+        assertEquals(ReadingCodes.toEpochMillis(LocalDateTime.of(2025, 6, 21, 3, 0, 15, 500_000_000)),
+                scanner.timestamp());
+        assertEquals(0.001, scanner.value(), 0.0);
+
+        assertFalse(scanner.next());
+    }
+
+    @Test
+    public void testImportSplitsFileAcrossChunks() throws Exception {
+        Path dir = Files.createTempDirectory("import");
+        Path file = dir.resolve("readings.ndjson");
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            text.append("{\"variableType\":\"").append(i % 2 == 0 ? "temperature" : "mp")
+                    .append("\",\"timestamp\":").append(1_000L * i).append(",\"value\":").append(i).append(".5}\n");
+        }
+        Files.writeString(file, text);
+        String url = "jdbc:sqlite:" + dir.resolve("import.db");
+
+        long rows = new BulkImport(url, 4, 4096, 100, 1000).run(List.of(file));
+
+        assertEquals(5000, rows);
+        try (Connection connection = DriverManager.getConnection(url);
+             Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("SELECT COUNT(*), SUM(measured_value), "
+                     + "COUNT(DISTINCT timestamp), SUM(type_code = " + ReadingCodes.TYPE_MP + ") FROM raw_readings")) {
+            assertTrue(result.next());
+            assertEquals(5000, result.getInt(1));
+            assertEquals(5000 * 4999 / 2.0 + 2500, result.getDouble(2), 1e-6);
+            assertEquals(5000, result.getInt(3));
+            assertEquals(2500, result.getInt(4));
+        }
+    }
+
+    @Test
+    public void testUnknownUnitIsNotReadAsTheDefault() throws Exception {
+        Path dir = Files.createTempDirectory("import");
+        Path file = dir.resolve("readings.ndjson");
+        Files.writeString(file, "{\"variableType\":\"temperature\",\"unit\":\"K\",\"timestamp\":0,\"value\":293.15}\n"
+                + "{\"variableType\":\"temperature\",\"timestamp\":1000,\"value\":20}\n"
+                + "{\"variableType\":\"temperature\",\"unit\":null,\"timestamp\":2000,\"value\":21}\n");
+
+        ReadingJsonScanner scanner = new ReadingJsonScanner(ByteBuffer.wrap(Files.readAllBytes(file)));
+        assertTrue(scanner.next());
+        assertFalse(scanner.valid());
+        assertTrue(scanner.unknownUnit());
+        assertTrue(scanner.next());
+        assertTrue(scanner.valid());
+        assertEquals(ReadingCodes.UNIT_CELSIUS, scanner.unitCode()); // sin unidad: la canonica
+        assertTrue(scanner.next());
+        assertTrue(scanner.valid());
+        assertEquals(ReadingCodes.UNIT_CELSIUS, scanner.unitCode());
+
+        BulkImport importer = new BulkImport("jdbc:sqlite:" + dir.resolve("import.db"), 1, 4096, 100, 1000);
+        assertEquals(2, importer.run(List.of(file)));
+        assertEquals(1, importer.unknownUnits());
+    }
+}
@@ -0,0 +1,52 @@
+import model.ReadingCodes;
+import org.junit.Test;
+import repository.CompactSchemaMigration;
+
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.junit.Assert.*;
+
+public class CompactSchemaMigrationTest {
+
+    @Test
+    public void testNamesWithoutBuiltInCodeAreKept() throws Exception {
+        String url = "jdbc:sqlite:" + Files.createTempDirectory("migration").resolve("old.db");
+        try (Connection connection = DriverManager.getConnection(url);
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE raw_readings (id integer, measured_value float, type varchar(255), "
+                    + "unit varchar(255), timestamp varchar(255), primary key (id))");
+            statement.execute("INSERT INTO raw_readings VALUES (1, 20.5, 'temperature', 'C', '2025-06-21T00:00')");
+            statement.execute("INSERT INTO raw_readings VALUES (2, 1013, 'pressure', 'hPa', '2025-06-21T01:00')");
+            statement.execute("INSERT INTO raw_readings VALUES (3, 7, NULL, NULL, '2025-06-21T02:00')");
+        }
+
+        assertTrue(CompactSchemaMigration.migrate(url));
+
+        try (Connection connection = DriverManager.getConnection(url);
+             Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT r.type_code, t.name, u.name FROM raw_readings r "
+                     + "LEFT JOIN reading_codes t ON t.kind = 'type' AND t.code = r.type_code "
+                     + "LEFT JOIN reading_codes u ON u.kind = 'unit' AND u.code = r.unit_code ORDER BY r.id")) {
+            assertTrue(rows.next());
+            assertEquals(ReadingCodes.TYPE_TEMPERATURE, rows.getInt(1));
+            assertEquals("C", rows.getString(3));
+            assertTrue(rows.next());
+            assertEquals("pressure", rows.getString(2));
+            assertEquals("hPa", rows.getString(3));
+            assertEquals("pressure", ReadingCodes.typeName(rows.getInt(1)));
+            assertTrue(rows.next());
+            rows.getInt(1);
+            assertTrue(rows.wasNull());
+            assertNull(rows.getString(3));
+        }
+        try (Connection connection = DriverManager.getConnection(url);
+             Statement statement = connection.createStatement();
+             ResultSet mode = statement.executeQuery("PRAGMA auto_vacuum")) {
+            assertEquals(2, mode.getInt(1)); // INCREMENTAL, para la retencion de particiones
+        }
+    }
+}
@@ -0,0 +1,283 @@
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import model.CleanData;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sqlite.SQLiteErrorCode;
+import org.sqlite.SQLiteException;
+import storage.ReadingJournal;
+import vertx.DbSinkVerticle;
+import vertx.ReorderVerticle;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class DbSinkVerticleTest {
+
+    private Vertx vertx;
+
+    /** Sink whose storage reports SQLITE_BUSY on the first attempt, after assigning ids as JPA does. */
+    public static class BusyOnceSink extends DbSinkVerticle {
+
+        final AtomicInteger attempts = new AtomicInteger();
+        final List<CleanData> stored = new CopyOnWriteArrayList<>();
+
+        @Override
+        protected BatchWriter openTarget() {
+            return rows -> {
+                if (attempts.getAndIncrement() == 0) {
+                    for (int i = 0; i < rows.size(); i++) {
+                        rows.get(i).setId(i + 1); // IDENTITY ya asignado cuando falla el commit
+                    }
+                    throw new RuntimeException("Error saving CleanData batch",
+                            new SQLiteException("database is locked", SQLiteErrorCode.SQLITE_BUSY));
+                }
+                for (CleanData row : rows) {
+                    if (row.getId() != null) { // como Hibernate con una instancia de un intento fallido
+                        throw new IllegalStateException("detached entity passed to persist: model.CleanData");
+                    }
+                }
+                stored.addAll(rows);
+            };
+        }
+    }
+
+    /** Sink whose storage commits the first two rows of the first attempt, then reports SQLITE_BUSY. */
+    public static class PartialBusySink extends DbSinkVerticle {
+
+        final List<Integer> attemptSizes = new CopyOnWriteArrayList<>();
+        final List<CleanData> stored = new CopyOnWriteArrayList<>();
+
+        @Override
+        protected BatchWriter openTarget() {
+            return rows -> {
+                attemptSizes.add(rows.size());
+                if (attemptSizes.size() == 1) {
+                    stored.addAll(rows.subList(0, 2)); // como un shard que ya confirmo su parte
+                    throw new PartialWriteException(rows.subList(2, rows.size()),
+                            new SQLiteException("database is locked", SQLiteErrorCode.SQLITE_BUSY));
+                }
+                stored.addAll(rows);
+            };
+        }
+    }
+
+    /** Sink whose storage commits the first two rows of the first attempt, then always reports SQLITE_BUSY. */
+    public static class PartlyStoredSink extends DbSinkVerticle {
+
+        final List<CleanData> stored = new CopyOnWriteArrayList<>();
+
+        @Override
+        protected BatchWriter openTarget() {
+            return rows -> {
+                if (stored.isEmpty()) {
+                    stored.addAll(rows.subList(0, 2));
+                    rows = rows.subList(2, rows.size());
+                }
+                throw new PartialWriteException(rows,
+                        new SQLiteException("database is locked", SQLiteErrorCode.SQLITE_BUSY));
+            };
+        }
+    }
+
+    /** Sink storing every batch in memory. */
+    public static class MemorySink extends DbSinkVerticle {
+
+        final List<CleanData> stored = new CopyOnWriteArrayList<>();
+
+        @Override
+        protected BatchWriter openTarget() {
+            return stored::addAll;
+        }
+    }
+
+    /** Sink whose storage rejects every batch holding a negative value, as a CHECK constraint would. */
+    public static class NegativeRejectingSink extends MemorySink {
+
+        @Override
+        protected BatchWriter openTarget() {
+            return rows -> {
+                if (rows.stream().anyMatch(row -> row.getValue() < 0)) {
+                    throw new IllegalStateException("CHECK constraint failed: measured_value");
+                }
+                stored.addAll(rows);
+            };
+        }
+    }
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        vertx.close().toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testBusyBatchIsRetriedWithFreshRows() throws Exception {
+        BusyOnceSink sink = new BusyOnceSink();
+        vertx.deployVerticle(sink, new DeploymentOptions().setConfig(new JsonObject()
+                        .put("batchSize", 10).put("flushIntervalMs", 20).put("retryBackoffMs", 1)))
+                .toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+
+        for (int i = 0; i < 5; i++) {
+            vertx.eventBus().publish("validated.data", new JsonObject().put("variableType", "mp")
+                    .put("timestamp", 1000L * i).put("value", 10.0 + i).put("unit", "ug/m3"));
+        }
+
+        JsonObject stats = waitForWritten(5);
+        assertEquals(5, stats.getLong("written").longValue());
+        assertEquals(1, stats.getLong("retries").longValue());
+        assertEquals(0, stats.getLong("dropped").longValue());
+        assertEquals(2, sink.attempts.get());
+        assertEquals(5, sink.stored.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(10.0 + i, sink.stored.get(i).getValue(), 0);
+            assertEquals("mp", sink.stored.get(i).getType());
+        }
+    }
+
+    @Test
+    public void testPartialFailureRetriesOnlyUnwrittenRows() throws Exception {
+        PartialBusySink sink = new PartialBusySink();
+        vertx.deployVerticle(sink, new DeploymentOptions().setConfig(new JsonObject()
+                        .put("batchSize", 10).put("flushIntervalMs", 20).put("retryBackoffMs", 1)))
+                .toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+
+        for (int i = 0; i < 5; i++) {
+            vertx.eventBus().publish("validated.data", new JsonObject().put("variableType", "mp")
+                    .put("timestamp", 1000L * i).put("value", 10.0 + i));
+        }
+
+        JsonObject stats = waitForWritten(5);
+        assertEquals(5, stats.getLong("written").longValue());
+        assertEquals(0, stats.getLong("dropped").longValue());
+        assertEquals(List.of(5, 3), sink.attemptSizes);
+        assertEquals(5, sink.stored.size()); // sin duplicados de la parte ya confirmada
+        for (int i = 0; i < 5; i++) {
+            assertEquals(10.0 + i, sink.stored.get(i).getValue(), 0);
+        }
+    }
+
+    @Test
+    public void testUndecodableJournalRecordIsPassedOver() throws Exception {
+        Path dir = Files.createTempDirectory("journal");
+        try (ReadingJournal journal = new ReadingJournal(dir, 1 << 16)) {
+            journal.append(reading(0));
+            journal.append("no es json".getBytes(StandardCharsets.UTF_8));
+            journal.append(reading(1));
+        }
+        MemorySink sink = new MemorySink();
+        vertx.deployVerticle(sink, new DeploymentOptions().setConfig(new JsonObject()
+                        .put("source", "journal").put("journalDir", dir.toString()).put("flushIntervalMs", 20)))
+                .toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+
+        JsonObject stats = waitForWritten(2);
+        assertEquals(2, stats.getLong("written").longValue());
+        assertEquals(List.of(10.0, 11.0), List.of(sink.stored.get(0).getValue(), sink.stored.get(1).getValue()));
+    }
+
+    @Test
+    public void testJournalBatchFailingWithoutBusyIsDroppedAfterRetries() throws Exception {
+        Path dir = Files.createTempDirectory("journal");
+        try (ReadingJournal journal = new ReadingJournal(dir, 1 << 16)) {
+            journal.append(reading(-11));
+            journal.append(reading(1));
+        }
+        NegativeRejectingSink sink = new NegativeRejectingSink();
+        vertx.deployVerticle(sink, new DeploymentOptions().setConfig(new JsonObject()
+                        .put("source", "journal").put("journalDir", dir.toString()).put("batchSize", 1)
+                        .put("maxRetries", 2).put("retryBackoffMs", 1).put("flushIntervalMs", 20)))
+                .toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+
+        JsonObject stats = waitForWritten(1); // el lote fallido ya no retiene a los siguientes
+        assertEquals(1, stats.getLong("written").longValue());
+        assertEquals(1, stats.getLong("dropped").longValue());
+        assertEquals(11.0, sink.stored.get(0).getValue(), 1e-9);
+    }
+
+    @Test
+    public void testPartlyStoredJournalBatchIsNotReadAgainAfterStop() throws Exception {
+        Path dir = Files.createTempDirectory("journal");
+        try (ReadingJournal journal = new ReadingJournal(dir, 1 << 16)) {
+            for (int i = 0; i < 5; i++) {
+                journal.append(reading(i));
+            }
+        }
+        JsonObject config = new JsonObject().put("source", "journal").put("journalDir", dir.toString())
+                .put("batchSize", 3).put("retryBackoffMs", 1).put("flushIntervalMs", 20);
+        PartlyStoredSink stopped = new PartlyStoredSink();
+        String id = vertx.deployVerticle(stopped, new DeploymentOptions().setConfig(config))
+                .toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (stopped.stored.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        vertx.undeploy(id).toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+
+        MemorySink restarted = new MemorySink();
+        vertx.deployVerticle(restarted, new DeploymentOptions().setConfig(config))
+                .toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+
+        waitForWritten(2);
+        assertEquals(2, stopped.stored.size());
+        // el resto del primer lote se da por perdido: releerlo guardaria de nuevo las dos primeras
+        assertEquals(List.of(13.0, 14.0),
+                List.of(restarted.stored.get(0).getValue(), restarted.stored.get(1).getValue()));
+    }
+
+    @Test
+    public void testLateReadingsAreStoredToo() throws Exception {
+        MemorySink sink = new MemorySink();
+        vertx.deployVerticle(sink, new DeploymentOptions().setConfig(new JsonObject()
+                        .put("address", ReorderVerticle.ORDERED_ADDRESS)
+                        .put("lateAddress", ReorderVerticle.LATE_ADDRESS).put("flushIntervalMs", 20)))
+                .toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+
+        vertx.eventBus().publish(ReorderVerticle.ORDERED_ADDRESS, new JsonObject(Buffer.buffer(reading(1))));
+        vertx.eventBus().publish(ReorderVerticle.LATE_ADDRESS, new JsonObject(Buffer.buffer(reading(0))));
+
+        assertEquals(2, waitForWritten(2).getLong("written").longValue());
+    }
+
+    @Test
+    public void testShardedAndPartitionedIsRejected() throws Exception {
+        try {
+            vertx.deployVerticle(new DbSinkVerticle(), new DeploymentOptions().setConfig(new JsonObject()
+                            .put("shards", 2).put("partitioned", true)))
+                    .toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+            fail("se esperaba un despliegue fallido");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
+    private static byte[] reading(int i) {
+        return new JsonObject().put("variableType", "mp").put("timestamp", 1000L * i).put("value", 10.0 + i)
+                .toBuffer().getBytes();
+    }
+
+    private JsonObject waitForWritten(long count) throws Exception {
+        long deadline = System.currentTimeMillis() + 10_000;
+        JsonObject stats;
+        do {
+            Thread.sleep(20);
+            stats = (JsonObject) vertx.eventBus().request("db.sink.stats", null)
+                    .toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS).body();
+        } while (stats.getLong("written") < count && System.currentTimeMillis() < deadline);
+        return stats;
+    }
+}
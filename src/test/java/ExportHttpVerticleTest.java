@@ -0,0 +1,204 @@
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonObject;
+import model.ReadingCodes;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import repository.PersistenceBootstrap;
+import vertx.ExportHttpVerticle;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ExportHttpVerticleTest {
+
+    /** Filas en la tabla: timestamps 0..ROWS-1, mp en los pares y temperature en los impares. */
+    private static final int ROWS = 50_000;
+
+    private static String url;
+
+    private Vertx vertx;
+    private HttpClient client;
+    private int port;
+    private String previousUrl;
+
+    @Before
+    public void setUp() throws Exception {
+        if (url == null) {
+            url = "jdbc:sqlite:" + Files.createTempDirectory("export").resolve("export.db");
+            try (Connection connection = DriverManager.getConnection(url)) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("CREATE TABLE clean_readings (id integer, measured_value float, "
+                            + "type_code integer, timestamp bigint, primary key (id))");
+                }
+                connection.setAutoCommit(false);
+                try (PreparedStatement insert = connection.prepareStatement(
+                        "INSERT INTO clean_readings (measured_value, type_code, timestamp) VALUES (?, ?, ?)")) {
+                    for (int i = 0; i < ROWS; i++) {
+                        insert.setDouble(1, i / 10.0);
+                        insert.setInt(2, i % 2 == 0 ? ReadingCodes.TYPE_MP : ReadingCodes.TYPE_TEMPERATURE);
+                        insert.setLong(3, i);
+                        insert.addBatch();
+                    }
+                    insert.executeBatch();
+                }
+                connection.commit();
+            }
+        }
+        previousUrl = System.getProperty("persistence.url");
+        System.setProperty("persistence.url", url);
+
+        vertx = Vertx.vertx();
+        ExportHttpVerticle export = new ExportHttpVerticle();
+        vertx.deployVerticle(export, new DeploymentOptions().setConfig(new JsonObject()
+                        .put("port", 0).put("host", "127.0.0.1").put("chunkRows", 100)
+                        .put("sendBufferSize", 8192)))
+                .toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+        port = export.actualPort();
+        client = vertx.createHttpClient();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        vertx.close().toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+        if (previousUrl == null) {
+            System.clearProperty("persistence.url");
+        } else {
+            System.setProperty("persistence.url", previousUrl);
+        }
+    }
+
+    @Test
+    public void testNdjsonRangeIsStreamedInOrder() throws Exception {
+        String[] lines = get("/export?type=mp&from=1000&to=3000").split("\n");
+
+        assertEquals(1000, lines.length); // [1000, 3000) en pasos de 2, diez chunks
+        for (int i = 0; i < lines.length; i++) {
+            JsonObject row = new JsonObject(lines[i]);
+            assertEquals("mp", row.getString("variableType"));
+            assertEquals(1000L + 2 * i, row.getLong("timestamp").longValue());
+            assertEquals((1000 + 2 * i) / 10.0, row.getDouble("value"), 1e-9);
+        }
+    }
+
+    @Test
+    public void testCsvRangeIsStreamedInOrder() throws Exception {
+        String[] lines = get("/export?type=temperature&from=1001&to=3001&format=csv").split("\n");
+
+        assertEquals(1001, lines.length);
+        assertEquals("timestamp,variableType,value", lines[0]);
+        assertEquals("1001,temperature,100.1", lines[1]);
+        assertEquals("2999,temperature,299.9", lines[1000]); // el limite superior no se incluye
+    }
+
+    @Test
+    public void testSlowClientReceivesEveryRow() throws Exception {
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        try (Socket socket = request("/export")) {
+            InputStream in = socket.getInputStream();
+            received.write(in.read()); // la respuesta ya empezo
+            // el cliente no lee durante un rato: la respuesta llena la cola de escritura y el cursor espera el drain
+            Thread.sleep(500);
+            in.transferTo(received);
+        }
+        String body = received.toString(StandardCharsets.UTF_8);
+
+        assertTrue(body.startsWith("HTTP/1.1 200"));
+        assertTrue(body.endsWith("\r\n0\r\n\r\n"));
+        int rows = 0;
+        for (int at = body.indexOf("\"variableType\""); at >= 0; at = body.indexOf("\"variableType\"", at + 1)) {
+            rows++;
+        }
+        assertEquals(ROWS, rows);
+        assertTrue(body.contains("\"timestamp\":" + (ROWS - 1) + ","));
+    }
+
+    @Test
+    public void testCursorIsClosedWhenTheClientDisconnects() throws Exception {
+        try (Socket socket = request("/export")) {
+            byte[] first = new byte[4096];
+            assertTrue(socket.getInputStream().read(first) > 0);
+            assertTrue(new String(first, StandardCharsets.US_ASCII).startsWith("HTTP/1.1 200"));
+        }
+
+        // mientras el cursor siga abierto su lectura impide escribir en la base de datos
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (true) {
+            try (Connection connection = DriverManager.getConnection(PersistenceBootstrap.jdbcUrl());
+                 Statement statement = connection.createStatement()) {
+                statement.execute("BEGIN EXCLUSIVE");
+                statement.execute("COMMIT");
+                break;
+            } catch (SQLException e) {
+                if (System.currentTimeMillis() > deadline) {
+                    fail("el cursor sigue abierto: " + e.getMessage());
+                }
+                Thread.sleep(500);
+            }
+        }
+    }
+
+    @Test
+    public void testExportIsRefusedWhenTheSinkIsPartitioned() throws Exception {
+        ExportHttpVerticle partitioned = new ExportHttpVerticle();
+        vertx.deployVerticle(partitioned, new DeploymentOptions().setConfig(new JsonObject()
+                        .put("port", 0).put("host", "127.0.0.1")
+                        .put("dbSink", new JsonObject().put("partitioned", true))))
+                .toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+
+        int status = client.request(HttpMethod.GET, partitioned.actualPort(), "127.0.0.1", "/export")
+                .compose(request -> request.send())
+                .map(response -> response.statusCode())
+                .toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+
+        assertEquals(501, status); // clean_readings no tiene las lecturas nuevas
+    }
+
+    /**
+     * @param uri request path and query
+     * @return the whole response body
+     */
+    private String get(String uri) throws Exception {
+        Future<Buffer> body = client.request(HttpMethod.GET, port, "127.0.0.1", uri)
+                .compose(request -> request.send())
+                .compose(response -> {
+                    assertEquals(200, response.statusCode());
+                    return response.body();
+                });
+        return body.toCompletionStage().toCompletableFuture().get(60, TimeUnit.SECONDS)
+                .toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param uri request path and query
+     * @return a plain socket with the request sent, read at the test's own pace
+     */
+    private Socket request(String uri) throws Exception {
+        Socket socket = new Socket();
+        socket.setReceiveBufferSize(8192); // una ventana pequeña, para que el servidor note un cliente que no lee
+        socket.connect(new InetSocketAddress("127.0.0.1", port));
+        OutputStream out = socket.getOutputStream();
+        out.write(("GET " + uri + " HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        return socket;
+    }
+}
@@ -0,0 +1,144 @@
+import filter.ExtremeValueFilter;
+import filter.RawDataFilter;
+import filter.UnitNormalizerFilter;
+import filter.ValidatorFilter;
+import flow.FilterChainProcessor;
+import model.RawData;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class FilterChainProcessorTest {
+
+    private static final List<RawDataFilter> FILTERS = List.of(
+            new ValidatorFilter(), new UnitNormalizerFilter(), new ExtremeValueFilter());
+
+    @Test
+    public void testCleansReadingsInOrderOnExecutor() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        List<String> rejected = Collections.synchronizedList(new ArrayList<>());
+        FilterChainProcessor chain = new FilterChainProcessor(FILTERS, 16, executor,
+                (data, e) -> rejected.add(data.getType()));
+        CollectingSubscriber sink = new CollectingSubscriber(Long.MAX_VALUE);
+
+        try (SubmissionPublisher<RawData> source = new SubmissionPublisher<>(executor, 8)) {
+            source.subscribe(chain);
+            chain.subscribe(sink);
+            for (int i = 0; i < 1000; i++) {
+                source.submit(new RawData("temperature", LocalDateTime.now(), 32 + i * 0.18, "F")); // 0..~100 C
+                if (i % 10 == 0) {
+                    source.submit(new RawData("humidity", LocalDateTime.now(), 50, "%"));
+                }
+            }
+        }
+        assertTrue(sink.done.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertNull(sink.error);
+        assertEquals(701, sink.received.size()); // hasta 70 C
+        assertEquals(0, sink.received.get(0).getValue(), 1e-9);
+        assertEquals("C", sink.received.get(700).getUnit());
+        for (int i = 1; i < sink.received.size(); i++) {
+            assertTrue(sink.received.get(i).getValue() > sink.received.get(i - 1).getValue());
+        }
+        assertEquals(100 + 299, rejected.size());
+    }
+
+    @Test
+    public void testUpstreamDemandIsBatchedAndBounded() {
+        List<Long> requests = new ArrayList<>();
+        AtomicLong cancelled = new AtomicLong();
+        FilterChainProcessor chain = new FilterChainProcessor(FILTERS, 8, null, null);
+        chain.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                requests.add(n);
+            }
+
+            @Override
+            public void cancel() {
+                cancelled.incrementAndGet();
+            }
+        });
+        assertTrue(requests.isEmpty()); // sin suscriptor no se pide nada
+
+        CollectingSubscriber sink = new CollectingSubscriber(1);
+        chain.subscribe(sink);
+        assertEquals(List.of(8L), requests);
+
+        for (int i = 0; i < 8; i++) {
+            chain.onNext(new RawData("mp", LocalDateTime.now(), i, "ug/m3"));
+        }
+        assertEquals(1, sink.received.size());
+        assertEquals(List.of(8L), requests); // el resto queda en el buffer, acotado a 8
+
+        sink.subscription.request(3);
+        assertEquals(4, sink.received.size());
+        assertEquals(List.of(8L, 4L), requests); // repone cuando se consumio la mitad
+
+        sink.subscription.cancel();
+        assertEquals(1, cancelled.get());
+    }
+
+    @Test
+    public void testErrorsAndExtraSubscribers() {
+        FilterChainProcessor chain = new FilterChainProcessor(FILTERS);
+        CollectingSubscriber first = new CollectingSubscriber(Long.MAX_VALUE);
+        CollectingSubscriber second = new CollectingSubscriber(Long.MAX_VALUE);
+        chain.subscribe(first);
+        chain.subscribe(second);
+        assertTrue(second.error instanceof IllegalStateException);
+
+        chain.onNext(new RawData("mp", LocalDateTime.now(), 0.5, "mg/m3"));
+        chain.onError(new IllegalStateException("source failed"));
+        assertEquals(500, first.received.get(0).getValue(), 1e-9);
+        assertEquals("source failed", first.error.getMessage());
+    }
+
+    private static final class CollectingSubscriber implements Flow.Subscriber<RawData> {
+
+        final List<RawData> received = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch done = new CountDownLatch(1);
+        final long initialRequest;
+        volatile Flow.Subscription subscription;
+        volatile Throwable error;
+
+        CollectingSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(initialRequest);
+        }
+
+        @Override
+        public void onNext(RawData item) {
+            received.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            done.countDown();
+        }
+    }
+}
@@ -8,6 +8,8 @@ import model.CleanData;
 import org.junit.Test;
 import repository.CleanDataRepository;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
@@ -52,6 +54,18 @@ public class FilterTest {
         new ExtremeValueFilter().apply(data);
     }
 
+    @Test
+    public void testExtremeValueFilterNotifiesAlertListener() {
+
+        List<RawData> alerts = new ArrayList<>();
+        ExtremeValueFilter filter = new ExtremeValueFilter(alerts::add);
+        RawData data = new RawData("mp", LocalDateTime.now(), 5000, "ug/m3");
+
+        assertThrows(IllegalArgumentException.class, () -> filter.apply(data));
+        filter.apply(new RawData("mp", LocalDateTime.now(), 50, "ug/m3"));
+        assertEquals(List.of(data), alerts);
+    }
+
     @Test
     public void testRepositoryWithMockito() {
 
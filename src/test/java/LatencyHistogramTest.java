@@ -0,0 +1,34 @@
+import org.junit.Test;
+import trace.LatencyHistogram;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testPercentilesWithinBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 10_000; micros++) {
+            histogram.record(micros * 1000);
+        }
+
+        assertEquals(10_000, histogram.count());
+        assertEquals(10_000_000, histogram.max());
+        assertEquals(5_000_000, histogram.percentile(0.50), 5_000_000 * 0.04);
+        assertEquals(9_900_000, histogram.percentile(0.99), 9_900_000 * 0.04);
+        assertTrue(histogram.percentile(0.99) >= 9_900_000);
+        assertEquals(10_000_000, histogram.percentile(1.0));
+    }
+
+    @Test
+    public void testSmallAndNegativeValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(3);
+        histogram.record(31);
+
+        assertEquals(0, histogram.percentile(0.1));
+        assertEquals(3, histogram.percentile(0.5));
+        assertEquals(31, histogram.percentile(1.0));
+    }
+}
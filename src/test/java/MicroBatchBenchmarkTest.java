@@ -0,0 +1,94 @@
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+import trace.LatencyHistogram;
+import vertx.AlertVerticle;
+import vertx.ExtremeValueFilterVerticle;
+import vertx.LoadGeneratorVerticle;
+import vertx.MicroBatcher;
+import vertx.UnitNormalizerFilterVerticle;
+import vertx.ValidatorFilterVerticle;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Benchmark of event bus micro-batching: the same synthetic load is pushed
+ * through the three filter stages with every stage batching at each of the
+ * configured sizes, and throughput and end-to-end latency (ingest to
+ * {@code "validated.data"}) are printed side by side.
+ *
+ * <p>Only runs when {@code -Dbench.microbatch=true} is set. Tunables:
+ * {@code bench.batchSizes} (default {@code 1,16,64,256}), {@code bench.total}
+ * (default 500,000), {@code bench.rate} (default 200,000/s) and
+ * {@code bench.maxDelayMs} (default 5).</p>
+ */
+public class MicroBatchBenchmarkTest {
+
+    @Test
+    public void testThroughputVersusLatency() throws Exception {
+        assumeTrue(Boolean.getBoolean("bench.microbatch"));
+        long total = Long.getLong("bench.total", 500_000L);
+        double rate = Double.parseDouble(System.getProperty("bench.rate", "200000"));
+        long maxDelayMs = Long.getLong("bench.maxDelayMs", 5L);
+
+        System.out.printf("%10s %14s %10s %10s %10s%n", "batchSize", "readings/s", "p50 us", "p99 us", "max us");
+        for (String size : System.getProperty("bench.batchSizes", "1,16,64,256").split(",")) {
+            int batchSize = Integer.parseInt(size.trim());
+            JsonObject stage = new JsonObject().put("batchSize", batchSize).put("batchMaxDelayMs", maxDelayMs);
+            run(stage, total, rate);
+        }
+    }
+
+    private void run(JsonObject stage, long total, double rate) throws Exception {
+        Vertx vertx = Vertx.vertx();
+        try {
+            LatencyHistogram latency = new LatencyHistogram();
+            AtomicLong received = new AtomicLong();
+            CompletableFuture<JsonObject> generated = new CompletableFuture<>();
+            vertx.eventBus().consumer("validated.data", message -> {
+                long now = System.nanoTime();
+                long ingest = Long.parseLong(message.headers().get(AlertVerticle.INGEST_NANOS_HEADER));
+                MicroBatcher.forEach(message.body(), data -> {
+                    latency.record(now - ingest);
+                    received.incrementAndGet();
+                });
+            });
+            vertx.eventBus().<JsonObject>consumer("loadgen.completed", message -> generated.complete(message.body()));
+
+            DeploymentOptions options = new DeploymentOptions().setConfig(stage);
+            await(vertx.deployVerticle(new ValidatorFilterVerticle(), options).toCompletionStage().toCompletableFuture());
+            await(vertx.deployVerticle(new UnitNormalizerFilterVerticle(), options).toCompletionStage().toCompletableFuture());
+            await(vertx.deployVerticle(new ExtremeValueFilterVerticle(), options).toCompletionStage().toCompletableFuture());
+
+            long start = System.nanoTime();
+            await(vertx.deployVerticle(new LoadGeneratorVerticle(), new DeploymentOptions().setConfig(stage.copy()
+                    .put("rate", rate).put("total", total).put("seed", 42L)))
+                    .toCompletionStage().toCompletableFuture());
+            JsonObject summary = generated.get(5, TimeUnit.MINUTES);
+            long expected = summary.getLong("sent") - summary.getLong("invalid") - summary.getLong("outOfRange");
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+            while (received.get() < expected && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            assertEquals(expected, received.get());
+            System.out.printf("%10d %14.0f %10d %10d %10d%n", stage.getInteger("batchSize"), total / seconds,
+                    TimeUnit.NANOSECONDS.toMicros(latency.percentile(0.50)),
+                    TimeUnit.NANOSECONDS.toMicros(latency.percentile(0.99)),
+                    TimeUnit.NANOSECONDS.toMicros(latency.max()));
+        } finally {
+            vertx.close().toCompletionStage().toCompletableFuture().get(30, TimeUnit.SECONDS);
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        return future.get(30, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,91 @@
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import vertx.AlertVerticle;
+import vertx.MicroBatcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class MicroBatcherTest {
+
+    private Vertx vertx;
+    private BlockingQueue<Object> bodies;
+    private BlockingQueue<String> ingests;
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+        bodies = new LinkedBlockingQueue<>();
+        ingests = new LinkedBlockingQueue<>();
+        vertx.eventBus().consumer("out", message -> {
+            ingests.add(message.headers().get(AlertVerticle.INGEST_NANOS_HEADER));
+            bodies.add(message.body());
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        vertx.close().toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testBatchSizeOnePublishesSingleReadings() throws Exception {
+        onContext(() -> new MicroBatcher(vertx, "out", 1, 5).publish(reading(1), 42L));
+
+        assertEquals(reading(1), bodies.poll(5, TimeUnit.SECONDS));
+        assertEquals("42", ingests.poll());
+    }
+
+    @Test
+    public void testFlushesFullBatchesWithOldestIngest() throws Exception {
+        onContext(() -> {
+            MicroBatcher batcher = new MicroBatcher(vertx, "out", 3, 60_000);
+            batcher.publish(reading(1), 30L);
+            batcher.publish(reading(2), 10L);
+            batcher.publish(reading(3), 20L);
+            batcher.publish(reading(4), 40L);
+        });
+
+        JsonArray batch = (JsonArray) bodies.poll(5, TimeUnit.SECONDS);
+        assertEquals(3, batch.size());
+        assertEquals("10", ingests.poll());
+        assertNull("an incomplete batch waits for its deadline", bodies.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testFlushesIncompleteBatchAfterMaxDelay() throws Exception {
+        onContext(() -> {
+            MicroBatcher batcher = new MicroBatcher(vertx, "out", 100, 20);
+            batcher.publish(reading(1), 1L);
+            batcher.publish(reading(2), 2L);
+        });
+
+        JsonArray batch = (JsonArray) bodies.poll(5, TimeUnit.SECONDS);
+        List<JsonObject> readings = new ArrayList<>();
+        MicroBatcher.forEach(batch, readings::add);
+        assertEquals(List.of(reading(1), reading(2)), readings);
+    }
+
+    private void onContext(Runnable action) throws Exception {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        vertx.runOnContext(v -> {
+            action.run();
+            done.complete(null);
+        });
+        done.get(5, TimeUnit.SECONDS);
+    }
+
+    private static JsonObject reading(int i) {
+        return new JsonObject().put("variableType", "mp").put("timestamp", i).put("value", i);
+    }
+}
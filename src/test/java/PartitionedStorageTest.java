@@ -0,0 +1,92 @@
+import model.CleanData;
+import model.ReadingCodes;
+import org.junit.Test;
+import repository.PartitionRetentionJob;
+import repository.PartitionedReadingStore;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PartitionedStorageTest {
+
+    private static final LocalDateTime DAY_ONE = LocalDateTime.of(2025, 6, 1, 10, 0);
+
+    @Test
+    public void testReadingsAreSplitPerDayAndQueriedByRange() throws Exception {
+        Path db = Files.createTempFile("partitioned", ".db");
+        try (PartitionedReadingStore store = new PartitionedReadingStore("jdbc:sqlite:" + db,
+                PartitionedReadingStore.Kind.CLEAN, PartitionedReadingStore.Granularity.DAY)) {
+            store.saveClean(readings(3, 4));
+
+            assertEquals(List.of("clean_readings_p20250601", "clean_readings_p20250602", "clean_readings_p20250603"),
+                    store.partitions());
+            long from = ReadingCodes.toEpochMillis(DAY_ONE.plusDays(1));
+            long to = ReadingCodes.toEpochMillis(DAY_ONE.plusDays(2));
+            List<CleanData> found = store.findClean(ReadingCodes.TYPE_TEMPERATURE, from, to);
+            assertEquals(4, found.size());
+            assertEquals(DAY_ONE.plusDays(1), found.get(0).getTimestamp());
+        }
+    }
+
+    @Test
+    public void testExpiredPartitionsAreAggregatedAndDropped() throws Exception {
+        Path db = Files.createTempFile("partitioned", ".db");
+        String url = "jdbc:sqlite:" + db;
+        try (PartitionedReadingStore store = new PartitionedReadingStore(url,
+                PartitionedReadingStore.Kind.CLEAN, PartitionedReadingStore.Granularity.DAY)) {
+            store.saveClean(readings(3, 4));
+
+            PartitionRetentionJob job = new PartitionRetentionJob(store, 0);
+            long now = ReadingCodes.toEpochMillis(DAY_ONE.plusDays(2).withHour(0));
+            assertEquals(2, job.expire(now));
+            assertEquals(List.of("clean_readings_p20250603"), store.partitions());
+
+            store.saveClean(readings(1, 1)); // a late reading recreates the dropped partition
+            assertEquals(1, job.expire(now));
+        }
+
+        try (Connection connection = DriverManager.getConnection(url);
+             Statement statement = connection.createStatement()) {
+            try (ResultSet mode = statement.executeQuery("PRAGMA auto_vacuum")) {
+                assertEquals(2, mode.getInt(1)); // INCREMENTAL desde la creacion, sin VACUUM completo
+            }
+            try (ResultSet free = statement.executeQuery("PRAGMA freelist_count")) {
+                assertEquals(0, free.getInt(1));
+            }
+        }
+
+        try (Connection connection = DriverManager.getConnection(url);
+             Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT readings, min_value, max_value, sum_value "
+                     + "FROM reading_aggregates WHERE bucket_start = "
+                     + ReadingCodes.toEpochMillis(DAY_ONE) + " AND type_code = " + ReadingCodes.TYPE_TEMPERATURE)) {
+            assertTrue(rows.next());
+            assertEquals(5, rows.getInt(1));
+            assertEquals(0.0, rows.getDouble(2), 0.0);
+            assertEquals(3.0, rows.getDouble(3), 0.0);
+            assertEquals(6.0, rows.getDouble(4), 0.0);
+        }
+    }
+
+    /**
+     * Builds {@code perDay} temperature readings a minute apart, on each of {@code days} days.
+     */
+    private static List<CleanData> readings(int days, int perDay) {
+        List<CleanData> readings = new ArrayList<>();
+        for (int day = 0; day < days; day++) {
+            for (int i = 0; i < perDay; i++) {
+                readings.add(new CleanData("temperature", DAY_ONE.plusDays(day).plusMinutes(i), i));
+            }
+        }
+        return readings;
+    }
+}
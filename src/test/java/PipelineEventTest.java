@@ -0,0 +1,96 @@
+import filter.ExtremeValueFilter;
+import filter.UnitNormalizerFilter;
+import filter.ValidatorFilter;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import model.CleanData;
+import model.RawData;
+import org.junit.Test;
+import repository.CleanDataRepository;
+import repository.RawDataRepository;
+import service.RawDataProcessingService;
+import trace.StageEvent;
+import trace.StorageEvent;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class PipelineEventTest {
+
+    @Test
+    public void testFilterApplicationsAreRecorded() throws Exception {
+        RawDataRepository rawRepo = mock(RawDataRepository.class);
+        when(rawRepo.findAll()).thenReturn(List.of(
+                new RawData("temperature", LocalDateTime.now(), 86, "F"),
+                new RawData("mp", LocalDateTime.now(), 5000, "ug/m3")));
+        RawDataProcessingService service = new RawDataProcessingService(rawRepo, mock(CleanDataRepository.class),
+                List.of(new ValidatorFilter(), new UnitNormalizerFilter(), new ExtremeValueFilter()));
+
+        List<RecordedEvent> events = record(service::processAll);
+
+        List<String> stages = events.stream()
+                .filter(e -> e.getEventType().getName().equals("pipeline.Stage"))
+                .map(e -> e.getString("stage") + ":" + e.getString("readingType") + ":" + e.getString("outcome"))
+                .collect(Collectors.toList());
+        assertTrue(stages.contains("ValidatorFilter:temperature:passed"));
+        assertTrue(stages.contains("ExtremeValueFilter:temperature:passed"));
+        assertTrue(stages.contains("ExtremeValueFilter:mp:rejected"));
+        assertEquals(6, stages.size());
+    }
+
+    @Test
+    public void testBatchEventSummarisesReadings() throws Exception {
+        List<RecordedEvent> events = record(() -> {
+            StageEvent stage = new StageEvent();
+            stage.begin();
+            stage.add("mp", true);
+            stage.add("temperature", false);
+            stage.finish("extreme");
+
+            StorageEvent storage = new StorageEvent();
+            storage.begin();
+            storage.finish("test.save", List.of(new CleanData("mp", LocalDateTime.now(), 1),
+                    new CleanData("mp", LocalDateTime.now(), 2)), CleanData::getType, "stored");
+        });
+
+        RecordedEvent stage = only(events, "pipeline.Stage");
+        assertEquals("mixed", stage.getString("readingType"));
+        assertEquals(2, stage.getInt("batchSize"));
+        assertEquals(1, stage.getInt("rejected"));
+        assertEquals("partial", stage.getString("outcome"));
+
+        RecordedEvent storage = only(events, "pipeline.Storage");
+        assertEquals("mp", storage.getString("readingType"));
+        assertEquals(2, storage.getInt("batchSize"));
+        assertEquals("stored", storage.getString("outcome"));
+    }
+
+    private static List<RecordedEvent> record(Runnable work) throws Exception {
+        Path file = Files.createTempFile("pipeline", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(StageEvent.class).withThreshold(Duration.ZERO);
+            recording.enable(StorageEvent.class).withThreshold(Duration.ZERO);
+            recording.start();
+            work.run();
+            recording.stop();
+            recording.dump(file);
+        }
+        return RecordingFile.readAllEvents(file);
+    }
+
+    private static RecordedEvent only(List<RecordedEvent> events, String name) {
+        List<RecordedEvent> matching = events.stream()
+                .filter(e -> e.getEventType().getName().equals(name))
+                .collect(Collectors.toList());
+        assertEquals(1, matching.size());
+        return matching.get(0);
+    }
+}
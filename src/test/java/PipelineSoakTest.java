@@ -0,0 +1,90 @@
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+import vertx.ExtremeValueFilterVerticle;
+import vertx.FileStorageVerticle;
+import vertx.LoadGeneratorVerticle;
+import vertx.UnitNormalizerFilterVerticle;
+import vertx.ValidatorFilterVerticle;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Soak test: pushes millions of synthetic readings through the Vert.x pipeline
+ * and checks sustained throughput and a flat heap.
+ *
+ * <p>Only runs when {@code -Dsoak=true} is set. Tunables: {@code soak.total}
+ * (default 2,000,000), {@code soak.rate} (default 100,000/s) and
+ * {@code soak.minRate} (default 50,000/s).</p>
+ */
+public class PipelineSoakTest {
+
+    @Test
+    public void testSustainedThroughputWithFlatHeap() throws Exception {
+        assumeTrue(Boolean.getBoolean("soak"));
+        long total = Long.getLong("soak.total", 2_000_000L);
+        double rate = Double.parseDouble(System.getProperty("soak.rate", "100000"));
+        double minRate = Double.parseDouble(System.getProperty("soak.minRate", "50000"));
+
+        Vertx vertx = Vertx.vertx();
+        try {
+            AtomicLong stored = new AtomicLong();
+            CompletableFuture<JsonObject> generated = new CompletableFuture<>();
+            vertx.eventBus().consumer("validated.data", message -> stored.incrementAndGet());
+            vertx.eventBus().<JsonObject>consumer("loadgen.completed", message -> generated.complete(message.body()));
+
+            JsonObject storage = new JsonObject()
+                    .put("format", "segment")
+                    .put("segmentDir", Files.createTempDirectory("soak").toString());
+            await(vertx.deployVerticle(new ValidatorFilterVerticle()).toCompletionStage().toCompletableFuture());
+            await(vertx.deployVerticle(new UnitNormalizerFilterVerticle()).toCompletionStage().toCompletableFuture());
+            await(vertx.deployVerticle(new ExtremeValueFilterVerticle()).toCompletionStage().toCompletableFuture());
+            await(vertx.deployVerticle(new FileStorageVerticle(), new DeploymentOptions().setConfig(storage))
+                    .toCompletionStage().toCompletableFuture());
+
+            MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+            long start = System.nanoTime();
+            await(vertx.deployVerticle(new LoadGeneratorVerticle(), new DeploymentOptions().setConfig(new JsonObject()
+                    .put("rate", rate).put("total", total).put("seed", 42L)))
+                    .toCompletionStage().toCompletableFuture());
+
+            long warmHeap = -1;
+            while (!generated.isDone()) {
+                Thread.sleep(200);
+                if (warmHeap < 0 && stored.get() > total / 4) {
+                    System.gc();
+                    warmHeap = memory.getHeapMemoryUsage().getUsed();
+                }
+            }
+            JsonObject summary = generated.get();
+            long expected = summary.getLong("sent") - summary.getLong("invalid") - summary.getLong("outOfRange");
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+            while (stored.get() < expected && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.gc();
+            long finalHeap = memory.getHeapMemoryUsage().getUsed();
+
+            assertEquals(expected, stored.get());
+            assertTrue("throughput " + (total / seconds) + "/s", total / seconds >= minRate);
+            assertTrue("heap grew from " + warmHeap + " to " + finalHeap,
+                    warmHeap < 0 || finalHeap < warmHeap + 64L * 1024 * 1024);
+        } finally {
+            vertx.close().toCompletionStage().toCompletableFuture().get(30, TimeUnit.SECONDS);
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        return future.get(30, TimeUnit.SECONDS);
+    }
+}
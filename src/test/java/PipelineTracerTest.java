@@ -0,0 +1,81 @@
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+import storage.JournalReader;
+import trace.PipelineTracer;
+import vertx.JournalVerticle;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class PipelineTracerTest {
+
+    @Test
+    public void testSamplingIsConsistentPerTraceId() throws Exception {
+        Path file = Files.createTempFile("trace", ".log");
+        try (PipelineTracer tracer = new PipelineTracer(0.5, file)) {
+            int sampled = 0;
+            for (long id = 1; id <= 10_000; id++) {
+                boolean first = tracer.isSampled(id);
+                assertEquals(first, tracer.isSampled(id));
+                if (first) sampled++;
+            }
+            assertTrue(sampled > 4_000 && sampled < 6_000);
+        }
+    }
+
+    @Test
+    public void testRejectsAreAlwaysRecorded() throws Exception {
+        Path file = Files.createTempFile("trace", ".log");
+        try (PipelineTracer tracer = new PipelineTracer(0.0, file)) {
+            tracer.passed(1, "validator");
+            tracer.rejected(2, "validator", "Invalid type");
+        }
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).endsWith("2 validator REJECTED Invalid type"));
+    }
+
+    @Test
+    public void testTraceIdIsNotStoredBySinks() throws Exception {
+        Path dir = Files.createTempDirectory("journal");
+        Vertx vertx = Vertx.vertx();
+        try {
+            vertx.deployVerticle(new JournalVerticle(), new DeploymentOptions().setConfig(new JsonObject()
+                            .put("dir", dir.toString()).put("segmentMb", 1).put("syncIntervalMs", 0)))
+                    .toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+            JsonObject reading = new JsonObject().put("variableType", "mp").put("timestamp", 1000L)
+                    .put("value", 10.0).put("unit", "ug/m3");
+            PipelineTracer.global().traceIdOf(reading); // como lo deja el primer filtro
+            assertTrue(reading.containsKey(PipelineTracer.TRACE_ID_FIELD));
+            vertx.eventBus().publish("validated.data", reading);
+
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (appended(vertx) < 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+        } finally {
+            vertx.close().toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+        }
+
+        try (JournalReader reader = new JournalReader(dir, "test")) {
+            List<byte[]> records = reader.poll(10);
+            assertEquals(1, records.size());
+            JsonObject stored = new JsonObject(Buffer.buffer(records.get(0)));
+            assertFalse(stored.containsKey(PipelineTracer.TRACE_ID_FIELD));
+            assertEquals("mp", stored.getString("variableType"));
+        }
+    }
+
+    private static long appended(Vertx vertx) throws Exception {
+        JsonObject stats = (JsonObject) vertx.eventBus().request("journal.stats", null)
+                .toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS).body();
+        return stats.getLong("appended");
+    }
+}
@@ -0,0 +1,187 @@
+import filter.ExtremeValueFilter;
+import filter.RawDataFilter;
+import filter.UnitNormalizerFilter;
+import filter.ValidatorFilter;
+import flow.SequenceRing;
+import model.ReadingCodes;
+import org.junit.Test;
+import service.PipelinedProcessingService;
+import trace.PipelineTracer;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class PipelinedProcessingTest {
+
+    private static final List<RawDataFilter> FILTERS =
+            List.of(new ValidatorFilter(), new UnitNormalizerFilter(), new ExtremeValueFilter());
+
+    /** Slot of the ring test; {@code consumed} is set by the last stage. */
+    private static final class Slot {
+        long value;
+        boolean consumed = true;
+    }
+
+    @Test
+    public void testRingWrapsAroundInOrderWithoutOverrunningSlowStages() throws Exception {
+        SequenceRing<Slot> ring = new SequenceRing<>(8, 3, Slot::new);
+        int count = 20_000;
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        long[] sum = new long[1];
+
+        Thread doubler = new Thread(() -> run(ring, failure, () -> {
+            long next = 0;
+            for (long available; (available = ring.waitFor(1, next)) >= 0; next = available + 1) {
+                for (long s = next; s <= available; s++) {
+                    ring.get(s).value *= 2;
+                }
+                ring.publish(1, available);
+            }
+        }));
+        Thread consumer = new Thread(() -> run(ring, failure, () -> {
+            long next = 0;
+            for (long available; (available = ring.waitFor(2, next)) >= 0; next = available + 1) {
+                for (long s = next; s <= available; s++) {
+                    Slot slot = ring.get(s);
+                    assertEquals(2 * s, slot.value); // en orden, sin saltos ni repeticiones
+                    sum[0] += slot.value;
+                    slot.consumed = true;
+                }
+                if (next % 1000 < 8) {
+                    Thread.sleep(1); // etapa lenta: el productor debe esperarla
+                }
+                ring.publish(2, available);
+            }
+        }));
+        doubler.start();
+        consumer.start();
+
+        long claimed = -1;
+        for (long s = 0; s < count; s++) {
+            if (s > claimed) {
+                claimed = ring.waitFor(0, s);
+            }
+            Slot slot = ring.get(s);
+            assertTrue("se sobrescribio un slot no consumido", slot.consumed);
+            slot.consumed = false;
+            slot.value = s;
+            ring.publish(0, s);
+        }
+        ring.finish(count - 1);
+        doubler.join(10_000);
+        consumer.join(10_000);
+
+        assertNull(failure.get());
+        assertEquals((long) count * (count - 1), sum[0]);
+    }
+
+    @Test
+    public void testProcessesAllRawReadingsIntoCleanReadings() throws Exception {
+        String url = "jdbc:sqlite:" + Files.createTempDirectory("pipelined").resolve("env.db");
+        int rows = 2_000;
+        try (Connection connection = DriverManager.getConnection(url)) {
+            createTables(connection);
+            connection.setAutoCommit(false);
+            try (PreparedStatement insert = connection.prepareStatement("INSERT INTO raw_readings "
+                    + "(measured_value, type_code, unit_code, timestamp) VALUES (?, ?, ?, ?)")) {
+                for (int i = 0; i < rows; i++) {
+                    switch (i % 5) {
+                        case 0 -> row(insert, i % 60, ReadingCodes.TYPE_TEMPERATURE, ReadingCodes.UNIT_CELSIUS, i);
+                        case 1 -> row(insert, 212, ReadingCodes.TYPE_TEMPERATURE, ReadingCodes.UNIT_FAHRENHEIT, i);
+                        case 2 -> row(insert, 0.5, ReadingCodes.TYPE_MP, ReadingCodes.UNIT_MG_M3, i);
+                        case 3 -> row(insert, 10, 9, ReadingCodes.UNIT_UG_M3, i); // tipo desconocido
+                        default -> row(insert, 10, ReadingCodes.TYPE_MP, ReadingCodes.UNIT_UG_M3, null);
+                    }
+                }
+                insert.executeBatch();
+            }
+            connection.commit();
+        }
+
+        Path traceFile = Files.createTempFile("pipelined", ".log");
+        try (PipelineTracer tracer = new PipelineTracer(0.0, traceFile)) {
+            new PipelinedProcessingService(url, FILTERS, 16, 64, tracer).processAll();
+        }
+
+        try (Connection connection = DriverManager.getConnection(url);
+             Statement statement = connection.createStatement();
+             ResultSet clean = statement.executeQuery(
+                     "SELECT measured_value, type_code, timestamp FROM clean_readings ORDER BY id")) {
+            int i = 0;
+            while (clean.next()) {
+                long timestamp = (i / 2) * 5L + (i % 2 == 0 ? 0 : 2); // filas 0 y 2 de cada grupo de 5
+                assertEquals(timestamp * 1000, clean.getLong(3));
+                if (i % 2 == 0) {
+                    assertEquals(ReadingCodes.TYPE_TEMPERATURE, clean.getInt(2));
+                    assertEquals(timestamp % 60, clean.getDouble(1), 0);
+                } else {
+                    assertEquals(ReadingCodes.TYPE_MP, clean.getInt(2));
+                    assertEquals(500, clean.getDouble(1), 1e-9); // normalizado a ug/m3
+                }
+                i++;
+            }
+            assertEquals(rows * 2 / 5, i);
+        }
+    }
+
+    @Test
+    public void testReaderFailureStopsThePipeline() throws Exception {
+        String url = "jdbc:sqlite:" + Files.createTempDirectory("pipelined").resolve("empty.db");
+        try (Connection connection = DriverManager.getConnection(url);
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE clean_readings (id integer, measured_value float, "
+                    + "type_code integer, timestamp bigint, primary key (id))");
+        }
+        try {
+            new PipelinedProcessingService(url, FILTERS, 16, 64).processAll(); // sin raw_readings
+            fail("se esperaba IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("raw_readings"));
+        }
+    }
+
+    private interface Body {
+        void run() throws Exception;
+    }
+
+    private static void run(SequenceRing<?> ring, AtomicReference<Throwable> failure, Body body) {
+        try {
+            body.run();
+        } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+            ring.fail(e); // que el productor no espere para siempre
+        }
+    }
+
+    private static void createTables(Connection connection) throws Exception {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE raw_readings (id integer, measured_value float, "
+                    + "type_code integer, unit_code integer, timestamp bigint, primary key (id))");
+            statement.execute("CREATE TABLE clean_readings (id integer, measured_value float, "
+                    + "type_code integer, timestamp bigint, primary key (id))");
+        }
+    }
+
+    private static void row(PreparedStatement insert, double value, int type, int unit, Integer second)
+            throws Exception {
+        insert.setDouble(1, value);
+        insert.setInt(2, type);
+        insert.setInt(3, unit);
+        if (second != null) {
+            insert.setLong(4, second * 1000L);
+        } else {
+            insert.setNull(4, Types.BIGINT);
+        }
+        insert.addBatch();
+    }
+}
@@ -0,0 +1,122 @@
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import vertx.MicroBatcher;
+import vertx.ProducerBDVerticle;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ProducerTailTest {
+
+    private Vertx vertx;
+    private final List<JsonObject> table = new CopyOnWriteArrayList<>();
+    private final List<Long> received = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+        // sustituye a ReaderBDVerticle: pagina la "tabla" por id
+        vertx.eventBus().<JsonObject>consumer("db.read", message -> {
+            long afterId = message.body().getLong("afterId");
+            int limit = message.body().getInteger("limit");
+            JsonArray page = new JsonArray();
+            long lastId = afterId;
+            for (JsonObject row : table) {
+                if (row.getLong("traceId") > afterId && page.size() < limit) {
+                    page.add(row.copy());
+                    lastId = row.getLong("traceId");
+                }
+            }
+            message.reply(new JsonObject().put("readings", page).put("lastId", lastId));
+        });
+        vertx.eventBus().consumer("raw.data.incoming", message ->
+                MicroBatcher.forEach(message.body(), data -> received.add(data.getLong("traceId"))));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        vertx.close().toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testTailsNewRowsAndResumesFromPersistedCursor() throws Exception {
+        Path cursor = Files.createTempDirectory("tail").resolve("producer.cursor");
+        JsonObject config = new JsonObject()
+                .put("mode", "tail")
+                .put("pageSize", 10)
+                .put("minPollMs", 10)
+                .put("maxPollMs", 40)
+                .put("cursorFile", cursor.toString());
+        insert(1, 25);
+
+        String id = deploy(config);
+        waitFor(25);
+        insert(26, 30); // llegan filas nuevas despues del arranque
+        waitFor(30);
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!(Files.exists(cursor) && "30".equals(Files.readString(cursor))) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10); // el cursor se guarda despues de publicar la pagina
+        }
+        assertEquals("30", Files.readString(cursor));
+        vertx.undeploy(id).toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+
+        insert(31, 33);
+        deploy(config);
+        waitFor(33);
+        Thread.sleep(100);
+        assertEquals(33, received.size()); // sin repetir ni saltar filas
+        for (int i = 0; i < received.size(); i++) {
+            assertEquals(i + 1, received.get(i).longValue());
+        }
+    }
+
+    @Test
+    public void testNextPageWaitsUntilTheCursorIsSaved() throws Exception {
+        Path dir = Files.createTempDirectory("tail").resolve("missing"); // aun no existe: guardar falla
+        insert(1, 25);
+        deploy(new JsonObject()
+                .put("mode", "tail")
+                .put("pageSize", 10)
+                .put("minPollMs", 10)
+                .put("maxPollMs", 40)
+                .put("cursorFile", dir.resolve("producer.cursor").toString()));
+
+        waitFor(10);
+        Thread.sleep(200);
+        assertEquals(10, received.size()); // la siguiente pagina espera al cursor
+
+        Files.createDirectories(dir);
+        waitFor(25);
+        assertEquals(List.of(1L, 25L), List.of(received.get(0), received.get(24)));
+    }
+
+    private void insert(int from, int to) {
+        for (int i = from; i <= to; i++) {
+            table.add(new JsonObject().put("traceId", (long) i).put("variableType", "mp")
+                    .put("timestamp", 1000L * i).put("value", 10.0).put("unit", "ug/m3"));
+        }
+    }
+
+    private String deploy(JsonObject config) throws Exception {
+        return vertx.deployVerticle(new ProducerBDVerticle(), new DeploymentOptions().setConfig(config))
+                .toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    }
+
+    private void waitFor(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (received.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, received.size());
+    }
+}
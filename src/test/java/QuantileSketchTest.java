@@ -0,0 +1,101 @@
+import model.ReadingCodes;
+import org.junit.Test;
+import repository.SketchRepository;
+import sketch.DDSketch;
+import sketch.WindowedSketches;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class QuantileSketchTest {
+
+    private static final double ACCURACY = 0.01;
+    private static final long HOUR = 3_600_000L;
+
+    @Test
+    public void testQuantilesAreWithinRelativeAccuracy() {
+        Random random = new Random(42);
+        double[] values = new double[20_000];
+        DDSketch sketch = new DDSketch();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextGaussian() * 15 + 5; // temperaturas, tambien negativas
+            sketch.add(values[i]);
+        }
+        sketch.add(0);
+        values = Arrays.copyOf(values, values.length + 1);
+        Arrays.sort(values);
+
+        for (double q : new double[] { 0, 0.01, 0.25, 0.5, 0.95, 0.99, 1 }) {
+            double exact = values[(int) (q * (values.length - 1))];
+            assertEquals("q=" + q, exact, sketch.quantile(q), Math.abs(exact) * ACCURACY + 1e-9);
+        }
+        assertEquals(values.length, sketch.count());
+        assertEquals(values[0], sketch.min(), 0);
+        assertEquals(values[values.length - 1], sketch.max(), 0);
+    }
+
+    @Test
+    public void testMergeEqualsSketchOfUnionAndSurvivesEncoding() {
+        Random random = new Random(7);
+        DDSketch first = new DDSketch();
+        DDSketch second = new DDSketch();
+        DDSketch union = new DDSketch();
+        for (int i = 0; i < 10_000; i++) {
+            double value = Math.exp(random.nextDouble() * 7); // mp entre 1 y 1000 ug/m3
+            (i % 3 == 0 ? first : second).add(value);
+            union.add(value);
+        }
+        first.merge(second);
+        DDSketch decoded = DDSketch.fromBytes(first.toBytes());
+
+        assertTrue(first.toBytes().length < 4096);
+        for (double q : new double[] { 0.5, 0.95, 0.99 }) {
+            assertEquals(union.quantile(q), first.quantile(q), 0);
+            assertEquals(union.quantile(q), decoded.quantile(q), 0);
+        }
+        assertEquals(union.count(), decoded.count());
+        assertEquals(union.sum(), decoded.sum(), 1e-6);
+        assertThrows(IllegalArgumentException.class, () -> first.merge(new DDSketch(0.05, 512)));
+    }
+
+    @Test
+    public void testRepositoryMergesWindowsAcrossInstances() throws Exception {
+        Path db = Files.createTempFile("sketches", ".db");
+        String url = "jdbc:sqlite:" + db;
+        WindowedSketches nodeA = new WindowedSketches(HOUR, ACCURACY);
+        WindowedSketches nodeB = new WindowedSketches(HOUR, ACCURACY);
+        for (int i = 1; i <= 100; i++) {
+            nodeA.add(ReadingCodes.TYPE_TEMPERATURE, 10, i);           // primera hora
+            nodeB.add(ReadingCodes.TYPE_TEMPERATURE, HOUR + 10, i + 100); // segunda hora
+            nodeB.add(ReadingCodes.TYPE_MP, 10, 1000);
+        }
+        nodeA.add(ReadingCodes.UNKNOWN, 10, 1);
+
+        try (SketchRepository repository = new SketchRepository(url)) {
+            repository.merge(nodeA.drain(), HOUR);
+            repository.merge(nodeB.drain(), HOUR);
+            assertTrue(nodeA.isEmpty());
+
+            DDSketch firstHour = repository.find(ReadingCodes.TYPE_TEMPERATURE, HOUR, 0, HOUR);
+            assertEquals(100, firstHour.count());
+            assertEquals(50, firstHour.quantile(0.5), 50 * ACCURACY);
+
+            double[] both = repository.quantiles(ReadingCodes.TYPE_TEMPERATURE, HOUR, 0, 2 * HOUR, 0.5, 0.99);
+            assertEquals(100, both[0], 100 * ACCURACY);
+            assertEquals(198, both[1], 198 * ACCURACY);
+            assertEquals(100, repository.find(ReadingCodes.TYPE_MP, HOUR, 0, 2 * HOUR).count());
+        }
+
+        WindowedSketches again = new WindowedSketches(HOUR, ACCURACY);
+        again.add(ReadingCodes.TYPE_TEMPERATURE, 20, 1);
+        try (SketchRepository reopened = new SketchRepository(url)) {
+            reopened.merge(again.drain(), HOUR);
+            assertEquals(101, reopened.find(ReadingCodes.TYPE_TEMPERATURE, HOUR, 0, HOUR).count());
+            assertTrue(Double.isNaN(reopened.quantiles(ReadingCodes.TYPE_MP, HOUR, HOUR, 2 * HOUR, 0.5)[0]));
+        }
+    }
+}
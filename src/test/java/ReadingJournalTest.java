@@ -0,0 +1,179 @@
+import org.junit.Test;
+import storage.JournalReader;
+import storage.ReadingJournal;
+
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ReadingJournalTest {
+
+    private static final int SEGMENT_BYTES = 4096;
+
+    @Test
+    public void testReadsAcrossSegmentsAndResumesFromCommittedOffset() throws Exception {
+        Path dir = Files.createTempDirectory("journal");
+        try (ReadingJournal journal = new ReadingJournal(dir, SEGMENT_BYTES)) {
+            for (int i = 0; i < 500; i++) {
+                journal.append(record(i));
+            }
+        }
+        assertTrue(Files.list(dir).filter(f -> f.toString().endsWith(ReadingJournal.EXTENSION)).count() > 1);
+
+        try (JournalReader reader = new JournalReader(dir, "db")) {
+            assertEquals(200, reader.poll(200).size());
+            reader.commit();
+            assertEquals(100, reader.poll(100).size()); // leido pero no confirmado
+        }
+
+        try (JournalReader reader = new JournalReader(dir, "db")) {
+            List<String> rest = decode(reader.poll(1000));
+            assertEquals(300, rest.size());
+            assertEquals(text(200), rest.get(0));
+            assertEquals(text(499), rest.get(299));
+            assertTrue(reader.poll(10).isEmpty());
+        }
+    }
+
+    @Test
+    public void testWriterResumesAfterLastRecordAndReaderFollows() throws Exception {
+        Path dir = Files.createTempDirectory("journal");
+        try (JournalReader reader = new JournalReader(dir, "file")) {
+            try (ReadingJournal journal = new ReadingJournal(dir, SEGMENT_BYTES)) {
+                journal.append(record(0));
+                journal.append(record(1));
+            }
+            assertEquals(List.of(text(0), text(1)), decode(reader.poll(10)));
+
+            try (ReadingJournal journal = new ReadingJournal(dir, SEGMENT_BYTES)) {
+                journal.append(record(2));
+            }
+            assertEquals(List.of(text(2)), decode(reader.poll(10)));
+        }
+    }
+
+    @Test
+    public void testTornTailIsSkipped() throws Exception {
+        Path dir = Files.createTempDirectory("journal");
+        try (ReadingJournal journal = new ReadingJournal(dir, SEGMENT_BYTES)) {
+            journal.append(record(0));
+            journal.append(record(1));
+        }
+        // corrompe la carga del ultimo registro, como tras un corte de energia
+        try (RandomAccessFile file = new RandomAccessFile(dir.resolve("journal-000001.jnl").toFile(), "rw")) {
+            int second = 16 + ((8 + record(0).length + 7) & ~7);
+            file.seek(second + 8);
+            file.write('#');
+        }
+        try (ReadingJournal journal = new ReadingJournal(dir, SEGMENT_BYTES)) {
+            journal.append(record(2));
+        }
+
+        try (JournalReader reader = new JournalReader(dir, "db")) {
+            assertEquals(List.of(text(0), text(2)), decode(reader.poll(10)));
+        }
+    }
+
+    @Test
+    public void testCorruptRecordIsPassedOver() throws Exception {
+        Path dir = Files.createTempDirectory("journal");
+        try (ReadingJournal journal = new ReadingJournal(dir, SEGMENT_BYTES)) {
+            for (int i = 0; i < 3; i++) {
+                journal.append(record(i));
+            }
+        }
+        // corrompe la carga del registro del medio, sin que el escritor lo recupere
+        try (RandomAccessFile file = new RandomAccessFile(dir.resolve("journal-000001.jnl").toFile(), "rw")) {
+            int second = 16 + ((8 + record(0).length + 7) & ~7);
+            file.seek(second + 8);
+            file.write('#');
+        }
+
+        try (JournalReader reader = new JournalReader(dir, "db")) {
+            assertEquals(List.of(text(0), text(2)), decode(reader.poll(10)));
+            assertEquals(1, reader.skipped());
+            reader.commit();
+        }
+        try (JournalReader reader = new JournalReader(dir, "db")) {
+            assertTrue(reader.poll(10).isEmpty()); // el registro corrupto quedo confirmado
+        }
+    }
+
+    @Test
+    public void testMissingRollMarkerIsRepairedOnOpen() throws Exception {
+        Path dir = Files.createTempDirectory("journal");
+        try (ReadingJournal journal = new ReadingJournal(dir, SEGMENT_BYTES)) {
+            for (int i = 0; i < 3; i++) {
+                journal.append(record(i));
+            }
+        }
+        // caida justo despues de crear el segmento siguiente, antes de marcar el salto
+        Files.createFile(dir.resolve("journal-000002.jnl"));
+        try (ReadingJournal journal = new ReadingJournal(dir, SEGMENT_BYTES)) {
+            journal.append(record(3));
+        }
+
+        try (JournalReader reader = new JournalReader(dir, "db")) {
+            assertEquals(List.of(text(0), text(1), text(2), text(3)), decode(reader.poll(10)));
+        }
+    }
+
+    @Test
+    public void testEmptyRecordIsRejected() throws Exception {
+        Path dir = Files.createTempDirectory("journal");
+        try (ReadingJournal journal = new ReadingJournal(dir, SEGMENT_BYTES)) {
+            try {
+                journal.append(new byte[0]);
+                fail("se esperaba IllegalArgumentException");
+            } catch (IllegalArgumentException expected) {
+                // un largo 0 significa "aun no escrito" para los lectores
+            }
+            journal.append(record(0));
+        }
+
+        try (JournalReader reader = new JournalReader(dir, "db")) {
+            assertEquals(List.of(text(0)), decode(reader.poll(10)));
+        }
+    }
+
+    @Test
+    public void testDeletesOnlySegmentsEveryConsumerHasPassed() throws Exception {
+        Path dir = Files.createTempDirectory("journal");
+        try (ReadingJournal journal = new ReadingJournal(dir, SEGMENT_BYTES);
+             JournalReader fast = new JournalReader(dir, "file");
+             JournalReader slow = new JournalReader(dir, "db")) {
+            for (int i = 0; i < 500; i++) {
+                journal.append(record(i));
+            }
+            fast.poll(500);
+            fast.commit();
+            assertEquals(0, journal.deleteConsumed());
+
+            slow.poll(250);
+            slow.commit();
+            assertTrue(journal.deleteConsumed() > 0);
+            assertEquals(250, slow.poll(1000).size());
+        }
+    }
+
+    private static byte[] record(int i) {
+        return text(i).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(int i) {
+        return "{\"variableType\":\"mp\",\"timestamp\":" + i + ",\"value\":" + i + "}";
+    }
+
+    private static List<String> decode(List<byte[]> records) {
+        List<String> texts = new ArrayList<>();
+        for (byte[] record : records) {
+            texts.add(new String(record, StandardCharsets.UTF_8));
+        }
+        return texts;
+    }
+}
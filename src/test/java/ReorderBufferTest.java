@@ -0,0 +1,69 @@
+import flow.ReorderBuffer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ReorderBufferTest {
+
+    @Test
+    public void testEmitsInTimestampOrderWithinLateness() {
+        List<Long> out = new ArrayList<>();
+        List<Long> late = new ArrayList<>();
+        ReorderBuffer<Long> buffer = new ReorderBuffer<>(100, 10_000, t -> t, out::add, late::add);
+
+        Random random = new Random(3);
+        for (long t = 0; t < 10_000; t += 10) {
+            buffer.offer(t + random.nextInt(100)); // desorden acotado por la tolerancia
+        }
+        assertTrue(buffer.size() <= 20);
+        buffer.flush();
+
+        assertTrue(late.isEmpty());
+        assertEquals(1000, out.size());
+        for (int i = 1; i < out.size(); i++) {
+            assertTrue(out.get(i) >= out.get(i - 1));
+        }
+    }
+
+    @Test
+    public void testTooLateReadingsGoToSideChannelAndAreCounted() {
+        List<Long> out = new ArrayList<>();
+        List<Long> late = new ArrayList<>();
+        ReorderBuffer<Long> buffer = new ReorderBuffer<>(10, 100, t -> t, out::add, late::add);
+
+        buffer.offer(100L);
+        buffer.offer(95L);  // dentro de la tolerancia
+        buffer.offer(120L); // la marca de agua pasa a 110
+        assertEquals(List.of(95L, 100L), out);
+        assertEquals(110, buffer.watermark());
+
+        buffer.offer(99L);  // anterior a la ultima emitida
+        buffer.offer(105L); // posterior a la ultima emitida: aun cabe en orden
+        assertEquals(List.of(99L), late);
+        assertEquals(1, buffer.late());
+        assertEquals(List.of(95L, 100L, 105L), out);
+    }
+
+    @Test
+    public void testCapacityBoundsMemoryAndKeepsArrivalOrderOnTies() {
+        List<String> out = new ArrayList<>();
+        ReorderBuffer<String> buffer = new ReorderBuffer<>(1_000_000, 3,
+                s -> Long.parseLong(s.substring(0, 1)), out::add, s -> fail("late " + s));
+
+        buffer.offer("2a");
+        buffer.offer("1a");
+        buffer.offer("2b");
+        buffer.offer("1b");
+        assertEquals(3, buffer.size());
+        assertEquals(List.of("1a"), out);
+        assertEquals(1, buffer.forced());
+
+        buffer.flush();
+        assertEquals(List.of("1a", "1b", "2a", "2b"), out);
+        assertEquals(4, buffer.emitted());
+    }
+}
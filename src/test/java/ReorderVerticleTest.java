@@ -0,0 +1,65 @@
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import vertx.MicroBatcher;
+import vertx.ReorderVerticle;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ReorderVerticleTest {
+
+    private Vertx vertx;
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        vertx.close().toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testReadingAheadOfTheClockDoesNotMakeLaterReadingsLate() throws Exception {
+        List<Long> ordered = new CopyOnWriteArrayList<>();
+        List<Long> late = new CopyOnWriteArrayList<>();
+        vertx.eventBus().consumer(ReorderVerticle.ORDERED_ADDRESS, message ->
+                MicroBatcher.forEach(message.body(), data -> ordered.add(data.getLong("timestamp"))));
+        vertx.eventBus().<JsonObject>consumer(ReorderVerticle.LATE_ADDRESS, message ->
+                late.add(message.body().getLong("timestamp")));
+        vertx.deployVerticle(new ReorderVerticle(), new DeploymentOptions().setConfig(new JsonObject()
+                        .put("maxLatenessMs", 100).put("idleFlushMs", 50).put("maxAheadMs", 60_000)))
+                .toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+
+        long now = System.currentTimeMillis();
+        long future = now + TimeUnit.HOURS.toMillis(1); // sensor con el reloj adelantado
+        publish(future);
+        publish(now - 1000);
+        Thread.sleep(300); // el buffer se vacia por inactividad
+        publish(now - 500);
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (ordered.size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(List.of(now - 1000, now - 500), ordered);
+        assertEquals(List.of(future), late);
+        JsonObject stats = (JsonObject) vertx.eventBus().request("reorder.stats", null)
+                .toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS).body();
+        assertEquals(1, stats.getLong("ahead").longValue());
+        assertEquals(0, stats.getLong("late").longValue());
+    }
+
+    private void publish(long timestamp) {
+        vertx.eventBus().publish("validated.data", new JsonObject().put("variableType", "mp")
+                .put("timestamp", timestamp).put("value", 10.0));
+    }
+}
@@ -0,0 +1,57 @@
+import model.ReadingCodes;
+import org.junit.Test;
+import storage.SegmentReader;
+import storage.SegmentWriter;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+public class SegmentStorageTest {
+
+    @Test
+    public void testOrderedRangeScanAcrossSegments() throws Exception {
+        Path dir = Files.createTempDirectory("segments");
+        try (SegmentWriter writer = new SegmentWriter(dir, "readings", 1000, 64)) {
+            for (int i = 0; i < 2500; i++) {
+                writer.append(1_000L * i, i, ReadingCodes.TYPE_MP, ReadingCodes.UNIT_UG_M3);
+            }
+        }
+
+        try (SegmentReader reader = SegmentReader.open(dir, "readings")) {
+            assertEquals(2500, reader.recordCount());
+            SegmentReader.Cursor cursor = reader.scan(950_000L, 1_049_000L);
+            int expected = 950;
+            while (cursor.next()) {
+                assertEquals(expected * 1_000L, cursor.timestamp());
+                assertEquals(expected, cursor.value(), 0.0);
+                assertEquals(ReadingCodes.TYPE_MP, cursor.typeCode());
+                expected++;
+            }
+            assertEquals(1050, expected);
+        }
+    }
+
+    @Test
+    public void testUnorderedSegmentIsScannedLinearly() throws Exception {
+        Path dir = Files.createTempDirectory("segments");
+        try (SegmentWriter writer = new SegmentWriter(dir, "readings", 1000, 4)) {
+            long[] timestamps = {50, 10, 40, 20, 30};
+            for (long ts : timestamps) {
+                writer.append(ts, ts, ReadingCodes.TYPE_TEMPERATURE, ReadingCodes.UNIT_CELSIUS);
+            }
+            writer.flush();
+
+            try (SegmentReader reader = SegmentReader.open(dir, "readings")) {
+                SegmentReader.Cursor cursor = reader.scan(15, 45);
+                int matches = 0;
+                while (cursor.next()) {
+                    assertTrue(cursor.timestamp() >= 15 && cursor.timestamp() <= 45);
+                    matches++;
+                }
+                assertEquals(3, matches);
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+import model.CleanData;
+import model.RawData;
+import model.ReadingCodes;
+import org.junit.Test;
+import repository.ShardedReadingStore;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ShardedReadingStoreTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 6, 1, 10, 0);
+
+    @Test
+    public void testHashShardedReadingsAreMergedInTimestampOrder() throws Exception {
+        Path dir = Files.createTempDirectory("shards");
+        try (ShardedReadingStore store = ShardedReadingStore.open(
+                "jdbc:sqlite:" + dir.resolve("environment.db"), 3, ShardedReadingStore.Routing.HASH)) {
+            List<CleanData> batch = new ArrayList<>();
+            for (int i = 0; i < 300; i++) {
+                batch.add(new CleanData(i % 2 == 0 ? "temperature" : "mp", START.plusSeconds(i), i));
+            }
+            assertTrue(store.saveClean(batch).join().stored());
+
+            assertEquals(3, Files.list(dir).filter(p -> p.toString().endsWith(".db")).count());
+            List<CleanData> all = store.findClean(null, ReadingCodes.toEpochMillis(START),
+                    ReadingCodes.toEpochMillis(START.plusSeconds(300)));
+            assertEquals(300, all.size());
+            for (int i = 0; i < all.size(); i++) {
+                assertEquals(START.plusSeconds(i), all.get(i).getTimestamp());
+                assertEquals(i, all.get(i).getValue(), 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void testTypeRoutingKeepsEachTypeInOneShard() throws Exception {
+        Path dir = Files.createTempDirectory("shards");
+        try (ShardedReadingStore store = ShardedReadingStore.open(
+                "jdbc:sqlite:" + dir.resolve("environment.db"), 2, ShardedReadingStore.Routing.TYPE)) {
+            assertNotEquals(store.shardOf(ReadingCodes.TYPE_TEMPERATURE, 0), store.shardOf(ReadingCodes.TYPE_MP, 0));
+
+            assertTrue(store.saveClean(List.of(
+                    new CleanData("mp", START.plusMinutes(2), 40),
+                    new CleanData("temperature", START.plusMinutes(1), 20),
+                    new CleanData("mp", START, 30))).join().stored());
+
+            List<CleanData> mp = store.findClean(ReadingCodes.TYPE_MP, 0, Long.MAX_VALUE);
+            assertEquals(2, mp.size());
+            assertEquals(30, mp.get(0).getValue(), 0.0);
+            assertEquals("mp", mp.get(1).getType());
+        }
+    }
+
+    @Test
+    public void testUnknownTypesAndUnitsAreAddedToTheDictionary() throws Exception {
+        Path dir = Files.createTempDirectory("shards");
+        try (ShardedReadingStore store = ShardedReadingStore.open(
+                "jdbc:sqlite:" + dir.resolve("environment.db"), 1, ShardedReadingStore.Routing.TYPE)) {
+            assertTrue(store.saveRaw(List.of(
+                    new RawData("humidity", START, 55, "%"),
+                    new RawData("temperature", START.plusMinutes(1), 280, "K"))).join().stored());
+
+            List<RawData> raw = store.findRaw(null, 0, Long.MAX_VALUE);
+            assertEquals("humidity", raw.get(0).getType());
+            assertEquals("%", raw.get(0).getUnit());
+            assertEquals("K", raw.get(1).getUnit());
+        }
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + dir.resolve("environment-shard0.db"));
+             Statement statement = connection.createStatement();
+             ResultSet codes = statement.executeQuery("SELECT c.name FROM raw_readings r "
+                     + "JOIN reading_codes c ON c.kind = 'unit' AND c.code = r.unit_code ORDER BY r.timestamp")) {
+            assertTrue(codes.next());
+            assertEquals("%", codes.getString(1));
+            assertTrue(codes.next());
+            assertEquals("K", codes.getString(1));
+        }
+    }
+
+    @Test
+    public void testFailedShardReportsOnlyItsRows() throws Exception {
+        Path dir = Files.createTempDirectory("shards");
+        String url = "jdbc:sqlite:" + dir.resolve("environment.db");
+        try (ShardedReadingStore store = ShardedReadingStore.open(url, 2, ShardedReadingStore.Routing.TYPE)) {
+            int mpShard = store.shardOf(ReadingCodes.TYPE_MP, 0);
+            try (Connection connection = DriverManager.getConnection(
+                    "jdbc:sqlite:" + dir.resolve("environment-shard" + mpShard + ".db"));
+                 Statement statement = connection.createStatement()) {
+                statement.execute("DROP TABLE clean_readings"); // el shard de mp falla
+            }
+
+            CleanData mp = new CleanData("mp", START, 30);
+            ShardedReadingStore.WriteResult<CleanData> result = store.saveClean(List.of(
+                    new CleanData("temperature", START, 20), mp)).join();
+
+            assertFalse(result.stored());
+            assertNotNull(result.failure());
+            assertEquals(List.of(mp), result.unwritten());
+            assertEquals(1, store.findClean(ReadingCodes.TYPE_TEMPERATURE, 0, Long.MAX_VALUE).size());
+        }
+    }
+}